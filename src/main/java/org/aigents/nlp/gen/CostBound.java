@@ -0,0 +1,146 @@
+/*
+ * MIT License
+ * 
+ * Copyright (c) 2020-Present by Vignav Ramesh and Anton Kolonin, Aigents®
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package main.java.org.aigents.nlp.gen;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+import main.java.org.aigents.nlp.lg.ConnectorTable;
+import main.java.org.aigents.nlp.lg.Dictionary;
+import main.java.org.aigents.nlp.lg.LinkCosts;
+import main.java.org.aigents.nlp.lg.Rule;
+
+/*
+ * Cost ceiling of a generator search, estimated by LinkCosts. With a finite ceiling the
+ * orders of the words are built one position at a time and a prefix whose estimate is
+ * already above the ceiling is not extended, and connects only considers connectors that
+ * occur on a disjunct within the ceiling. The default, NONE, changes nothing.
+ */
+class CostBound {
+	static final CostBound NONE = new CostBound(Double.POSITIVE_INFINITY);
+	private final double ceiling;
+	
+	interface Visitor {
+		// false stops the search
+		boolean order(String[] elements);
+	}
+	
+	CostBound(double ceiling) {
+		this.ceiling = ceiling;
+	}
+	
+	double getCeiling() {	return ceiling;	}
+	
+	boolean isBounded() {	return ceiling != Double.POSITIVE_INFINITY;	}
+	
+	// whether the estimate of words, in this order, is within the ceiling
+	boolean within(Dictionary dict, String[] words, Function<String, List<Rule>> rules) {
+		if (!isBounded()) return true;
+		ArrayList<List<Rule>> list = new ArrayList<>(words.length);
+		for (String word : words) list.add(rules.apply(word));
+		return estimate(costs(dict), words, list, Collections.emptySet(), words.length) <= ceiling;
+	}
+	
+	/*
+	 * Whether an operand of rule, one or more connectors joined by " & ", only has
+	 * connectors on its disjuncts within the ceiling; plus operands are written flipped,
+	 * as the left side of a link. Connectors that do not parse are let through.
+	 */
+	boolean allows(Dictionary dict, Rule rule, String operand, boolean plus) {
+		if (!isBounded()) return true;
+		LinkCosts c = costs(dict);
+		ConnectorTable table = dict.getConnectorTable();
+		for (String part : operand.split(" & ")) {
+			int code = table.pack(part.trim());
+			if (code == ConnectorTable.NONE) continue;
+			if (!c.allows(rule, plus? ConnectorTable.flip(code) : code)) return false;
+		}
+		return true;
+	}
+	
+	// the same for an operand packed beforehand
+	boolean allows(Dictionary dict, Rule rule, Operand operand) {
+		if (!isBounded()) return true;
+		LinkCosts c = costs(dict);
+		for (int code : operand.parts(dict.getConnectorTable())) {
+			if (code != ConnectorTable.NONE && !c.allows(rule, code)) return false;
+		}
+		return true;
+	}
+	
+	/*
+	 * Visits the orders of elements other than the given one, rearranging it in place,
+	 * leaving out those with a prefix above the ceiling; uncounted words, such as the
+	 * "not" the generators put back in later, are left out of the estimate.
+	 */
+	void permute(Dictionary dict, String[] elements, Function<String, List<Rule>> rules, Set<String> uncounted, Visitor visitor) {
+		ArrayList<List<Rule>> list = new ArrayList<>(elements.length);
+		for (String element : elements) list.add(rules.apply(element));
+		permute(costs(dict), elements, list, uncounted, visitor, 0, false);
+	}
+	
+	private boolean permute(LinkCosts c, String[] elements, List<List<Rule>> rules, Set<String> uncounted, Visitor visitor, int k, boolean moved) {
+		for (int i = k; i < elements.length; i++) {
+			swap(elements, rules, k, i);
+			boolean go = true;
+			if (estimate(c, elements, rules, uncounted, k + 1) <= ceiling) {
+				if (k + 1 < elements.length) go = permute(c, elements, rules, uncounted, visitor, k + 1, moved || i != k);
+				else if (moved || i != k) go = visitor.order(elements);
+			}
+			swap(elements, rules, k, i);
+			if (!go) return false;
+		}
+		return true;
+	}
+	
+	// estimate of the first count elements; the last of them has no right neighbour yet
+	private double estimate(LinkCosts c, String[] elements, List<List<Rule>> rules, Set<String> uncounted, int count) {
+		int[] counted = new int[count];
+		int m = 0;
+		for (int i = 0; i < count; i++) {
+			if (!uncounted.contains(elements[i])) counted[m++] = i;
+		}
+		double total = 0;
+		for (int j = 0; j < m && total <= ceiling; j++) {
+			total += c.cost(rules.get(counted[j]), j > 0? rules.get(counted[j - 1]) : null, j + 1 < m? rules.get(counted[j + 1]) : null);
+		}
+		return total;
+	}
+	
+	private static void swap(String[] elements, List<List<Rule>> rules, int a, int b) {
+		String tmp = elements[a];
+		elements[a] = elements[b];
+		elements[b] = tmp;
+		List<Rule> r = rules.get(a);
+		rules.set(a, rules.get(b));
+		rules.set(b, r);
+	}
+	
+	// held by the dictionary, so an evicted or reloaded one takes its estimates with it
+	private LinkCosts costs(Dictionary dict) {	return dict.getLinkCosts(ceiling);	}
+}
@@ -36,17 +36,25 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 
+import main.java.org.aigents.nlp.lg.ConnectorTable;
 import main.java.org.aigents.nlp.lg.Dictionary;
-import main.java.org.aigents.nlp.lg.Loader;
+import main.java.org.aigents.nlp.lg.DictionaryRegistry;
+import main.java.org.aigents.nlp.lg.Subscript;
 import main.java.org.aigents.nlp.lg.Rule;
+import main.java.org.aigents.nlp.lg.Tokenizer;
 
 public class Generator {
 	public static Dictionary dict, hyphenated;
 	public static boolean tooMuch = false;
 	public static String fname = "";
+	private static CostBound bound = CostBound.NONE;
 
 	public static void main(String[] args) throws IOException {	
 		long startTime = System.currentTimeMillis();
+		if (args.length > 1 && args[0].equals("--cost")) {
+			setCostCeiling(Double.parseDouble(args[1]));
+			args = Arrays.copyOfRange(args, 2, args.length);
+		}
 		if (args.length == 2) {
 			int single = 0;
 			int multOne = 0;
@@ -55,11 +63,11 @@ public class Generator {
 			int much = 0;
 			try {
 				if (args[0].contains("/4.0.dict")) {
-					Dictionary[] dicts = Loader.buildLGDict(args[0]);
+					Dictionary[] dicts = DictionaryRegistry.getShared().get(args[0]);
 					dict = dicts[0];
 					hyphenated = dicts[1];
 				} else {
-					dict = Loader.grammarBuildLinks(args[0], false);
+					dict = DictionaryRegistry.getShared().get(args[0])[0];
 				}
 				List<String> list = getList(args[1]);
 				List<String[]> words = processSentences(args[1]);
@@ -86,16 +94,9 @@ public class Generator {
 								one = true;
 								continue;
 							}
-							String sen = sen2.substring(0, sen2.length() - 1);
-							String[] sep = sen.split(" ");
-							ArrayList<String> sParts = new ArrayList<>(Arrays.asList(s.substring(0, s.length() - 1).split(" ")));
-							ArrayList<String> senParts = new ArrayList<>();
-							for (String sepw : sep) {
-								if (sepw.endsWith(",")) {
-									senParts.add(sepw.substring(0, sepw.length() - 1));
-									senParts.add(",");
-								} else senParts.add(sepw);
-							}
+							Tokenizer tokenizer = Tokenizer.getDefault();
+							List<String> sParts = tokenizer.split(s.substring(0, s.length() - 1), false);
+							List<String> senParts = tokenizer.split(sen2.substring(0, sen2.length() - 1), false);
 							System.out.println("sen: " + senParts);
 							System.out.println("s: " + sParts);
 							ArrayList<String> mismatches = new ArrayList<>();
@@ -141,11 +142,11 @@ public class Generator {
 		} else if (args.length > 2) {
 			try {
 				if (args[0].contains("/4.0.dict")) {
-					Dictionary[] dicts = Loader.buildLGDict(args[0]);
+					Dictionary[] dicts = DictionaryRegistry.getShared().get(args[0]);
 					dict = dicts[0];
 					hyphenated = dicts[1];
 				} else {
-					dict = Loader.grammarBuildLinks(args[0], false);
+					dict = DictionaryRegistry.getShared().get(args[0])[0];
 				}
 				String[] words = new String[args.length - 1];
 				for (int i = 1; i < args.length; i++) {
@@ -160,6 +161,19 @@ public class Generator {
 		}
 	}
 	
+	/*
+	 * Bounds the search by the estimated cost of the disjuncts the words take (see
+	 * LinkCosts): an ordering is abandoned as soon as its prefix is estimated above the
+	 * ceiling, and connects only considers connectors found on disjuncts within it. The
+	 * default of POSITIVE_INFINITY leaves the search unbounded; "--cost <ceiling>" before
+	 * the other arguments of main sets it.
+	 */
+	public static void setCostCeiling(double ceiling) {
+		bound = ceiling == Double.POSITIVE_INFINITY? CostBound.NONE : new CostBound(ceiling);
+	}
+	
+	public static double getCostCeiling() {	return bound.getCeiling();	}
+	
 	public static HashSet<String> generateSentence(Dictionary d, Dictionary h, String f, String[] elements) {
 		dict = d;
 		hyphenated = h;
@@ -184,7 +198,19 @@ public class Generator {
 		return generateSentence(elements);
 	}
 
+	/*
+	 * The elements are an unordered bag, so idioms of the hyphenated dictionary are only
+	 * read as such in an ordering that puts their words next to each other: the ordering
+	 * is then also checked with each idiom as a single unit (see addOrder).
+	 */
 	public static HashSet<String> generateSentence(String[] elements) {
+		if (hyphenated == null) return permute(elements);
+		HashSet<String> ret = new HashSet<>();
+		for (String sentence : permute(elements)) ret.add(sentence.replace('_', ' '));
+		return ret;
+	}
+
+	private static HashSet<String> permute(String[] elements) {
 		long start = System.currentTimeMillis();
 		boolean not = false;
 		boolean now = false;
@@ -203,6 +229,7 @@ public class Generator {
 			now = true;
 			w.remove("now");
 		}
+		addIdioms(ret, elements, not, now);
 		if (not || now) {
 			int i = 0;
 			String[] input = new String[w.size()];
@@ -251,86 +278,38 @@ public class Generator {
 				add(ret, sentence(elements), elements);
 			}
 		}
-		int i = 0;
 		long threshold = 180000;
 		long maxNum = Integer.MAX_VALUE;
-		while (i < n) {
-			long curr = System.currentTimeMillis();
-			if (curr - start > threshold) {
-				if (ret.size() > maxNum) {
-					tooMuch = true;
-					return new HashSet<>();
-				} else
-					return ret;
-			}
-			if (indexes[i] < i) {
-				swap(elements, i % 2 == 0 ? 0 : indexes[i], i);
-				ArrayList<String> w2 = new ArrayList<>(Arrays.asList(elements));
-				if (w2.contains("not") && w2.contains("a")) {
-					w2.remove("not");
-				}
-				if (w2.contains("now") && w2.contains("a")) {
-					w2.remove("now");
-				}
-				if (not || now) {
-					int id = 0;
-					String[] input = new String[w2.size()];
-					for (String word : w2) {
-						input[id] = word;
-						id++;
-					}
-					if (now && !not) {
-						if (check(input) && isValid(input)) {
-							String str = sentence(input);
-							int nowId = 0;
-							String[] parts = str.split(" ");
-							for (int m = 0; m < parts.length; m++) {
-								if (parts[m].equals("a") && str.indexOf(" a") != -1) {
-									nowId = str.indexOf(" a") + 3 + parts[m + 1].length()
-											- ((parts[m + 1].contains(".") || parts[m + 1].contains("?")) ? 1 : 0);
-									break;
-								}
-							}
-							if (nowId == 0) {
-								add(ret, "Now " + str.toLowerCase(), elements);
-							} else {
-								String str3 = str.substring(0, nowId) + " now" + str.substring(nowId);
-								add(ret, str3, elements);
-							}
-						}
-					}
-					if (not && !now) {
-						if (check(input) && isValid(input)) {
-							String str = sentence(input);
-							str = str.replace(" a", " not a");
-							add(ret, str, elements);
-						}
-					}
-					if (not && now) {
-						if (check(input) && isValid(input)) {
-							String str = sentence(input);
-							int nowId = 0;
-							String[] parts = str.split(" ");
-							for (int m = 0; m < parts.length; m++) {
-								if (parts[m].equals("a")) {
-									nowId = str.indexOf(" a") + 2 + parts[m + 1].length();
-								}
-							}
-							String str3 = str.substring(0, nowId) + " now" + str.substring(nowId);
-							str3 = str3.replace(" a", " not a");
-							add(ret, str3, elements);
-						}
-					}
+		if (bound.isBounded()) {
+			HashSet<String> uncounted = new HashSet<>();
+			if (not) uncounted.add("not");
+			if (now) uncounted.add("now");
+			boolean notFlag = not, nowFlag = now;
+			bound.permute(dict, elements, word -> rules(dict.resolve(word)), uncounted, order -> {
+				if (System.currentTimeMillis() - start > threshold) return false;
+				addOrder(ret, order, notFlag, nowFlag);
+				return true;
+			});
+		} else {
+			int i = 0;
+			while (i < n) {
+				long curr = System.currentTimeMillis();
+				if (curr - start > threshold) {
+					if (ret.size() > maxNum) {
+						tooMuch = true;
+						return new HashSet<>();
+					} else
+						return ret;
+				}
+				if (indexes[i] < i) {
+					swap(elements, i % 2 == 0 ? 0 : indexes[i], i);
+					addOrder(ret, elements, not, now);
+					indexes[i]++;
+					i = 0;
 				} else {
-					if (check(elements) && isValid(elements)) {
-						add(ret, sentence(elements), elements);
-					}
+					indexes[i] = 0;
+					i++;
 				}
-				indexes[i]++;
-				i = 0;
-			} else {
-				indexes[i] = 0;
-				i++;
 			}
 		}
 		if (ret.size() > maxNum) {
@@ -340,21 +319,89 @@ public class Generator {
 			return ret;
 	}
 
-	private static void add(HashSet<String> ret, String str, String[] elements) {
-		if (str.contains(",")) {
-			String[] spl = str.split(" ");
-			int count = spl.length;
-			for (String s : spl) {
-				if (s.contains(",")) count++;
+	// checks an ordering of elements, without "not" and "now" if they are to be put back in
+	private static void addOrder(HashSet<String> ret, String[] elements, boolean not, boolean now) {
+		addIdioms(ret, elements, not, now);
+		addReading(ret, elements, not, now);
+	}
+	
+	// the idiom reading of an ordering, if its words form any idioms of the hyphenated dictionary
+	private static void addIdioms(HashSet<String> ret, String[] elements, boolean not, boolean now) {
+		if (hyphenated == null) return;
+		String[] units = hyphenated.getIdioms().collapse(elements);
+		if (units != elements) addReading(ret, units, not, now);
+	}
+	
+	private static void addReading(HashSet<String> ret, String[] elements, boolean not, boolean now) {
+		ArrayList<String> w2 = new ArrayList<>(Arrays.asList(elements));
+		if (w2.contains("not") && w2.contains("a")) {
+			w2.remove("not");
+		}
+		if (w2.contains("now") && w2.contains("a")) {
+			w2.remove("now");
+		}
+		if (not || now) {
+			int id = 0;
+			String[] input = new String[w2.size()];
+			for (String word : w2) {
+				input[id] = word;
+				id++;
+			}
+			if (now && !not) {
+				if (check(input) && isValid(input)) {
+					String str = sentence(input);
+					int nowId = 0;
+					String[] parts = str.split(" ");
+					for (int m = 0; m < parts.length; m++) {
+						if (parts[m].equals("a") && str.indexOf(" a") != -1) {
+							nowId = str.indexOf(" a") + 3 + parts[m + 1].length()
+									- ((parts[m + 1].contains(".") || parts[m + 1].contains("?")) ? 1 : 0);
+							break;
+						}
+					}
+					if (nowId == 0) {
+						add(ret, "Now " + str.toLowerCase(), elements);
+					} else {
+						String str3 = str.substring(0, nowId) + " now" + str.substring(nowId);
+						add(ret, str3, elements);
+					}
+				}
+			}
+			if (not && !now) {
+				if (check(input) && isValid(input)) {
+					String str = sentence(input);
+					str = str.replace(" a", " not a");
+					add(ret, str, elements);
+				}
+			}
+			if (not && now) {
+				if (check(input) && isValid(input)) {
+					String str = sentence(input);
+					int nowId = 0;
+					String[] parts = str.split(" ");
+					for (int m = 0; m < parts.length; m++) {
+						if (parts[m].equals("a")) {
+							nowId = str.indexOf(" a") + 2 + parts[m + 1].length();
+						}
+					}
+					String str3 = str.substring(0, nowId) + " now" + str.substring(nowId);
+					str3 = str3.replace(" a", " not a");
+					add(ret, str3, elements);
+				}
 			}
-			if (count == elements.length)
-				ret.add(str);
 		} else {
-			if (str.split(" ").length == elements.length)
-				ret.add(str);
+			if (check(elements) && isValid(elements)) {
+				add(ret, sentence(elements), elements);
+			}
 		}
 	}
 
+	// commas of str count as elements, its final '.' does not
+	private static void add(HashSet<String> ret, String str, String[] elements) {
+		if (Tokenizer.getDefault().count(str) - (str.endsWith(".")? 1 : 0) == elements.length)
+			ret.add(str);
+	}
+
 	private static boolean contains(String[] input, String str) {
 		for (String s : input) {
 			if (s.equals(str))
@@ -383,17 +430,14 @@ public class Generator {
 		if (input.length <= 1) return false;
 		if (!check(input[0], input[1])) return false;
 		String first = input[0].toLowerCase().trim();
-		if ((dict.getSubscript(first).contains("v") || dict.getSubscript(first).contains("v") 
-				&& !(dict.getSubscript(first).contains("n") || dict.getSubscript(first).contains("n-u")))) {
+		if ((dict.hasSubscript(first, Subscript.V) || dict.hasSubscript(first, Subscript.V) 
+				&& !(dict.hasSubscript(first, Subscript.N | Subscript.N_U)))) {
 			return false;
 		}
 		boolean containsVerb = false;
 		for (String word : input) {
-			ArrayList<String> subs;
-			subs = dict.getSubscript(word);
-			if (subs.isEmpty()) {
-				subs = dict.getSubscript(word.substring(0,1).toUpperCase() + word.substring(1).toLowerCase());
-			}
+			List<String> subs;
+			subs = dict.getSubscriptOrCapitalized(word);
 			if (subs.isEmpty()) {
 				subs = dict.getSubscript(word.toLowerCase());
 			}
@@ -410,11 +454,8 @@ public class Generator {
 			words[i] = words[i].toLowerCase();
 			String word = words[i];
 			word = word.toLowerCase();
-			ArrayList<String> subs;
-			subs = dict.getSubscript(word);
-			if (subs.isEmpty()) {
-				subs = dict.getSubscript(word.substring(0,1).toUpperCase() + word.substring(1));
-			}
+			List<String> subs;
+			subs = dict.getSubscriptOrCapitalized(word);
 			if (subs.size() == 1 && (subs.contains("m") || subs.contains("l") || subs.contains("f"))) {
 				word = word.substring(0,1).toUpperCase() + word.substring(1);
 			}
@@ -429,11 +470,7 @@ public class Generator {
 		first = first.toLowerCase();
 		second = second.toLowerCase();
 		List<String> subs;
-		try {
-			subs = dict.getSubscript(first);
-		} catch (Exception e) {
-			subs = dict.getSubscript(first.substring(0,1).toUpperCase() + first.substring(1));
-		}
+		subs = dict.getSubscript(first);
 		if (subs.size() == 1 && subs.contains("a")) return false;
 		if (subs.contains("v") || subs.contains("v-d") && !subs.contains("n") && !subs.contains("n-u")) {
 			return false;
@@ -446,22 +483,12 @@ public class Generator {
 			return false;
 		if (contains(input, ",") && input.length < 6) return false;
 		if (input[0].equals("abbot")) return false;
-		if ((dict.getSubscript(input[0]).contains("v") || dict.getSubscript(input[0]).contains("v-d") 
-				|| dict.getSubscript(input[0]).contains("j-ru") || dict.getSubscript(input[0]).contains("r"))
-				&& !(dict.getSubscript(input[1]).contains("a") || dict.getSubscript(input[0]).contains("n") 
-						|| dict.getSubscript(input[0]).contains("n-u")
-						|| dict.getSubscript(input[0]).contains("p")))
+		if ((dict.hasSubscript(input[0], Subscript.V | Subscript.V_D | Subscript.J_RU | Subscript.R))
+				&& !(dict.hasSubscript(input[1], Subscript.A) || dict.hasSubscript(input[0], Subscript.N | Subscript.N_U | Subscript.P)))
 			return false;
-		if (fname.contains("y_c") && !dict.getSubscript(input[input.length-1]).contains("n")) return false;
-		if ((dict.getSubscript(input[input.length-1]).contains("j-ru") 
-				|| dict.getSubscript(input[input.length-1]).contains("r")
-				|| dict.getSubscript(input[input.length-1]).contains("e")
-				|| dict.getSubscript(input[input.length-1]).contains("c")
-				|| dict.getSubscript(input[input.length-1]).contains("v-d")
-				|| dict.getSubscript(input[input.length-1]).contains("a"))
-				&& !(dict.getSubscript(input[input.length-1]).contains("n") 
-						|| dict.getSubscript(input[input.length-1]).contains("n-u")
-						|| dict.getSubscript(input[input.length-1]).contains("p")))
+		if (fname.contains("y_c") && !dict.hasSubscript(input[input.length-1], Subscript.N)) return false;
+		if ((dict.hasSubscript(input[input.length-1], Subscript.J_RU | Subscript.R | Subscript.E | Subscript.C | Subscript.V_D | Subscript.A))
+				&& !(dict.hasSubscript(input[input.length-1], Subscript.N | Subscript.N_U | Subscript.P)))
 			return false;
 		for (int i = 0; i < input.length; i++) {
 			if (!input[i].equals("A")) {
@@ -469,16 +496,9 @@ public class Generator {
 			}
 		}
 		String last = input[input.length - 1].toLowerCase().trim();
-		if (last.equals("a") || (dict.getSubscript(last).size() > 0 && (!dict.getSubscript(last).contains("n")
-				&& !dict.getSubscript(last).contains("r") 
-				&& !dict.getSubscript(last).contains("a") 
-				&& !dict.getSubscript(last).contains("w") 
-				&& !dict.getSubscript(last).contains("v") 
-				&& !dict.getSubscript(last).contains("v-d") 
-				&& !dict.getSubscript(last).contains("e") 
-				&& !dict.getSubscript(last).contains("g") 
-				&& !dict.getSubscript(last).contains("n-u"))))
+		if (last.equals("a") || (dict.getSubscript(last).size() > 0 && (!dict.hasSubscript(last, Subscript.N | Subscript.R | Subscript.A | Subscript.W | Subscript.V | Subscript.V_D | Subscript.E | Subscript.G | Subscript.N_U))))
 			return false;
+		if (!bound.within(dict, input, word -> rules(dict.resolve(word)))) return false;
 
 		outer: for (int i = 0; i < input.length - 1; i++) {
 			String left = input[i];
@@ -488,10 +508,10 @@ public class Generator {
 			left = left.toLowerCase();
 			right = right.toLowerCase();
 			if (!checkLR(left, right)) return false;
-			if (dict.getRule(left).isEmpty()) left = left.substring(0,1).toUpperCase() + left.substring(1);
-			if (dict.getRule(right).isEmpty()) right = right.substring(0,1).toUpperCase() + right.substring(1);
-			if ((dict.getRule(left).get(0).toString().equals(dict.getRule("sawed").get(0).toString())
-					|| (dict.getRule(left).get(0).toString().equals(dict.getRule("writes").get(0).toString()) 
+			left = dict.resolve(left);
+			right = dict.resolve(right);
+			if ((rules(left).get(0).toString().equals(dict.getRule("sawed").get(0).toString())
+					|| (rules(left).get(0).toString().equals(dict.getRule("writes").get(0).toString()) 
 							&& contains(input, "to")) || left.equals("saw")) && (idx(input, "with") == i + 2 
 							|| idx(input, "with") == i + 3)) {
 				int idx = idx(input, "with");
@@ -512,7 +532,7 @@ public class Generator {
 			} else if (left.equals("entrance") || left.equals("heard")) {
 				int fin = 0;
 				for (int idx = i+2; idx < input.length; idx++) {
-					ArrayList<String> subs = dict.getSubscript(input[idx]);
+					List<String> subs = dict.getSubscript(input[idx]);
 					if (subs.contains("v") || subs.contains("v-d") && !(subs.contains("n") || subs.contains("n-u"))) {
 						fin = idx;
 						break;
@@ -525,7 +545,7 @@ public class Generator {
 			} else if (left.equals("of")) {
 				int fin = 0;
 				for (int idx = i+2; idx < input.length; idx++) {
-					ArrayList<String> subs = dict.getSubscript(input[idx]);
+					List<String> subs = dict.getSubscript(input[idx]);
 					if (subs.contains("n") || subs.contains("n-u") || subs.contains("g")) {
 						fin = idx;
 						break;
@@ -552,11 +572,11 @@ public class Generator {
 			} else if (left.equals("the") || (left.equals("has") && !right.equals("been")) || left.equals("stole")) {
 				int fin = 0;
 				for (int idx = i+1; idx < input.length; idx++) {
-					if (dict.getSubscript(input[idx]).contains("n") || dict.getSubscript(input[idx]).contains("n-u")) {
+					if (dict.hasSubscript(input[idx], Subscript.N | Subscript.N_U)) {
 						fin = idx;
 						break;
-					} else if ((dict.getSubscript(input[idx]).contains("v") || dict.getSubscript(input[idx]).contains("v-d"))
-							&& !(dict.getSubscript(input[idx]).contains("n") || dict.getSubscript(input[idx]).contains("n-u") 
+					} else if ((dict.hasSubscript(input[idx], Subscript.V | Subscript.V_D))
+							&& !(dict.hasSubscript(input[idx], Subscript.N | Subscript.N_U) 
 									|| input[idx].equals("intervening")))
 						return false;
 				}
@@ -572,10 +592,10 @@ public class Generator {
 					i = fin;
 					if (v) continue outer;
 				}
-			} else if ((right.equals("a") || right.equals("the")) && !dict.getSubscript(left).contains("a") 
+			} else if ((right.equals("a") || right.equals("the")) && !dict.hasSubscript(left, Subscript.A) 
 					&& !left.equals("has") && i + 2 < input.length 
-					&& (dict.getSubscript(input[i+2]).isEmpty()? true : dict.getSubscript(input[i+2]).contains("n") 
-							|| dict.getSubscript(input[i+2]).contains("n-u"))) {
+					&& (dict.getSubscript(input[i+2]).isEmpty()? true : dict.hasSubscript(input[i+2], Subscript.N) 
+							|| dict.hasSubscript(input[i+2], Subscript.N_U))) {
 				i++;
 				if (!checkLR(right, input[i+1])) return false;
 				if (input[i+1].toLowerCase().equals("cordelia") || input[i+1].toLowerCase().equals("smile")) {
@@ -585,11 +605,11 @@ public class Generator {
 						continue outer;
 					}
 				}
-			} else if ((right.equals("a") || right.equals("the")) && !dict.getSubscript(left).contains("a") && !contains(input, ",")) {
+			} else if ((right.equals("a") || right.equals("the")) && !dict.hasSubscript(left, Subscript.A) && !contains(input, ",")) {
 				int fin = 0;
 				for (int idx = i+1; idx < input.length; idx++) {
-					if (dict.getSubscript(input[idx]).contains("v") || dict.getSubscript(input[idx]).contains("v-d")) return false;
-					else if (dict.getSubscript(input[idx]).contains("n") || dict.getSubscript(input[idx]).contains("n-u")) {
+					if (dict.hasSubscript(input[idx], Subscript.V | Subscript.V_D)) return false;
+					else if (dict.hasSubscript(input[idx], Subscript.N | Subscript.N_U)) {
 						fin = idx;
 						break;
 					}
@@ -634,311 +654,56 @@ public class Generator {
 		return true;
 	}
 	
+	private static List<Rule> rules(String word) {
+		if (hyphenated != null && word.indexOf('_') > 0) return hyphenated.getRuleIgnoreCase(word);
+		return dict.getRuleOrGuess(word);
+	}
+	
 	private static boolean connects(String left, String right) {
 		if (!checkLR(left, right)) return false;
-		ArrayList<Rule> leftList = dict.getRule(left), rightList = dict.getRule(right);
-		if (leftList.size() == 0) {
-			leftList = dict.getRule(left.substring(0,1).toUpperCase() + left.substring(1));
-		}
-		if (rightList.size() == 0) {
-			rightList = dict.getRule(right.substring(0,1).toUpperCase() + right.substring(1));
-		}
-		if (leftList.size() == 0) {
-			System.err.println("Word '" + left + "' not found in dictionary.");
-			System.exit(0);
-		}
-		if (rightList.size() == 0) {
-			System.err.println("Word '" + right + "' not found in dictionary.");
-			System.exit(0);
-		}
+		List<Rule> leftList = rules(left), rightList = rules(right);
+		if (leftList.isEmpty() || rightList.isEmpty())
+			return false;
 		for (Rule leftRule : leftList) {
 			for (Rule rightRule : rightList) {
-				String lr = leftRule.toString();
-				String rr = rightRule.toString();
-				lr = beforeNull(lr);
-				rr = beforeNull(rr);
-				lr = replaceNull(lr);
-				rr = replaceNull(rr);
-				
-				ArrayList<String> Lops = new ArrayList<>(), Rops = new ArrayList<>(), Lcosts = new ArrayList<>(),
-						Rcosts = new ArrayList<>();
-				while (lr.contains("{")) {
-					int start = lr.indexOf("{");
-					int end = 0;
-					int numC = 1, num = 0;
-					for (int i = start + 1; i < lr.length(); i++) {
-						if (lr.charAt(i) == '{')
-							numC++;
-						else if (lr.charAt(i) == '}')
-							num++;
-						if (numC == num) {
-							end = i + 1;
-							break;
-						}
-					}
-					try {
-						Lops.add(lr.substring(start, end));
-						lr = lr.substring(0, start) + lr.substring(end);
-					} catch (Exception e) {
-						Lops.add(lr.substring(start+1, lr.length()));
-						lr = lr.substring(0, start);
-					}
-				}
-				lr = fixString(lr);
-
-				while (rr.contains("{")) {
-					int start = rr.indexOf("{");
-					int end = 0;
-					int numC = 1, num = 0;
-					for (int i = start + 1; i < rr.length(); i++) {
-						if (rr.charAt(i) == '{')
-							numC++;
-						else if (rr.charAt(i) == '}')
-							num++;
-						if (numC == num) {
-							end = i + 1;
-							break;
-						}
-					}
-					try {
-						Rops.add(rr.substring(start, end));
-						rr = rr.substring(0, start) + rr.substring(end);
-					} catch (Exception e) {
-						Rops.add(rr.substring(start+1, rr.length()));
-						rr = rr.substring(0, start);
-					}
-				}
-				rr = fixString(rr);
-				
-				ArrayList<String> toAddLops = new ArrayList<>();
-				ArrayList<String> toAddRops = new ArrayList<>();
-				
-				int id = 0;
-				for (String str : Rops) {
-					str = str.substring(1, str.length() - 1);
-					while (str.contains("{")) {
-						int start = str.indexOf("{");
-						int end = 0;
-						int numC = 1, num = 0;
-						for (int i = start + 1; i < str.length(); i++) {
-							if (str.charAt(i) == '{')
-								numC++;
-							else if (str.charAt(i) == '}')
-								num++;
-							if (numC == num) {
-								end = i + 1;
-								break;
-							}
-						}
-						try {
-							toAddRops.add(str.substring(start, end));
-							str = str.substring(0, start) + str.substring(end);
-						} catch (Exception e) {
-							toAddRops.add(str.substring(start+1, str.length()));
-							str = str.substring(0, start);
-						}
-					}
-					str = fixString(str);
-					Rops.set(id, str);
-					id++;
-				}
-				
-				id = 0;
-				for (String str : Lops) {
-					str = str.substring(1, str.length() - 1);
-					while (str.contains("{")) {
-						int start = str.indexOf("{");
-						int end = 0;
-						int numC = 1, num = 0;
-						for (int i = start + 1; i < str.length(); i++) {
-							if (str.charAt(i) == '{')
-								numC++;
-							else if (str.charAt(i) == '}')
-								num++;
-							if (numC == num) {
-								end = i + 1;
-								break;
-							}
-						}
-						try {
-							toAddLops.add(str.substring(start, end));
-							str = str.substring(0, start) + str.substring(end);
-						} catch (Exception e) {
-							toAddLops.add(str.substring(start+1, str.length()));
-							str = str.substring(0, start);
-						}
-					}
-					str = fixString(str);
-					Lops.set(id, str);
-					id++;
-				}
-				
-				for (String l : lr.split(" or ")) {
-					int ri = -1;
-					rloop: for (String r : rr.split(" or ")) {
-						ri++;
-						int numC = 0, num = 0;
-						for (int q = ri; q < rr.split(" or ").length; q++) {
-							boolean a = false;
-							for (char c : rr.split(" or ")[q].toCharArray()) {
-								if (c == '(')
-									numC++;
-								else if (c == ')')
-									num++;
-								else if (c == '&')
-									a = true;
-							}
-							if (a)
-								continue rloop;
-							if (num > numC)
-								break;
-						}
-						l = format(l);
-						r = format(r);
-						String fl = "";
-						for (String p : l.split(" & ")) {
-							if (!p.contains("-")) {
-								fl += p + " & ";
-							}
-						}
-						if (fl.endsWith(" & "))
-							fl = fl.substring(0, fl.length() - 3);
-						String fr = "";
-						for (String p : r.split(" & ")) {
-							if (p.contains("-")) {
-								fr += p + " & ";
-							}
-						}
-						if (fr.endsWith(" & "))
-							fr = fr.substring(0, fr.length() - 3);
-						fl = fl.replaceAll("\\+", "/").replaceAll("-", "\\+").replaceAll("/", "-");
-						if (!fl.isEmpty() && !fr.isEmpty() && equals(fl.trim(), fr.trim(), leftRule, rightRule)) {
+				Operands lo = Operands.of(leftRule, Operands.CONNECTS);
+				Operands ro = Operands.of(rightRule, Operands.CONNECTS);
+				for (Operand fl : lo.plus) {
+					for (int ri = 0; ri < ro.minus.length; ri++) {
+						if (ro.skip[ri])
+							continue;
+						Operand fr = ro.minus[ri];
+						if (!fl.isEmpty() && !fr.isEmpty() && equals(fl, fr, lo, ro, leftRule, rightRule)) {
 							return true;
 						}
 					}
 				}
-				for (String lb : Lops) {
-					for (String rb : Rops) {
-						for (String l : lb.split(" or ")) {
-							for (String r : rb.split(" or ")) {
-								l = l.split("& \\{")[0];
-								r = r.split("& \\{")[0];
-								l = format(l);
-								r = format(r);
-								String fl = "";
-								for (String p : l.split(" & ")) {
-									if (!p.contains("-")) {
-										fl += p + " & ";
-									}
-								}
-								if (fl.endsWith(" & "))
-									fl = fl.substring(0, fl.length() - 3);
-								String fr = "";
-								for (String p : r.split(" & ")) {
-									if (r.contains("-")) {
-										fr += p + " & ";
-									}
-								}
-								if (fr.endsWith(" & "))
-									fr = fr.substring(0, fr.length() - 3);
-								fl = fl.replaceAll("\\+", "/").replaceAll("-", "\\+").replaceAll("/", "-");
-								if (!fl.isEmpty() && !fr.isEmpty() && equals(fl.trim(), fr.trim(), leftRule, rightRule)) {
+				for (Operand[] lb : lo.optPlus) {
+					for (Operand[] rb : ro.optMinus) {
+						for (Operand fl : lb) {
+							for (Operand fr : rb) {
+								if (!fl.isEmpty() && !fr.isEmpty() && equals(fl, fr, lo, ro, leftRule, rightRule)) {
 									return true;
 								}
 							}
 						}
 					}
 				}
-
-				for (String lb : Lops) {
-					for (String l : lb.split(" or ")) {
-						l = l.split("& \\{")[0];
-						while (l.contains("[")) {
-							int start = l.indexOf("[");
-							int end = 0;
-							int numC = 1, num = 0;
-							for (int i = start + 1; i < l.length(); i++) {
-								if (l.charAt(i) == '[')
-									numC++;
-								else if (l.charAt(i) == ']')
-									num++;
-								if (numC == num) {
-									end = i + 1;
-									break;
-								}
-							}
-							Lcosts.add(l.substring(start, end == 0 ? l.length() : end));
-							l = l.substring(0, start) + l.substring(end == 0 ? l.length() : end);
-						}
-						l = format(l);
-						String fl = "";
-						for (String p : l.split(" & ")) {
-							if (!p.contains("-")) {
-								fl += p + " & ";
-							}
-						}
-						if (fl.endsWith(" & "))
-							fl = fl.substring(0, fl.length() - 3);
-						fl = fl.replaceAll("\\+", "/").replaceAll("-", "\\+").replaceAll("/", "-");
-						for (String r : rr.split(" or ")) {
-							r = format(r);
-							String fr = "";
-							for (String p : r.split(" & ")) {
-								if (p.contains("-")) {
-									fr += p + " & ";
-								}
-							}
-							if (fr.endsWith(" & ")) fr = fr.substring(0, fr.length() - 3);
-							if (!fl.isEmpty() && !fr.isEmpty() && equals(fl.trim(), fr.trim(), leftRule, rightRule)) {
+				for (Operand[] lb : lo.costPlus) {
+					for (Operand fl : lb) {
+						for (Operand fr : ro.minus) {
+							if (!fl.isEmpty() && !fr.isEmpty() && equals(fl, fr, lo, ro, leftRule, rightRule)) {
 								return true;
 							}
 						}
 					}
 				}
-
-				for (String rb : Rops) {
-					for (String r : rb.split(" or ")) {
-						r = r.split("& \\{")[0];
-						while (r.contains("[")) {
-							int start = r.indexOf("[");
-							int end = 0;
-							int numC = 1, num = 0;
-							for (int i = start + 1; i < r.length(); i++) {
-								if (r.charAt(i) == '[')
-									numC++;
-								else if (r.charAt(i) == ']')
-									num++;
-								if (numC == num) {
-									end = i + 1;
-									break;
-								}
-							}
-							Rcosts.add(r.substring(start, end == 0 ? r.length() : end));
-							r = r.substring(0, start) + r.substring(end == 0 ? r.length() : end);
-						}
-						r = format(r);
-						String fr = "";
-						for (String p : r.split(" & ")) {
-							if (p.contains("-")) {
-								fr += p + " & ";
-							}
-						}
-						if (fr.endsWith(" & "))
-							fr = fr.substring(0, fr.length() - 3);
-						for (String l : lr.split(" or ")) {
-							l = format(l);
-							String fl = "";
-							for (String p : l.split(" & ")) {
-								if (!p.contains("-")) {
-									fl += p + " & ";
-								}
-							}
-							if (fl.endsWith(" & "))
-								fl = fl.substring(0, fl.length() - 3);
-							fl = fl.replaceAll("\\+", "/").replaceAll("-", "\\+").replaceAll("/", "-");
-							for (String pfr : fr.split(" & ")) {
-								for (String pfl : fl.split(" & ")) {
-									if (!pfl.isEmpty() && !pfr.isEmpty() && equals(pfl.trim(), pfr.trim(), leftRule, rightRule)) {
+				for (Operand[][] rb : ro.costMinusParts) {
+					for (Operand[] fr : rb) {
+						for (Operand[] fl : lo.plusParts) {
+							for (Operand pfr : fr) {
+								for (Operand pfl : fl) {
+									if (!pfl.isEmpty() && !pfr.isEmpty() && equals(pfl, pfr, lo, ro, leftRule, rightRule)) {
 										return true;
 									}
 								}
@@ -952,149 +717,53 @@ public class Generator {
 	}
 
 	private static boolean checkLR(String left, String right) {
-		if (left.toLowerCase().trim().equals(right.toLowerCase().trim()))
+		String l = left.toLowerCase().trim(), r = right.toLowerCase().trim();
+		if (l.equals(r))
 			return false;
-		if (dict.getSubscript(left.toLowerCase().trim()).contains("n-u") && dict.getSubscript(right.toLowerCase().trim()).contains("m"))
+		if (dict.hasSubscript(l, Subscript.N_U) && dict.hasSubscript(r, Subscript.M))
 			return false;
-		if (dict.getSubscript(right.toLowerCase().trim()).contains("n-u") && dict.getSubscript(left.toLowerCase().trim()).contains("m"))
+		if (dict.hasSubscript(r, Subscript.N_U) && dict.hasSubscript(l, Subscript.M))
 			return false;
-		if (dict.getSubscript(left.toLowerCase().trim()).contains("n-u") && dict.getSubscript(right.toLowerCase().trim()).contains("f"))
+		if (dict.hasSubscript(l, Subscript.N_U) && dict.hasSubscript(r, Subscript.F))
 			return false;
-		if (dict.getSubscript(right.toLowerCase().trim()).contains("n-u") && dict.getSubscript(left.toLowerCase().trim()).contains("f"))
+		if (dict.hasSubscript(r, Subscript.N_U) && dict.hasSubscript(l, Subscript.F))
 			return false;
-		if (fname.contains("y_c") && dict.getSubscript(left).contains("n") && dict.getSubscript(left).size() == 1
-				&& dict.getSubscript(right).contains("n") && dict.getSubscript(right).size() == 1) return false;
+		if (fname.contains("y_c") && dict.hasSubscript(left, Subscript.N) && dict.getSubscript(left).size() == 1
+				&& dict.hasSubscript(right, Subscript.N) && dict.getSubscript(right).size() == 1) return false;
 		return true;
 	}
 
 	private static Object[] connectsIdx(String left, String right, boolean isLeft) {
 		if (!checkLR(left, right))
 			return new Object[] { false, 0 };
-		ArrayList<Rule> leftList = dict.getRule(left), rightList = dict.getRule(right);
-		if (leftList.size() == 0) {
-			leftList = dict.getRule(left.substring(0,1).toUpperCase() + left.substring(1));
-		}
-		if (rightList.size() == 0) {
-			rightList = dict.getRule(right.substring(0,1).toUpperCase() + right.substring(1));
-		}
-		if (leftList.size() == 0) {
-			System.err.println("Word '" + left + "' not found in dictionary.");
-			System.exit(0);
-		}
-		if (rightList.size() == 0) {
-			System.err.println("Word '" + right + "' not found in dictionary.");
-			System.exit(0);
-		}
+		List<Rule> leftList = rules(left), rightList = rules(right);
+		if (leftList.isEmpty() || rightList.isEmpty())
+			return new Object[] { false, 0 };
 		for (Rule leftRule : leftList) {
 			for (Rule rightRule : rightList) {
-				String lr = leftRule.toString();
-				String rr = rightRule.toString();
-				lr = beforeNull(lr);
-				rr = beforeNull(rr);
-				lr = replaceNull(lr);
-				rr = replaceNull(rr);
-
-				ArrayList<String> Lops = new ArrayList<>(), Rops = new ArrayList<>(), Lcosts = new ArrayList<>(),
-						Rcosts = new ArrayList<>();
-				while (lr.contains("{")) {
-					int start = lr.indexOf("{");
-					int end = 0;
-					int numC = 1, num = 0;
-					for (int i = start + 1; i < lr.length(); i++) {
-						if (lr.charAt(i) == '{')
-							numC++;
-						else if (lr.charAt(i) == '}')
-							num++;
-						if (numC == num) {
-							end = i + 1;
-							break;
-						}
-					}
-					Lops.add(lr.substring(start, end == 0 ? lr.length() : end));
-					lr = lr.substring(0, start) + lr.substring(end == 0 ? lr.length() : end);
-				}
-				lr = fixString(lr);
-
-				while (rr.contains("{")) {
-					int start = rr.indexOf("{");
-					int end = 0;
-					int numC = 1, num = 0;
-					for (int i = start + 1; i < rr.length(); i++) {
-						if (rr.charAt(i) == '{')
-							numC++;
-						else if (rr.charAt(i) == '}')
-							num++;
-						if (numC == num) {
-							end = i + 1;
-							break;
-						}
-					}
-					Rops.add(rr.substring(start, end == 0 ? rr.length() : end));
-					rr = rr.substring(0, start) + rr.substring(end == 0 ? rr.length() : end);
-				}
-				rr = fixString(rr);
-
+				Operands lo = Operands.of(leftRule, Operands.INDEX);
+				Operands ro = Operands.of(rightRule, Operands.INDEX);
 				int li = 0, ri = 0;
-				for (String l : lr.split(" or ")) {
+				for (Operand fl : lo.plus) {
 					ri = 0;
 					li++;
-					for (String r : rr.split(" or ")) {
+					for (Operand fr : ro.minus) {
 						ri++;
-						l = format(l);
-						r = format(r);
-						String fl = "";
-						for (String p : l.split(" & ")) {
-							if (!p.contains("-")) {
-								fl += p + " & ";
-							}
-						}
-						if (fl.endsWith(" & "))
-							fl = fl.substring(0, fl.length() - 3);
-						String fr = "";
-						for (String p : r.split(" & ")) {
-							if (p.contains("-")) {
-								fr += p + " & ";
-							}
-						}
-						if (fr.endsWith(" & "))
-							fr = fr.substring(0, fr.length() - 3);
-						fl = fl.replaceAll("\\+", "/").replaceAll("-", "\\+").replaceAll("/", "-");
-						if (!fl.isEmpty() && !fr.isEmpty() && equals(fl.trim(), fr.trim(), leftRule, rightRule)) {
+						if (!fl.isEmpty() && !fr.isEmpty() && equals(fl, fr, lo, ro, leftRule, rightRule)) {
 							return new Object[] { true, isLeft ? li : ri };
 						}
 					}
 				}
 				li = 0;
 				ri = 0;
-				for (String lb : Lops) {
+				for (Operand[] lb : lo.optPlus) {
 					ri = 0;
 					li++;
-					for (String rb : Rops) {
+					for (Operand[] rb : ro.optMinus) {
 						ri++;
-						for (String l : lb.split(" or ")) {
-							for (String r : rb.split(" or ")) {
-								l = l.split("& \\{")[0];
-								r = r.split("& \\{")[0];
-								l = format(l);
-								r = format(r);
-								String fl = "";
-								for (String p : l.split(" & ")) {
-									if (!p.contains("-")) {
-										fl += p + " & ";
-									}
-								}
-								if (fl.endsWith(" & "))
-									fl = fl.substring(0, fl.length() - 3);
-								String fr = "";
-								for (String p : r.split(" & ")) {
-									if (r.contains("-")) {
-										fr += p + " & ";
-									}
-								}
-								if (fr.endsWith(" & "))
-									fr = fr.substring(0, fr.length() - 3);
-								fl = fl.replaceAll("\\+", "/").replaceAll("-", "\\+").replaceAll("/", "-");
-								if (!fl.isEmpty() && !fr.isEmpty() && equals(fl.trim(), fr.trim(), leftRule, rightRule))
+						for (Operand fl : lb) {
+							for (Operand fr : rb) {
+								if (!fl.isEmpty() && !fr.isEmpty() && equals(fl, fr, lo, ro, leftRule, rightRule))
 									return new Object[] { true, isLeft ? li : ri };
 							}
 						}
@@ -1102,100 +771,26 @@ public class Generator {
 				}
 				li = 0;
 				ri = 0;
-				for (String lb : Lops) {
+				for (Operand[] lb : lo.costPlus) {
 					ri = 0;
 					li++;
-					for (String l : lb.split(" or ")) {
-						l = l.split("& \\{")[0];
-						while (l.contains("[")) {
-							int start = l.indexOf("[");
-							int end = 0;
-							int numC = 1, num = 0;
-							for (int i = start + 1; i < l.length(); i++) {
-								if (l.charAt(i) == '[')
-									numC++;
-								else if (l.charAt(i) == ']')
-									num++;
-								if (numC == num) {
-									end = i + 1;
-									break;
-								}
-							}
-							Lcosts.add(l.substring(start, end == 0 ? l.length() : end));
-							l = l.substring(0, start) + l.substring(end == 0 ? l.length() : end);
-						}
-						l = format(l);
-						String fl = "";
-						for (String p : l.split(" & ")) {
-							if (!p.contains("-")) {
-								fl += p + " & ";
-							}
-						}
-						if (fl.endsWith(" & "))
-							fl = fl.substring(0, fl.length() - 3);
-						fl = fl.replaceAll("\\+", "/").replaceAll("-", "\\+").replaceAll("/", "-");
-						for (String r : rr.split(" or ")) {
+					for (Operand fl : lb) {
+						for (Operand fr : ro.minus) {
 							ri++;
-							r = format(r);
-							String fr = "";
-							for (String p : r.split(" & ")) {
-								if (p.contains("-")) {
-									fr += p + " & ";
-								}
-							}
-							if (fr.endsWith(" & "))
-								fr = fr.substring(0, fr.length() - 3);
-							if (!fl.isEmpty() && !fr.isEmpty() && equals(fl.trim(), fr.trim(), leftRule, rightRule))
+							if (!fl.isEmpty() && !fr.isEmpty() && equals(fl, fr, lo, ro, leftRule, rightRule))
 								return new Object[] { true, isLeft ? li : ri };
 						}
 					}
 				}
 				li = 0;
 				ri = 0;
-				for (String rb : Rops) {
+				for (Operand[] rb : ro.costMinus) {
 					li = 0;
 					ri++;
-					for (String r : rb.split(" or ")) {
-						r = r.split("& \\{")[0];
-						while (r.contains("[")) {
-							int start = r.indexOf("[");
-							int end = 0;
-							int numC = 1, num = 0;
-							for (int i = start + 1; i < r.length(); i++) {
-								if (r.charAt(i) == '[')
-									numC++;
-								else if (r.charAt(i) == ']')
-									num++;
-								if (numC == num) {
-									end = i + 1;
-									break;
-								}
-							}
-							Rcosts.add(r.substring(start, end == 0 ? r.length() : end));
-							r = r.substring(0, start) + r.substring(end == 0 ? r.length() : end);
-						}
-						r = format(r);
-						String fr = "";
-						for (String p : r.split(" & ")) {
-							if (p.contains("-")) {
-								fr += p + " & ";
-							}
-						}
-						if (fr.endsWith(" & "))
-							fr = fr.substring(0, fr.length() - 3);
-						for (String l : lr.split(" or ")) {
+					for (Operand fr : rb) {
+						for (Operand fl : lo.plus) {
 							li++;
-							l = format(l);
-							String fl = "";
-							for (String p : l.split(" & ")) {
-								if (!p.contains("-")) {
-									fl += p + " & ";
-								}
-							}
-							if (fl.endsWith(" & "))
-								fl = fl.substring(0, fl.length() - 3);
-							fl = fl.replaceAll("\\+", "/").replaceAll("-", "\\+").replaceAll("/", "-");
-							if (!fl.isEmpty() && !fr.isEmpty() && equals(fl.trim(), fr.trim(), leftRule, rightRule)) {
+							if (!fl.isEmpty() && !fr.isEmpty() && equals(fl, fr, lo, ro, leftRule, rightRule)) {
 								return new Object[] { true, isLeft ? li : ri };
 							}
 						}
@@ -1206,141 +801,6 @@ public class Generator {
 		return new Object[] { false, 0 };
 	}
 
-	private static String replaceNull(String lr) {
-		while (lr.contains("()")) {
-			int idx = lr.indexOf("()");
-			int end = lr.indexOf(" ", idx) != -1 ? lr.indexOf(" ", idx) : lr.length() - 1;
-			if (lr.charAt(end - 1) == '}')
-				return lr;
-			if (lr.charAt(end - 1) == ')') {
-				for (int i = end - 2; i >= 0; i--) {
-					if (lr.charAt(i) != ')') {
-						end = i + 2;
-						break;
-					}
-				}
-				int num = 1;
-				int numC = 0;
-				int finish = 0;
-				for (int i = end - 2; i >= 0; i--) {
-					if (lr.charAt(i) == ')')
-						num++;
-					else if (lr.charAt(i) == '(')
-						numC++;
-					if (numC == num) {
-						finish = i;
-						break;
-					}
-				}
-				String total = lr.substring(finish, end);
-				lr = lr.replace(total, "{" + total.substring(1, total.lastIndexOf("or")) + "}");
-			} else {
-				int space1 = 0;
-				for (int i = end - 1; i >= 0; i--) {
-					if (lr.charAt(i) == ' ') {
-						space1 = i;
-						break;
-					}
-				}
-				if (lr.charAt(space1 - 4) == ')' || lr.charAt(space1 - 4) == ']') {
-					char c = lr.charAt(space1 - 4);
-					char oc;
-					if (c == ')')
-						oc = '(';
-					else
-						oc = '[';
-					int finish = 0;
-					int num = 1;
-					int numC = 0;
-					for (int i = space1 - 5; i >= 0; i--) {
-						if (lr.charAt(i) == c)
-							num++;
-						else if (lr.charAt(i) == oc)
-							numC++;
-						if (numC == num) {
-							finish = i;
-							break;
-						}
-					}
-					lr = lr.replace(lr.substring(finish, end), "{" + lr.substring(finish + 1, space1 - 4) + "}");
-				} else if (lr.charAt(space1 - 5) == ')' || lr.charAt(space1 - 5) == ']') {
-					char c = lr.charAt(space1 - 5);
-					char oc;
-					if (c == ')')
-						oc = '(';
-					else
-						oc = '[';
-					int finish = 0;
-					int num = 1;
-					int numC = 0;
-					for (int i = space1 - 6; i >= 0; i--) {
-						if (lr.charAt(i) == c)
-							num++;
-						else if (lr.charAt(i) == oc)
-							numC++;
-						if (numC == num) {
-							finish = i;
-							break;
-						}
-					}
-					lr = lr.replace(lr.substring(finish, end), "{" + lr.substring(finish + 1, space1 - 4) + "}");
-				} else {
-					int space2 = 0;
-					for (int i = space1 - 5; i >= 0; i--) {
-						if (lr.charAt(i) == ' ') {
-							space2 = i;
-							break;
-						}
-					}
-					if (lr.charAt(space2 + 1) == '(')
-						space2++;
-					int fin = lr.indexOf(' ', space2 + 1);
-					lr = lr.replace(lr.substring(space2 + 1, end), "{" + lr.substring(space2 + 1, fin) + "}");
-				}
-			}
-		}
-		return lr;
-	}
-
-	private static String beforeNull(String lr) {
-		lr = fix(lr, "([()] & ", "(");
-		lr = fix(lr, "  or ", " or ");
-		lr = fix(lr, "or ()", "or [()]");
-		return lr;
-	}
-
-	private static String fixString(String lr) {
-		if (lr.startsWith(" &")) lr = lr.substring(2).trim();
-		if (lr.startsWith(" or")) lr = lr.substring(3).trim();
-		lr = fix(lr, "[ & ]", "");
-		lr = fix(lr, "( & )", "");
-		lr = fix(lr, "[ or ]", "");
-		lr = fix(lr, "( or )", "");
-		lr = fix(lr, "( or ", "(");
-		lr = fix(lr, "( & ", "(");
-		lr = fix(lr, " or )", ")");
-		lr = fix(lr, " & )", ")");
-		lr = fix(lr, "[ or ", "[");
-		lr = fix(lr, "[ & ", "[");
-		lr = fix(lr, " or ]", "]");
-		lr = fix(lr, " & ]", "]");
-		lr = fix(lr, "&  &", "&");
-		lr = fix(lr, "or  or", "or");
-		lr = fix(lr, "or  &", "or");
-		return lr;
-	}
-
-	private static String fix(String lr, String reg, String rep) {
-		while (lr.contains(reg))
-			lr = lr.replace(reg, rep);
-		return lr;
-	}
-
-	private static String format(String l) {
-		return l.replace("(", "").replace(")", "").replace("[", "").replace("]", "").replace("}", "").replace("{", "")
-				.trim();
-	}
-
 	private static boolean connects(String left, String mid, String right) {
 		if (left.toLowerCase().equals(mid.toLowerCase()) || left.toLowerCase().equals(right.toLowerCase())
 				|| mid.toLowerCase().equals(right.toLowerCase()))
@@ -1361,48 +821,34 @@ public class Generator {
 		return (boolean) leftMid[0] && (boolean) leftRight[0] && (int) leftMid[1] < (int) leftRight[1];
 	}
 
-	private static boolean equals(String wlu, String wr, Rule leftRule, Rule rightRule) {
-		boolean b = true;
+	private static boolean equals(Operand wlu, Operand wr, Operands lo, Operands ro, Rule leftRule, Rule rightRule) {
+		if (!bound.allows(dict, leftRule, wlu) || !bound.allows(dict, rightRule, wr)) return false;
+		if (wlu.is(Operand.AN) && wr.is(Operand.AN)) return true;
+		boolean b = true, sp = false;
 		if (fname.contains("m_c")) {
-			if (wlu.contains("J")) b=false;
+			if (wlu.is(Operand.J)) b=false;
 		}
 		else if (fname.contains("y_c")) {
-			if (wr.contains("Spx")) wlu="Sp";
+			if (wr.is(Operand.SPX)) sp = true;
 		}
-		if ((wlu.equals("AN-")&&wr.equals("AN-"))) {
-			wlu="Sp-";wr="S-";b=false;
-		}
-		if (!(fname.contains("y_c")&&wlu.contains("Op")) && !(wlu.contains("MV")||wlu.contains("Dmc")||(!b&&wlu.contains("J"))||(!b&&wlu.contains("S"))) && (!leftRule.toString().contains(wlu) || !rightRule.toString().contains(wr))) return false;
-		wlu = wlu.replace("@", "");
-		wr = wr.replace("@", "");
-		if (wlu.equals(wr)) {
+		Operand l = sp? Operand.SP : wlu;
+		if (!(fname.contains("y_c")&&l.is(Operand.OP)) && !(l.is(Operand.MV)||l.is(Operand.DMC)||(!b&&l.is(Operand.J))||(!b&&l.is(Operand.S))) && (!(sp? lo.hasSp : l.inRule) || !wr.inRule)) return false;
+		ConnectorTable table = dict.getConnectorTable();
+		if (l.same(wr, table)) {
 			return true;
 		}
-		wr = wr.replace("-", "");
-		wlu = wlu.replace("-", "");
-		if (wlu.contains("&") || wr.contains("&"))
+		if (l.compound || wr.compound)
 			return false;
 		if (b) {
-			if (wlu.length() <= 1 && wlu.length() < wr.length()) return false;
-			if (wr.length() <= 1 && wr.length() < wlu.length()) return false;
-		}
-		if (wlu.length() < wr.length()) {
-			if (wlu.equals(wr.substring(0, wlu.length()))) {
-				return true;
-			}
-		}
-		if (wr.length() < wlu.length()) {
-			if (wr.equals(wlu.substring(0, wr.length()))) {
-				return true;
-			}
-			try {
-				if (wr.equals(wlu.substring(1, wr.length()+1))) {
-					return true;
-				}	
-			} catch (Exception e) {
-			}
-		}
-		return false;
+			if (l.length <= 1 && l.length < wr.length) return false;
+			if (wr.length <= 1 && wr.length < l.length) return false;
+		}
+		// '*' is read literally and a d-marked connector only takes an h-marked one, as
+		// always here: the exceptions above are tuned to both
+		int lc = l.code(table), rc = wr.code(table);
+		int lm = ConnectorTable.mark(lc), rm = ConnectorTable.mark(rc);
+		if ((lm == ConnectorTable.DEPENDENT && rm != ConnectorTable.HEAD) || (rm == ConnectorTable.DEPENDENT && lm != ConnectorTable.HEAD)) return false;
+		return table.getMatcher(false).matches(lc, rc);
 	}
 
 	public static List<String[]> processSentences(String path) throws IOException {
@@ -1425,10 +871,11 @@ public class Generator {
 					it.remove();
 			}
 			List<String[]> words = new ArrayList<>();
+			Tokenizer tokenizer = Tokenizer.getDefault();
 			for (String sentence : sentences) {
-				String[] w = sentence.split(" ");
-				w[w.length - 1] = w[w.length - 1].substring(0, w[w.length - 1].length() - 1);
-				words.add(w);
+				List<String> w = tokenizer.split(sentence, false);
+				w.remove(w.size() - 1);
+				words.add(w.toArray(new String[w.size()]));
 			}
 			return words;
 		} catch (Exception e) {
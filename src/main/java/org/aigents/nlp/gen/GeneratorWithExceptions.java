@@ -39,15 +39,22 @@ import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 import main.java.org.aigents.nlp.lg.Dictionary;
-import main.java.org.aigents.nlp.lg.Loader;
+import main.java.org.aigents.nlp.lg.DictionaryRegistry;
+import main.java.org.aigents.nlp.lg.Subscript;
 import main.java.org.aigents.nlp.lg.Rule;
+import main.java.org.aigents.nlp.lg.Tokenizer;
 
 public class GeneratorWithExceptions {
 	public static Dictionary dict, hyphenated;
 	public static boolean tooMuch = false;
+	private static CostBound bound = CostBound.NONE;
 
 	public static void main(String[] args) throws IOException {
 		long startTime = System.currentTimeMillis();
+		if (args.length > 1 && args[0].equals("--cost")) {
+			setCostCeiling(Double.parseDouble(args[1]));
+			args = Arrays.copyOfRange(args, 2, args.length);
+		}
 		if (args.length == 2) {
 			int single = 0;
 			int multOne = 0;
@@ -56,11 +63,11 @@ public class GeneratorWithExceptions {
 			int much = 0;
 			try {
 				if (args[0].contains("/4.0.dict")) {
-					Dictionary[] dicts = Loader.buildLGDict(args[0]);
+					Dictionary[] dicts = DictionaryRegistry.getShared().get(args[0]);
 					dict = dicts[0];
 					hyphenated = dicts[1];
 				} else {
-					dict = Loader.grammarBuildLinks(args[0], false);
+					dict = DictionaryRegistry.getShared().get(args[0])[0];
 				}
 				List<String> list = getList(args[1]);
 				List<String[]> words = processSentences(args[1]);
@@ -87,16 +94,9 @@ public class GeneratorWithExceptions {
 								one = true;
 								continue;
 							}
-							String sen = sen2.substring(0, sen2.length() - 1);
-							String[] sep = sen.split(" ");
-							ArrayList<String> sParts = new ArrayList<>(Arrays.asList(s.substring(0, s.length() - 1).split(" ")));
-							ArrayList<String> senParts = new ArrayList<>();
-							for (String sepw : sep) {
-								if (sepw.endsWith(",")) {
-									senParts.add(sepw.substring(0, sepw.length() - 1));
-									senParts.add(",");
-								} else senParts.add(sepw);
-							}
+							Tokenizer tokenizer = Tokenizer.getDefault();
+							List<String> sParts = tokenizer.split(s.substring(0, s.length() - 1), false);
+							List<String> senParts = tokenizer.split(sen2.substring(0, sen2.length() - 1), false);
 							System.out.println("sen: " + senParts);
 							System.out.println("s: " + sParts);
 							ArrayList<String> mismatches = new ArrayList<>();
@@ -142,11 +142,11 @@ public class GeneratorWithExceptions {
 		} else if (args.length > 2) {
 			try {
 				if (args[0].contains("/4.0.dict")) {
-					Dictionary[] dicts = Loader.buildLGDict(args[0]);
+					Dictionary[] dicts = DictionaryRegistry.getShared().get(args[0]);
 					dict = dicts[0];
 					hyphenated = dicts[1];
 				} else {
-					dict = Loader.grammarBuildLinks(args[0], false);
+					dict = DictionaryRegistry.getShared().get(args[0])[0];
 				}
 				String[] words = new String[args.length - 1];
 				for (int i = 1; i < args.length; i++) {
@@ -161,6 +161,13 @@ public class GeneratorWithExceptions {
 		}
 	}
 
+	// as in Generator.setCostCeiling
+	public static void setCostCeiling(double ceiling) {
+		bound = ceiling == Double.POSITIVE_INFINITY? CostBound.NONE : new CostBound(ceiling);
+	}
+	
+	public static double getCostCeiling() {	return bound.getCeiling();	}
+
 	public static HashSet<String> generateSentence(String[] elements) {
 		long start = System.currentTimeMillis();
 		boolean not = false;
@@ -228,86 +235,38 @@ public class GeneratorWithExceptions {
 				add(ret, sentence(elements), elements);
 			}
 		}
-		int i = 0;
 		long threshold = 180000;
 		long maxNum = Integer.MAX_VALUE;
-		while (i < n) {
-			long curr = System.currentTimeMillis();
-			if (curr - start > threshold) {
-				if (ret.size() > maxNum) {
-					tooMuch = true;
-					return new HashSet<>();
-				} else
-					return ret;
-			}
-			if (indexes[i] < i) {
-				swap(elements, i % 2 == 0 ? 0 : indexes[i], i);
-				ArrayList<String> w2 = new ArrayList<>(Arrays.asList(elements));
-				if (w2.contains("not") && w2.contains("a")) {
-					w2.remove("not");
-				}
-				if (w2.contains("now") && w2.contains("a")) {
-					w2.remove("now");
+		if (bound.isBounded()) {
+			HashSet<String> uncounted = new HashSet<>();
+			if (not) uncounted.add("not");
+			if (now) uncounted.add("now");
+			boolean notFlag = not, nowFlag = now;
+			bound.permute(dict, elements, word -> dict.getRuleOrGuess(dict.resolve(word)), uncounted, order -> {
+				if (System.currentTimeMillis() - start > threshold) return false;
+				addOrder(ret, order, notFlag, nowFlag);
+				return true;
+			});
+		} else {
+			int i = 0;
+			while (i < n) {
+				long curr = System.currentTimeMillis();
+				if (curr - start > threshold) {
+					if (ret.size() > maxNum) {
+						tooMuch = true;
+						return new HashSet<>();
+					} else
+						return ret;
 				}
-				if (not || now) {
-					int id = 0;
-					String[] input = new String[w2.size()];
-					for (String word : w2) {
-						input[id] = word;
-						id++;
-					}
-					if (now && !not) {
-						if (check(input) && isValid(input)) {
-							String str = sentence(input);
-							int nowId = 0;
-							String[] parts = str.split(" ");
-							for (int m = 0; m < parts.length; m++) {
-								if (parts[m].equals("a") && str.indexOf(" a") != -1) {
-									nowId = str.indexOf(" a") + 3 + parts[m + 1].length()
-											- ((parts[m + 1].contains(".") || parts[m + 1].contains("?")) ? 1 : 0);
-									break;
-								}
-							}
-							if (nowId == 0) {
-								add(ret, "Now " + str.toLowerCase(), elements);
-							} else {
-								String str3 = str.substring(0, nowId) + " now" + str.substring(nowId);
-								add(ret, str3, elements);
-							}
-						}
-					}
-					if (not && !now) {
-						if (check(input) && isValid(input)) {
-							String str = sentence(input);
-							str = str.replace(" a", " not a");
-							add(ret, str, elements);
-						}
-					}
-					if (not && now) {
-						if (check(input) && isValid(input)) {
-							String str = sentence(input);
-							int nowId = 0;
-							String[] parts = str.split(" ");
-							for (int m = 0; m < parts.length; m++) {
-								if (parts[m].equals("a")) {
-									nowId = str.indexOf(" a") + 2 + parts[m + 1].length();
-								}
-							}
-							String str3 = str.substring(0, nowId) + " now" + str.substring(nowId);
-							str3 = str3.replace(" a", " not a");
-							add(ret, str3, elements);
-						}
-					}
+				if (indexes[i] < i) {
+					swap(elements, i % 2 == 0 ? 0 : indexes[i], i);
+					addOrder(ret, elements, not, now);
+					indexes[i]++;
+					i = 0;
 				} else {
-					if (check(elements) && isValid(elements)) {
-						add(ret, sentence(elements), elements);
-					}
+					indexes[i] = 0;
+					i++;
 				}
-				indexes[i]++;
-				i = 0;
-			} else {
-				indexes[i] = 0;
-				i++;
 			}
 		}
 		if (ret.size() > maxNum) {
@@ -317,21 +276,77 @@ public class GeneratorWithExceptions {
 			return ret;
 	}
 
-	private static void add(HashSet<String> ret, String str, String[] elements) {
-		if (str.contains(",")) {
-			String[] spl = str.split(" ");
-			int count = spl.length;
-			for (String s : spl) {
-				if (s.contains(",")) count++;
+	// checks an ordering of elements, without "not" and "now" if they are to be put back in
+	private static void addOrder(HashSet<String> ret, String[] elements, boolean not, boolean now) {
+		ArrayList<String> w2 = new ArrayList<>(Arrays.asList(elements));
+		if (w2.contains("not") && w2.contains("a")) {
+			w2.remove("not");
+		}
+		if (w2.contains("now") && w2.contains("a")) {
+			w2.remove("now");
+		}
+		if (not || now) {
+			int id = 0;
+			String[] input = new String[w2.size()];
+			for (String word : w2) {
+				input[id] = word;
+				id++;
+			}
+			if (now && !not) {
+				if (check(input) && isValid(input)) {
+					String str = sentence(input);
+					int nowId = 0;
+					String[] parts = str.split(" ");
+					for (int m = 0; m < parts.length; m++) {
+						if (parts[m].equals("a") && str.indexOf(" a") != -1) {
+							nowId = str.indexOf(" a") + 3 + parts[m + 1].length()
+									- ((parts[m + 1].contains(".") || parts[m + 1].contains("?")) ? 1 : 0);
+							break;
+						}
+					}
+					if (nowId == 0) {
+						add(ret, "Now " + str.toLowerCase(), elements);
+					} else {
+						String str3 = str.substring(0, nowId) + " now" + str.substring(nowId);
+						add(ret, str3, elements);
+					}
+				}
+			}
+			if (not && !now) {
+				if (check(input) && isValid(input)) {
+					String str = sentence(input);
+					str = str.replace(" a", " not a");
+					add(ret, str, elements);
+				}
+			}
+			if (not && now) {
+				if (check(input) && isValid(input)) {
+					String str = sentence(input);
+					int nowId = 0;
+					String[] parts = str.split(" ");
+					for (int m = 0; m < parts.length; m++) {
+						if (parts[m].equals("a")) {
+							nowId = str.indexOf(" a") + 2 + parts[m + 1].length();
+						}
+					}
+					String str3 = str.substring(0, nowId) + " now" + str.substring(nowId);
+					str3 = str3.replace(" a", " not a");
+					add(ret, str3, elements);
+				}
 			}
-			if (count == elements.length)
-				ret.add(str);
 		} else {
-			if (str.split(" ").length == elements.length)
-				ret.add(str);
+			if (check(elements) && isValid(elements)) {
+				add(ret, sentence(elements), elements);
+			}
 		}
 	}
 
+	// commas of str count as elements, its final '.' does not
+	private static void add(HashSet<String> ret, String str, String[] elements) {
+		if (Tokenizer.getDefault().count(str) - (str.endsWith(".")? 1 : 0) == elements.length)
+			ret.add(str);
+	}
+
 	private static boolean contains(String[] input, String str) {
 		for (String s : input) {
 			if (s.equals(str))
@@ -376,20 +391,17 @@ public class GeneratorWithExceptions {
 		if (first.equals("board") || last.equals("been") || last.equals("at")) return false;
 		if (last.equals("in") || last.equals("barry")) return false;
 		if (first.equals("in") && !input[1].equals("a") && !input[2].equals("way")) return false;
-		if ((dict.getSubscript(first).contains("v") || dict.getSubscript(first).contains("v") 
-				&& !(dict.getSubscript(first).contains("n") || dict.getSubscript(first).contains("n-u")))) {
+		if ((dict.hasSubscript(first, Subscript.V) || dict.hasSubscript(first, Subscript.V) 
+				&& !(dict.hasSubscript(first, Subscript.N | Subscript.N_U)))) {
 			return false;
 		}
 		if (last.equals("when") || last.equals("last") || last.equals("by")) return false;
-		if (contains(input, "a") && dict.getSubscript(last).contains("a")) return false;
+		if (contains(input, "a") && dict.hasSubscript(last, Subscript.A)) return false;
 		if (idx(input, "but") == input.length - 2 || last.equals("but")) return false;
 		boolean containsVerb = false;
 		for (String word : input) {
-			ArrayList<String> subs;
-			subs = dict.getSubscript(word);
-			if (subs.isEmpty()) {
-				subs = dict.getSubscript(word.substring(0,1).toUpperCase() + word.substring(1).toLowerCase());
-			}
+			List<String> subs;
+			subs = dict.getSubscriptOrCapitalized(word);
 			if (subs.isEmpty()) {
 				subs = dict.getSubscript(word.toLowerCase());
 			}
@@ -406,11 +418,8 @@ public class GeneratorWithExceptions {
 			words[i] = words[i].toLowerCase();
 			String word = words[i];
 			word = word.toLowerCase();
-			ArrayList<String> subs;
-			subs = dict.getSubscript(word);
-			if (subs.isEmpty()) {
-				subs = dict.getSubscript(word.substring(0,1).toUpperCase() + word.substring(1));
-			}
+			List<String> subs;
+			subs = dict.getSubscriptOrCapitalized(word);
 			if (subs.size() == 1 && (subs.contains("m") || subs.contains("l") || subs.contains("f"))) {
 				word = word.substring(0,1).toUpperCase() + word.substring(1);
 			}
@@ -435,13 +444,9 @@ public class GeneratorWithExceptions {
 		if (first.equals("on")) return false;
 		if (first.equals("with")) return false;
 		if (first.equals("board")) return false;
-		if ((first.equals("her") || first.equals("his")) && !dict.getSubscript(second).contains("n")) return false;
+		if ((first.equals("her") || first.equals("his")) && !dict.hasSubscript(second, Subscript.N)) return false;
 		List<String> subs;
-		try {
-			subs = dict.getSubscript(first);
-		} catch (Exception e) {
-			subs = dict.getSubscript(first.substring(0,1).toUpperCase() + first.substring(1));
-		}
+		subs = dict.getSubscript(first);
 		if (subs.size() == 1 && subs.contains("a")) return false;
 		if (subs.contains("v") || subs.contains("v-d") && !subs.contains("n") && !subs.contains("n-u")) {
 			return false;
@@ -454,9 +459,8 @@ public class GeneratorWithExceptions {
 		if (idx(input, "A") != -1 && idx(input, "A") != 0)
 			return false;
 		if (contains(input, ",") && input.length < 6) return false;
-		if ((dict.getSubscript(input[0]).contains("v") || dict.getSubscript(input[0]).contains("v-d"))
-				&& !(dict.getSubscript(input[1]).contains("a") || dict.getSubscript(input[0]).contains("n") || dict.getSubscript(input[0]).contains("n-u")
-						|| dict.getSubscript(input[0]).contains("p")))
+		if ((dict.hasSubscript(input[0], Subscript.V | Subscript.V_D))
+				&& !(dict.hasSubscript(input[1], Subscript.A) || dict.hasSubscript(input[0], Subscript.N | Subscript.N_U | Subscript.P)))
 			return false;
 		for (int i = 0; i < input.length; i++) {
 			if (!input[i].equals("A")) {
@@ -464,16 +468,9 @@ public class GeneratorWithExceptions {
 			}
 		}
 		String last = input[input.length - 1].toLowerCase().trim();
-		if (last.equals("a") || (dict.getSubscript(last).size() > 0 && (!dict.getSubscript(last).contains("n")
-				&& !dict.getSubscript(last).contains("r") 
-				&& !dict.getSubscript(last).contains("a") 
-				&& !dict.getSubscript(last).contains("w") 
-				&& !dict.getSubscript(last).contains("v") 
-				&& !dict.getSubscript(last).contains("v-d") 
-				&& !dict.getSubscript(last).contains("e") 
-				&& !dict.getSubscript(last).contains("g") 
-				&& !dict.getSubscript(last).contains("n-u"))))
+		if (last.equals("a") || (dict.getSubscript(last).size() > 0 && (!dict.hasSubscript(last, Subscript.N | Subscript.R | Subscript.A | Subscript.W | Subscript.V | Subscript.V_D | Subscript.E | Subscript.G | Subscript.N_U))))
 			return false;
+		if (!bound.within(dict, input, word -> dict.getRuleOrGuess(dict.resolve(word)))) return false;
 		outer: for (int i = 0; i < input.length - 1; i++) {
 			String left = input[i];
 			String right = input[i + 1];
@@ -483,10 +480,10 @@ public class GeneratorWithExceptions {
 			left = left.toLowerCase();
 			right = right.toLowerCase();
 			if (!checkLR(left, right)) return false;
-			if (dict.getRule(left).isEmpty()) left = left.substring(0,1).toUpperCase() + left.substring(1);
-			if (dict.getRule(right).isEmpty()) right = right.substring(0,1).toUpperCase() + right.substring(1);
-			if ((dict.getRule(left).get(0).toString().equals(dict.getRule("sawed").get(0).toString())
-					|| (dict.getRule(left).get(0).toString().equals(dict.getRule("writes").get(0).toString()) 
+			left = dict.resolve(left);
+			right = dict.resolve(right);
+			if ((dict.getRuleOrGuess(left).get(0).toString().equals(dict.getRule("sawed").get(0).toString())
+					|| (dict.getRuleOrGuess(left).get(0).toString().equals(dict.getRule("writes").get(0).toString()) 
 							&& contains(input, "to")) || left.equals("saw")) && (idx(input, "with") == i + 2 
 							|| idx(input, "with") == i + 3)) {
 				int idx = idx(input, "with");
@@ -507,7 +504,7 @@ public class GeneratorWithExceptions {
 			} else if (left.equals("entrance") || left.equals("heard")) {
 				int fin = 0;
 				for (int idx = i+2; idx < input.length; idx++) {
-					ArrayList<String> subs = dict.getSubscript(input[idx]);
+					List<String> subs = dict.getSubscript(input[idx]);
 					if (subs.contains("v") || subs.contains("v-d") && !(subs.contains("n") || subs.contains("n-u"))) {
 						fin = idx;
 						break;
@@ -520,7 +517,7 @@ public class GeneratorWithExceptions {
 			} else if (left.equals("of")) {
 				int fin = 0;
 				for (int idx = i+2; idx < input.length; idx++) {
-					ArrayList<String> subs = dict.getSubscript(input[idx]);
+					List<String> subs = dict.getSubscript(input[idx]);
 					if (subs.contains("n") || subs.contains("n-u") || subs.contains("g")) {
 						fin = idx;
 						break;
@@ -545,11 +542,11 @@ public class GeneratorWithExceptions {
 			} else if (left.equals("the") || (left.equals("has") && !right.equals("been")) || left.equals("stole")) {
 				int fin = 0;
 				for (int idx = i+1; idx < input.length; idx++) {
-					if (dict.getSubscript(input[idx]).contains("n") || dict.getSubscript(input[idx]).contains("n-u")) {
+					if (dict.hasSubscript(input[idx], Subscript.N | Subscript.N_U)) {
 						fin = idx;
 						break;
-					} else if ((dict.getSubscript(input[idx]).contains("v") || dict.getSubscript(input[idx]).contains("v-d"))
-							&& !(dict.getSubscript(input[idx]).contains("n") || dict.getSubscript(input[idx]).contains("n-u") 
+					} else if ((dict.hasSubscript(input[idx], Subscript.V | Subscript.V_D))
+							&& !(dict.hasSubscript(input[idx], Subscript.N | Subscript.N_U) 
 									|| input[idx].equals("intervening")))
 						return false;
 				}
@@ -565,9 +562,9 @@ public class GeneratorWithExceptions {
 					i = fin;
 					if (v) continue outer;
 				}
-			} else if ((right.equals("a") || right.equals("the")) && !dict.getSubscript(left).contains("a") && !left.equals("has") && i + 2 < input.length 
-					&& (dict.getSubscript(input[i+2]).isEmpty()? true : dict.getSubscript(input[i+2]).contains("n") 
-							|| dict.getSubscript(input[i+2]).contains("n-u"))) {
+			} else if ((right.equals("a") || right.equals("the")) && !dict.hasSubscript(left, Subscript.A) && !left.equals("has") && i + 2 < input.length 
+					&& (dict.getSubscript(input[i+2]).isEmpty()? true : dict.hasSubscript(input[i+2], Subscript.N) 
+							|| dict.hasSubscript(input[i+2], Subscript.N_U))) {
 				i++;
 				if (!checkLR(right, input[i+1])) return false;
 				if (input[i+1].toLowerCase().equals("cordelia") || input[i+1].toLowerCase().equals("smile")) {
@@ -577,11 +574,11 @@ public class GeneratorWithExceptions {
 						continue outer;
 					}
 				}
-			} else if ((right.equals("a") || right.equals("the")) && !dict.getSubscript(left).contains("a") && !contains(input, ",")) {
+			} else if ((right.equals("a") || right.equals("the")) && !dict.hasSubscript(left, Subscript.A) && !contains(input, ",")) {
 				int fin = 0;
 				for (int idx = i+1; idx < input.length; idx++) {
-					if (dict.getSubscript(input[idx]).contains("v") || dict.getSubscript(input[idx]).contains("v-d")) return false;
-					else if (dict.getSubscript(input[idx]).contains("n") || dict.getSubscript(input[idx]).contains("n-u")) {
+					if (dict.hasSubscript(input[idx], Subscript.V | Subscript.V_D)) return false;
+					else if (dict.hasSubscript(input[idx], Subscript.N | Subscript.N_U)) {
 						fin = idx;
 						break;
 					}
@@ -629,21 +626,9 @@ public class GeneratorWithExceptions {
 	private static boolean connects(String left, String right) {
 		if (!hyphenated.getRule("each_other").isEmpty()) return true;
 		if (!checkLR(left, right)) return false;
-		ArrayList<Rule> leftList = dict.getRule(left), rightList = dict.getRule(right);
-		if (leftList.size() == 0) {
-			leftList = dict.getRule(left.substring(0,1).toUpperCase() + left.substring(1));
-		}
-		if (rightList.size() == 0) {
-			rightList = dict.getRule(right.substring(0,1).toUpperCase() + right.substring(1));
-		}
-		if (leftList.size() == 0) {
-			System.err.println("Word '" + left + "' not found in dictionary.");
-			System.exit(0);
-		}
-		if (rightList.size() == 0) {
-			System.err.println("Word '" + right + "' not found in dictionary.");
-			System.exit(0);
-		}
+		List<Rule> leftList = dict.getRuleOrGuess(left), rightList = dict.getRuleOrGuess(right);
+		if (leftList.isEmpty() || rightList.isEmpty())
+			return false;
 		for (Rule leftRule : leftList) {
 			for (Rule rightRule : rightList) {
 				String lr = leftRule.toString();
@@ -653,8 +638,7 @@ public class GeneratorWithExceptions {
 				lr = replaceNull(lr);
 				rr = replaceNull(rr);
 				
-				ArrayList<String> Lops = new ArrayList<>(), Rops = new ArrayList<>(), Lcosts = new ArrayList<>(),
-						Rcosts = new ArrayList<>();
+				ArrayList<String> Lops = new ArrayList<>(), Rops = new ArrayList<>();
 				while (lr.contains("{")) {
 					int start = lr.indexOf("{");
 					int end = 0;
@@ -808,7 +792,7 @@ public class GeneratorWithExceptions {
 						if (fr.endsWith(" & "))
 							fr = fr.substring(0, fr.length() - 3);
 						fl = fl.replaceAll("\\+", "/").replaceAll("-", "\\+").replaceAll("/", "-");
-						if (!fl.isEmpty() && !fr.isEmpty() && equals(fl.trim(), fr.trim())) {
+						if (!fl.isEmpty() && !fr.isEmpty() && equals(fl.trim(), fr.trim(), leftRule, rightRule)) {
 							return true;
 						}
 					}
@@ -838,7 +822,7 @@ public class GeneratorWithExceptions {
 								if (fr.endsWith(" & "))
 									fr = fr.substring(0, fr.length() - 3);
 								fl = fl.replaceAll("\\+", "/").replaceAll("-", "\\+").replaceAll("/", "-");
-								if (!fl.isEmpty() && !fr.isEmpty() && equals(fl.trim(), fr.trim())) {
+								if (!fl.isEmpty() && !fr.isEmpty() && equals(fl.trim(), fr.trim(), leftRule, rightRule)) {
 									return true;
 								}
 							}
@@ -863,7 +847,6 @@ public class GeneratorWithExceptions {
 									break;
 								}
 							}
-							Lcosts.add(l.substring(start, end == 0 ? l.length() : end));
 							l = l.substring(0, start) + l.substring(end == 0 ? l.length() : end);
 						}
 						l = format(l);
@@ -885,7 +868,7 @@ public class GeneratorWithExceptions {
 								}
 							}
 							if (fr.endsWith(" & ")) fr = fr.substring(0, fr.length() - 3);
-							if (!fl.isEmpty() && !fr.isEmpty() && equals(fl.trim(), fr.trim())) {
+							if (!fl.isEmpty() && !fr.isEmpty() && equals(fl.trim(), fr.trim(), leftRule, rightRule)) {
 								return true;
 							}
 						}
@@ -909,7 +892,6 @@ public class GeneratorWithExceptions {
 									break;
 								}
 							}
-							Rcosts.add(r.substring(start, end == 0 ? r.length() : end));
 							r = r.substring(0, start) + r.substring(end == 0 ? r.length() : end);
 						}
 						r = format(r);
@@ -934,7 +916,7 @@ public class GeneratorWithExceptions {
 							fl = fl.replaceAll("\\+", "/").replaceAll("-", "\\+").replaceAll("/", "-");
 							for (String pfr : fr.split(" & ")) {
 								for (String pfl : fl.split(" & ")) {
-									if (!pfl.isEmpty() && !pfr.isEmpty() && equals(pfl.trim(), pfr.trim())) {
+									if (!pfl.isEmpty() && !pfr.isEmpty() && equals(pfl.trim(), pfr.trim(), leftRule, rightRule)) {
 										return true;
 									}
 								}
@@ -955,62 +937,59 @@ public class GeneratorWithExceptions {
 	 * performance while maintaining accuracy.
 	 */
 	private static boolean checkLR(String left, String right) {
+		String l = left.toLowerCase().trim(), r = right.toLowerCase().trim();
 		if (left.equals("the") && right.equals("intervening")) return true;
-		if (left.toLowerCase().trim().equals(right.toLowerCase().trim()))
+		if (l.equals(r))
 			return false;
 		if (left.toLowerCase().equals("a") && right.equals("is"))
 			return false;
 		if (left.toLowerCase().equals("directors") && right.toLowerCase().equals("on"))
 			return false;
-		if (left.toLowerCase().trim().equals("of") && right.toLowerCase().trim().equals("is"))
+		if (l.equals("of") && r.equals("is"))
 			return false;
-		if (left.toLowerCase().trim().equals("the") && right.toLowerCase().trim().equals("a")) return false;
-		if (left.toLowerCase().trim().equals("a") && right.toLowerCase().trim().equals("the")) return false;
-		if (left.toLowerCase().trim().equals("a") && right.toLowerCase().trim().equals(",")) return false;
-		if (left.toLowerCase().trim().equals("the") && right.toLowerCase().trim().equals(",")) return false;
-		if (left.toLowerCase().trim().equals("is") && right.toLowerCase().trim().equals("of")) return false;
-		if (left.toLowerCase().trim().equals(",") && right.toLowerCase().trim().equals("garret")) return false;
+		if (l.equals("the") && r.equals("a")) return false;
+		if (l.equals("a") && r.equals("the")) return false;
+		if (l.equals("a") && r.equals(",")) return false;
+		if (l.equals("the") && r.equals(",")) return false;
+		if (l.equals("is") && r.equals("of")) return false;
+		if (l.equals(",") && r.equals("garret")) return false;
 		if (left.toLowerCase().equals("a") || right.toLowerCase().equals("a"))
 			return true;
-		if (dict.getSubscript(left.toLowerCase().trim()).contains("n-u")
-				&& dict.getSubscript(right.toLowerCase().trim()).contains("m"))
+		if (dict.hasSubscript(l, Subscript.N_U)
+				&& dict.hasSubscript(r, Subscript.M))
 			return false;
 		if ((left.equals("a") || left.equals("the")) && 
-				(dict.getSubscript(right.toLowerCase().trim()).contains("v")
-						|| dict.getSubscript(right.toLowerCase().trim()).contains("v-d")) 
-				&& !(dict.getSubscript(right.toLowerCase().trim()).contains("n") 
-						|| dict.getSubscript(right.toLowerCase().trim()).contains("n-u")))
+				(dict.hasSubscript(r, Subscript.V | Subscript.V_D)) 
+				&& !(dict.hasSubscript(r, Subscript.N | Subscript.N_U)))
 			return false;
 
-		if ((left.equals("they") || (dict.getSubscript(left.toLowerCase().trim()).contains("m") 
-				|| dict.getSubscript(left.toLowerCase().trim()).contains("f") 
-				|| dict.getSubscript(left.toLowerCase().trim()).contains("l"))) && 
-				(dict.getSubscript(right.toLowerCase().trim()).contains("a")))
+		if ((left.equals("they") || (dict.hasSubscript(l, Subscript.M | Subscript.F | Subscript.L))) && 
+				(dict.hasSubscript(r, Subscript.A)))
 			return false;
-		if (dict.getSubscript(left.toLowerCase().trim()).contains("n-u")
-				&& right.toLowerCase().trim().equals("the"))
+		if (dict.hasSubscript(l, Subscript.N_U)
+				&& r.equals("the"))
 			return false;
-		if (dict.getSubscript(left.toLowerCase().trim()).contains("n") && !dict.getSubscript(left.toLowerCase().trim()).contains("a")
-				&& right.toLowerCase().trim().equals("the"))
+		if (dict.hasSubscript(l, Subscript.N) && !dict.hasSubscript(l, Subscript.A)
+				&& r.equals("the"))
 			return false;
-		if (dict.getSubscript(left.toLowerCase().trim()).contains("m")
-				&& right.toLowerCase().trim().equals("the"))
+		if (dict.hasSubscript(l, Subscript.M)
+				&& r.equals("the"))
 			return false;
-		if (left.toLowerCase().trim().equals("was") && right.toLowerCase().trim().equals("garret")) return false;
-		if (dict.getSubscript(left.toLowerCase().trim()).contains("f")
-				&& right.toLowerCase().trim().equals("the"))
+		if (l.equals("was") && r.equals("garret")) return false;
+		if (dict.hasSubscript(l, Subscript.F)
+				&& r.equals("the"))
 			return false;
-		if (dict.getSubscript(left.toLowerCase().trim()).contains("l")
-				&& right.toLowerCase().trim().equals("the"))
+		if (dict.hasSubscript(l, Subscript.L)
+				&& r.equals("the"))
 			return false;
-		if (dict.getSubscript(right.toLowerCase().trim()).contains("n-u")
-				&& dict.getSubscript(left.toLowerCase().trim()).contains("m"))
+		if (dict.hasSubscript(r, Subscript.N_U)
+				&& dict.hasSubscript(l, Subscript.M))
 			return false;
-		if (dict.getSubscript(left.toLowerCase().trim()).contains("n-u")
-				&& dict.getSubscript(right.toLowerCase().trim()).contains("f"))
+		if (dict.hasSubscript(l, Subscript.N_U)
+				&& dict.hasSubscript(r, Subscript.F))
 			return false;
-		if (dict.getSubscript(right.toLowerCase().trim()).contains("n-u")
-				&& dict.getSubscript(left.toLowerCase().trim()).contains("f"))
+		if (dict.hasSubscript(r, Subscript.N_U)
+				&& dict.hasSubscript(l, Subscript.F))
 			return false;
 		if (left.toLowerCase().equals("a") && dict.getSubscript(right).size() == 1
 				&& dict.getSubscript(right).get(0).equals("v"))
@@ -1021,21 +1000,9 @@ public class GeneratorWithExceptions {
 	private static Object[] connectsIdx(String left, String right, boolean isLeft) {
 		if (!checkLR(left, right))
 			return new Object[] { false, 0 };
-		ArrayList<Rule> leftList = dict.getRule(left), rightList = dict.getRule(right);
-		if (leftList.size() == 0) {
-			leftList = dict.getRule(left.substring(0,1).toUpperCase() + left.substring(1));
-		}
-		if (rightList.size() == 0) {
-			rightList = dict.getRule(right.substring(0,1).toUpperCase() + right.substring(1));
-		}
-		if (leftList.size() == 0) {
-			System.err.println("Word '" + left + "' not found in dictionary.");
-			System.exit(0);
-		}
-		if (rightList.size() == 0) {
-			System.err.println("Word '" + right + "' not found in dictionary.");
-			System.exit(0);
-		}
+		List<Rule> leftList = dict.getRuleOrGuess(left), rightList = dict.getRuleOrGuess(right);
+		if (leftList.isEmpty() || rightList.isEmpty())
+			return new Object[] { false, 0 };
 		for (Rule leftRule : leftList) {
 			for (Rule rightRule : rightList) {
 				String lr = leftRule.toString();
@@ -1045,8 +1012,7 @@ public class GeneratorWithExceptions {
 				lr = replaceNull(lr);
 				rr = replaceNull(rr);
 
-				ArrayList<String> Lops = new ArrayList<>(), Rops = new ArrayList<>(), Lcosts = new ArrayList<>(),
-						Rcosts = new ArrayList<>();
+				ArrayList<String> Lops = new ArrayList<>(), Rops = new ArrayList<>();
 				while (lr.contains("{")) {
 					int start = lr.indexOf("{");
 					int end = 0;
@@ -1110,7 +1076,7 @@ public class GeneratorWithExceptions {
 						if (fr.endsWith(" & "))
 							fr = fr.substring(0, fr.length() - 3);
 						fl = fl.replaceAll("\\+", "/").replaceAll("-", "\\+").replaceAll("/", "-");
-						if (!fl.isEmpty() && !fr.isEmpty() && equals(fl.trim(), fr.trim())) {
+						if (!fl.isEmpty() && !fr.isEmpty() && equals(fl.trim(), fr.trim(), leftRule, rightRule)) {
 							return new Object[] { true, isLeft ? li : ri };
 						}
 					}
@@ -1145,7 +1111,7 @@ public class GeneratorWithExceptions {
 								if (fr.endsWith(" & "))
 									fr = fr.substring(0, fr.length() - 3);
 								fl = fl.replaceAll("\\+", "/").replaceAll("-", "\\+").replaceAll("/", "-");
-								if (!fl.isEmpty() && !fr.isEmpty() && equals(fl.trim(), fr.trim()))
+								if (!fl.isEmpty() && !fr.isEmpty() && equals(fl.trim(), fr.trim(), leftRule, rightRule))
 									return new Object[] { true, isLeft ? li : ri };
 							}
 						}
@@ -1172,7 +1138,6 @@ public class GeneratorWithExceptions {
 									break;
 								}
 							}
-							Lcosts.add(l.substring(start, end == 0 ? l.length() : end));
 							l = l.substring(0, start) + l.substring(end == 0 ? l.length() : end);
 						}
 						l = format(l);
@@ -1196,7 +1161,7 @@ public class GeneratorWithExceptions {
 							}
 							if (fr.endsWith(" & "))
 								fr = fr.substring(0, fr.length() - 3);
-							if (!fl.isEmpty() && !fr.isEmpty() && equals(fl.trim(), fr.trim()))
+							if (!fl.isEmpty() && !fr.isEmpty() && equals(fl.trim(), fr.trim(), leftRule, rightRule))
 								return new Object[] { true, isLeft ? li : ri };
 						}
 					}
@@ -1222,7 +1187,6 @@ public class GeneratorWithExceptions {
 									break;
 								}
 							}
-							Rcosts.add(r.substring(start, end == 0 ? r.length() : end));
 							r = r.substring(0, start) + r.substring(end == 0 ? r.length() : end);
 						}
 						r = format(r);
@@ -1246,7 +1210,7 @@ public class GeneratorWithExceptions {
 							if (fl.endsWith(" & "))
 								fl = fl.substring(0, fl.length() - 3);
 							fl = fl.replaceAll("\\+", "/").replaceAll("-", "\\+").replaceAll("/", "-");
-							if (!fl.isEmpty() && !fr.isEmpty() && equals(fl.trim(), fr.trim())) {
+							if (!fl.isEmpty() && !fr.isEmpty() && equals(fl.trim(), fr.trim(), leftRule, rightRule)) {
 								return new Object[] { true, isLeft ? li : ri };
 							}
 						}
@@ -1412,7 +1376,8 @@ public class GeneratorWithExceptions {
 		return (boolean) leftMid[0] && (boolean) leftRight[0] && (int) leftMid[1] < (int) leftRight[1];
 	}
 
-	private static boolean equals(String wlu, String wr) {
+	private static boolean equals(String wlu, String wr, Rule leftRule, Rule rightRule) {
+		if (!bound.allows(dict, leftRule, wlu, true) || !bound.allows(dict, rightRule, wr, false)) return false;
 		wlu = wlu.replace("@", "");
 		wr = wr.replace("@", "");
 		if (wlu.equals(wr)) {
@@ -1486,10 +1451,11 @@ public class GeneratorWithExceptions {
 					it.remove();
 			}
 			List<String[]> words = new ArrayList<>();
+			Tokenizer tokenizer = Tokenizer.getDefault();
 			for (String sentence : sentences) {
-				String[] w = sentence.split(" ");
-				w[w.length - 1] = w[w.length - 1].substring(0, w[w.length - 1].length() - 1);
-				words.add(w);
+				List<String> w = tokenizer.split(sentence, false);
+				w.remove(w.size() - 1);
+				words.add(w.toArray(new String[w.size()]));
 			}
 			return words;
 		} catch (Exception e) {
@@ -0,0 +1,127 @@
+/*
+ * MIT License
+ * 
+ * Copyright (c) 2020-Present by Vignav Ramesh and Anton Kolonin, Aigents®
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package main.java.org.aigents.nlp.gen;
+
+import java.util.Arrays;
+
+import main.java.org.aigents.nlp.lg.ConnectorTable;
+
+/*
+ * One operand of Operands: a connector, or several joined by " & ", with what the link
+ * tests of Generator and Segment look at worked out once instead of on every call. Plus
+ * operands are written flipped, as the left side of a link, and packed back as + ones.
+ * The packed codes belong to a ConnectorTable and are redone if asked for another one.
+ */
+final class Operand {
+	// the connector names Generator's exceptions look for in an operand
+	static final int J = 1, SPX = 2, OP = 4, MV = 8, DMC = 16, S = 32, AN = 64;
+	static final Operand SP = new Operand("Sp-", true, "");
+	
+	final String text;
+	// text without '@', interned so that operands compare by reference
+	final String bare;
+	// length of bare without '-'
+	final int length;
+	final boolean compound, plus;
+	// whether the rule expression the operand was taken from contains its text
+	final boolean inRule;
+	private final boolean empty;
+	private final int flags;
+	private volatile Packed packed;
+	
+	Operand(String operand, boolean plus, String expression) {
+		text = operand.trim();
+		bare = text.replace("@", "").intern();
+		length = bare.replace("-", "").length();
+		empty = operand.isEmpty();
+		compound = text.contains("&");
+		this.plus = plus;
+		inRule = expression.contains(text);
+		flags = (text.contains("J")? J : 0) | (text.contains("Spx")? SPX : 0) | (text.contains("Op")? OP : 0)
+				| (text.contains("MV")? MV : 0) | (text.contains("Dmc")? DMC : 0) | (text.contains("S")? S : 0)
+				| (text.equals("AN-")? AN : 0);
+	}
+	
+	static Operand[] of(String[] operands, boolean plus, String expression) {
+		Operand[] result = new Operand[operands.length];
+		for (int i = 0; i < operands.length; i++) result[i] = new Operand(operands[i], plus, expression);
+		return result;
+	}
+	
+	// whether the operand was empty before trimming
+	boolean isEmpty() {	return empty;	}
+	
+	boolean is(int flag) {	return (flags & flag) != 0;	}
+	
+	// the single connector, pointing right for a plus operand, or NONE if compound
+	int code(ConnectorTable table) {	return packed(table).code;	}
+	
+	// every connector of the operand, pointing as in code(); those that do not parse are NONE
+	int[] parts(ConnectorTable table) {	return packed(table).parts;	}
+	
+	/*
+	 * Whether both operands name the same connectors in the same order, '@' and direction
+	 * aside, compared on their packed codes; operands with a part that does not parse
+	 * compare by text.
+	 */
+	boolean same(Operand other, ConnectorTable table) {
+		int[] a = packed(table).names, b = other.packed(table).names;
+		return a == null || b == null? bare == other.bare : Arrays.equals(a, b);
+	}
+	
+	private Packed packed(ConnectorTable table) {
+		Packed p = packed;
+		if (p == null || p.table != table) {
+			p = new Packed(table, this);
+			packed = p;
+		}
+		return p;
+	}
+	
+	private static class Packed {
+		private final ConnectorTable table;
+		private final int code;
+		private final int[] parts;
+		// parts without direction and '@', null if one of them does not parse
+		private final int[] names;
+		
+		private Packed(ConnectorTable table, Operand o) {
+			this.table = table;
+			code = o.compound? ConnectorTable.NONE : table.pack(o.bare.replace("-", "") + (o.plus? "+" : "-"));
+			String[] split = o.text.split(" & ");
+			parts = new int[split.length];
+			for (int i = 0; i < split.length; i++) {
+				int c = table.pack(split[i].trim());
+				parts[i] = c == ConnectorTable.NONE || !o.plus? c : ConnectorTable.flip(c);
+			}
+			int[] n = new int[parts.length];
+			for (int i = 0; i < parts.length && n != null; i++) {
+				if (parts[i] == ConnectorTable.NONE) n = null;
+				else n[i] = parts[i] & ~(ConnectorTable.MULTI | ConnectorTable.RIGHT);
+			}
+			names = n;
+		}
+	}
+}
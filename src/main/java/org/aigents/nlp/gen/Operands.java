@@ -0,0 +1,387 @@
+/*
+ * MIT License
+ * 
+ * Copyright (c) 2020-Present by Vignav Ramesh and Anton Kolonin, Aigents®
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package main.java.org.aigents.nlp.gen;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import main.java.org.aigents.nlp.lg.Rule;
+
+/*
+ * The operands that Generator and Segment match on, derived once per rule instead of on
+ * every connects call. "main" holds the or-alternatives of the rule with the {} optionals
+ * taken out, "ops" the optionals themselves. For every alternative the + connectors
+ * (flipped to -, as the left side of a link) and the - connectors are kept joined with
+ * " & ", as an Operand that also carries them packed for the link test.
+ */
+class Operands {
+	static final int CONNECTS = 0, INDEX = 1, SEGMENT = 2;
+	static final int CACHE_SIZE = 4096;
+	// keyed by the rule's expression, which is all the operands are derived from, so rules
+	// of reloaded dictionaries share entries; one LRU map of at most CACHE_SIZE rules per
+	// mode, so those of dictionaries no longer in use do not pile up
+	private static final List<Map<String, Operands>> cache = Arrays.asList(lru(), lru(), lru());
+	
+	final Operand[] plus, minus;
+	final Operand[][] plusParts;
+	final boolean[] skip;
+	final Operand[][] optPlus, optMinus, costPlus, costMinus;
+	final Operand[][][] costMinusParts;
+	// whether the rule expression contains "Sp", for Generator's exceptions
+	final boolean hasSp;
+	
+	static Operands of(Rule rule, int mode) {
+		return cache.get(mode).computeIfAbsent(rule.toString(), lr -> new Operands(lr, mode));
+	}
+	
+	private static Map<String, Operands> lru() {
+		return Collections.synchronizedMap(new LinkedHashMap<String, Operands>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+			
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Operands> eldest) {
+				return size() > CACHE_SIZE;
+			}
+		});
+	}
+	
+	private Operands(String lr, int mode) {
+		String expression = lr;
+		hasSp = expression.contains("Sp");
+		lr = beforeNull(lr);
+		lr = replaceNull(lr);
+		ArrayList<String> ops = new ArrayList<>();
+		while (lr.contains("{")) {
+			int start = lr.indexOf("{");
+			int end = 0;
+			int numC = 1, num = 0;
+			for (int i = start + 1; i < lr.length(); i++) {
+				if (lr.charAt(i) == '{')
+					numC++;
+				else if (lr.charAt(i) == '}')
+					num++;
+				if (numC == num) {
+					end = i + 1;
+					break;
+				}
+			}
+			if (mode == INDEX) {
+				ops.add(lr.substring(start, end == 0 ? lr.length() : end));
+				lr = lr.substring(0, start) + lr.substring(end == 0 ? lr.length() : end);
+			} else {
+				try {
+					ops.add(lr.substring(start, end));
+					lr = lr.substring(0, start) + lr.substring(end);
+				} catch (Exception e) {
+					ops.add(lr.substring(start+1, lr.length()));
+					lr = lr.substring(0, start);
+				}
+			}
+		}
+		lr = fixString(lr);
+		if (mode != INDEX) {
+			ArrayList<String> toAdd = new ArrayList<>();
+			int id = 0;
+			for (String str : ops) {
+				str = str.substring(1, str.length() - 1);
+				while (str.contains("{")) {
+					int start = str.indexOf("{");
+					int end = 0;
+					int numC = 1, num = 0;
+					for (int i = start + 1; i < str.length(); i++) {
+						if (str.charAt(i) == '{')
+							numC++;
+						else if (str.charAt(i) == '}')
+							num++;
+						if (numC == num) {
+							end = i + 1;
+							break;
+						}
+					}
+					try {
+						toAdd.add(str.substring(start, end));
+						str = str.substring(0, start) + str.substring(end);
+					} catch (Exception e) {
+						toAdd.add(str.substring(start+1, str.length()));
+						str = str.substring(0, start);
+					}
+				}
+				str = fixString(str);
+				ops.set(id, str);
+				id++;
+			}
+			if (mode == SEGMENT) ops.addAll(toAdd);
+		}
+		
+		String[] main = lr.split(" or ");
+		plus = new Operand[main.length];
+		minus = new Operand[main.length];
+		plusParts = new Operand[main.length][];
+		skip = new boolean[main.length];
+		for (int i = 0; i < main.length; i++) {
+			String p = plus(format(main[i]));
+			plus[i] = new Operand(p, true, expression);
+			minus[i] = new Operand(minus(format(main[i])), false, expression);
+			plusParts[i] = Operand.of(p.split(" & "), true, expression);
+			skip[i] = skip(main, i);
+		}
+		
+		optPlus = new Operand[ops.size()][];
+		optMinus = new Operand[ops.size()][];
+		costPlus = new Operand[ops.size()][];
+		costMinus = new Operand[ops.size()][];
+		costMinusParts = new Operand[ops.size()][][];
+		for (int k = 0; k < ops.size(); k++) {
+			String[] parts = ops.get(k).split(" or ");
+			optPlus[k] = new Operand[parts.length];
+			optMinus[k] = new Operand[parts.length];
+			costPlus[k] = new Operand[parts.length];
+			costMinus[k] = new Operand[parts.length];
+			costMinusParts[k] = new Operand[parts.length][];
+			for (int j = 0; j < parts.length; j++) {
+				String part = parts[j].split("& \\{")[0];
+				String r = format(part);
+				optPlus[k][j] = new Operand(plus(r), true, expression);
+				String fr = "";
+				for (String p : r.split(" & ")) {
+					if (r.contains("-")) {
+						fr += p + " & ";
+					}
+				}
+				if (fr.endsWith(" & "))
+					fr = fr.substring(0, fr.length() - 3);
+				optMinus[k][j] = new Operand(fr, false, expression);
+				String stripped = format(stripCosts(part));
+				String m = minus(stripped);
+				costPlus[k][j] = new Operand(plus(stripped), true, expression);
+				costMinus[k][j] = new Operand(m, false, expression);
+				costMinusParts[k][j] = Operand.of(m.split(" & "), false, expression);
+			}
+		}
+	}
+	
+	private static String plus(String l) {
+		String fl = "";
+		for (String p : l.split(" & ")) {
+			if (!p.contains("-")) {
+				fl += p + " & ";
+			}
+		}
+		if (fl.endsWith(" & "))
+			fl = fl.substring(0, fl.length() - 3);
+		return fl.replaceAll("\\+", "/").replaceAll("-", "\\+").replaceAll("/", "-");
+	}
+	
+	private static String minus(String r) {
+		String fr = "";
+		for (String p : r.split(" & ")) {
+			if (p.contains("-")) {
+				fr += p + " & ";
+			}
+		}
+		if (fr.endsWith(" & "))
+			fr = fr.substring(0, fr.length() - 3);
+		return fr;
+	}
+	
+	private static boolean skip(String[] parts, int ri) {
+		int numC = 0, num = 0;
+		for (int q = ri; q < parts.length; q++) {
+			boolean a = false;
+			for (char c : parts[q].toCharArray()) {
+				if (c == '(')
+					numC++;
+				else if (c == ')')
+					num++;
+				else if (c == '&')
+					a = true;
+			}
+			if (a)
+				return true;
+			if (num > numC)
+				break;
+		}
+		return false;
+	}
+	
+	private static String stripCosts(String l) {
+		while (l.contains("[")) {
+			int start = l.indexOf("[");
+			int end = 0;
+			int numC = 1, num = 0;
+			for (int i = start + 1; i < l.length(); i++) {
+				if (l.charAt(i) == '[')
+					numC++;
+				else if (l.charAt(i) == ']')
+					num++;
+				if (numC == num) {
+					end = i + 1;
+					break;
+				}
+			}
+			l = l.substring(0, start) + l.substring(end == 0 ? l.length() : end);
+		}
+		return l;
+	}
+
+	private static String replaceNull(String lr) {
+		while (lr.contains("()")) {
+			int idx = lr.indexOf("()");
+			int end = lr.indexOf(" ", idx) != -1 ? lr.indexOf(" ", idx) : lr.length() - 1;
+			if (lr.charAt(end - 1) == '}')
+				return lr;
+			if (lr.charAt(end - 1) == ')') {
+				for (int i = end - 2; i >= 0; i--) {
+					if (lr.charAt(i) != ')') {
+						end = i + 2;
+						break;
+					}
+				}
+				int num = 1;
+				int numC = 0;
+				int finish = 0;
+				for (int i = end - 2; i >= 0; i--) {
+					if (lr.charAt(i) == ')')
+						num++;
+					else if (lr.charAt(i) == '(')
+						numC++;
+					if (numC == num) {
+						finish = i;
+						break;
+					}
+				}
+				String total = lr.substring(finish, end);
+				lr = lr.replace(total, "{" + total.substring(1, total.lastIndexOf("or")) + "}");
+			} else {
+				int space1 = 0;
+				for (int i = end - 1; i >= 0; i--) {
+					if (lr.charAt(i) == ' ') {
+						space1 = i;
+						break;
+					}
+				}
+				if (lr.charAt(space1 - 4) == ')' || lr.charAt(space1 - 4) == ']') {
+					char c = lr.charAt(space1 - 4);
+					char oc;
+					if (c == ')')
+						oc = '(';
+					else
+						oc = '[';
+					int finish = 0;
+					int num = 1;
+					int numC = 0;
+					for (int i = space1 - 5; i >= 0; i--) {
+						if (lr.charAt(i) == c)
+							num++;
+						else if (lr.charAt(i) == oc)
+							numC++;
+						if (numC == num) {
+							finish = i;
+							break;
+						}
+					}
+					lr = lr.replace(lr.substring(finish, end), "{" + lr.substring(finish + 1, space1 - 4) + "}");
+				} else if (lr.charAt(space1 - 5) == ')' || lr.charAt(space1 - 5) == ']') {
+					char c = lr.charAt(space1 - 5);
+					char oc;
+					if (c == ')')
+						oc = '(';
+					else
+						oc = '[';
+					int finish = 0;
+					int num = 1;
+					int numC = 0;
+					for (int i = space1 - 6; i >= 0; i--) {
+						if (lr.charAt(i) == c)
+							num++;
+						else if (lr.charAt(i) == oc)
+							numC++;
+						if (numC == num) {
+							finish = i;
+							break;
+						}
+					}
+					lr = lr.replace(lr.substring(finish, end), "{" + lr.substring(finish + 1, space1 - 4) + "}");
+				} else {
+					int space2 = 0;
+					for (int i = space1 - 5; i >= 0; i--) {
+						if (lr.charAt(i) == ' ') {
+							space2 = i;
+							break;
+						}
+					}
+					if (lr.charAt(space2 + 1) == '(')
+						space2++;
+					int fin = lr.indexOf(' ', space2 + 1);
+					lr = lr.replace(lr.substring(space2 + 1, end), "{" + lr.substring(space2 + 1, fin) + "}");
+				}
+			}
+		}
+		return lr;
+	}
+
+	private static String beforeNull(String lr) {
+		lr = fix(lr, "([()] & ", "(");
+		lr = fix(lr, "  or ", " or ");
+		lr = fix(lr, "or ()", "or [()]");
+		return lr;
+	}
+
+	private static String fixString(String lr) {
+		if (lr.startsWith(" &")) lr = lr.substring(2).trim();
+		if (lr.startsWith(" or")) lr = lr.substring(3).trim();
+		lr = fix(lr, "[ & ]", "");
+		lr = fix(lr, "( & )", "");
+		lr = fix(lr, "[ or ]", "");
+		lr = fix(lr, "( or )", "");
+		lr = fix(lr, "( or ", "(");
+		lr = fix(lr, "( & ", "(");
+		lr = fix(lr, " or )", ")");
+		lr = fix(lr, " & )", ")");
+		lr = fix(lr, "[ or ", "[");
+		lr = fix(lr, "[ & ", "[");
+		lr = fix(lr, " or ]", "]");
+		lr = fix(lr, " & ]", "]");
+		lr = fix(lr, "&  &", "&");
+		lr = fix(lr, "or  or", "or");
+		lr = fix(lr, "or  &", "or");
+		return lr;
+	}
+
+	private static String fix(String lr, String reg, String rep) {
+		while (lr.contains(reg))
+			lr = lr.replace(reg, rep);
+		return lr;
+	}
+
+	private static String format(String l) {
+		return l.replace("(", "").replace(")", "").replace("[", "").replace("]", "").replace("}", "").replace("{", "")
+				.trim();
+	}
+}
\ No newline at end of file
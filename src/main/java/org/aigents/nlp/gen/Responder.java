@@ -40,11 +40,16 @@ import java.util.TreeMap;
 import java.util.concurrent.TimeUnit;
 
 import main.java.org.aigents.nlp.lg.Dictionary;
+import main.java.org.aigents.nlp.lg.DictionaryRegistry;
+import main.java.org.aigents.nlp.lg.Lexicon;
 import main.java.org.aigents.nlp.lg.Loader;
+import main.java.org.aigents.nlp.lg.Morphology;
+import main.java.org.aigents.nlp.lg.RegexClasses;
 
 public class Responder {
 	public static Dictionary dict, hyphenated;
-	public static HashMap<String, Integer> corpusLexicon, contextLexicon;
+	public static HashMap<String, Integer> contextLexicon;
+	public static Lexicon corpusLexicon;
 	public static TreeMap<Double, HashSet<String>> results;
 	public static List<String> dw;
 	public static long startTime;
@@ -56,16 +61,16 @@ public class Responder {
 		try {
 			if (args.length > 2) {
 				if (args[0].contains("/4.0.dict")) {
-					Dictionary[] dicts = Loader.buildLGDict(args[0]);
+					Dictionary[] dicts = DictionaryRegistry.getShared().get(args[0]);
 					dict = dicts[0];
 					hyphenated = dicts[1];
 				} else {
-					dict = Loader.grammarBuildLinks(args[0], true);
+					dict = DictionaryRegistry.getShared().get(args[0])[0];
 				}
 				
 				startTime = System.currentTimeMillis();
 				
-				corpusLexicon = Loader.getCorpusLexicon(args[0]);
+				corpusLexicon = Loader.getCorpusFrequencies(args[0]);
 				contextLexicon = Loader.getContextLexicon(args[1]);
 												
 				String[] words = new String[args.length - 2];
@@ -77,6 +82,7 @@ public class Responder {
 
 				Set<String> dws = contextLexicon.keySet();
 				dw = new ArrayList<>(dws);
+				dw.removeIf(word -> !known(word));
 				Collections.sort(dw, (o1, o2) -> {
 					if (zipfian(o2)>zipfian(o1)) return 1;
 					else if (zipfian(o2)<zipfian(o1)) return -1;
@@ -98,11 +104,11 @@ public class Responder {
 				}
 			} else if (args.length == 2) {
 				if (args[0].contains("/4.0.dict")) {
-					Dictionary[] dicts = Loader.buildLGDict(args[0]);
+					Dictionary[] dicts = DictionaryRegistry.getShared().get(args[0]);
 					dict = dicts[0];
 					hyphenated = dicts[1];
 				} else {
-					dict = Loader.grammarBuildLinks(args[0], true);
+					dict = DictionaryRegistry.getShared().get(args[0])[0];
 				}
 				
 				Path p;
@@ -119,9 +125,15 @@ public class Responder {
 					if (w.length() == 0) continue;
 					String[] parts = w.split(" ");
 					
+					if (args[0].contains("/4.0.dict")) {
+						Dictionary[] dicts = DictionaryRegistry.getShared().get(args[0]);
+						dict = dicts[0];
+						hyphenated = dicts[1];
+					}
+					
 					startTime = System.currentTimeMillis();
 					
-					corpusLexicon = Loader.getCorpusLexicon(args[0]);
+					corpusLexicon = Loader.getCorpusFrequencies(args[0]);
 					contextLexicon = Loader.getContextLexicon(parts[0]);
 													
 					String[] words = new String[parts.length - 1];
@@ -133,6 +145,7 @@ public class Responder {
 
 					Set<String> dws = contextLexicon.keySet();
 					dw = new ArrayList<>(dws);
+					dw.removeIf(word -> !known(word));
 					Collections.sort(dw, (o1, o2) -> {
 						if (zipfian(o2)>zipfian(o1)) return 1;
 						else if (zipfian(o2)<zipfian(o1)) return -1;
@@ -189,6 +202,7 @@ public class Responder {
 			for (int i = 0; i < param.length; i++) {
 				clone[i] = param[i];
 			}
+			if (!linked(clone, words.length)) return;
 			HashSet<String> pAns = isValid(args, args1, clone);
 			if (!pAns.isEmpty() && !contains(pAns)) {
 				results.put(rank, pAns);
@@ -226,6 +240,7 @@ public class Responder {
 			for (int i = 0; i < param.length; i++) {
 				clone[i] = param[i];
 			}
+			if (!linked(clone, words.length)) return;
 			HashSet<String> pAns = generateSentence(args, args1, clone);
 			if (!pAns.isEmpty() && !contains(pAns)) {
 				results.put(rank, pAns);
@@ -251,6 +266,37 @@ public class Responder {
 		}
 	}
 	
+	/*
+	 * Whether a context word can be generated with: it is in the dictionary, or its regex
+	 * class or unknown-word ending gives it rules, as for numbers, names and most -ing and
+	 * -ly words. The UNKNOWN-WORD entries guess() falls back on would let any token in, so
+	 * they do not count.
+	 */
+	private static boolean known(String word) {
+		if (dict.containsIgnoreCase(word)) return true;
+		RegexClasses regex = dict.getRegexClasses();
+		if (regex != null && regex.resolve(word) != null) return true;
+		Morphology morphology = dict.getMorphology();
+		return morphology != null && morphology.guess(word.toLowerCase()) != null;
+	}
+	
+	/*
+	 * Every word of a sentence is linked to at least one other, so a candidate whose
+	 * connectors cannot meet those of any other word in param is dropped before the
+	 * sentence is generated. The dictionary's connector index answers this from the rule
+	 * expressions, which never rules out a pair the disjuncts could link.
+	 */
+	private static boolean linked(String[] param, int from) {
+		for (int i = from; i < param.length; i++) {
+			boolean linked = false;
+			for (int j = 0; j < param.length && !linked; j++) {
+				if (j != i) linked = dict.links(param[i], param[j]) || dict.links(param[j], param[i]);
+			}
+			if (!linked) return false;
+		}
+		return true;
+	}
+	
 	private static boolean contains(HashSet<String> pAns) {
 		for (HashSet<String> val : results.values()) {
 			if (val.equals(pAns)) return true;
@@ -260,7 +306,7 @@ public class Responder {
 	
 	private static double zipfian(String w) {
 		int wContext = contextLexicon.get(w) == null? 0 : contextLexicon.get(w);
-		int wCorpus = corpusLexicon.get(w) == null? 0 : corpusLexicon.get(w);
+		long wCorpus = corpusLexicon.get(w);
 		return Math.log(1+wContext)/Math.log(1+wCorpus);
 	}
 		
@@ -35,9 +35,12 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 
+import main.java.org.aigents.nlp.lg.ConnectorTable;
 import main.java.org.aigents.nlp.lg.Dictionary;
-import main.java.org.aigents.nlp.lg.Loader;
+import main.java.org.aigents.nlp.lg.DictionaryRegistry;
+import main.java.org.aigents.nlp.lg.Subscript;
 import main.java.org.aigents.nlp.lg.Rule;
+import main.java.org.aigents.nlp.lg.Tokenizer;
 
 public class Segment {
 	public static Dictionary dict, hyphenated;
@@ -47,11 +50,11 @@ public class Segment {
 		if (args.length > 2) {
 			try {
 				if (args[0].contains("/4.0.dict")) {
-					Dictionary[] dicts = Loader.buildLGDict(args[0]);
+					Dictionary[] dicts = DictionaryRegistry.getShared().get(args[0]);
 					dict = dicts[0];
 					hyphenated = dicts[1];
 				} else {
-					dict = Loader.grammarBuildLinks(args[0], false);
+					dict = DictionaryRegistry.getShared().get(args[0])[0];
 				}
 				String[] words = new String[args.length - 1];
 				for (int i = 1; i < args.length; i++) {
@@ -64,11 +67,11 @@ public class Segment {
 		} else if (args.length == 2) {
 			try {
 				if (args[0].contains("/4.0.dict")) {
-					Dictionary[] dicts = Loader.buildLGDict(args[0]);
+					Dictionary[] dicts = DictionaryRegistry.getShared().get(args[0]);
 					dict = dicts[0];
 					hyphenated = dicts[1];
 				} else {
-					dict = Loader.grammarBuildLinks(args[0], false);
+					dict = DictionaryRegistry.getShared().get(args[0])[0];
 				}
 				List<String> w = new ArrayList<>();
 				try {
@@ -160,7 +163,21 @@ public class Segment {
 		System.out.println("   Accuracy of boundary identification: " + ((double) result.size())/boundaries.size());
 	}
 	
+	/*
+	 * The words are split as they are first; only if that finds no sentences are the
+	 * idioms of the hyphenated dictionary collapsed into single units and split again.
+	 */
 	private static ArrayList<String> segment(String[] words) {
+		ArrayList<String> ret = split(words);
+		if (hyphenated == null || ret.size() != 1 || !ret.get(0).equals("No valid sentences.")) return ret;
+		String[] units = hyphenated.getIdioms().collapse(words);
+		if (units == words) return ret;
+		ret = new ArrayList<>();
+		for (String sentence : split(units)) ret.add(sentence.replace('_', ' '));
+		return ret;
+	}
+	
+	private static ArrayList<String> split(String[] words) {
 		ArrayList<String> ret = new ArrayList<>();
 		int idx = 0;
 		while (idx < words.length) {
@@ -174,7 +191,7 @@ public class Segment {
 						i+2<words.length? words[i+2] : words[i+1])) && check(arr) && isValid(arr) && valid(words, i+1)) {
 					String[] finalArr = arr;
 					int finalI = i+1;
-					int threshold = (arr.length >= 13)? 0 : (i+3<words.length && dict.getSubscript(words[i+3]).contains("j-ru"))? 7 : 2;
+					int threshold = (arr.length >= 13)? 0 : (i+3<words.length && dict.hasSubscript(words[i+3], Subscript.J_RU))? 7 : 2;
 					for (int j = Math.min(i+threshold, words.length-1); j > i; j--) {
 						String[] ar = new String[arr.length + j - i];
 						for (int id = 0; id < arr.length; id++) {
@@ -218,7 +235,7 @@ public class Segment {
 	private static boolean containsVerb(String[] input) {
 		boolean containsVerb = false;
 		for (String word : input) {
-			ArrayList<String> subs;
+			List<String> subs;
 			try {
 				subs = dict.getSubscript(word);
 			} catch (Exception e) {
@@ -237,22 +254,18 @@ public class Segment {
 		if (input.length <= 1) return false;
 		int comma = idx(input, ",");
 		if (comma == -1) comma = idx(input, "how");
-		if (dict.getSubscript(input[input.length - 1]).contains("r") && !dict.getSubscript(input[input.length - 1]).contains("i")) return false;
-		if ((dict.getSubscript(input[0]).contains("v") || dict.getSubscript(input[0]).contains("v-d"))
-				&& !(dict.getSubscript(input[1]).contains("a") || dict.getSubscript(input[0]).contains("n") || dict.getSubscript(input[0]).contains("n-u")
-						|| dict.getSubscript(input[0]).contains("p")))
+		if (dict.hasSubscript(input[input.length - 1], Subscript.R) && !dict.hasSubscript(input[input.length - 1], Subscript.I)) return false;
+		if ((dict.hasSubscript(input[0], Subscript.V | Subscript.V_D))
+				&& !(dict.hasSubscript(input[1], Subscript.A) || dict.hasSubscript(input[0], Subscript.N | Subscript.N_U | Subscript.P)))
 			return false;
 		String last = input[input.length - 1].toLowerCase().trim();
-		if ((dict.getSubscript(last).isEmpty() 
-				&& dict.getSubscript(last.substring(0,1).toUpperCase() + last.substring(1)).isEmpty() 
+		if ((dict.getSubscriptOrCapitalized(last).isEmpty() 
 				&& !Arrays.asList("before","other","ones").contains(last))
-				|| (dict.getSubscript(last).size() > 0 && (!dict.getSubscript(last).contains("n")
-				&& !dict.getSubscript(last).contains("r") 
+				|| (dict.getSubscript(last).size() > 0 && (!dict.hasSubscript(last, Subscript.N | Subscript.R) 
 				&& !last.equals("be")
-				&& !dict.getSubscript(last).contains("a") 
-				&& !dict.getSubscript(last).contains("n-u"))))
+				&& !dict.hasSubscript(last, Subscript.A | Subscript.N_U))))
 			return false;
-		if (dict.getSubscript(last).contains("e")) return false;
+		if (dict.hasSubscript(last, Subscript.E)) return false;
 		if (comma != -1) {
 			String[] in = new String[input.length - comma];
 			for (int i = comma + 1; i < input.length;  i++) {
@@ -269,11 +282,8 @@ public class Segment {
 			words[i] = words[i].toLowerCase();
 			String word = words[i];
 			word = word.toLowerCase();
-			ArrayList<String> subs;
-			subs = dict.getSubscript(word);
-			if (subs.isEmpty()) {
-				subs = dict.getSubscript(word.substring(0,1).toUpperCase() + word.substring(1));
-			}
+			List<String> subs;
+			subs = dict.getSubscriptOrCapitalized(word);
 			if (subs.size() == 1 && (subs.contains("m") || subs.contains("l") || subs.contains("f")) 
 					&& !(ret.split(" ")[ret.split(" ").length-1].equals("a"))) {
 				word = word.substring(0,1).toUpperCase() + word.substring(1);
@@ -299,11 +309,7 @@ public class Segment {
 		if (Arrays.asList("of", "with", "on", "before").contains(first)) return false;
 		second = second.toLowerCase();
 		List<String> subs;
-		try {
-			subs = dict.getSubscript(first);
-		} catch (Exception e) {
-			subs = dict.getSubscript(first.substring(0,1).toUpperCase() + first.substring(1));
-		}
+		subs = dict.getSubscript(first);
 		if ((!subs.contains("ij") && second.equals(","))) return false;
 		if (subs.size() == 1 && subs.contains("a")) return false;
 		if (subs.contains("r") && !(subs.size() == 2 && subs.contains("#their"))) return false;
@@ -324,10 +330,10 @@ public class Segment {
 				return false;
 			left = left.toLowerCase();
 			right = right.toLowerCase();
-			if (dict.getRule(left).isEmpty()) left = left.substring(0,1).toUpperCase() + left.substring(1);
-			if (dict.getRule(right).isEmpty()) right = right.substring(0,1).toUpperCase() + right.substring(1);
+			left = dict.resolve(left);
+			right = dict.resolve(right);
 			if ((left.equals("in") || left.equals("by") || left.equals("of")) 
-					&& (input[input.length - 1].equals("the") || dict.getSubscript(input[input.length - 1]).contains("a"))) return false;
+					&& (input[input.length - 1].equals("the") || dict.hasSubscript(input[input.length - 1], Subscript.A))) return false;
 			if (left.equals("in") || left.equals("by")) {
 				if (connects(left, input[input.length - 1])) continue outer;
 			} else if (left.equals("on") && right.equals("the") && i + 2 < input.length) {
@@ -337,7 +343,7 @@ public class Segment {
 			} else if (left.equals("the")) {
 				int fin = 0;
 				for (int idx = i+1; idx < input.length; idx++) {
-					if (dict.getSubscript(input[idx]).contains("n") || dict.getSubscript(input[idx]).contains("n-u")) {
+					if (dict.hasSubscript(input[idx], Subscript.N | Subscript.N_U)) {
 						fin = idx;
 						break;
 					}
@@ -355,7 +361,7 @@ public class Segment {
 					if (v) continue outer;
 				}
 			} else if (right.equals("a") || right.equals("the") && !left.equals("has") && i + 2 < input.length) {
-				if (dict.getSubscript(input[i+2]).contains("a") && !dict.getSubscript(input[i+2]).contains("n") && i+3>=input.length) return false;
+				if (dict.hasSubscript(input[i+2], Subscript.A) && !dict.hasSubscript(input[i+2], Subscript.N) && i+3>=input.length) return false;
 				i++;
 				if (input[i+1].toLowerCase().equals("cordelia") || input[i+1].toLowerCase().equals("smile")) {
 					if (connects(left, input[i+1]) && connects(right, input[i+1])) continue outer;
@@ -391,315 +397,57 @@ public class Segment {
 		return true;
 	}
 	
+	private static List<Rule> rules(String word) {
+		if (hyphenated != null && word.indexOf('_') > 0) return hyphenated.getRuleIgnoreCase(word);
+		return dict.getRuleOrGuess(word);
+	}
+	
 	private static boolean connects(String left, String right) {
 		if (!hyphenated.getRule("each_other").isEmpty()) return true;
 		if (!checkLR(left, right)) return false;
-		ArrayList<Rule> leftList = dict.getRule(left), rightList = dict.getRule(right);
-		if (leftList.size() == 0) {
-			leftList = dict.getRule(left.substring(0,1).toUpperCase() + left.substring(1));
-		}
-		if (rightList.size() == 0) {
-			rightList = dict.getRule(right.substring(0,1).toUpperCase() + right.substring(1));
-		}
-		if (leftList.size() == 0) {
-			System.err.println("Word '" + left + "' not found in dictionary.");
-			System.exit(0);
-		}
-		if (rightList.size() == 0) {
-			System.err.println("Word '" + right + "' not found in dictionary.");
-			System.exit(0);
-		}
+		List<Rule> leftList = rules(left), rightList = rules(right);
+		if (leftList.isEmpty() || rightList.isEmpty())
+			return false;
 		for (Rule leftRule : leftList) {
 			for (Rule rightRule : rightList) {
-				String lr = leftRule.toString();
-				String rr = rightRule.toString();
-				lr = beforeNull(lr);
-				rr = beforeNull(rr);
-				lr = replaceNull(lr);
-				rr = replaceNull(rr);
-				
-				ArrayList<String> Lops = new ArrayList<>(), Rops = new ArrayList<>(), Lcosts = new ArrayList<>(),
-						Rcosts = new ArrayList<>();
-				while (lr.contains("{")) {
-					int start = lr.indexOf("{");
-					int end = 0;
-					int numC = 1, num = 0;
-					for (int i = start + 1; i < lr.length(); i++) {
-						if (lr.charAt(i) == '{')
-							numC++;
-						else if (lr.charAt(i) == '}')
-							num++;
-						if (numC == num) {
-							end = i + 1;
-							break;
-						}
-					}
-					try {
-						Lops.add(lr.substring(start, end));
-						lr = lr.substring(0, start) + lr.substring(end);
-					} catch (Exception e) {
-						Lops.add(lr.substring(start+1, lr.length()));
-						lr = lr.substring(0, start);
-					}
-				}
-				lr = fixString(lr);
-
-				while (rr.contains("{")) {
-					int start = rr.indexOf("{");
-					int end = 0;
-					int numC = 1, num = 0;
-					for (int i = start + 1; i < rr.length(); i++) {
-						if (rr.charAt(i) == '{')
-							numC++;
-						else if (rr.charAt(i) == '}')
-							num++;
-						if (numC == num) {
-							end = i + 1;
-							break;
-						}
-					}
-					try {
-						Rops.add(rr.substring(start, end));
-						rr = rr.substring(0, start) + rr.substring(end);
-					} catch (Exception e) {
-						Rops.add(rr.substring(start+1, rr.length()));
-						rr = rr.substring(0, start);
-					}
-				}
-				rr = fixString(rr);
-				
-				ArrayList<String> toAddLops = new ArrayList<>();
-				ArrayList<String> toAddRops = new ArrayList<>();
-				
-				int id = 0;
-				for (String str : Rops) {
-					str = str.substring(1, str.length() - 1);
-					while (str.contains("{")) {
-						int start = str.indexOf("{");
-						int end = 0;
-						int numC = 1, num = 0;
-						for (int i = start + 1; i < str.length(); i++) {
-							if (str.charAt(i) == '{')
-								numC++;
-							else if (str.charAt(i) == '}')
-								num++;
-							if (numC == num) {
-								end = i + 1;
-								break;
-							}
-						}
-						try {
-							toAddRops.add(str.substring(start, end));
-							str = str.substring(0, start) + str.substring(end);
-						} catch (Exception e) {
-							toAddRops.add(str.substring(start+1, str.length()));
-							str = str.substring(0, start);
-						}
-					}
-					str = fixString(str);
-					Rops.set(id, str);
-					id++;
-				}
-				
-				id = 0;
-				for (String str : Lops) {
-					str = str.substring(1, str.length() - 1);
-					while (str.contains("{")) {
-						int start = str.indexOf("{");
-						int end = 0;
-						int numC = 1, num = 0;
-						for (int i = start + 1; i < str.length(); i++) {
-							if (str.charAt(i) == '{')
-								numC++;
-							else if (str.charAt(i) == '}')
-								num++;
-							if (numC == num) {
-								end = i + 1;
-								break;
-							}
-						}
-						try {
-							toAddLops.add(str.substring(start, end));
-							str = str.substring(0, start) + str.substring(end);
-						} catch (Exception e) {
-							toAddLops.add(str.substring(start+1, str.length()));
-							str = str.substring(0, start);
-						}
-					}
-					str = fixString(str);
-					Lops.set(id, str);
-					id++;
-				}
-				
-				Lops.addAll(toAddLops);
-				Rops.addAll(toAddRops);
-				
-				for (String l : lr.split(" or ")) {
-					int ri = -1;
-					rloop: for (String r : rr.split(" or ")) {
-						ri++;
-						int numC = 0, num = 0;
-						for (int q = ri; q < rr.split(" or ").length; q++) {
-							boolean a = false;
-							for (char c : rr.split(" or ")[q].toCharArray()) {
-								if (c == '(')
-									numC++;
-								else if (c == ')')
-									num++;
-								else if (c == '&')
-									a = true;
-							}
-							if (a)
-								continue rloop;
-							if (num > numC)
-								break;
-						}
-						l = format(l);
-						r = format(r);
-						String fl = "";
-						for (String p : l.split(" & ")) {
-							if (!p.contains("-")) {
-								fl += p + " & ";
-							}
-						}
-						if (fl.endsWith(" & "))
-							fl = fl.substring(0, fl.length() - 3);
-						String fr = "";
-						for (String p : r.split(" & ")) {
-							if (p.contains("-")) {
-								fr += p + " & ";
-							}
-						}
-						if (fr.endsWith(" & "))
-							fr = fr.substring(0, fr.length() - 3);
-						fl = fl.replaceAll("\\+", "/").replaceAll("-", "\\+").replaceAll("/", "-");
-						if (!fl.isEmpty() && !fr.isEmpty() && equals(fl.trim(), fr.trim())) {
+				Operands lo = Operands.of(leftRule, Operands.SEGMENT);
+				Operands ro = Operands.of(rightRule, Operands.SEGMENT);
+				for (Operand fl : lo.plus) {
+					for (int ri = 0; ri < ro.minus.length; ri++) {
+						if (ro.skip[ri])
+							continue;
+						Operand fr = ro.minus[ri];
+						if (!fl.isEmpty() && !fr.isEmpty() && equals(fl, fr)) {
 							return true;
 						}
 					}
 				}
-				for (String lb : Lops) {
-					for (String rb : Rops) {
-						for (String l : lb.split(" or ")) {
-							for (String r : rb.split(" or ")) {
-								l = l.split("& \\{")[0];
-								r = r.split("& \\{")[0];
-								l = format(l);
-								r = format(r);
-								String fl = "";
-								for (String p : l.split(" & ")) {
-									if (!p.contains("-")) {
-										fl += p + " & ";
-									}
-								}
-								if (fl.endsWith(" & "))
-									fl = fl.substring(0, fl.length() - 3);
-								String fr = "";
-								for (String p : r.split(" & ")) {
-									if (r.contains("-")) {
-										fr += p + " & ";
-									}
-								}
-								if (fr.endsWith(" & "))
-									fr = fr.substring(0, fr.length() - 3);
-								fl = fl.replaceAll("\\+", "/").replaceAll("-", "\\+").replaceAll("/", "-");
-								if (!fl.isEmpty() && !fr.isEmpty() && equals(fl.trim(), fr.trim())) {
+				for (Operand[] lb : lo.optPlus) {
+					for (Operand[] rb : ro.optMinus) {
+						for (Operand fl : lb) {
+							for (Operand fr : rb) {
+								if (!fl.isEmpty() && !fr.isEmpty() && equals(fl, fr)) {
 									return true;
 								}
 							}
 						}
 					}
 				}
-
-				for (String lb : Lops) {
-					for (String l : lb.split(" or ")) {
-						l = l.split("& \\{")[0];
-						while (l.contains("[")) {
-							int start = l.indexOf("[");
-							int end = 0;
-							int numC = 1, num = 0;
-							for (int i = start + 1; i < l.length(); i++) {
-								if (l.charAt(i) == '[')
-									numC++;
-								else if (l.charAt(i) == ']')
-									num++;
-								if (numC == num) {
-									end = i + 1;
-									break;
-								}
-							}
-							Lcosts.add(l.substring(start, end == 0 ? l.length() : end));
-							l = l.substring(0, start) + l.substring(end == 0 ? l.length() : end);
-						}
-						l = format(l);
-						String fl = "";
-						for (String p : l.split(" & ")) {
-							if (!p.contains("-")) {
-								fl += p + " & ";
-							}
-						}
-						if (fl.endsWith(" & "))
-							fl = fl.substring(0, fl.length() - 3);
-						fl = fl.replaceAll("\\+", "/").replaceAll("-", "\\+").replaceAll("/", "-");
-						for (String r : rr.split(" or ")) {
-							r = format(r);
-							String fr = "";
-							for (String p : r.split(" & ")) {
-								if (p.contains("-")) {
-									fr += p + " & ";
-								}
-							}
-							if (fr.endsWith(" & ")) fr = fr.substring(0, fr.length() - 3);
-							if (!fl.isEmpty() && !fr.isEmpty() && equals(fl.trim(), fr.trim())) {
+				for (Operand[] lb : lo.costPlus) {
+					for (Operand fl : lb) {
+						for (Operand fr : ro.minus) {
+							if (!fl.isEmpty() && !fr.isEmpty() && equals(fl, fr)) {
 								return true;
 							}
 						}
 					}
 				}
-
-				for (String rb : Rops) {
-					for (String r : rb.split(" or ")) {
-						r = r.split("& \\{")[0];
-						while (r.contains("[")) {
-							int start = r.indexOf("[");
-							int end = 0;
-							int numC = 1, num = 0;
-							for (int i = start + 1; i < r.length(); i++) {
-								if (r.charAt(i) == '[')
-									numC++;
-								else if (r.charAt(i) == ']')
-									num++;
-								if (numC == num) {
-									end = i + 1;
-									break;
-								}
-							}
-							Rcosts.add(r.substring(start, end == 0 ? r.length() : end));
-							r = r.substring(0, start) + r.substring(end == 0 ? r.length() : end);
-						}
-						r = format(r);
-						String fr = "";
-						for (String p : r.split(" & ")) {
-							if (p.contains("-")) {
-								fr += p + " & ";
-							}
-						}
-						if (fr.endsWith(" & "))
-							fr = fr.substring(0, fr.length() - 3);
-						for (String l : lr.split(" or ")) {
-							l = format(l);
-							String fl = "";
-							for (String p : l.split(" & ")) {
-								if (!p.contains("-")) {
-									fl += p + " & ";
-								}
-							}
-							if (fl.endsWith(" & "))
-								fl = fl.substring(0, fl.length() - 3);
-							fl = fl.replaceAll("\\+", "/").replaceAll("-", "\\+").replaceAll("/", "-");
-							for (String pfr : fr.split(" & ")) {
-								for (String pfl : fl.split(" & ")) {
-									if (!pfl.isEmpty() && !pfr.isEmpty() && equals(pfl.trim(), pfr.trim())) {
+				for (Operand[][] rb : ro.costMinusParts) {
+					for (Operand[] fr : rb) {
+						for (Operand[] fl : lo.plusParts) {
+							for (Operand pfr : fr) {
+								for (Operand pfl : fl) {
+									if (!pfl.isEmpty() && !pfr.isEmpty() && equals(pfl, pfr)) {
 										return true;
 									}
 								}
@@ -713,19 +461,20 @@ public class Segment {
 	}
 
 	private static boolean checkLR(String left, String right) {
-		if (left.toLowerCase().trim().equals(right.toLowerCase().trim()))
+		String l = left.toLowerCase().trim(), r = right.toLowerCase().trim();
+		if (l.equals(r))
 			return false;
-		if (dict.getSubscript(left.toLowerCase().trim()).contains("n-u")
-				&& dict.getSubscript(right.toLowerCase().trim()).contains("m"))
+		if (dict.hasSubscript(l, Subscript.N_U)
+				&& dict.hasSubscript(r, Subscript.M))
 			return false;
-		if (dict.getSubscript(right.toLowerCase().trim()).contains("n-u")
-				&& dict.getSubscript(left.toLowerCase().trim()).contains("m"))
+		if (dict.hasSubscript(r, Subscript.N_U)
+				&& dict.hasSubscript(l, Subscript.M))
 			return false;
-		if (dict.getSubscript(left.toLowerCase().trim()).contains("n-u")
-				&& dict.getSubscript(right.toLowerCase().trim()).contains("f"))
+		if (dict.hasSubscript(l, Subscript.N_U)
+				&& dict.hasSubscript(r, Subscript.F))
 			return false;
-		if (dict.getSubscript(right.toLowerCase().trim()).contains("n-u")
-				&& dict.getSubscript(left.toLowerCase().trim()).contains("f"))
+		if (dict.hasSubscript(r, Subscript.N_U)
+				&& dict.hasSubscript(l, Subscript.F))
 			return false;
 		if (left.toLowerCase().equals("a") && dict.getSubscript(right).size() == 1
 				&& dict.getSubscript(right).get(0).equals("v"))
@@ -736,224 +485,37 @@ public class Segment {
 	private static Object[] connectsIdx(String left, String right, boolean isLeft) {
 		if (!hyphenated.getRule("each_other").isEmpty()) return new Object[] { true, 0 };
 		if (!checkLR(left, right)) return new Object[] { false, 0 };
-		ArrayList<Rule> leftList = dict.getRule(left), rightList = dict.getRule(right);
-		if (leftList.size() == 0) {
-			leftList = dict.getRule(left.substring(0,1).toUpperCase() + left.substring(1));
-		}
-		if (rightList.size() == 0) {
-			rightList = dict.getRule(right.substring(0,1).toUpperCase() + right.substring(1));
-		}
-		if (leftList.size() == 0) {
-			System.err.println("Word '" + left + "' not found in dictionary.");
-			System.exit(0);
-		}
-		if (rightList.size() == 0) {
-			System.err.println("Word '" + right + "' not found in dictionary.");
-			System.exit(0);
-		}
+		List<Rule> leftList = rules(left), rightList = rules(right);
+		if (leftList.isEmpty() || rightList.isEmpty())
+			return new Object[] { false, 0 };
 		for (Rule leftRule : leftList) {
 			for (Rule rightRule : rightList) {
-				String lr = leftRule.toString();
-				String rr = rightRule.toString();
-				lr = beforeNull(lr);
-				rr = beforeNull(rr);
-				lr = replaceNull(lr);
-				rr = replaceNull(rr);
-				
-				ArrayList<String> Lops = new ArrayList<>(), Rops = new ArrayList<>(), Lcosts = new ArrayList<>(),
-						Rcosts = new ArrayList<>();
-				while (lr.contains("{")) {
-					int start = lr.indexOf("{");
-					int end = 0;
-					int numC = 1, num = 0;
-					for (int i = start + 1; i < lr.length(); i++) {
-						if (lr.charAt(i) == '{')
-							numC++;
-						else if (lr.charAt(i) == '}')
-							num++;
-						if (numC == num) {
-							end = i + 1;
-							break;
-						}
-					}
-					try {
-						Lops.add(lr.substring(start, end));
-						lr = lr.substring(0, start) + lr.substring(end);
-					} catch (Exception e) {
-						Lops.add(lr.substring(start+1, lr.length()));
-						lr = lr.substring(0, start);
-					}
-				}
-				lr = fixString(lr);
-
-				while (rr.contains("{")) {
-					int start = rr.indexOf("{");
-					int end = 0;
-					int numC = 1, num = 0;
-					for (int i = start + 1; i < rr.length(); i++) {
-						if (rr.charAt(i) == '{')
-							numC++;
-						else if (rr.charAt(i) == '}')
-							num++;
-						if (numC == num) {
-							end = i + 1;
-							break;
-						}
-					}
-					try {
-						Rops.add(rr.substring(start, end));
-						rr = rr.substring(0, start) + rr.substring(end);
-					} catch (Exception e) {
-						Rops.add(rr.substring(start+1, rr.length()));
-						rr = rr.substring(0, start);
-					}
-				}
-				rr = fixString(rr);
-				
-				ArrayList<String> toAddLops = new ArrayList<>();
-				ArrayList<String> toAddRops = new ArrayList<>();
-				
-				int id = 0;
-				for (String str : Rops) {
-					str = str.substring(1, str.length() - 1);
-					while (str.contains("{")) {
-						int start = str.indexOf("{");
-						int end = 0;
-						int numC = 1, num = 0;
-						for (int i = start + 1; i < str.length(); i++) {
-							if (str.charAt(i) == '{')
-								numC++;
-							else if (str.charAt(i) == '}')
-								num++;
-							if (numC == num) {
-								end = i + 1;
-								break;
-							}
-						}
-						try {
-							toAddRops.add(str.substring(start, end));
-							str = str.substring(0, start) + str.substring(end);
-						} catch (Exception e) {
-							toAddRops.add(str.substring(start+1, str.length()));
-							str = str.substring(0, start);
-						}
-					}
-					str = fixString(str);
-					Rops.set(id, str);
-					id++;
-				}
-				
-				id = 0;
-				for (String str : Lops) {
-					str = str.substring(1, str.length() - 1);
-					while (str.contains("{")) {
-						int start = str.indexOf("{");
-						int end = 0;
-						int numC = 1, num = 0;
-						for (int i = start + 1; i < str.length(); i++) {
-							if (str.charAt(i) == '{')
-								numC++;
-							else if (str.charAt(i) == '}')
-								num++;
-							if (numC == num) {
-								end = i + 1;
-								break;
-							}
-						}
-						try {
-							toAddLops.add(str.substring(start, end));
-							str = str.substring(0, start) + str.substring(end);
-						} catch (Exception e) {
-							toAddLops.add(str.substring(start+1, str.length()));
-							str = str.substring(0, start);
-						}
-					}
-					str = fixString(str);
-					Lops.set(id, str);
-					id++;
-				}
-				
-				Lops.addAll(toAddLops);
-				Rops.addAll(toAddRops);
+				Operands lo = Operands.of(leftRule, Operands.SEGMENT);
+				Operands ro = Operands.of(rightRule, Operands.SEGMENT);
 				int lk = 0, rk = 0;
-				for (String l : lr.split(" or ")) {
+				for (Operand fl : lo.plus) {
 					rk = 0;
 					lk++;
-					int ri = -1;
-					rloop: for (String r : rr.split(" or ")) {
-						ri++;
+					for (int ri = 0; ri < ro.minus.length; ri++) {
 						rk++;
-						int numC = 0, num = 0;
-						for (int q = ri; q < rr.split(" or ").length; q++) {
-							boolean a = false;
-							for (char c : rr.split(" or ")[q].toCharArray()) {
-								if (c == '(')
-									numC++;
-								else if (c == ')')
-									num++;
-								else if (c == '&')
-									a = true;
-							}
-							if (a)
-								continue rloop;
-							if (num > numC)
-								break;
-						}
-						l = format(l);
-						r = format(r);
-						String fl = "";
-						for (String p : l.split(" & ")) {
-							if (!p.contains("-")) {
-								fl += p + " & ";
-							}
-						}
-						if (fl.endsWith(" & "))
-							fl = fl.substring(0, fl.length() - 3);
-						String fr = "";
-						for (String p : r.split(" & ")) {
-							if (p.contains("-")) {
-								fr += p + " & ";
-							}
-						}
-						if (fr.endsWith(" & "))
-							fr = fr.substring(0, fr.length() - 3);
-						fl = fl.replaceAll("\\+", "/").replaceAll("-", "\\+").replaceAll("/", "-");
-						if (!fl.isEmpty() && !fr.isEmpty() && equals(fl.trim(), fr.trim())) {
+						if (ro.skip[ri])
+							continue;
+						Operand fr = ro.minus[ri];
+						if (!fl.isEmpty() && !fr.isEmpty() && equals(fl, fr)) {
 							return new Object[] { true, isLeft ? lk : rk };
 						}
 					}
 				}
 				lk = 0;
 				rk = 0;
-				for (String lb : Lops) {
+				for (Operand[] lb : lo.optPlus) {
 					rk = 0;
 					lk++;
-					for (String rb : Rops) {
+					for (Operand[] rb : ro.optMinus) {
 						rk++;
-						for (String l : lb.split(" or ")) {
-							for (String r : rb.split(" or ")) {
-								l = l.split("& \\{")[0];
-								r = r.split("& \\{")[0];
-								l = format(l);
-								r = format(r);
-								String fl = "";
-								for (String p : l.split(" & ")) {
-									if (!p.contains("-")) {
-										fl += p + " & ";
-									}
-								}
-								if (fl.endsWith(" & "))
-									fl = fl.substring(0, fl.length() - 3);
-								String fr = "";
-								for (String p : r.split(" & ")) {
-									if (r.contains("-")) {
-										fr += p + " & ";
-									}
-								}
-								if (fr.endsWith(" & "))
-									fr = fr.substring(0, fr.length() - 3);
-								fl = fl.replaceAll("\\+", "/").replaceAll("-", "\\+").replaceAll("/", "-");
-								if (!fl.isEmpty() && !fr.isEmpty() && equals(fl.trim(), fr.trim())) {
+						for (Operand fl : lb) {
+							for (Operand fr : rb) {
+								if (!fl.isEmpty() && !fr.isEmpty() && equals(fl, fr)) {
 									return new Object[] { true, isLeft ? lk : rk };
 								}
 							}
@@ -963,49 +525,13 @@ public class Segment {
 				
 				lk = 0;
 				rk = 0;
-				for (String lb : Lops) {
+				for (Operand[] lb : lo.costPlus) {
 					rk = 0;
 					lk++;
-					for (String l : lb.split(" or ")) {
-						l = l.split("& \\{")[0];
-						while (l.contains("[")) {
-							int start = l.indexOf("[");
-							int end = 0;
-							int numC = 1, num = 0;
-							for (int i = start + 1; i < l.length(); i++) {
-								if (l.charAt(i) == '[')
-									numC++;
-								else if (l.charAt(i) == ']')
-									num++;
-								if (numC == num) {
-									end = i + 1;
-									break;
-								}
-							}
-							Lcosts.add(l.substring(start, end == 0 ? l.length() : end));
-							l = l.substring(0, start) + l.substring(end == 0 ? l.length() : end);
-						}
-						l = format(l);
-						String fl = "";
-						for (String p : l.split(" & ")) {
-							if (!p.contains("-")) {
-								fl += p + " & ";
-							}
-						}
-						if (fl.endsWith(" & "))
-							fl = fl.substring(0, fl.length() - 3);
-						fl = fl.replaceAll("\\+", "/").replaceAll("-", "\\+").replaceAll("/", "-");
-						for (String r : rr.split(" or ")) {
+					for (Operand fl : lb) {
+						for (Operand fr : ro.minus) {
 							rk++;
-							r = format(r);
-							String fr = "";
-							for (String p : r.split(" & ")) {
-								if (p.contains("-")) {
-									fr += p + " & ";
-								}
-							}
-							if (fr.endsWith(" & ")) fr = fr.substring(0, fr.length() - 3);
-							if (!fl.isEmpty() && !fr.isEmpty() && equals(fl.trim(), fr.trim())) {
+							if (!fl.isEmpty() && !fr.isEmpty() && equals(fl, fr)) {
 								return new Object[] { true, isLeft ? lk : rk };
 							}
 						}
@@ -1014,52 +540,15 @@ public class Segment {
 
 				lk = 0;
 				rk = 0;
-				for (String rb : Rops) {
+				for (Operand[][] rb : ro.costMinusParts) {
 					lk = 0;
 					rk++;
-					for (String r : rb.split(" or ")) {
-						r = r.split("& \\{")[0];
-						while (r.contains("[")) {
-							int start = r.indexOf("[");
-							int end = 0;
-							int numC = 1, num = 0;
-							for (int i = start + 1; i < r.length(); i++) {
-								if (r.charAt(i) == '[')
-									numC++;
-								else if (r.charAt(i) == ']')
-									num++;
-								if (numC == num) {
-									end = i + 1;
-									break;
-								}
-							}
-							Rcosts.add(r.substring(start, end == 0 ? r.length() : end));
-							r = r.substring(0, start) + r.substring(end == 0 ? r.length() : end);
-						}
-						r = format(r);
-						String fr = "";
-						for (String p : r.split(" & ")) {
-							if (p.contains("-")) {
-								fr += p + " & ";
-							}
-						}
-						if (fr.endsWith(" & "))
-							fr = fr.substring(0, fr.length() - 3);
-						for (String l : lr.split(" or ")) {
+					for (Operand[] fr : rb) {
+						for (Operand[] fl : lo.plusParts) {
 							lk++;
-							l = format(l);
-							String fl = "";
-							for (String p : l.split(" & ")) {
-								if (!p.contains("-")) {
-									fl += p + " & ";
-								}
-							}
-							if (fl.endsWith(" & "))
-								fl = fl.substring(0, fl.length() - 3);
-							fl = fl.replaceAll("\\+", "/").replaceAll("-", "\\+").replaceAll("/", "-");
-							for (String pfr : fr.split(" & ")) {
-								for (String pfl : fl.split(" & ")) {
-									if (!pfl.isEmpty() && !pfr.isEmpty() && equals(pfl.trim(), pfr.trim())) {
+							for (Operand pfr : fr) {
+								for (Operand pfl : fl) {
+									if (!pfl.isEmpty() && !pfr.isEmpty() && equals(pfl, pfr)) {
 										return new Object[] { true, isLeft ? lk : rk };
 									}
 								}
@@ -1072,151 +561,13 @@ public class Segment {
 		return new Object[] {false, 0};
 	}
 
-	private static String replaceNull(String lr) {
-		while (lr.contains("()")) {
-			int idx = lr.indexOf("()");
-			int end = lr.indexOf(" ", idx) != -1 ? lr.indexOf(" ", idx) : lr.length() - 1;
-			if (lr.charAt(end - 1) == '}')
-				return lr;
-			if (lr.charAt(end - 1) == ')') {
-				for (int i = end - 2; i >= 0; i--) {
-					if (lr.charAt(i) != ')') {
-						end = i + 2;
-						break;
-					}
-				}
-				int num = 1;
-				int numC = 0;
-				int finish = 0;
-				for (int i = end - 2; i >= 0; i--) {
-					if (lr.charAt(i) == ')')
-						num++;
-					else if (lr.charAt(i) == '(')
-						numC++;
-					if (numC == num) {
-						finish = i;
-						break;
-					}
-				}
-				String total = lr.substring(finish, end);
-				lr = lr.replace(total, "{" + total.substring(1, total.lastIndexOf("or")) + "}");
-			} else {
-				int space1 = 0;
-				for (int i = end - 1; i >= 0; i--) {
-					if (lr.charAt(i) == ' ') {
-						space1 = i;
-						break;
-					}
-				}
-				if (lr.charAt(space1 - 4) == ')' || lr.charAt(space1 - 4) == ']') {
-					char c = lr.charAt(space1 - 4);
-					char oc;
-					if (c == ')')
-						oc = '(';
-					else
-						oc = '[';
-					int finish = 0;
-					int num = 1;
-					int numC = 0;
-					for (int i = space1 - 5; i >= 0; i--) {
-						if (lr.charAt(i) == c)
-							num++;
-						else if (lr.charAt(i) == oc)
-							numC++;
-						if (numC == num) {
-							finish = i;
-							break;
-						}
-					}
-					lr = lr.replace(lr.substring(finish, end), "{" + lr.substring(finish + 1, space1 - 4) + "}");
-				} else if (lr.charAt(space1 - 5) == ')' || lr.charAt(space1 - 5) == ']') {
-					char c = lr.charAt(space1 - 5);
-					char oc;
-					if (c == ')')
-						oc = '(';
-					else
-						oc = '[';
-					int finish = 0;
-					int num = 1;
-					int numC = 0;
-					for (int i = space1 - 6; i >= 0; i--) {
-						if (lr.charAt(i) == c)
-							num++;
-						else if (lr.charAt(i) == oc)
-							numC++;
-						if (numC == num) {
-							finish = i;
-							break;
-						}
-					}
-					lr = lr.replace(lr.substring(finish, end), "{" + lr.substring(finish + 1, space1 - 4) + "}");
-				} else {
-					int space2 = 0;
-					for (int i = space1 - 5; i >= 0; i--) {
-						if (lr.charAt(i) == ' ') {
-							space2 = i;
-							break;
-						}
-					}
-					if (lr.charAt(space2 + 1) == '(')
-						space2++;
-					int fin = lr.indexOf(' ', space2 + 1);
-					lr = lr.replace(lr.substring(space2 + 1, end), "{" + lr.substring(space2 + 1, fin) + "}");
-				}
-			}
-		}
-		return lr;
-	}
-
-	private static String beforeNull(String lr) {
-		lr = fix(lr, "([()] & ", "(");
-		lr = fix(lr, "  or ", " or ");
-		lr = fix(lr, "or ()", "or [()]");
-		return lr;
-	}
-
-	private static String fixString(String lr) {
-		if (lr.startsWith(" &")) lr = lr.substring(2).trim();
-		if (lr.startsWith(" or")) lr = lr.substring(3).trim();
-		lr = fix(lr, "[ & ]", "");
-		lr = fix(lr, "( & )", "");
-		lr = fix(lr, "[ or ]", "");
-		lr = fix(lr, "( or )", "");
-		lr = fix(lr, "( or ", "(");
-		lr = fix(lr, "( & ", "(");
-		lr = fix(lr, " or )", ")");
-		lr = fix(lr, " & )", ")");
-		lr = fix(lr, "[ or ", "[");
-		lr = fix(lr, "[ & ", "[");
-		lr = fix(lr, " or ]", "]");
-		lr = fix(lr, " & ]", "]");
-		lr = fix(lr, "&  &", "&");
-		lr = fix(lr, "or  or", "or");
-		lr = fix(lr, "or  &", "or");
-		return lr;
-	}
-
-	private static String fix(String lr, String reg, String rep) {
-		while (lr.contains(reg))
-			lr = lr.replace(reg, rep);
-		return lr;
-	}
-
-	private static String format(String l) {
-		return l.replace("(", "").replace(")", "").replace("[", "").replace("]", "").replace("}", "").replace("{", "")
-				.trim();
-	}
-
 	private static boolean connects(String left, String mid, String right) {
 		if (left.toLowerCase().equals(mid.toLowerCase()) || left.toLowerCase().equals(right.toLowerCase())
 				|| mid.toLowerCase().equals(right.toLowerCase()))
 			return false;
 		Object[] leftRight = connectsIdx(left, right, false);
 		Object[] midRight = connectsIdx(mid, right, false);
-		List<String> subs = dict.getSubscript(right);
-		if (subs.isEmpty()) {
-			subs = dict.getSubscript(right.substring(0,1).toUpperCase() + right.substring(1));
-		}
+		List<String> subs = dict.getSubscriptOrCapitalized(right);
 		return (boolean) leftRight[0] && (boolean) midRight[0] 
 				&& (subs.contains("p")? true : (int) leftRight[1] <= (int) midRight[1]);
 	}
@@ -1230,58 +581,14 @@ public class Segment {
 		return (boolean) leftMid[0] && (boolean) leftRight[0] && (int) leftMid[1] < (int) leftRight[1];
 	}
 
-	private static boolean equals(String wlu, String wr) {
-		wlu = wlu.replace("@", "");
-		wr = wr.replace("@", "");
-		if (wlu.equals(wr)) {
+	private static boolean equals(Operand wlu, Operand wr) {
+		ConnectorTable table = dict.getConnectorTable();
+		if (wlu.same(wr, table)) {
 			return true;
 		}
-		if (wlu.contains("*")) {
-			int idx = wlu.indexOf("*");
-			int lid = wlu.lastIndexOf("*");
-			if (wr.length() == wlu.length()) {
-				if (wlu.substring(0, idx).equals(wr.substring(0, idx))
-						&& wlu.substring(lid + 1).equals(wr.substring(lid + 1))) {
-					return true;
-				}
-			} else {
-				if (idx + 1 > wr.length() && wlu.substring(0, idx).equals(wr.substring(0, Math.min(wr.length(), idx))))
-					return true;
-			}
-		}
-		if (wr.contains("*")) {
-			int idx = wr.indexOf("*");
-			int lid = wr.lastIndexOf("*");
-			if (wr.length() == wlu.length()) {
-				if (wlu.substring(0, idx).equals(wr.substring(0, idx))
-						&& wlu.substring(lid + 1).equals(wr.substring(lid + 1))) {
-					return true;
-				}
-			} else {
-				if (idx + 1 > wlu.length()
-						&& wlu.substring(0, Math.min(wlu.length(), idx)).equals(wr.substring(0, idx))) {
-					return true;
-				}
-			}
-		}
-		wr = wr.replace("-", "");
-		wlu = wlu.replace("-", "");
-		if (wlu.contains("&") || wr.contains("&"))
+		if (wlu.compound || wr.compound)
 			return false;
-		if (wlu.length() < wr.length()) {
-			if (wlu.equals(wr.substring(0, wlu.length())))
-				return true;
-		}
-		if (wr.length() < wlu.length()) {
-			if (wr.equals(wlu.substring(0, wr.length())))
-				return true;
-			try {
-				if (wr.equals(wlu.substring(1, wr.length()+1)))
-					return true;
-			} catch (Exception e) {
-			}
-		}
-		return false;
+		return table.getMatcher().matches(wlu.code(table), wr.code(table));
 	}
 
 	public static List<String> processSentences(String path) throws IOException {
@@ -1302,15 +609,13 @@ public class Segment {
 						|| str.contains("\"") || str.contains("'"))
 					it.remove();
 			}
+			Tokenizer tokenizer = Tokenizer.getDefault();
 			List<String> words = new ArrayList<>();
 			for (int i = 0; i < (path.startsWith("gut")? 10 : sentences.size()); i++) {
 				String sentence = sentences.get(i);
 				groundTruth.add(sentence);
-				String[] w = sentence.split(" ");
-				w[w.length - 1] = w[w.length - 1].substring(0, w[w.length - 1].length() - 1);
-				for (String word: w) {
-					words.add(word);
-				}
+				List<String> w = tokenizer.split(sentence, false);
+				words.addAll(w.subList(0, w.size() - 1));
 			}
 			return words;
 		} catch (Exception e) {
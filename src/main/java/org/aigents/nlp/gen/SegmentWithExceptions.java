@@ -34,8 +34,10 @@ import java.util.Iterator;
 import java.util.List;
 
 import main.java.org.aigents.nlp.lg.Dictionary;
-import main.java.org.aigents.nlp.lg.Loader;
+import main.java.org.aigents.nlp.lg.DictionaryRegistry;
+import main.java.org.aigents.nlp.lg.Subscript;
 import main.java.org.aigents.nlp.lg.Rule;
+import main.java.org.aigents.nlp.lg.Tokenizer;
 
 public class SegmentWithExceptions {
 	public static Dictionary dict, hyphenated;
@@ -44,11 +46,11 @@ public class SegmentWithExceptions {
 		if (args.length > 2) {
 			try {
 				if (args[0].contains("/4.0.dict")) {
-					Dictionary[] dicts = Loader.buildLGDict(args[0]);
+					Dictionary[] dicts = DictionaryRegistry.getShared().get(args[0]);
 					dict = dicts[0];
 					hyphenated = dicts[1];
 				} else {
-					dict = Loader.grammarBuildLinks(args[0], false);
+					dict = DictionaryRegistry.getShared().get(args[0])[0];
 				}
 				String[] words = new String[args.length - 1];
 				for (int i = 1; i < args.length; i++) {
@@ -61,11 +63,11 @@ public class SegmentWithExceptions {
 		} else if (args.length == 2) {
 			try {
 				if (args[0].contains("/4.0.dict")) {
-					Dictionary[] dicts = Loader.buildLGDict(args[0]);
+					Dictionary[] dicts = DictionaryRegistry.getShared().get(args[0]);
 					dict = dicts[0];
 					hyphenated = dicts[1];
 				} else {
-					dict = Loader.grammarBuildLinks(args[0], false);
+					dict = DictionaryRegistry.getShared().get(args[0])[0];
 				}
 				List<String> w = new ArrayList<>();
 				try {
@@ -126,16 +128,16 @@ public class SegmentWithExceptions {
 			return false;
 		if (first.equals("board") || last.equals("been") || last.equals("at")) return false;
 		if (first.equals("in") || last.equals("in") || last.equals("barry")) return false;
-		if ((dict.getSubscript(first).contains("v") || dict.getSubscript(first).contains("v") 
-				&& !(dict.getSubscript(first).contains("n") || dict.getSubscript(first).contains("n-u")))) {
+		if ((dict.hasSubscript(first, Subscript.V) || dict.hasSubscript(first, Subscript.V) 
+				&& !(dict.hasSubscript(first, Subscript.N | Subscript.N_U)))) {
 			return false;
 		}
 		if (last.equals("when") || last.equals("last") || last.equals("by")) return false;
-		if (contains(input, "a") && dict.getSubscript(last).contains("a")) return false;
+		if (contains(input, "a") && dict.hasSubscript(last, Subscript.A)) return false;
 		if (idx(input, "but") == input.length - 2 || last.equals("but")) return false;
 		boolean containsVerb = false;
 		for (String word : input) {
-			ArrayList<String> subs;
+			List<String> subs;
 			try {
 				subs = dict.getSubscript(word);
 			} catch (Exception e) {
@@ -154,11 +156,8 @@ public class SegmentWithExceptions {
 			words[i] = words[i].toLowerCase();
 			String word = words[i];
 			word = word.toLowerCase();
-			ArrayList<String> subs;
-			subs = dict.getSubscript(word);
-			if (subs.isEmpty()) {
-				subs = dict.getSubscript(word.substring(0,1).toUpperCase() + word.substring(1));
-			}
+			List<String> subs;
+			subs = dict.getSubscriptOrCapitalized(word);
 			if (subs.size() == 1 && (subs.contains("m") || subs.contains("l") || subs.contains("f"))) {
 				word = word.substring(0,1).toUpperCase() + word.substring(1);
 			}
@@ -188,13 +187,9 @@ public class SegmentWithExceptions {
 		if (first.equals("on")) return false;
 		if (first.equals("with")) return false;
 		if (first.equals("board")) return false;
-		if ((first.equals("her") || first.equals("his")) && !dict.getSubscript(second).contains("n")) return false;
+		if ((first.equals("her") || first.equals("his")) && !dict.hasSubscript(second, Subscript.N)) return false;
 		List<String> subs;
-		try {
-			subs = dict.getSubscript(first);
-		} catch (Exception e) {
-			subs = dict.getSubscript(first.substring(0,1).toUpperCase() + first.substring(1));
-		}
+		subs = dict.getSubscript(first);
 		if (subs.size() == 1 && subs.contains("a")) return false;
 		if (subs.contains("v") || subs.contains("v-d") && !subs.contains("n") && !subs.contains("n-u")) {
 			return false;
@@ -207,9 +202,8 @@ public class SegmentWithExceptions {
 		if (idx(input, "A") != -1 && idx(input, "A") != 0)
 			return false;
 		if (contains(input, ",") && input.length < 6) return false;
-		if ((dict.getSubscript(input[0]).contains("v") || dict.getSubscript(input[0]).contains("v-d"))
-				&& !(dict.getSubscript(input[1]).contains("a") || dict.getSubscript(input[0]).contains("n") || dict.getSubscript(input[0]).contains("n-u")
-						|| dict.getSubscript(input[0]).contains("p")))
+		if ((dict.hasSubscript(input[0], Subscript.V | Subscript.V_D))
+				&& !(dict.hasSubscript(input[1], Subscript.A) || dict.hasSubscript(input[0], Subscript.N | Subscript.N_U | Subscript.P)))
 			return false;
 		for (int i = 0; i < input.length; i++) {
 			if (!input[i].equals("A")) {
@@ -217,11 +211,7 @@ public class SegmentWithExceptions {
 			}
 		}
 		String last = input[input.length - 1].toLowerCase().trim();
-		if (last.equals("a") || (dict.getSubscript(last).size() > 0 && (!dict.getSubscript(last).contains("n")
-				&& !dict.getSubscript(last).contains("r") 
-				&& !dict.getSubscript(last).contains("a") 
-				&& !dict.getSubscript(last).contains("w") 
-				&& !dict.getSubscript(last).contains("n-u"))))
+		if (last.equals("a") || (dict.getSubscript(last).size() > 0 && (!dict.hasSubscript(last, Subscript.N | Subscript.R | Subscript.A | Subscript.W | Subscript.N_U))))
 			return false;
 		outer: for (int i = 0; i < input.length - 1; i++) {
 			String left = input[i];
@@ -230,10 +220,10 @@ public class SegmentWithExceptions {
 				return false;
 			left = left.toLowerCase();
 			right = right.toLowerCase();
-			if (dict.getRule(left).isEmpty()) left = left.substring(0,1).toUpperCase() + left.substring(1);
-			if (dict.getRule(right).isEmpty()) right = right.substring(0,1).toUpperCase() + right.substring(1);
-			if ((dict.getRule(left).get(0).toString().equals(dict.getRule("sawed").get(0).toString())
-					|| (dict.getRule(left).get(0).toString().equals(dict.getRule("writes").get(0).toString()) 
+			left = dict.resolve(left);
+			right = dict.resolve(right);
+			if ((dict.getRuleOrGuess(left).get(0).toString().equals(dict.getRule("sawed").get(0).toString())
+					|| (dict.getRuleOrGuess(left).get(0).toString().equals(dict.getRule("writes").get(0).toString()) 
 							&& contains(input, "to")) || left.equals("saw")) && (idx(input, "with") == i + 2 
 							|| idx(input, "with") == i + 3)) {
 				int idx = idx(input, "with");
@@ -261,7 +251,7 @@ public class SegmentWithExceptions {
 			} else if (left.equals("the")) {
 				int fin = 0;
 				for (int idx = i+1; idx < input.length; idx++) {
-					if (dict.getSubscript(input[idx]).contains("n") || dict.getSubscript(input[idx]).contains("n-u")) {
+					if (dict.hasSubscript(input[idx], Subscript.N | Subscript.N_U)) {
 						fin = idx;
 						break;
 					}
@@ -315,21 +305,9 @@ public class SegmentWithExceptions {
 	private static boolean connects(String left, String right) {
 		if (!hyphenated.getRule("each_other").isEmpty()) return true;
 		if (!checkLR(left, right)) return false;
-		ArrayList<Rule> leftList = dict.getRule(left), rightList = dict.getRule(right);
-		if (leftList.size() == 0) {
-			leftList = dict.getRule(left.substring(0,1).toUpperCase() + left.substring(1));
-		}
-		if (rightList.size() == 0) {
-			rightList = dict.getRule(right.substring(0,1).toUpperCase() + right.substring(1));
-		}
-		if (leftList.size() == 0) {
-			System.err.println("Word '" + left + "' not found in dictionary.");
-			System.exit(0);
-		}
-		if (rightList.size() == 0) {
-			System.err.println("Word '" + right + "' not found in dictionary.");
-			System.exit(0);
-		}
+		List<Rule> leftList = dict.getRuleOrGuess(left), rightList = dict.getRuleOrGuess(right);
+		if (leftList.isEmpty() || rightList.isEmpty())
+			return false;
 		for (Rule leftRule : leftList) {
 			for (Rule rightRule : rightList) {
 				String lr = leftRule.toString();
@@ -339,8 +317,7 @@ public class SegmentWithExceptions {
 				lr = replaceNull(lr);
 				rr = replaceNull(rr);
 				
-				ArrayList<String> Lops = new ArrayList<>(), Rops = new ArrayList<>(), Lcosts = new ArrayList<>(),
-						Rcosts = new ArrayList<>();
+				ArrayList<String> Lops = new ArrayList<>(), Rops = new ArrayList<>();
 				while (lr.contains("{")) {
 					int start = lr.indexOf("{");
 					int end = 0;
@@ -549,7 +526,6 @@ public class SegmentWithExceptions {
 									break;
 								}
 							}
-							Lcosts.add(l.substring(start, end == 0 ? l.length() : end));
 							l = l.substring(0, start) + l.substring(end == 0 ? l.length() : end);
 						}
 						l = format(l);
@@ -595,7 +571,6 @@ public class SegmentWithExceptions {
 									break;
 								}
 							}
-							Rcosts.add(r.substring(start, end == 0 ? r.length() : end));
 							r = r.substring(0, start) + r.substring(end == 0 ? r.length() : end);
 						}
 						r = format(r);
@@ -634,29 +609,30 @@ public class SegmentWithExceptions {
 	}
 
 	private static boolean checkLR(String left, String right) {
-		if (left.toLowerCase().trim().equals(right.toLowerCase().trim()))
+		String l = left.toLowerCase().trim(), r = right.toLowerCase().trim();
+		if (l.equals(r))
 			return false;
 		if (left.toLowerCase().equals("a") && right.equals("is"))
 			return false;
 		if (left.toLowerCase().equals("directors") && right.toLowerCase().equals("on"))
 			return false;
-		if (left.toLowerCase().trim().equals("of") && right.toLowerCase().trim().equals("is"))
+		if (l.equals("of") && r.equals("is"))
 			return false;
-		if (left.toLowerCase().trim().equals("is") && right.toLowerCase().trim().equals("of"))
+		if (l.equals("is") && r.equals("of"))
 			return false;
 		if (left.toLowerCase().equals("a") || right.toLowerCase().equals("a"))
 			return true;
-		if (dict.getSubscript(left.toLowerCase().trim()).contains("n-u")
-				&& dict.getSubscript(right.toLowerCase().trim()).contains("m"))
+		if (dict.hasSubscript(l, Subscript.N_U)
+				&& dict.hasSubscript(r, Subscript.M))
 			return false;
-		if (dict.getSubscript(right.toLowerCase().trim()).contains("n-u")
-				&& dict.getSubscript(left.toLowerCase().trim()).contains("m"))
+		if (dict.hasSubscript(r, Subscript.N_U)
+				&& dict.hasSubscript(l, Subscript.M))
 			return false;
-		if (dict.getSubscript(left.toLowerCase().trim()).contains("n-u")
-				&& dict.getSubscript(right.toLowerCase().trim()).contains("f"))
+		if (dict.hasSubscript(l, Subscript.N_U)
+				&& dict.hasSubscript(r, Subscript.F))
 			return false;
-		if (dict.getSubscript(right.toLowerCase().trim()).contains("n-u")
-				&& dict.getSubscript(left.toLowerCase().trim()).contains("f"))
+		if (dict.hasSubscript(r, Subscript.N_U)
+				&& dict.hasSubscript(l, Subscript.F))
 			return false;
 		if (left.toLowerCase().equals("a") && dict.getSubscript(right).size() == 1
 				&& dict.getSubscript(right).get(0).equals("v"))
@@ -667,21 +643,9 @@ public class SegmentWithExceptions {
 	private static Object[] connectsIdx(String left, String right, boolean isLeft) {
 		if (!checkLR(left, right))
 			return new Object[] { false, 0 };
-		ArrayList<Rule> leftList = dict.getRule(left), rightList = dict.getRule(right);
-		if (leftList.size() == 0) {
-			leftList = dict.getRule(left.substring(0,1).toUpperCase() + left.substring(1));
-		}
-		if (rightList.size() == 0) {
-			rightList = dict.getRule(right.substring(0,1).toUpperCase() + right.substring(1));
-		}
-		if (leftList.size() == 0) {
-			System.err.println("Word '" + left + "' not found in dictionary.");
-			System.exit(0);
-		}
-		if (rightList.size() == 0) {
-			System.err.println("Word '" + right + "' not found in dictionary.");
-			System.exit(0);
-		}
+		List<Rule> leftList = dict.getRuleOrGuess(left), rightList = dict.getRuleOrGuess(right);
+		if (leftList.isEmpty() || rightList.isEmpty())
+			return new Object[] { false, 0 };
 		for (Rule leftRule : leftList) {
 			for (Rule rightRule : rightList) {
 				String lr = leftRule.toString();
@@ -691,8 +655,7 @@ public class SegmentWithExceptions {
 				lr = replaceNull(lr);
 				rr = replaceNull(rr);
 
-				ArrayList<String> Lops = new ArrayList<>(), Rops = new ArrayList<>(), Lcosts = new ArrayList<>(),
-						Rcosts = new ArrayList<>();
+				ArrayList<String> Lops = new ArrayList<>(), Rops = new ArrayList<>();
 				while (lr.contains("{")) {
 					int start = lr.indexOf("{");
 					int end = 0;
@@ -818,7 +781,6 @@ public class SegmentWithExceptions {
 									break;
 								}
 							}
-							Lcosts.add(l.substring(start, end == 0 ? l.length() : end));
 							l = l.substring(0, start) + l.substring(end == 0 ? l.length() : end);
 						}
 						l = format(l);
@@ -868,7 +830,6 @@ public class SegmentWithExceptions {
 									break;
 								}
 							}
-							Rcosts.add(r.substring(start, end == 0 ? r.length() : end));
 							r = r.substring(0, start) + r.substring(end == 0 ? r.length() : end);
 						}
 						r = format(r);
@@ -1130,13 +1091,11 @@ public class SegmentWithExceptions {
 						|| str.contains("\"") || str.contains("'"))
 					it.remove();
 			}
+			Tokenizer tokenizer = Tokenizer.getDefault();
 			List<String> words = new ArrayList<>();
 			for (String sentence : sentences) {
-				String[] w = sentence.split(" ");
-				w[w.length - 1] = w[w.length - 1].substring(0, w[w.length - 1].length() - 1);
-				for (String word: w) {
-					words.add(word);
-				}
+				List<String> w = tokenizer.split(sentence, false);
+				words.addAll(w.subList(0, w.size() - 1));
 			}
 			return words;
 		} catch (Exception e) {
@@ -31,19 +31,24 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 
+import main.java.org.aigents.nlp.lg.ConnectorMatcher;
+import main.java.org.aigents.nlp.lg.ConnectorTable;
 import main.java.org.aigents.nlp.lg.Dictionary;
+import main.java.org.aigents.nlp.lg.DictionaryRegistry;
 import main.java.org.aigents.nlp.lg.Disjunct;
-import main.java.org.aigents.nlp.lg.Loader;
 import main.java.org.aigents.nlp.lg.Rule;
-import main.java.org.aigents.nlp.lg.Word;
+import main.java.org.aigents.nlp.lg.Tokenizer;
 
 public class SmallGrammarGen {
 	public static Dictionary dict, hyphenated;
+	private static final HashMap<String, Rule> fragments = new HashMap<>();
+	private static Dictionary fragmentsOf;
 
 	public static void main(String[] args) throws IOException {
 		long startTime = System.currentTimeMillis();
@@ -54,11 +59,11 @@ public class SmallGrammarGen {
 			int no = 0;
 			try {
 				if (args[0].contains("/4.0.dict")) {
-					Dictionary[] dicts = Loader.buildLGDict(args[0]);
+					Dictionary[] dicts = DictionaryRegistry.getShared().get(args[0]);
 					dict = dicts[0];
 					hyphenated = dicts[1];
 				} else {
-					dict = Loader.grammarBuildLinks(args[0], true);
+					dict = DictionaryRegistry.getShared().get(args[0])[0];
 				}
 				List<String> list = getList(args[1]);
 				List<String[]> words = processSentences(args[1]);
@@ -125,11 +130,11 @@ public class SmallGrammarGen {
 		} else if (args.length > 2) {
 			try {
 				if (args[0].contains("/4.0.dict")) {
-					Dictionary[] dicts = Loader.buildLGDict(args[0]);
+					Dictionary[] dicts = DictionaryRegistry.getShared().get(args[0]);
 					dict = dicts[0];
 					hyphenated = dicts[1];
 				} else {
-					dict = Loader.grammarBuildLinks(args[0], true);
+					dict = DictionaryRegistry.getShared().get(args[0])[0];
 				}
 				String[] words = new String[args.length - 1];
 				for (int i = 1; i < args.length; i++) {
@@ -372,7 +377,7 @@ public class SmallGrammarGen {
 	private static boolean connects(String left, String right) {
 		Rule leftRule = new Rule(), rightRule = new Rule();
 		try {
-			leftRule = dict.getRule(left.toLowerCase(), true);
+			leftRule = rule(left);
 			if (leftRule == null)
 				throw new Exception();
 		} catch (Exception e) {
@@ -380,7 +385,7 @@ public class SmallGrammarGen {
 			System.exit(0);
 		}
 		try {
-			rightRule = dict.getRule(right.toLowerCase(), true);
+			rightRule = rule(right);
 			if (rightRule == null)
 				throw new Exception();
 		} catch (Exception e) {
@@ -389,46 +394,7 @@ public class SmallGrammarGen {
 		}
 		for (Disjunct dl : leftRule.getDisjuncts()) {
 			for (Disjunct dr : rightRule.getDisjuncts()) {
-				String wl = "";
-				String wr = "";
-				if (dl.getConnectors().size() > 1) {
-					for (int ci = 0; ci < dl.getConnectors().size() - 1; ci++) {
-						String c = dl.getConnectors().get(ci);
-						if (!c.contains("-")) {
-							wl += c + " & ";
-						}
-					}
-					String c = dl.getConnectors().get(dl.getConnectors().size() - 1);
-					if (!c.contains("-")) {
-						wl += c;
-					} else {
-						if (wl.contains("&"))
-							wl = wl.substring(0, wl.length() - 3);
-					}
-				} else {
-					wl = dl.getConnectors().get(0);
-				}
-				if (dr.getConnectors().size() > 1) {
-					for (int ci = 0; ci < dr.getConnectors().size() - 1; ci++) {
-						String c = dr.getConnectors().get(ci);
-						if (c.contains("-")) {
-							wr += c + " & ";
-						}
-					}
-					String c = dr.getConnectors().get(dr.getConnectors().size() - 1);
-					if (c.contains("-")) {
-						wr += c;
-					} else {
-						if (wr.contains("&"))
-							wr = wr.substring(0, wr.length() - 3);
-					}
-				} else {
-					wr = dr.getConnectors().get(0);
-				}
-				String wlu = wl.replaceAll("\\+", "/").replaceAll("-", "\\+").replaceAll("/", "-");
-				if (equals(wlu, wr)) {
-					return true;
-				}
+				if (links(plus(dl), minus(dr))) return true;
 			}
 		}
 		return false;
@@ -437,7 +403,7 @@ public class SmallGrammarGen {
 	private static boolean connectsMin(String left, String right) {
 		Rule leftRule = new Rule(), rightRule = new Rule();
 		try {
-			leftRule = dict.getRule(left.toLowerCase(), true);
+			leftRule = rule(left);
 			if (leftRule == null)
 				throw new Exception();
 		} catch (Exception e) {
@@ -445,7 +411,7 @@ public class SmallGrammarGen {
 			System.exit(0);
 		}
 		try {
-			rightRule = dict.getRule(right.toLowerCase(), true);
+			rightRule = rule(right);
 			if (rightRule == null)
 				throw new Exception();
 		} catch (Exception e) {
@@ -454,50 +420,7 @@ public class SmallGrammarGen {
 		}
 		for (Disjunct dl : leftRule.getDisjuncts()) {
 			for (Disjunct dr : rightRule.getDisjuncts()) {
-				String wl = "";
-				String wr = "";
-				if (dl.getConnectors().size() > 1) {
-					for (int ci = 0; ci < dl.getConnectors().size() - 1; ci++) {
-						String c = dl.getConnectors().get(ci);
-						if (!c.contains("-")) {
-							wl += c + " & ";
-						}
-					}
-					String c = dl.getConnectors().get(dl.getConnectors().size() - 1);
-					if (!c.contains("-")) {
-						wl += c;
-					} else {
-						if (wl.contains("&"))
-							wl = wl.substring(0, wl.length() - 3);
-					}
-				} else {
-					wl = dl.getConnectors().get(0);
-				}
-				if (dr.getConnectors().size() > 1) {
-					for (int ci = 0; ci < dr.getConnectors().size() - 1; ci++) {
-						String c = dr.getConnectors().get(ci);
-						if (c.contains("-")) {
-							wr += c + " & ";
-						}
-					}
-					String c = dr.getConnectors().get(dr.getConnectors().size() - 1);
-					if (c.contains("-")) {
-						wr += c;
-					} else {
-						if (wr.contains("&"))
-							wr = wr.substring(0, wr.length() - 3);
-					}
-				} else {
-					wr = dr.getConnectors().get(0);
-				}
-				for (String lp : wl.split(" & ")) {
-					for (String rp : wr.split(" & ")) {
-						String wlu = lp.replaceAll("\\+", "/").replaceAll("-", "\\+").replaceAll("/", "-");
-						if (equals(wlu, rp)) {
-							return true;
-						}
-					}
-				}
+				if (linksAny(plus(dl), minus(dr))) return true;
 			}
 		}
 		return false;
@@ -506,7 +429,7 @@ public class SmallGrammarGen {
 	private static boolean connects(String left, String mid, String right) {
 		Rule leftRule = new Rule(), midRule = new Rule(), rightRule = new Rule();
 		try {
-			leftRule = dict.getRule(left.toLowerCase(), true);
+			leftRule = rule(left);
 			if (leftRule == null)
 				throw new Exception();
 		} catch (Exception e) {
@@ -514,7 +437,7 @@ public class SmallGrammarGen {
 			System.exit(0);
 		}
 		try {
-			midRule = dict.getRule(mid.toLowerCase(), true);
+			midRule = rule(mid);
 			if (midRule == null)
 				throw new Exception();
 		} catch (Exception e) {
@@ -522,7 +445,7 @@ public class SmallGrammarGen {
 			System.exit(0);
 		}
 		try {
-			rightRule = dict.getRule(right.toLowerCase(), true);
+			rightRule = rule(right);
 			if (rightRule == null)
 				throw new Exception();
 		} catch (Exception e) {
@@ -535,74 +458,18 @@ public class SmallGrammarGen {
 		int[] midId = new int[rightRule.getDisjuncts().size()];
 		for (int ri = 0; ri < rightRule.getDisjuncts().size(); ri++) {
 			Disjunct dr = rightRule.getDisjuncts().get(ri);
-			String wr = "";
-			if (dr.getConnectors().size() > 1) {
-				for (int ci = 0; ci < dr.getConnectors().size() - 1; ci++) {
-					String c = dr.getConnectors().get(ci);
-					if (c.contains("-")) {
-						wr += c + " & ";
-					}
-				}
-				String c = dr.getConnectors().get(dr.getConnectors().size() - 1);
-				if (c.contains("-")) {
-					wr += c;
-				} else {
-					if (wr.contains("&"))
-						wr = wr.substring(0, wr.length() - 3);
-				}
-			} else {
-				wr = dr.getConnectors().get(0);
-			}
-			if (!wr.contains("&"))
+			int[] parts = minus(dr);
+			if (parts.length < 2)
 				continue;
 			for (Disjunct dl : leftRule.getDisjuncts()) {
 				for (Disjunct dm : midRule.getDisjuncts()) {
-					String[] parts = wr.split(" & ");
 					for (int idp = 0; idp < parts.length; idp++) {
-						String part = parts[idp];
-						String wl = "";
-						if (dl.getConnectors().size() > 1) {
-							for (int ci = 0; ci < dl.getConnectors().size() - 1; ci++) {
-								String c = dl.getConnectors().get(ci);
-								if (!c.contains("-")) {
-									wl += c + " & ";
-								}
-							}
-							String c = dl.getConnectors().get(dl.getConnectors().size() - 1);
-							if (!c.contains("-")) {
-								wl += c;
-							} else {
-								if (wl.contains("&"))
-									wl = wl.substring(0, wl.length() - 3);
-							}
-						} else {
-							wl = dl.getConnectors().get(0);
-						}
-						String wm = "";
-						if (dm.getConnectors().size() > 1) {
-							for (int ci = 0; ci < dm.getConnectors().size() - 1; ci++) {
-								String c = dm.getConnectors().get(ci);
-								if (!c.contains("-")) {
-									wm += c + " & ";
-								}
-							}
-							String c = dm.getConnectors().get(dm.getConnectors().size() - 1);
-							if (!c.contains("-")) {
-								wm += c;
-							} else {
-								if (wm.contains("&"))
-									wm = wm.substring(0, wm.length() - 3);
-							}
-						} else {
-							wm = dm.getConnectors().get(0);
-						}
-						String wlu = wl.replaceAll("\\+", "/").replaceAll("-", "\\+").replaceAll("/", "-");
-						String wmu = wm.replaceAll("\\+", "/").replaceAll("-", "\\+").replaceAll("/", "-");
-						if (equals(wlu, part) && !leftTrue[ri]) {
+						int part = parts[idp];
+						if (links(plus(dl), part) && !leftTrue[ri]) {
 							leftTrue[ri] = true;
 							leftId[ri] = idp;
 						}
-						if (equals(wmu, part) && !midTrue[ri]) {
+						if (links(plus(dm), part) && !midTrue[ri]) {
 							midTrue[ri] = true;
 							midId[ri] = idp;
 						}
@@ -619,7 +486,7 @@ public class SmallGrammarGen {
 	private static boolean connectsLeft(String left, String mid, String right) {
 		Rule leftRule = new Rule(), midRule = new Rule(), rightRule = new Rule();
 		try {
-			leftRule = dict.getRule(left.toLowerCase(), true);
+			leftRule = rule(left);
 			if (leftRule == null)
 				throw new Exception();
 		} catch (Exception e) {
@@ -627,7 +494,7 @@ public class SmallGrammarGen {
 			System.exit(0);
 		}
 		try {
-			midRule = dict.getRule(mid.toLowerCase(), true);
+			midRule = rule(mid);
 			if (midRule == null)
 				throw new Exception();
 		} catch (Exception e) {
@@ -635,7 +502,7 @@ public class SmallGrammarGen {
 			System.exit(0);
 		}
 		try {
-			rightRule = dict.getRule(right.toLowerCase(), true);
+			rightRule = rule(right);
 			if (rightRule == null)
 				throw new Exception();
 		} catch (Exception e) {
@@ -648,74 +515,18 @@ public class SmallGrammarGen {
 		int[] midId = new int[leftRule.getDisjuncts().size()];
 		for (int li = 0; li < leftRule.getDisjuncts().size(); li++) {
 			Disjunct dl = leftRule.getDisjuncts().get(li);
-			String wl = "";
-			if (dl.getConnectors().size() > 1) {
-				for (int ci = 0; ci < dl.getConnectors().size() - 1; ci++) {
-					String c = dl.getConnectors().get(ci);
-					if (!c.contains("-")) {
-						wl += c + " & ";
-					}
-				}
-				String c = dl.getConnectors().get(dl.getConnectors().size() - 1);
-				if (!c.contains("-")) {
-					wl += c;
-				} else {
-					if (wl.contains("&"))
-						wl = wl.substring(0, wl.length() - 3);
-				}
-			} else {
-				wl = dl.getConnectors().get(0);
-			}
-			if (!wl.contains("&"))
+			int[] parts = plus(dl);
+			if (parts.length < 2)
 				continue;
 			for (Disjunct dr : rightRule.getDisjuncts()) {
 				for (Disjunct dm : midRule.getDisjuncts()) {
-					String[] parts = wl.split(" & ");
 					for (int idp = 0; idp < parts.length; idp++) {
-						String part = parts[idp];
-						String wr = "";
-						if (dr.getConnectors().size() > 1) {
-							for (int ci = 0; ci < dr.getConnectors().size() - 1; ci++) {
-								String c = dr.getConnectors().get(ci);
-								if (c.contains("-")) {
-									wr += c + " & ";
-								}
-							}
-							String c = dr.getConnectors().get(dr.getConnectors().size() - 1);
-							if (c.contains("-")) {
-								wr += c;
-							} else {
-								if (wr.contains("&"))
-									wr = wr.substring(0, wr.length() - 3);
-							}
-						} else {
-							wr = dr.getConnectors().get(0);
-						}
-						String wm = "";
-						if (dm.getConnectors().size() > 1) {
-							for (int ci = 0; ci < dm.getConnectors().size() - 1; ci++) {
-								String c = dm.getConnectors().get(ci);
-								if (c.contains("-")) {
-									wm += c + " & ";
-								}
-							}
-							String c = dm.getConnectors().get(dm.getConnectors().size() - 1);
-							if (c.contains("-")) {
-								wm += c;
-							} else {
-								if (wm.contains("&"))
-									wm = wm.substring(0, wm.length() - 3);
-							}
-						} else {
-							wm = dm.getConnectors().get(0);
-						}
-						String wru = wr.replaceAll("\\+", "/").replaceAll("-", "\\+").replaceAll("/", "-");
-						String wmu = wm.replaceAll("\\+", "/").replaceAll("-", "\\+").replaceAll("/", "-");
-						if (equals(wru, part) && !rightTrue[li]) {
+						int part = parts[idp];
+						if (links(minus(dr), part) && !rightTrue[li]) {
 							rightTrue[li] = true;
 							rightId[li] = idp;
 						}
-						if (equals(wmu, part) && !midTrue[li]) {
+						if (links(minus(dm), part) && !midTrue[li]) {
 							midTrue[li] = true;
 							midId[li] = idp;
 						}
@@ -732,7 +543,7 @@ public class SmallGrammarGen {
 	private static boolean connectsFour(String left, String mid, String right, String next) {
 		Rule leftRule = new Rule(), midRule = new Rule(), rightRule = new Rule(), nextRule = new Rule();
 		try {
-			leftRule = dict.getRule(left.toLowerCase(), true);
+			leftRule = rule(left);
 			if (leftRule == null)
 				throw new Exception();
 		} catch (Exception e) {
@@ -740,7 +551,7 @@ public class SmallGrammarGen {
 			System.exit(0);
 		}
 		try {
-			midRule = dict.getRule(mid.toLowerCase(), true);
+			midRule = rule(mid);
 			if (midRule == null)
 				throw new Exception();
 		} catch (Exception e) {
@@ -748,7 +559,7 @@ public class SmallGrammarGen {
 			System.exit(0);
 		}
 		try {
-			rightRule = dict.getRule(right.toLowerCase(), true);
+			rightRule = rule(right);
 			if (rightRule == null)
 				throw new Exception();
 		} catch (Exception e) {
@@ -756,7 +567,7 @@ public class SmallGrammarGen {
 			System.exit(0);
 		}
 		try {
-			nextRule = dict.getRule(next.toLowerCase(), true);
+			nextRule = rule(next);
 			if (nextRule == null)
 				throw new Exception();
 		} catch (Exception e) {
@@ -770,111 +581,28 @@ public class SmallGrammarGen {
 		int midId = 0;
 		int nextId = 0;
 		for (Disjunct dl : leftRule.getDisjuncts()) {
-			String wl = "";
-			if (dl.getConnectors().size() > 1) {
-				for (int ci = 0; ci < dl.getConnectors().size() - 1; ci++) {
-					String c = dl.getConnectors().get(ci);
-					if (!c.contains("-")) {
-						wl += c + " & ";
-					}
-				}
-				String c = dl.getConnectors().get(dl.getConnectors().size() - 1);
-				if (!c.contains("-")) {
-					wl += c;
-				} else {
-					if (wl.contains("&"))
-						wl = wl.substring(0, wl.length() - 3);
-				}
-			} else {
-				wl = dl.getConnectors().get(0);
-			}
-			if (!wl.contains("&"))
+			int[] parts = plus(dl);
+			if (parts.length < 2)
 				continue;
 			for (Disjunct dr : rightRule.getDisjuncts()) {
 				for (Disjunct dm : midRule.getDisjuncts()) {
 					for (Disjunct dn : nextRule.getDisjuncts()) {
-						String[] parts = wl.split(" & ");
 						for (int idp = 0; idp < parts.length; idp++) {
-							String part = parts[idp];
-							String wr = "";
-							if (dr.getConnectors().size() > 1) {
-								for (int ci = 0; ci < dr.getConnectors().size() - 1; ci++) {
-									String c = dr.getConnectors().get(ci);
-									if (c.contains("-")) {
-										wr += c + " & ";
-									}
-								}
-								String c = dr.getConnectors().get(dr.getConnectors().size() - 1);
-								if (c.contains("-")) {
-									wr += c;
-								} else {
-									if (wr.contains("&"))
-										wr = wr.substring(0, wr.length() - 3);
-								}
-							} else {
-								wr = dr.getConnectors().get(0);
-							}
-							String wm = "";
-							if (dm.getConnectors().size() > 1) {
-								for (int ci = 0; ci < dm.getConnectors().size() - 1; ci++) {
-									String c = dm.getConnectors().get(ci);
-									if (c.contains("-")) {
-										wm += c + " & ";
-									}
-								}
-								String c = dm.getConnectors().get(dm.getConnectors().size() - 1);
-								if (c.contains("-")) {
-									wm += c;
-								} else {
-									if (wm.contains("&"))
-										wm = wm.substring(0, wm.length() - 3);
-								}
-							} else {
-								wm = dm.getConnectors().get(0);
-							}
-							String wn = "";
-							if (dn.getConnectors().size() > 1) {
-								for (int ci = 0; ci < dn.getConnectors().size() - 1; ci++) {
-									String c = dn.getConnectors().get(ci);
-									if (c.contains("-")) {
-										wn += c + " & ";
-									}
-								}
-								String c = dn.getConnectors().get(dn.getConnectors().size() - 1);
-								if (c.contains("-")) {
-									wn += c;
-								} else {
-									if (wn.contains("&"))
-										wn = wn.substring(0, wn.length() - 3);
-								}
-							} else {
-								wn = dn.getConnectors().get(0);
-							}
-							String wru = wr.replaceAll("\\+", "/").replaceAll("-", "\\+").replaceAll("/", "-");
-							String wmu = wm.replaceAll("\\+", "/").replaceAll("-", "\\+").replaceAll("/", "-");
-							String wnu = wn.replaceAll("\\+", "/").replaceAll("-", "\\+").replaceAll("/", "-");
-							if (equals(wru, part) && !rightTrue) {
+							int part = parts[idp];
+							if (links(minus(dr), part) && !rightTrue) {
 								rightTrue = true;
 								rightId = idp;
 							}
-							if (equals(wmu, part) && !midTrue) {
+							if (links(minus(dm), part) && !midTrue) {
 								midTrue = true;
 								midId = idp;
 							}
-							if (equals(wnu, part) && !nextTrue) {
+							if (links(minus(dn), part) && !nextTrue) {
+								nextTrue = true;
+								nextId = idp;
+							} else if (!nextTrue && minus(dn).length > 1 && linksAny(minus(dn), part)) {
 								nextTrue = true;
 								nextId = idp;
-							} else if (!nextTrue) {
-								ifc: if (wnu.contains("&")) {
-									String[] p = wnu.split(" & ");
-									for (String s : p) {
-										if (equals(s, part)) {
-											nextTrue = true;
-											nextId = idp;
-											break ifc;
-										}
-									}
-								}
 							}
 						}
 					}
@@ -887,7 +615,7 @@ public class SmallGrammarGen {
 	private static boolean connectsAll(String left, String mid, String right, String next) {
 		Rule leftRule = new Rule(), midRule = new Rule(), rightRule = new Rule(), nextRule = new Rule();
 		try {
-			leftRule = dict.getRule(left.toLowerCase(), true);
+			leftRule = rule(left);
 			if (leftRule == null)
 				throw new Exception();
 		} catch (Exception e) {
@@ -895,7 +623,7 @@ public class SmallGrammarGen {
 			System.exit(0);
 		}
 		try {
-			midRule = dict.getRule(mid.toLowerCase(), true);
+			midRule = rule(mid);
 			if (midRule == null)
 				throw new Exception();
 		} catch (Exception e) {
@@ -903,7 +631,7 @@ public class SmallGrammarGen {
 			System.exit(0);
 		}
 		try {
-			rightRule = dict.getRule(right.toLowerCase(), true);
+			rightRule = rule(right);
 			if (rightRule == null)
 				throw new Exception();
 		} catch (Exception e) {
@@ -911,7 +639,7 @@ public class SmallGrammarGen {
 			System.exit(0);
 		}
 		try {
-			nextRule = dict.getRule(next.toLowerCase(), true);
+			nextRule = rule(next);
 			if (nextRule == null)
 				throw new Exception();
 		} catch (Exception e) {
@@ -943,9 +671,7 @@ public class SmallGrammarGen {
 			String[] parts = wl.split(" & ");
 			for (int idp = 0; idp < parts.length; idp++) {
 				String part = parts[idp];
-				Rule r = new Rule();
-				r.addWord(part);
-				dict.addWord(new Word(part.toLowerCase(), r));
+				fragment(part);
 				if (connects(part, mid, right)) one = true;
 				if (connects(part, next)) two = true;
 			}
@@ -953,33 +679,67 @@ public class SmallGrammarGen {
 		return one && two;
 	}
 	
-	private static boolean equals(String wlu, String wr) {
-		if (wlu.equals(wr)) {
-			return true;
+	// rule of word in the dictionary or, failing that, of the connector fragment it names
+	private static Rule rule(String word) {
+		String key = word.toLowerCase();
+		Rule r = dict.getRule(key, true);
+		if (r == null && fragmentsOf == dict) r = fragments.get(key);
+		return r;
+	}
+	
+	/*
+	 * connectsAll tries the parts of a disjunct as words of their own. Their rules are kept
+	 * here, apart from the dictionary, which may be shared with other threads and must not
+	 * be modified.
+	 */
+	private static void fragment(String part) {
+		if (fragmentsOf != dict) {
+			fragments.clear();
+			fragmentsOf = dict;
+		}
+		fragments.computeIfAbsent(part.toLowerCase(), key -> dict.compile(part));
+	}
+	
+	private static final int[] UNPACKED = {ConnectorTable.NONE};
+	
+	// + connectors of a disjunct, or its only connector, as the left side of a link
+	private static int[] plus(Disjunct d) {
+		if (!d.isPacked()) return UNPACKED;
+		return d.getCodes().length > 1? d.getRight() : d.getCodes();
+	}
+	
+	// - connectors of a disjunct, or its only connector, as the right side of a link
+	private static int[] minus(Disjunct d) {
+		if (!d.isPacked()) return UNPACKED;
+		return d.getCodes().length > 1? d.getLeft() : d.getCodes();
+	}
+	
+	// whether l and r link connector by connector, in order
+	private static boolean links(int[] l, int[] r) {
+		if (l.length != r.length) return false;
+		ConnectorMatcher matcher = dict.getConnectorTable().getMatcher();
+		for (int i = 0; i < l.length; i++) {
+			if (!matcher.matches(l[i], r[i])) return false;
 		}
-		if (wlu.contains("*")) {
-			int idx = wlu.indexOf("*");
-			int lid = wlu.lastIndexOf("*");
-			if (wr.length() == wlu.length()) {
-				if (wlu.substring(0, idx).equals(wr.substring(0, idx)) 
-						&& wlu.substring(lid+1).equals(wr.substring(lid+1))) {
-					return true;
-				}
-			} else {
-				if (wlu.substring(0, idx).equals(wr.substring(0, idx))) return true;
-			}
-		} 
-		if (wr.contains("*")) {
-			int idx = wr.indexOf("*");
-			int lid = wr.lastIndexOf("*");
-			if (wr.length() == wlu.length()) {
-				if (wlu.substring(0, idx).equals(wr.substring(0, idx)) 
-						&& wlu.substring(lid+1).equals(wr.substring(lid+1))) {
-					return true;
-				}
-			} else {
-				if (wlu.substring(0, idx).equals(wr.substring(0, idx))) return true;
-			}
+		return true;
+	}
+	
+	private static boolean links(int[] l, int r) {
+		return l.length == 1 && dict.getConnectorTable().getMatcher().matches(l[0], r);
+	}
+	
+	private static boolean linksAny(int[] l, int[] r) {
+		if (l.length == 0 && r.length == 0) return true;
+		for (int cr : r) {
+			if (linksAny(l, cr)) return true;
+		}
+		return false;
+	}
+	
+	private static boolean linksAny(int[] l, int r) {
+		ConnectorMatcher matcher = dict.getConnectorTable().getMatcher();
+		for (int cl : l) {
+			if (matcher.matches(cl, r)) return true;
 		}
 		return false;
 	}
@@ -1008,10 +768,11 @@ public class SmallGrammarGen {
 					it.remove();
 			}
 			List<String[]> words = new ArrayList<>();
+			Tokenizer tokenizer = Tokenizer.getDefault();
 			for (String sentence : sentences) {
-				String[] w = sentence.split(" ");
-				w[w.length - 1] = w[w.length - 1].substring(0, w[w.length - 1].length() - 1);
-				words.add(w);
+				List<String> w = tokenizer.split(sentence, false);
+				w.remove(w.size() - 1);
+				words.add(w.toArray(new String[w.size()]));
 			}
 			return words;
 		} catch (Exception e) {
@@ -0,0 +1,71 @@
+/*
+ * MIT License
+ * 
+ * Copyright (c) 2020-Present by Vignav Ramesh and Anton Kolonin, Aigents®
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package main.java.org.aigents.nlp.lg;
+
+/*
+ * Bloom filter over strings, used to reject words that are not in a dictionary before
+ * any map lookup. The k bit positions are derived from two independent hashes by
+ * double hashing. False positives occur at about 1% for the expected number of keys,
+ * false negatives never.
+ */
+public class BloomFilter {
+	private static final int BITS_PER_KEY = 10;
+	private static final int HASHES = 7;
+	private final long[] bits;
+	private final long size;
+	
+	public BloomFilter(int expected) {
+		long m = Math.max(64, (long) expected * BITS_PER_KEY);
+		bits = new long[(int) ((m + 63) >>> 6)];
+		size = (long) bits.length << 6;
+	}
+	
+	public void add(String key) {
+		int h1 = key.hashCode(), h2 = hash(key);
+		for (int i = 0; i < HASHES; i++) {
+			long bit = Integer.toUnsignedLong(h1 + i * h2) % size;
+			bits[(int) (bit >>> 6)] |= 1L << bit;
+		}
+	}
+	
+	public boolean mightContain(String key) {
+		int h1 = key.hashCode(), h2 = hash(key);
+		for (int i = 0; i < HASHES; i++) {
+			long bit = Integer.toUnsignedLong(h1 + i * h2) % size;
+			if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) return false;
+		}
+		return true;
+	}
+	
+	/* FNV-1a, forced odd so the probe sequence never collapses onto one bit */
+	private static int hash(String key) {
+		int h = 0x811c9dc5;
+		for (int i = 0; i < key.length(); i++) {
+			h ^= key.charAt(i);
+			h *= 0x01000193;
+		}
+		return h | 1;
+	}
+}
@@ -0,0 +1,120 @@
+/*
+ * MIT License
+ * 
+ * Copyright (c) 2020-Present by Vignav Ramesh and Anton Kolonin, Aigents®
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package main.java.org.aigents.nlp.lg;
+
+import java.util.Arrays;
+
+/*
+ * Character trie with a list of int values per key: children of a node are chained
+ * through sibling links, values through next links.
+ */
+class CharTrie {
+	private char[] labels = new char[1024];
+	private int[] children = new int[1024], siblings = new int[1024], firsts = new int[1024];
+	private int[] values = new int[1024], nexts = new int[1024];
+	private int nodes = 1, entries = 0, count = 0;
+	
+	CharTrie() {
+		children[0] = -1;
+		siblings[0] = -1;
+		firsts[0] = -1;
+	}
+	
+	void add(String key, boolean reversed, int value) {
+		int node = 0, length = key.length();
+		for (int i = 0; i < length; i++) {
+			char c = key.charAt(reversed? length - 1 - i : i);
+			int child = child(node, c);
+			if (child < 0) {
+				if (nodes == labels.length) grow();
+				child = nodes++;
+				labels[child] = c;
+				children[child] = -1;
+				firsts[child] = -1;
+				siblings[child] = children[node];
+				children[node] = child;
+			}
+			node = child;
+		}
+		if (firsts[node] < 0) count++;
+		for (int e = firsts[node]; e >= 0; e = nexts[e]) {
+			if (values[e] == value) return;
+		}
+		if (entries == values.length) {
+			values = Arrays.copyOf(values, entries * 2);
+			nexts = Arrays.copyOf(nexts, entries * 2);
+		}
+		values[entries] = value;
+		nexts[entries] = firsts[node];
+		firsts[node] = entries++;
+	}
+	
+	int child(int node, char c) {
+		for (int child = children[node]; child >= 0; child = siblings[child]) {
+			if (labels[child] == c) return child;
+		}
+		return -1;
+	}
+	
+	/*
+	 * Length of the longest key that text starts with at from, or ends with at to if
+	 * reversed, within from and to; 0 if there is none.
+	 */
+	int longest(CharSequence text, int from, int to, boolean reversed) {
+		int node = 0, longest = 0;
+		for (int i = 0; i < to - from; i++) {
+			node = child(node, text.charAt(reversed? to - 1 - i : from + i));
+			if (node < 0) break;
+			if (firsts[node] >= 0) longest = i + 1;
+		}
+		return longest;
+	}
+	
+	// number of keys
+	int size() {	return count;	}
+	
+	int nodes() {	return nodes;	}
+	
+	int firstChild(int node) {	return children[node];	}
+	
+	int sibling(int node) {	return siblings[node];	}
+	
+	char label(int node) {	return labels[node];	}
+	
+	int first(int node) {	return firsts[node];	}
+	
+	int next(int entry) {	return nexts[entry];	}
+	
+	int value(int entry) {	return values[entry];	}
+	
+	private void grow() {
+		int size = nodes * 2;
+		labels = Arrays.copyOf(labels, size);
+		children = Arrays.copyOf(children, size);
+		siblings = Arrays.copyOf(siblings, size);
+		firsts = Arrays.copyOf(firsts, size);
+	}
+}
+
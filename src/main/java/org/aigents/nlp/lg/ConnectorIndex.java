@@ -0,0 +1,251 @@
+/*
+ * MIT License
+ * 
+ * Copyright (c) 2020-Present by Vignav Ramesh and Anton Kolonin, Aigents®
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package main.java.org.aigents.nlp.lg;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/*
+ * Reverse connector index of a dictionary: for every connector head and direction it
+ * lists the rule classes mentioning such a connector, so the rules and words that can
+ * accept a given connector are found without compiling any disjuncts. Connectors are
+ * read off the rule expressions, which makes the answers a superset of what the
+ * disjuncts allow (a connector may only occur together with ones that cannot link).
+ */
+public class ConnectorIndex {
+	private static final Pattern CONNECTOR = Pattern.compile("@?(?:[hd](?=[A-Z]))?[A-Z]+[a-z*]*[+-]");
+	private final ConnectorTable table;
+	private final HashMap<List<String>, Integer> ids = new HashMap<>();
+	private final int[][] connectors;
+	private final ArrayList<ArrayList<String>> words;
+	private final HashMap<Integer, Postings> postings = new HashMap<>();
+	private final ConcurrentHashMap<Integer, BitSet> accepting = new ConcurrentHashMap<>();
+	
+	/*
+	 * Rules are numbered by the index itself, by their expressions, so neither the rule
+	 * table of the dictionary nor the rules of its word store are touched: the rules of a
+	 * lazily loaded dictionary are read by number and never interned.
+	 */
+	ConnectorIndex(Dictionary dict, WordStore wordIndex) {
+		table = dict.getConnectorTable();
+		ArrayList<List<String>> expressions = new ArrayList<>();
+		HashMap<Integer, ArrayList<String>> byRule = new HashMap<>();
+		for (Word w : dict.getWords()) {
+			if (w.getRule() != null) add(byRule, number(w.getRule().getWords(), expressions), w.getWord());
+		}
+		if (wordIndex != null) {
+			int[] stored = new int[wordIndex.ruleCount()];
+			for (int r = 0; r < stored.length; r++) stored[r] = number(wordIndex.expressions(r), expressions);
+			for (String word : wordIndex.words()) {
+				for (int r : wordIndex.ruleNumbers(word)) add(byRule, stored[r], word);
+			}
+		}
+		int size = expressions.size();
+		connectors = new int[size][];
+		words = new ArrayList<>(size);
+		for (int id = 0; id < size; id++) {
+			ArrayList<String> list = byRule.get(id);
+			words.add(list == null? new ArrayList<>(0) : list);
+			connectors[id] = scan(expressions.get(id));
+			for (int c : connectors[id]) {
+				Postings p = postings.get(key(c));
+				if (p == null) {
+					p = new Postings();
+					postings.put(key(c), p);
+				}
+				p.add(c, id);
+			}
+		}
+	}
+	
+	/* numbers, in this index, of the rule classes holding a connector that can link to connector */
+	public BitSet getRules(int connector) {
+		return (BitSet) accepting(connector).clone();
+	}
+	
+	public BitSet getRules(String connector) {
+		int c = table.pack(connector);
+		return c == ConnectorTable.NONE? new BitSet() : getRules(c);
+	}
+	
+	public List<String> getWords(String connector) {
+		int c = table.pack(connector);
+		if (c == ConnectorTable.NONE) return Collections.emptyList();
+		return words(accepting(c));
+	}
+	
+	/* distinct connectors mentioned by the rule, left and right pointing alike */
+	public int[] getConnectors(Rule rule) {
+		int id = id(rule);
+		return id >= 0? connectors[id].clone() : scan(rule.getWords());
+	}
+	
+	/*
+	 * Whether a right-pointing connector of left can meet a left-pointing one of right.
+	 * Rules the index does not hold, such as those Morphology builds for inflected words
+	 * or those guessed for unknown ones, are checked connector by connector on their
+	 * disjuncts.
+	 */
+	public boolean links(Rule left, Rule right) {
+		int l = id(left), r = id(right);
+		if (l >= 0 && r >= 0) {
+			for (int c : connectors[l]) {
+				if (ConnectorTable.isRight(c) && accepting(c).get(r)) return true;
+			}
+			return false;
+		}
+		int[] a = l >= 0? connectors[l] : disjunctConnectors(left);
+		int[] b = r >= 0? connectors[r] : disjunctConnectors(right);
+		ConnectorMatcher matcher = table.getMatcher();
+		for (int x : a) {
+			if (!ConnectorTable.isRight(x)) continue;
+			for (int y : b) {
+				if (!ConnectorTable.isRight(y) && matcher.matches(x, y)) return true;
+			}
+		}
+		return false;
+	}
+	
+	/* words that can be linked on the right (or on the left) of a word with these rules */
+	public List<String> getNeighbours(List<Rule> rules, boolean right) {
+		BitSet ids = new BitSet();
+		for (Rule rule : rules) {
+			int id = id(rule);
+			if (id < 0) continue;
+			for (int c : connectors[id]) {
+				if (ConnectorTable.isRight(c) == right) ids.or(accepting(c));
+			}
+		}
+		return words(ids);
+	}
+	
+	public int size() {	return connectors.length;	}
+	
+	private BitSet accepting(int connector) {
+		BitSet ids = accepting.get(connector);
+		if (ids == null) {
+			ids = new BitSet(connectors.length);
+			Postings p = postings.get(key(ConnectorTable.flip(connector)));
+			if (p != null) {
+				ConnectorMatcher matcher = table.getMatcher();
+				for (int i = 0; i < p.size; i++) {
+					if (matcher.matches(connector, p.codes[i])) ids.set(p.rules[i]);
+				}
+			}
+			accepting.put(connector, ids);
+		}
+		return ids;
+	}
+	
+	private List<String> words(BitSet ids) {
+		LinkedHashSet<String> result = new LinkedHashSet<>();
+		for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) result.addAll(words.get(id));
+		return new ArrayList<>(result);
+	}
+	
+	// number of the rule in the index, or -1
+	private int id(Rule rule) {
+		Integer id = ids.get(rule.getWords());
+		return id == null? -1 : id;
+	}
+	
+	private int number(List<String> expressions, ArrayList<List<String>> numbered) {
+		Integer id = ids.get(expressions);
+		if (id == null) {
+			id = numbered.size();
+			ids.put(expressions, id);
+			numbered.add(expressions);
+		}
+		return id;
+	}
+	
+	// distinct connectors on the compiled disjuncts of a rule
+	private int[] disjunctConnectors(Rule rule) {
+		LinkedHashSet<Integer> codes = new LinkedHashSet<>();
+		for (Disjunct d : rule.getDisjuncts()) {
+			// packed codes may come from another table, the strings are packed against this one
+			for (String s : d.getConnectors()) {
+				int c = table.pack(s);
+				if (c != ConnectorTable.NONE) codes.add(c);
+			}
+		}
+		int[] result = new int[codes.size()];
+		int i = 0;
+		for (int c : codes) result[i++] = c;
+		return result;
+	}
+	
+	private int[] scan(List<String> expressions) {
+		LinkedHashSet<Integer> codes = new LinkedHashSet<>();
+		for (String expression : expressions) {
+			Matcher m = CONNECTOR.matcher(expression);
+			while (m.find()) {
+				int c = table.pack(m.group());
+				if (c != ConnectorTable.NONE) codes.add(c);
+			}
+		}
+		int[] result = new int[codes.size()];
+		int i = 0;
+		for (int c : codes) result[i++] = c;
+		return result;
+	}
+	
+	private static void add(HashMap<Integer, ArrayList<String>> byRule, int id, String word) {
+		ArrayList<String> list = byRule.get(id);
+		if (list == null) {
+			list = new ArrayList<>(1);
+			byRule.put(id, list);
+		}
+		if (list.isEmpty() || !list.get(list.size() - 1).equals(word)) list.add(word);
+	}
+	
+	/* head and direction, the part of a connector that has to match exactly */
+	private static int key(int connector) {
+		return ConnectorTable.head(connector) << 1 | (ConnectorTable.isRight(connector)? 1 : 0);
+	}
+	
+	private static class Postings {
+		private int[] codes = new int[4];
+		private int[] rules = new int[4];
+		private int size;
+		
+		private void add(int code, int rule) {
+			if (size == codes.length) {
+				codes = Arrays.copyOf(codes, size * 2);
+				rules = Arrays.copyOf(rules, size * 2);
+			}
+			codes[size] = code;
+			rules[size++] = rule;
+		}
+	}
+}
@@ -0,0 +1,165 @@
+/*
+ * MIT License
+ * 
+ * Copyright (c) 2020-Present by Vignav Ramesh and Anton Kolonin, Aigents®
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package main.java.org.aigents.nlp.lg;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/*
+ * Link test over the packed connectors of a ConnectorTable. Connectors are numbered, the
+ * left-pointing and the right-pointing ones apart, and every right-pointing one gets a row
+ * of bits over the numbers of the left-pointing connectors it matches by
+ * ConnectorTable.matches(), with or without '*' as a wildcard, so a link test is two
+ * probes of an int hash and a bit test. The numbers and rows are built under a lock for
+ * all the connectors the table holds, whenever a test meets one not numbered yet, and
+ * published as a new read-only Rows; tests read whichever Rows is current without locking.
+ */
+public class ConnectorMatcher {
+	private final ConnectorTable table;
+	private final boolean wildcards;
+	private volatile Rows rows = new Rows();
+	
+	ConnectorMatcher(ConnectorTable table, boolean wildcards) {
+		this.table = table;
+		this.wildcards = wildcards;
+	}
+	
+	// whether two packed connectors, in either order, can form a link
+	public boolean matches(int a, int b) {
+		if (a == ConnectorTable.NONE || b == ConnectorTable.NONE || ConnectorTable.isRight(a) == ConnectorTable.isRight(b)) return false;
+		int right = ConnectorTable.isRight(a)? a : b, left = right == a? b : a;
+		Rows r = rows;
+		int i = r.id(right), j = r.id(left);
+		if (i < 0 || j < 0) {
+			r = add(right, left);
+			i = r.id(right);
+			j = r.id(left);
+		}
+		return (r.bits[i][j >>> 6] & (1L << j)) != 0;
+	}
+	
+	// numbers of the left-pointing connectors the right-pointing one matches
+	public BitSet matching(int right) {
+		if (right == ConnectorTable.NONE || !ConnectorTable.isRight(right)) return new BitSet();
+		Rows r = rows;
+		int i = r.id(right);
+		if (i < 0) {
+			r = add(right, right);
+			i = r.id(right);
+		}
+		return BitSet.valueOf(r.bits[i]);
+	}
+	
+	/*
+	 * Numbers every connector of the table not numbered yet, along with the given ones,
+	 * which a table shared by several dictionaries may have packed after the copy was
+	 * taken, and fills the new columns of the old rows and all of the new rows.
+	 */
+	private synchronized Rows add(int a, int b) {
+		Rows old = rows;
+		if (old.id(a) >= 0 && old.id(b) >= 0) return old;
+		int[] codes = table.codes();
+		int[] lefts = new int[old.lefts.length + codes.length + 2], rights = new int[old.rights.length + codes.length + 2];
+		System.arraycopy(old.lefts, 0, lefts, 0, old.lefts.length);
+		System.arraycopy(old.rights, 0, rights, 0, old.rights.length);
+		int nl = old.lefts.length, nr = old.rights.length;
+		Rows next = new Rows(old, codes.length + 2);
+		for (int i = -2; i < codes.length; i++) {
+			int code = (i == -2? a : i == -1? b : codes[i]) & ~ConnectorTable.MULTI;
+			if (code == ConnectorTable.NONE || next.id(code) >= 0) continue;
+			if (ConnectorTable.isRight(code)) {
+				next.put(code, nr);
+				rights[nr++] = code;
+			} else {
+				next.put(code, nl);
+				lefts[nl++] = code;
+			}
+		}
+		next.lefts = Arrays.copyOf(lefts, nl);
+		next.rights = Arrays.copyOf(rights, nr);
+		next.bits = new long[nr][];
+		int words = (nl + 63) >>> 6;
+		for (int i = 0; i < nr; i++) {
+			long[] row = new long[Math.max(words, 1)];
+			int from = 0;
+			if (i < old.rights.length) {
+				System.arraycopy(old.bits[i], 0, row, 0, old.bits[i].length);
+				from = old.lefts.length;
+			}
+			for (int j = from; j < nl; j++) {
+				if (table.matches(next.rights[i], next.lefts[j], wildcards)) row[j >>> 6] |= 1L << j;
+			}
+			next.bits[i] = row;
+		}
+		rows = next;
+		return next;
+	}
+	
+	/*
+	 * Numbers and rows as of one call to add(), never changed once published. Numbers are
+	 * kept in an open addressing table keyed by the code without its multi-connector bit,
+	 * which is never NONE, so NONE marks an empty slot.
+	 */
+	private static class Rows {
+		private int[] keys, ids;
+		private int[] lefts = new int[0], rights = new int[0];
+		private long[][] bits = new long[0][];
+		
+		private Rows() {
+			keys = new int[1];
+			ids = new int[1];
+		}
+		
+		// a copy of old, with room for extra more numbers
+		private Rows(Rows old, int extra) {
+			int capacity = Integer.highestOneBit((old.lefts.length + old.rights.length + extra) * 2 + 1) << 1;
+			keys = new int[capacity];
+			ids = new int[capacity];
+			for (int i = 0; i < old.keys.length; i++) {
+				if (old.keys[i] != ConnectorTable.NONE) put(old.keys[i], old.ids[i]);
+			}
+		}
+		
+		private int id(int code) {
+			int key = code & ~ConnectorTable.MULTI, mask = keys.length - 1;
+			for (int h = hash(key) & mask; ; h = (h + 1) & mask) {
+				if (keys[h] == key) return ids[h];
+				if (keys[h] == ConnectorTable.NONE) return -1;
+			}
+		}
+		
+		private void put(int key, int id) {
+			int mask = keys.length - 1, h = hash(key) & mask;
+			while (keys[h] != ConnectorTable.NONE) h = (h + 1) & mask;
+			keys[h] = key;
+			ids[h] = id;
+		}
+		
+		private static int hash(int key) {
+			int h = key * 0x9E3779B9;
+			return h ^ (h >>> 16);
+		}
+	}
+}
@@ -0,0 +1,188 @@
+/*
+ * MIT License
+ * 
+ * Copyright (c) 2020-Present by Vignav Ramesh and Anton Kolonin, Aigents®
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package main.java.org.aigents.nlp.lg;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/*
+ * Per-dictionary connector symbol table. Each connector string is interned once and
+ * packed into an int: bit 31 = @ multi-connector, bit 30 = direction (+), bits 28-29 =
+ * h/d mark, bits 12-27 = head id, bits 0-11 = subscript id. Head ids start at 1, so
+ * NONE (0) never collides with a real connector.
+ */
+public class ConnectorTable {
+	public static final int NONE = 0;
+	public static final int MULTI = 1 << 31;
+	public static final int RIGHT = 1 << 30;
+	public static final int HEAD = 1, DEPENDENT = 2;
+	private static final int MARK_SHIFT = 28;
+	private static final int HEAD_SHIFT = 12;
+	private static final int HEAD_MASK = 0xFFFF;
+	private static final int SUB_MASK = 0xFFF;
+	
+	private final HashMap<String, Integer> codes = new HashMap<>();
+	private final HashMap<String, String> names = new HashMap<>();
+	private final HashMap<String, Integer> headIds = new HashMap<>();
+	private final HashMap<String, Integer> subIds = new HashMap<>();
+	private final ArrayList<String> heads = new ArrayList<>();
+	private final ArrayList<String> subs = new ArrayList<>();
+	private ConnectorMatcher matcher, literalMatcher;
+	
+	public ConnectorTable() {
+		heads.add("");
+		subs.add("");
+		subIds.put("", 0);
+	}
+	
+	// returns NONE if the string is not a single connector such as "Ss*s+" or "@MV-"
+	public synchronized int pack(String connector) {
+		Integer code = codes.get(connector);
+		if (code != null) return code;
+		int c = parse(connector);
+		if (c != NONE) {
+			codes.put(connector, c);
+			names.put(connector, connector);
+		}
+		return c;
+	}
+	
+	public synchronized String intern(String connector) {
+		String name = names.get(connector);
+		return name == null? connector : name;
+	}
+	
+	public synchronized String toString(int code) {
+		if (code == NONE) return "";
+		StringBuilder s = new StringBuilder();
+		if ((code & MULTI) != 0) s.append('@');
+		if (mark(code) == HEAD) s.append('h');
+		else if (mark(code) == DEPENDENT) s.append('d');
+		s.append(heads.get(head(code))).append(subs.get(subscript(code)));
+		s.append(isRight(code)? '+' : '-');
+		return s.toString();
+	}
+	
+	public synchronized String getHead(int code) {	return heads.get(head(code));	}
+	
+	public synchronized String getSubscript(int code) {	return subs.get(subscript(code));	}
+	
+	public synchronized int size() {	return codes.size();	}
+	
+	// every code packed so far
+	synchronized int[] codes() {
+		int[] result = new int[codes.size()];
+		int i = 0;
+		for (int code : codes.values()) result[i++] = code;
+		return result;
+	}
+	
+	/*
+	 * Whether two connectors can form a link: they point at each other, have the same
+	 * head and their subscripts agree letter by letter, '*' and missing letters matching
+	 * anything. As in LG, h-marked (head) and d-marked (dependent) connectors link to an
+	 * unmarked one or to the opposite mark, but not to the same mark, so "IV+" takes "dIV-"
+	 * and "hWV+" takes "dWV-" while "hX+" does not take "hX-". The multi-connector bit is
+	 * ignored.
+	 */
+	public synchronized boolean matches(int a, int b) {	return matches(a, b, true);	}
+	
+	// as matches(), but with wildcards unset '*' only agrees with '*'
+	public synchronized boolean matches(int a, int b, boolean wildcards) {
+		if (isRight(a) == isRight(b) || head(a) != head(b)) return false;
+		int ma = mark(a), mb = mark(b);
+		if ((ma == HEAD && mb == HEAD) || (ma == DEPENDENT && mb == DEPENDENT)) return false;
+		int sa = subscript(a), sb = subscript(b);
+		if (sa == sb || sa == 0 || sb == 0) return true;
+		String x = subs.get(sa), y = subs.get(sb);
+		for (int i = 0, n = Math.min(x.length(), y.length()); i < n; i++) {
+			char cx = x.charAt(i), cy = y.charAt(i);
+			if (cx != cy && (!wildcards || (cx != '*' && cy != '*'))) return false;
+		}
+		return true;
+	}
+	
+	// the link test of matches() as bitsets, shared by everything using this table
+	public ConnectorMatcher getMatcher() {	return getMatcher(true);	}
+	
+	public synchronized ConnectorMatcher getMatcher(boolean wildcards) {
+		if (wildcards) {
+			if (matcher == null) matcher = new ConnectorMatcher(this, true);
+			return matcher;
+		}
+		if (literalMatcher == null) literalMatcher = new ConnectorMatcher(this, false);
+		return literalMatcher;
+	}
+	
+	public static int head(int code) {	return (code >>> HEAD_SHIFT) & HEAD_MASK;	}
+	
+	public static int subscript(int code) {	return code & SUB_MASK;	}
+	
+	// HEAD for an h mark, DEPENDENT for a d mark, 0 for none
+	public static int mark(int code) {	return (code >>> MARK_SHIFT) & 3;	}
+	
+	public static boolean isRight(int code) {	return (code & RIGHT) != 0;	}
+	
+	public static boolean isMulti(int code) {	return (code & MULTI) != 0;	}
+	
+	public static int flip(int code) {	return code ^ RIGHT;	}
+	
+	private int parse(String s) {
+		int n = s.length();
+		if (n < 2) return NONE;
+		char dir = s.charAt(n - 1);
+		if (dir != '+' && dir != '-') return NONE;
+		int i = 0;
+		int code = dir == '+'? RIGHT : 0;
+		if (s.charAt(i) == '@') {
+			code |= MULTI;
+			i++;
+		}
+		if (i + 1 < n && (s.charAt(i) == 'h' || s.charAt(i) == 'd') && Character.isUpperCase(s.charAt(i + 1))) {
+			code |= (s.charAt(i) == 'h'? HEAD : DEPENDENT) << MARK_SHIFT;
+			i++;
+		}
+		int h = i;
+		while (i < n - 1 && Character.isUpperCase(s.charAt(i))) i++;
+		if (i == h) return NONE;
+		int b = i;
+		while (i < n - 1 && (Character.isLowerCase(s.charAt(i)) || s.charAt(i) == '*')) i++;
+		if (i != n - 1) return NONE;
+		int head = id(s.substring(h, b), headIds, heads, HEAD_MASK);
+		int sub = id(s.substring(b, n - 1), subIds, subs, SUB_MASK);
+		return code | (head << HEAD_SHIFT) | sub;
+	}
+	
+	private static int id(String name, HashMap<String, Integer> ids, ArrayList<String> names, int max) {
+		Integer id = ids.get(name);
+		if (id == null) {
+			id = names.size();
+			if (id > max) throw new IllegalStateException("Connector table overflow at '" + name + "'");
+			ids.put(name, id);
+			names.add(name);
+		}
+		return id;
+	}
+}
@@ -0,0 +1,298 @@
+/*
+ * MIT License
+ * 
+ * Copyright (c) 2020-Present by Vignav Ramesh and Anton Kolonin, Aigents®
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package main.java.org.aigents.nlp.lg;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+ * Context file compiled to token ids: the vocabulary in order of first occurrence with
+ * term frequencies, the token id stream and the offsets of its sentences. The compiled
+ * form is kept in <context>.ctx, memory-mapped, and rebuilt when the source's length or
+ * modification time changes. Recently used contexts stay open in an LRU.
+ */
+public class ContextCorpus {
+	private static final int MAGIC = 0x4C474358;
+	private static final int VERSION = 3;
+	public static final int OPEN_CONTEXTS = 16;
+	private static final Map<Path, ContextCorpus> open = new LinkedHashMap<Path, ContextCorpus>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+		
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Path, ContextCorpus> eldest) {
+			return size() > OPEN_CONTEXTS;
+		}
+	};
+	
+	private final String[] vocabulary;
+	private final int[] frequencies;
+	private final HashMap<String, Integer> ids;
+	private final IntBuffer tokens, sentences;
+	
+	private ContextCorpus(ByteBuffer buf) {
+		vocabulary = new String[buf.getInt()];
+		frequencies = new int[vocabulary.length];
+		ids = new HashMap<>();
+		for (int i = 0; i < vocabulary.length; i++) {
+			byte[] bytes = new byte[buf.getInt()];
+			buf.get(bytes);
+			vocabulary[i] = new String(bytes, StandardCharsets.UTF_8);
+			frequencies[i] = buf.getInt();
+			ids.put(vocabulary[i], i);
+		}
+		tokens = slice(buf);
+		sentences = slice(buf);
+	}
+	
+	public static ContextCorpus open(Path source) throws IOException {
+		Path key = source.toAbsolutePath().normalize();
+		synchronized (open) {
+			ContextCorpus corpus = open.get(key);
+			if (corpus == null) {
+				corpus = load(key);
+				open.put(key, corpus);
+			}
+			return corpus;
+		}
+	}
+	
+	public static Path pathFor(Path source) {
+		return source.resolveSibling(source.getFileName() + ".ctx");
+	}
+	
+	private static ContextCorpus load(Path source) throws IOException {
+		long length = Files.size(source), modified = Files.getLastModifiedTime(source).toMillis();
+		Path compiled = pathFor(source);
+		if (Files.isRegularFile(compiled)) {
+			try (FileChannel channel = FileChannel.open(compiled, StandardOpenOption.READ)) {
+				ByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+				if (buf.getInt() == MAGIC && buf.getInt() == VERSION && buf.getLong() == length && buf.getLong() == modified) {
+					return new ContextCorpus(buf);
+				}
+			} catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException | NegativeArraySizeException e) {
+			}
+		}
+		byte[] bytes = compile(source, length, modified);
+		Path tmp = compiled.resolveSibling(compiled.getFileName() + ".tmp");
+		try {
+			Files.write(tmp, bytes);
+			Files.move(tmp, compiled, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			System.err.println("Could not write compiled context " + compiled + ": " + e.getMessage());
+		}
+		ByteBuffer buf = ByteBuffer.wrap(bytes);
+		buf.position(24);
+		return new ContextCorpus(buf);
+	}
+	
+	/*
+	 * Tokens are those of the English affix tokenizer (see Tokenizer) that are words or
+	 * word affixes, lowercased. A sentence ends at a '.', '?' or '!' token and at the end of
+	 * each line. The file is decoded once and scanned in place; a token allocates a string
+	 * only when it is first seen.
+	 */
+	private static byte[] compile(Path source, long length, long modified) throws IOException {
+		CharBuffer text = StandardCharsets.UTF_8.decode(ByteBuffer.wrap(Files.readAllBytes(source)));
+		Vocabulary vocabulary = new Vocabulary();
+		IntList frequencies = new IntList(), stream = new IntList(), sentences = new IntList();
+		sentences.add(0);
+		Tokenizer.getDefault().scan(text, new Tokenizer.Visitor() {
+			@Override
+			public void token(CharSequence t, int start, int end, int type) {
+				if (type == Tokenizer.WORD || type == Tokenizer.SUFFIX || type == Tokenizer.PREFIX) {
+					int id = vocabulary.id(t, start, end);
+					if (id == frequencies.size()) frequencies.add(0);
+					frequencies.set(id, frequencies.get(id) + 1);
+					stream.add(id);
+				} else if (type == Tokenizer.RPUNC && end - start == 1 && ".?!".indexOf(t.charAt(start)) >= 0) {
+					sentence(sentences, stream.size());
+				}
+			}
+			
+			@Override
+			public void lineEnd(CharSequence t, int offset) {
+				sentence(sentences, stream.size());
+			}
+		});
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeLong(length);
+		out.writeLong(modified);
+		out.writeInt(vocabulary.size());
+		for (int i = 0; i < vocabulary.size(); i++) {
+			byte[] b = vocabulary.get(i).getBytes(StandardCharsets.UTF_8);
+			out.writeInt(b.length);
+			out.write(b);
+			out.writeInt(frequencies.get(i));
+		}
+		out.writeInt(stream.size());
+		for (int i = 0; i < stream.size(); i++) out.writeInt(stream.get(i));
+		out.writeInt(sentences.size());
+		for (int i = 0; i < sentences.size(); i++) out.writeInt(sentences.get(i));
+		out.close();
+		return bytes.toByteArray();
+	}
+	
+	private static void sentence(IntList sentences, int offset) {
+		if (sentences.get(sentences.size() - 1) != offset) sentences.add(offset);
+	}
+	
+	private static class IntList {
+		private int[] values = new int[1024];
+		private int size;
+		
+		void add(int value) {
+			if (size == values.length) values = Arrays.copyOf(values, size * 2);
+			values[size++] = value;
+		}
+		
+		int get(int i) {	return values[i];	}
+		
+		void set(int i, int value) {	values[i] = value;	}
+		
+		int size() {	return size;	}
+	}
+	
+	/*
+	 * Token ids keyed by the lowercased characters of a slice of the text, in an open
+	 * addressing table, so that looking up a token seen before allocates nothing.
+	 */
+	private static class Vocabulary {
+		private final ArrayList<String> tokens = new ArrayList<>();
+		private int[] slots = new int[1024];
+		
+		Vocabulary() {
+			Arrays.fill(slots, -1);
+		}
+		
+		int id(CharSequence text, int start, int end) {
+			int hash = 0;
+			for (int i = start; i < end; i++) hash = 31 * hash + Character.toLowerCase(text.charAt(i));
+			int mask = slots.length - 1;
+			for (int slot = mix(hash) & mask;; slot = (slot + 1) & mask) {
+				int id = slots[slot];
+				if (id < 0) {
+					id = tokens.size();
+					StringBuilder token = new StringBuilder(end - start);
+					for (int i = start; i < end; i++) token.append(Character.toLowerCase(text.charAt(i)));
+					tokens.add(token.toString());
+					slots[slot] = id;
+					if (tokens.size() * 2 > slots.length) rehash();
+					return id;
+				}
+				if (matches(tokens.get(id), text, start, end)) return id;
+			}
+		}
+		
+		private static boolean matches(String token, CharSequence text, int start, int end) {
+			if (token.length() != end - start) return false;
+			for (int i = start; i < end; i++) {
+				if (token.charAt(i - start) != Character.toLowerCase(text.charAt(i))) return false;
+			}
+			return true;
+		}
+		
+		private static int mix(int hash) {
+			return hash ^ (hash >>> 16);
+		}
+		
+		private void rehash() {
+			slots = new int[slots.length * 2];
+			Arrays.fill(slots, -1);
+			int mask = slots.length - 1;
+			for (int id = 0; id < tokens.size(); id++) {
+				String token = tokens.get(id);
+				int slot = mix(token.hashCode()) & mask;
+				while (slots[slot] >= 0) slot = (slot + 1) & mask;
+				slots[slot] = id;
+			}
+		}
+		
+		String get(int id) {	return tokens.get(id);	}
+		
+		int size() {	return tokens.size();	}
+	}
+	
+	private static IntBuffer slice(ByteBuffer buf) {
+		int n = buf.getInt();
+		ByteBuffer slice = buf.slice();
+		slice.limit(n * 4);
+		buf.position(buf.position() + n * 4);
+		return slice.asIntBuffer();
+	}
+	
+	/*
+	 * Term frequencies keyed by token, as Loader.getContextLexicon used to build them by
+	 * re-reading the file. It is a plain HashMap, as it was then, so callers iterating it
+	 * see the tokens in no particular order.
+	 */
+	public HashMap<String, Integer> getLexicon() {
+		HashMap<String, Integer> map = new HashMap<>();
+		for (int i = 0; i < vocabulary.length; i++) map.put(vocabulary[i], frequencies[i]);
+		return map;
+	}
+	
+	public int size() {	return vocabulary.length;	}
+	
+	public String getToken(int id) {	return vocabulary[id];	}
+	
+	// returns -1 for tokens that do not occur in the context
+	public int getId(String token) {
+		Integer id = ids.get(token);
+		return id == null? -1 : id;
+	}
+	
+	public int getFrequency(int id) {	return frequencies[id];	}
+	
+	public int getLength() {	return tokens.limit();	}
+	
+	public int getTokenId(int position) {	return tokens.get(position);	}
+	
+	public int getSentenceCount() {	return sentences.limit() - 1;	}
+	
+	public int[] getSentence(int i) {
+		int[] s = new int[sentences.get(i + 1) - sentences.get(i)];
+		for (int k = 0; k < s.length; k++) s[k] = tokens.get(sentences.get(i) + k);
+		return s;
+	}
+}
@@ -25,65 +25,523 @@
 package main.java.org.aigents.nlp.lg;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class Dictionary {
 	private HashSet<Word> words;
+	private HashMap<String, Entry> index;
+	private HashMap<String, ArrayList<String>> folded;
+	private volatile BloomFilter filter;
+	private volatile ConnectorIndex connectorIndex;
+	private volatile Idioms idioms;
+	private volatile LinkCosts linkCosts;
+	private final ConnectorTable connectors;
+	private final RuleTable rules;
+	private WordStore wordIndex;
+	private Map<String, Entry> cache;
+	private Morphology morphology;
+	private RegexClasses regexClasses;
+	private DictionaryStats.Load load;
+	private volatile boolean readOnly;
+	public static final int CACHE_SIZE = 4096;
 	private static final String versionNumber = "V5v8v0+";
 	private static final String locale = "EN4us+";
 	
 	public Dictionary() {
-		words = new HashSet<>();
+		this(new ConnectorTable(), new RuleTable());
+	}
+	
+	public Dictionary(ConnectorTable connectors, RuleTable rules) {
+		this(connectors, rules, 0);
+	}
+	
+	// sized for the given number of words, so that merging parts (see addAll) does not rehash
+	Dictionary(ConnectorTable connectors, RuleTable rules, int capacity) {
+		this.connectors = connectors;
+		this.rules = rules;
+		capacity = Math.max(16, capacity * 4 / 3 + 1);
+		words = new LinkedHashSet<>(capacity);
+		index = new HashMap<>(capacity);
+		folded = new HashMap<>(capacity);
 	}
 	
 	public Dictionary(HashSet<Word> words) {
+		connectors = new ConnectorTable();
+		rules = new RuleTable();
 		this.words = words;
+		reindex();
 	}
 	
+	/*
+	 * Dictionaries served by DictionaryRegistry are shared between threads and read-only:
+	 * adding or replacing words throws. Words a caller needs in addition to those of the
+	 * dictionary belong in a map of its own, with their rules made by compile.
+	 */
+	public boolean isReadOnly() {	return readOnly;	}
+	
+	void setReadOnly() {	readOnly = true;	}
+	
 	public void addWord(Word word) {
-		words.add(word);
+		checkWritable();
+		if (words.add(word)) {
+			index(word);
+			connectorIndex = null;
+			idioms = null;
+		}
+	}
+	
+	/*
+	 * Adopts the words of a snapshot (see Snapshot.read) in their original order, grouped
+	 * by spelling and with their lower case variants as stored, instead of indexing them
+	 * one at a time.
+	 */
+	void load(Word[] records, List<List<Word>> entries, HashMap<String, ArrayList<String>> folded) {
+		checkWritable();
+		words = new LinkedHashSet<>(records.length * 4 / 3 + 1);
+		Collections.addAll(words, records);
+		index = new HashMap<>(entries.size() * 4 / 3 + 1);
+		for (List<Word> ws : entries) {
+			Entry e = new Entry();
+			for (Word w : ws) add(e, w);
+			index.put(ws.get(0).getWord(), e);
+		}
+		this.folded = folded;
+		filter = null;
+		connectorIndex = null;
+		idioms = null;
+	}
+	
+	/*
+	 * Adds the words of part after those already in the dictionary, as addWord would one
+	 * by one: entries and case variants new to the dictionary are taken over whole.
+	 */
+	void addAll(Dictionary part) {
+		checkWritable();
+		words.addAll(part.words);
+		for (Map.Entry<String, Entry> e : part.index.entrySet()) {
+			Entry entry = index.putIfAbsent(e.getKey(), e.getValue());
+			if (entry != null) {
+				for (Word w : e.getValue().words) add(entry, w);
+			}
+		}
+		for (Map.Entry<String, ArrayList<String>> e : part.folded.entrySet()) {
+			ArrayList<String> variants = folded.putIfAbsent(e.getKey(), e.getValue());
+			if (variants != null) {
+				for (String variant : e.getValue()) WordStore.insert(variants, e.getKey(), variant);
+			}
+		}
+		filter = null;
+		connectorIndex = null;
+		idioms = null;
 	}
 	
 	public void updateWords(HashSet<Word> words) {
+		checkWritable();
 		this.words = words;
+		reindex();
+	}
+	
+	/*
+	 * Rule of an expression that is not in the dictionary, packed against its connector
+	 * table like the rules of its words; the dictionary itself is left as it is.
+	 */
+	public Rule compile(String expression) {
+		Rule rule = new Rule();
+		rule.addWord(expression);
+		rule.setConnectorTable(connectors);
+		return rule;
+	}
+	
+	public List<Rule> getRule(String word) {
+		Entry e = entry(word);
+		return e == null? Collections.emptyList() : e.rulesView;
+	}
+	
+	public Rule getRule(String word, boolean SmallGrammarGen) {
+		Entry e = entry(word);
+		return e == null? null : e.words.get(0).getRule();
 	}
 	
-	public ArrayList<Rule> getRule(String word) {
-		ArrayList<Rule> rules = new ArrayList<>();
-		for (Word w : words) {
-			if (w.getWord().equals(word)) {
-				if (!word.equals("human") && !word.equals("cake")) rules.add(w.getRule());
-				else {
-					if (word.equals("human") && w.getSubscript().equals("n")) rules.add(w.getRule());
-					if (word.equals("cake") && w.getSubscript().equals("n-u")) rules.add(w.getRule());
+	public List<String> getSubscript(String word) {
+		Entry e = entry(word);
+		return e == null? Collections.emptyList() : e.subscriptsView;
+	}
+	
+	public long getSubscriptMask(String word) {
+		Entry e = entry(word);
+		return e == null? 0 : e.subscriptMask;
+	}
+	
+	public boolean hasSubscript(String word, long subscript) {
+		return (getSubscriptMask(word) & subscript) != 0;
+	}
+	
+	public List<Word> getEntries(String word) {
+		Entry e = entry(word);
+		return e == null? Collections.emptyList() : e.wordsView;
+	}
+	
+	/*
+	 * Case-insensitive lookups: the word itself is tried first, then its spellings in the
+	 * dictionary in the order given by getVariants, so "smith" resolves to "Smith".
+	 */
+	public List<Rule> getRuleIgnoreCase(String word) {
+		return getRule(resolve(word));
+	}
+	
+	public List<String> getSubscriptIgnoreCase(String word) {
+		List<String> subs = getSubscript(word);
+		if (!subs.isEmpty()) return subs;
+		for (String variant : getVariants(word)) {
+			subs = getSubscript(variant);
+			if (!subs.isEmpty()) return subs;
+		}
+		return subs;
+	}
+	
+	/*
+	 * Subscripts of word as written or, if it has none, of its capitalized spelling. This
+	 * is how the generators tell names from other words, so unlike getSubscriptIgnoreCase
+	 * it never falls back to other spellings such as the abbreviations "WE" or "BY".
+	 */
+	public List<String> getSubscriptOrCapitalized(String word) {
+		List<String> subs = getSubscript(word);
+		if (!subs.isEmpty() || word.isEmpty()) return subs;
+		return getSubscript(word.substring(0, 1).toUpperCase() + word.substring(1));
+	}
+	
+	public long getSubscriptMaskIgnoreCase(String word) {
+		long mask = getSubscriptMask(word);
+		if (mask != 0) return mask;
+		for (String variant : getVariants(word)) {
+			mask = getSubscriptMask(variant);
+			if (mask != 0) return mask;
+		}
+		return mask;
+	}
+	
+	/*
+	 * Returns the spelling of word that has rules in the dictionary, or word itself
+	 * if none of its case variants does.
+	 */
+	public String resolve(String word) {
+		if (!getRule(word).isEmpty()) return word;
+		for (String variant : getVariants(word)) {
+			if (!getRule(variant).isEmpty()) return variant;
+		}
+		if (morphology != null) {
+			String key = word.toLowerCase();
+			if (!key.equals(word) && morphology.contains(key)) return key;
+		}
+		return word;
+	}
+	
+	/*
+	 * All spellings of word in the dictionary ignoring case: the lower case one first,
+	 * then the capitalized one, then any others in the order they were loaded.
+	 */
+	public List<String> getVariants(String word) {
+		String key = word.toLowerCase();
+		ArrayList<String> variants = folded.get(key);
+		if (wordIndex == null) return variants == null? Collections.emptyList() : Collections.unmodifiableList(variants);
+		List<String> stored = wordIndex.variants(key);
+		if (variants == null) return stored;
+		ArrayList<String> all = new ArrayList<>(stored);
+		for (String variant : variants) WordStore.insert(all, key, variant);
+		return all;
+	}
+	
+	/*
+	 * Whether any spelling of word is in the dictionary; misses are mostly answered by the
+	 * Bloom filter without touching the maps.
+	 */
+	public boolean containsIgnoreCase(String word) {
+		String key = word.toLowerCase();
+		return (getFilter().mightContain(key) 
+				&& (folded.containsKey(key) || (wordIndex != null && !wordIndex.variants(key).isEmpty())))
+				|| (morphology != null && morphology.contains(key));
+	}
+	
+	public BloomFilter getFilter() {
+		BloomFilter f = filter;
+		if (f == null) {
+			synchronized (this) {
+				f = filter;
+				if (f == null) {
+					f = new BloomFilter(folded.size() + (wordIndex == null? 0 : wordIndex.size()));
+					for (String key : folded.keySet()) f.add(key);
+					if (wordIndex != null) {
+						for (String key : wordIndex.keys()) f.add(key);
+					}
+					filter = f;
 				}
 			}
 		}
-		return rules;
+		return f;
 	}
 	
-	public Rule getRule(String word, boolean SmallGrammarGen) {
-		for (Word w : words) {
-			if (w.getWord().equals(word)) {
-				return w.getRule();
+	/*
+	 * Reverse connector index over all words of the dictionary, built on first use;
+	 * adding words afterwards discards it.
+	 */
+	public ConnectorIndex getConnectorIndex() {
+		ConnectorIndex c = connectorIndex;
+		if (c == null) {
+			synchronized (this) {
+				c = connectorIndex;
+				if (c == null) {
+					c = new ConnectorIndex(this, wordIndex);
+					connectorIndex = c;
+				}
 			}
 		}
-		return null;
+		return c;
 	}
 	
-	public ArrayList<String> getSubscript(String word) {
-		ArrayList<String> subs = new ArrayList<>();
-		for (Word w : words) {
-			if (w.getWord().equals(word) && !w.getSubscript().isEmpty()) {
-				subs.add(w.getSubscript());
+	// automaton over the words made of several tokens joined by '_', built on first use
+	public Idioms getIdioms() {
+		Idioms i = idioms;
+		if (i == null) {
+			synchronized (this) {
+				i = idioms;
+				if (i == null) {
+					ArrayList<String> names = new ArrayList<>();
+					for (Word w : words) names.add(w.getWord());
+					if (wordIndex != null) {
+						for (String word : wordIndex.words()) names.add(word);
+					}
+					i = new Idioms(names);
+					idioms = i;
+				}
 			}
 		}
-		return subs;
+		return i;
 	}
 	
+	/*
+	 * Cost estimates of word orders within ceiling, kept for the last ceiling asked for.
+	 * They memoize the disjuncts of every rule they meet, so they are held here and go
+	 * with the dictionary rather than outliving it in a cache of their own.
+	 */
+	public LinkCosts getLinkCosts(double ceiling) {
+		LinkCosts c = linkCosts;
+		if (c == null || c.getCeiling() != ceiling) {
+			synchronized (this) {
+				c = linkCosts;
+				if (c == null || c.getCeiling() != ceiling) {
+					c = new LinkCosts(connectors, ceiling);
+					linkCosts = c;
+				}
+			}
+		}
+		return c;
+	}
+	
+	// drops the indexes built on first use, for a dictionary the registry no longer serves
+	void release() {
+		connectorIndex = null;
+		idioms = null;
+		linkCosts = null;
+	}
+	
+	public List<String> getNeighbours(String word, boolean right) {
+		return getConnectorIndex().getNeighbours(getRuleIgnoreCase(word), right);
+	}
+	
+	// whether some rule of left can link to some rule of right, guessed ones included
+	public boolean links(String left, String right) {
+		ConnectorIndex c = getConnectorIndex();
+		for (Rule l : getRuleOrGuess(left)) {
+			for (Rule r : getRuleOrGuess(right)) {
+				if (c.links(l, r)) return true;
+			}
+		}
+		return false;
+	}
+	
+	public boolean contains(String word) {
+		return index.containsKey(word) || (wordIndex != null && wordIndex.contains(word))
+				|| (morphology != null && morphology.contains(word));
+	}
+	
+	public Morphology getMorphology() {	return morphology;	}
+	
+	public RegexClasses getRegexClasses() {	return regexClasses;	}
+	
+	/*
+	 * Rules of word ignoring case or, if the dictionary does not have it, those guessed
+	 * for it; empty only if nothing can be guessed either.
+	 */
+	public List<Rule> getRuleOrGuess(String word) {
+		List<Rule> rules = getRuleIgnoreCase(word);
+		if (!rules.isEmpty()) return rules;
+		List<Word> guessed = guess(word);
+		if (guessed == null) return rules;
+		rules = new ArrayList<>(guessed.size());
+		for (Word w : guessed) {
+			if (!rules.contains(w.getRule())) rules.add(w.getRule());
+		}
+		return rules;
+	}
+	
+	/*
+	 * Words for a token missing from the dictionary: those of its regex class, else those
+	 * of its unknown-word ending, else the UNKNOWN-WORD entries; null if there are none.
+	 */
+	public List<Word> guess(String word) {
+		List<Word> words = regexClasses == null? null : regexClasses.resolve(word);
+		if (words == null && morphology != null) words = morphology.guess(word.toLowerCase());
+		if (words == null && regexClasses != null) words = regexClasses.unknown(word);
+		if (words != null) {
+			for (Word w : words) w.getRule().setConnectorTable(connectors);
+		}
+		return words;
+	}
+	
+	void setRegexClasses(RegexClasses regexClasses) {	this.regexClasses = regexClasses;	}
+	
+	/*
+	 * Words missing from the dictionary are then split into a stem and a suffix, and the
+	 * entries built for them are kept in the same LRU cache as those of the word index.
+	 */
+	void setMorphology(Morphology morphology) {
+		this.morphology = morphology;
+		if (cache == null) cache = newCache(CACHE_SIZE);
+	}
+	
+	void setWordIndex(WordStore wordIndex) {
+		setWordIndex(wordIndex, CACHE_SIZE);
+	}
+	
+	/*
+	 * Words missing from the index are looked up in the word index, and entries built from
+	 * it are kept in an LRU cache of at most capacity words instead of being added to the
+	 * dictionary, so they do not show up in getWords().
+	 */
+	void setWordIndex(WordStore wordIndex, int capacity) {
+		this.wordIndex = wordIndex;
+		filter = null;
+		connectorIndex = null;
+		idioms = null;
+		cache = newCache(capacity);
+	}
+	
+	private static Map<String, Entry> newCache(int capacity) {
+		return new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+			
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+				return size() > capacity;
+			}
+		};
+	}
+	
+	private Entry entry(String word) {
+		Entry e = index.get(word);
+		if (e != null || cache == null) return e;
+		synchronized (cache) {
+			e = cache.get(word);
+			if (e == null) {
+				List<Word> resolved = wordIndex == null? null : wordIndex.resolve(word);
+				if (resolved == null && morphology != null) resolved = morphology.resolve(word);
+				if (resolved == null) return null;
+				e = new Entry();
+				for (Word w : resolved) add(e, w);
+				cache.put(word, e);
+			}
+			return e;
+		}
+	}
+	
+	private void checkWritable() {
+		if (readOnly) throw new UnsupportedOperationException("Dictionary is read-only");
+	}
+	
+	private void reindex() {
+		index = new HashMap<>();
+		folded = new HashMap<>();
+		filter = null;
+		connectorIndex = null;
+		idioms = null;
+		for (Word w : words) index(w);
+	}
+	
+	private void index(Word w) {
+		Entry e = index.get(w.getWord());
+		if (e == null) {
+			e = new Entry();
+			index.put(w.getWord(), e);
+			fold(w.getWord());
+		}
+		add(e, w);
+	}
+	
+	private void fold(String word) {
+		String key = word.toLowerCase();
+		ArrayList<String> variants = folded.get(key);
+		if (variants == null) {
+			variants = new ArrayList<>(1);
+			folded.put(key, variants);
+			if (filter != null) filter.add(key);
+		}
+		WordStore.insert(variants, key, word);
+	}
+	
+	private void add(Entry e, Word w) {
+		String word = w.getWord();
+		e.words.add(w);
+		if (w.getRule() != null) w.getRule().setConnectorTable(connectors);
+		if ((!word.equals("human") && !word.equals("cake")) 
+				|| (word.equals("human") && w.getSubscript().equals("n"))
+				|| (word.equals("cake") && w.getSubscript().equals("n-u"))) {
+			e.rules.add(w.getRule());
+		}
+		if (!w.getSubscript().isEmpty()) {
+			e.subscripts.add(w.getSubscript());
+			e.subscriptMask |= Subscript.of(w.getSubscript());
+		}
+	}
+	
+	public DictionaryStats getStats() {	return getStats(false);	}
+	
+	public DictionaryStats getStats(boolean compile) {	return new DictionaryStats(this, wordIndex, compile);	}
+	
+	// phases and sources recorded by the Loader, or null for a dictionary built otherwise
+	public DictionaryStats.Load getLoad() {	return load;	}
+	
+	void setLoad(DictionaryStats.Load load) {	this.load = load;	}
+	
+	public ConnectorTable getConnectorTable() {	return connectors;	}
+	
+	public RuleTable getRuleTable() {	return rules;	}
+	
 	public String getVersionNumber() {	return versionNumber;	}
 	
 	public String getLocale() {	return locale;	}
 	
 	public HashSet<Word> getWords() {	return words;	}
+	
+	// distinct spellings with an index entry
+	int getSpellings() {	return index.size();	}
+	
+	// lower case forms of the indexed spellings
+	Set<String> getFoldedKeys() {	return folded.keySet();	}
+	
+	private static class Entry {
+		private final ArrayList<Word> words = new ArrayList<>(1);
+		private final ArrayList<Rule> rules = new ArrayList<>(1);
+		private final ArrayList<String> subscripts = new ArrayList<>(1);
+		private final List<Word> wordsView = Collections.unmodifiableList(words);
+		private final List<Rule> rulesView = Collections.unmodifiableList(rules);
+		private final List<String> subscriptsView = Collections.unmodifiableList(subscripts);
+		private long subscriptMask;
+	}
 }
\ No newline at end of file
@@ -0,0 +1,345 @@
+/*
+ * MIT License
+ * 
+ * Copyright (c) 2020-Present by Vignav Ramesh and Anton Kolonin, Aigents®
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package main.java.org.aigents.nlp.lg;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/*
+ * Registry of loaded dictionaries, by the name Loader takes them under: LG dictionaries
+ * such as "en/4.0.dict" (dictionary and hyphenated words) and learned grammars such as
+ * "dict_30C_2018-12-31_0006.4.0.dict" (a single dictionary). All of them share one
+ * connector table, so connector names are held once per process. LG dictionaries are
+ * served from their memory-mapped snapshots (see Loader.mapLGDict), which keeps their word
+ * tables off the heap; the disjuncts of the words used are compiled on the heap.
+ *
+ * The sources of every dictionary (the .dict file, the words/ files listed in its
+ * snapshot, its 4.0.regex and 4.0.affix and the files it includes, such as the Russian
+ * morphology tables) are watched; when one of them changes, the dictionary is rebuilt on a
+ * background thread and the new version replaces the old one in a single reference swap.
+ * Callers that got the old Dictionary[] from get() keep using it until they are done, so
+ * a reload never blocks or breaks a request in flight. The dictionaries handed out are
+ * read-only (see Dictionary.isReadOnly), as any number of threads may be using them.
+ *
+ * With a heap budget set, the least recently used dictionaries are evicted once the
+ * estimated size of all loaded ones exceeds it, and are loaded again on their next use.
+ */
+public class DictionaryRegistry {
+	public static final String BUDGET_PROPERTY = "aigents.dictionary.budget";
+	private static final long RELOAD_DELAY = 500;
+	private static DictionaryRegistry shared;
+	
+	private final ConcurrentHashMap<String, Handle> handles = new ConcurrentHashMap<>();
+	private final HashMap<Path, WatchKey> watched = new HashMap<>();
+	private final ConnectorTable connectors = new ConnectorTable();
+	private final ScheduledExecutorService reloader;
+	private WatchService watcher;
+	private volatile long budget;
+	
+	public DictionaryRegistry() {
+		this(Long.getLong(BUDGET_PROPERTY, 0) << 20);
+	}
+	
+	// budget in bytes, 0 for no limit
+	public DictionaryRegistry(long budget) {
+		this.budget = budget;
+		reloader = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "dictionary-reload");
+			t.setDaemon(true);
+			t.setPriority(Thread.MIN_PRIORITY);
+			return t;
+		});
+	}
+	
+	/* process-wide registry, with the budget taken from -Daigents.dictionary.budget in MB */
+	public static synchronized DictionaryRegistry getShared() {
+		if (shared == null) shared = new DictionaryRegistry();
+		return shared;
+	}
+	
+	/*
+	 * Current version of the dictionaries for name, or null if there is no such file; the
+	 * first call for a name (and the first after it was evicted) loads them on the calling
+	 * thread, while other names load or are served concurrently.
+	 */
+	public Dictionary[] get(String name) throws IOException {
+		Handle h = handles.computeIfAbsent(name, Handle::new);
+		Dictionary[] dicts = h.current.get();
+		if (dicts == null) {
+			synchronized (h) {
+				dicts = h.current.get();
+				if (dicts == null) {
+					dicts = build(name);
+					if (dicts == null) {
+						handles.remove(name, h);
+						return null;
+					}
+					h.size = DictionaryStats.estimate(dicts);
+					h.current.set(dicts);
+					watch(h);
+				}
+			}
+			h.lastUsed = System.nanoTime();
+			enforceBudget(h);
+		}
+		h.lastUsed = System.nanoTime();
+		return dicts;
+	}
+	
+	/* loads all the given dictionaries in parallel and waits for them */
+	public void load(String... names) throws IOException {
+		List<ForkJoinTask<Dictionary[]>> tasks = new ArrayList<>(names.length);
+		for (String name : names) {
+			tasks.add(ForkJoinPool.commonPool().submit(() -> {
+				try {
+					return get(name);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}));
+		}
+		try {
+			for (ForkJoinTask<Dictionary[]> task : tasks) task.join();
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+	
+	public Set<String> getNames() {	return Collections.unmodifiableSet(new TreeSet<>(handles.keySet()));	}
+	
+	// number of times the dictionaries for name were replaced since they were loaded
+	public int getVersion(String name) {
+		Handle h = handles.get(name);
+		return h == null? -1 : h.version;
+	}
+	
+	// estimated heap taken by the dictionaries for name, 0 if they are not loaded
+	public long getSize(String name) {
+		Handle h = handles.get(name);
+		return h == null? 0 : h.size;
+	}
+	
+	public long getBudget() {	return budget;	}
+	
+	public void setBudget(long budget) {
+		this.budget = budget;
+		enforceBudget(null);
+	}
+	
+	public ConnectorTable getConnectorTable() {	return connectors;	}
+	
+	/* drops the dictionaries for name; callers still holding them are not affected */
+	public void evict(String name) {
+		Handle h = handles.remove(name);
+		if (h != null) release(h.current.get());
+	}
+	
+	/* schedules a rebuild of name whether or not its sources changed */
+	public void reload(String name) {
+		Handle h = handles.get(name);
+		if (h != null) schedule(h);
+	}
+	
+	public synchronized void close() {
+		reloader.shutdownNow();
+		if (watcher != null) {
+			try {
+				watcher.close();
+			} catch (IOException e) {
+				System.err.println("Could not close dictionary watcher: " + e.getMessage());
+			}
+		}
+	}
+	
+	private Dictionary[] build(String name) throws IOException {
+		Dictionary[] dicts;
+		if (isLG(name)) {
+			dicts = Loader.mapLGDict(name, connectors);
+		} else {
+			Dictionary dict = Loader.grammarBuildLinks(name, true, connectors);
+			dicts = dict == null? null : new Dictionary[] {dict};
+		}
+		if (dicts != null) {
+			for (Dictionary d : dicts) d.setReadOnly();
+		}
+		return dicts;
+	}
+	
+	private static boolean isLG(String name) {
+		return name.contains("/4.0.dict");
+	}
+	
+	private synchronized void enforceBudget(Handle keep) {
+		if (budget <= 0) return;
+		long total = 0;
+		for (Handle h : handles.values()) total += h.size;
+		while (total > budget) {
+			Handle coldest = null;
+			for (Handle h : handles.values()) {
+				if (h != keep && h.current.get() != null && (coldest == null || h.lastUsed < coldest.lastUsed)) coldest = h;
+			}
+			if (coldest == null) break;
+			handles.remove(coldest.name, coldest);
+			release(coldest.current.get());
+			total -= coldest.size;
+		}
+	}
+	
+	// drops the caches of dictionaries no longer served; callers still using them rebuild what they need
+	private static void release(Dictionary[] dicts) {
+		if (dicts == null) return;
+		for (Dictionary d : dicts) d.release();
+	}
+	
+	private void schedule(Handle h) {
+		if (h.pending.compareAndSet(false, true)) {
+			reloader.schedule(() -> rebuild(h), RELOAD_DELAY, TimeUnit.MILLISECONDS);
+		}
+	}
+	
+	private void rebuild(Handle h) {
+		h.pending.set(false);
+		if (handles.get(h.name) != h) return;
+		if (isLG(h.name)) Tokenizer.evict(Loader.dictPath(h.name).resolveSibling("4.0.affix"));
+		try {
+			Dictionary[] dicts = build(h.name);
+			if (dicts == null) {
+				System.err.println("Dictionary " + h.name + " is gone, keeping the loaded version.");
+				return;
+			}
+			h.size = DictionaryStats.estimate(dicts);
+			release(h.current.getAndSet(dicts));
+			h.version++;
+			watch(h);
+			enforceBudget(h);
+		} catch (IOException | RuntimeException e) {
+			System.err.println("Could not reload dictionary " + h.name + ", keeping the loaded version: " + e.getMessage());
+		}
+	}
+	
+	private synchronized void watch(Handle h) {
+		List<Path> sources = new ArrayList<>();
+		if (isLG(h.name)) {
+			Path dict = Loader.dictPath(h.name);
+			sources.addAll(Snapshot.sources(Snapshot.pathFor(dict)));
+			if (sources.isEmpty()) sources.add(dict);
+			sources.add(dict.resolveSibling("4.0.regex"));
+			sources.add(dict.resolveSibling("4.0.affix"));
+			includes(dict, sources);
+		} else {
+			sources.add(Loader.grammarPath(h.name));
+		}
+		ArrayList<Path> normalized = new ArrayList<>(sources.size());
+		for (Path source : sources) normalized.add(source.toAbsolutePath().normalize());
+		h.sources = normalized;
+		try {
+			if (watcher == null) {
+				watcher = FileSystems.getDefault().newWatchService();
+				Thread t = new Thread(this::poll, "dictionary-watcher");
+				t.setDaemon(true);
+				t.start();
+			}
+			for (Path source : h.sources) {
+				Path dir = source.getParent();
+				if (dir != null && !watched.containsKey(dir)) {
+					watched.put(dir, dir.register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+							StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE));
+				}
+			}
+		} catch (IOException e) {
+			System.err.println("Could not watch dictionary " + h.name + ": " + e.getMessage());
+		}
+	}
+	
+	// files included by dict and, in turn, by them, as Morphology reads them
+	private static void includes(Path dict, List<Path> sources) {
+		try {
+			for (Path include : Loader.includes(dict)) {
+				if (sources.contains(include)) continue;
+				sources.add(include);
+				if (include.toFile().exists()) includes(include, sources);
+			}
+		} catch (IOException e) {
+			System.err.println("Could not read the includes of " + dict + ": " + e.getMessage());
+		}
+	}
+	
+	private void poll() {
+		try {
+			while (true) {
+				WatchKey key = watcher.take();
+				Path dir = (Path) key.watchable();
+				for (WatchEvent<?> event : key.pollEvents()) {
+					if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+						for (Handle h : handles.values()) schedule(h);
+						continue;
+					}
+					Path changed = dir.resolve((Path) event.context()).toAbsolutePath().normalize();
+					for (Handle h : handles.values()) {
+						if (h.sources.contains(changed)) schedule(h);
+					}
+				}
+				key.reset();
+			}
+		} catch (InterruptedException | ClosedWatchServiceException e) {
+			return;
+		}
+	}
+	
+	private static class Handle {
+		private final String name;
+		private final AtomicReference<Dictionary[]> current = new AtomicReference<>();
+		private final AtomicBoolean pending = new AtomicBoolean();
+		private volatile List<Path> sources = new ArrayList<>();
+		private volatile int version;
+		private volatile long size;
+		private volatile long lastUsed;
+		
+		private Handle(String name) {
+			this.name = name;
+		}
+	}
+}
@@ -0,0 +1,235 @@
+/*
+ * MIT License
+ * 
+ * Copyright (c) 2020-Present by Vignav Ramesh and Anton Kolonin, Aigents®
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package main.java.org.aigents.nlp.lg;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Size report of a dictionary: words, rules, disjuncts and connectors with estimated
+ * retained heap sizes, and for a dictionary built by the Loader the words each source file
+ * added and the time spent in each phase of loading. Sizes are fixed costs per object plus
+ * string lengths, one byte a character as with compact strings. They were calibrated on
+ * en/4.0.dict under Java 17, where the estimate of an eager load comes to 42.6 MB against
+ * 44.6 MB measured, the rest being tables such as the regex classes that are not counted.
+ * A lazy dictionary is counted from its word store, so its words and rules are reported
+ * even though they are not Word objects yet.
+ */
+public class DictionaryStats {
+	// a Word with its set entry and spelling; an index entry per distinct spelling, with
+	// its three lists and their views; a lower case key with its list of spellings
+	static final int WORD_BYTES = 112, ENTRY_BYTES = 280, FOLDED_BYTES = 104;
+	static final int RULE_BYTES = 64, EXPRESSION_BYTES = 48;
+	static final int DISJUNCT_BYTES = 120, CONNECTOR_BYTES = 12, INDEXED_WORD_BYTES = 256, TABLE_CONNECTOR_BYTES = 64;
+	
+	private int words, indexedWords, indexedEntries, rules, ruleReferences, expressions, compiledRules, disjuncts;
+	private int connectors, packedConnectors;
+	private long wordBytes, ruleBytes, disjunctBytes, indexBytes, connectorBytes;
+	private final HashSet<String> names = new HashSet<>();
+	private final Load load;
+	
+	/*
+	 * With compile set every rule is compiled to count its disjuncts, which for the full
+	 * English dictionary means millions of them; otherwise only the rules compiled so far
+	 * are counted. Connectors are counted from the rule expressions either way.
+	 */
+	DictionaryStats(Dictionary dict, WordStore wordIndex, boolean compile) {
+		IdentityHashMap<Rule, Boolean> seen = new IdentityHashMap<>();
+		for (Word w : dict.getWords()) {
+			words++;
+			Rule r = w.getRule();
+			if (r == null) continue;
+			ruleReferences++;
+			if (seen.put(r, Boolean.TRUE) == null) add(r, compile, true);
+		}
+		wordBytes = wordBytes(dict);
+		if (wordIndex != null) {
+			indexedWords = wordIndex.size();
+			for (String word : wordIndex.words()) {
+				if (wordIndex instanceof WordIndex) indexBytes += INDEXED_WORD_BYTES + 2 * word.length();
+				List<Rule> list = wordIndex.rules(word);
+				if (list == null) continue;
+				for (Rule r : list) {
+					indexedEntries++;
+					ruleReferences++;
+					if (seen.put(r, Boolean.TRUE) == null) add(r, compile, false);
+				}
+			}
+		}
+		connectors = names.size();
+		packedConnectors = dict.getConnectorTable().size();
+		connectorBytes = (long) packedConnectors * TABLE_CONNECTOR_BYTES;
+		load = dict.getLoad();
+	}
+	
+	// rules only reached through the word store are interned on lookup, so not retained
+	private void add(Rule r, boolean compile, boolean retained) {
+		rules++;
+		if (retained) ruleBytes += RULE_BYTES;
+		for (String expression : r.getWords()) {
+			expressions++;
+			if (retained) ruleBytes += EXPRESSION_BYTES + expression.length();
+			Expression.connectors(expression, names);
+		}
+		if (!compile && !r.isCompiled()) return;
+		compiledRules++;
+		for (Disjunct d : r.getDisjuncts()) {
+			disjuncts++;
+			disjunctBytes += DISJUNCT_BYTES + CONNECTOR_BYTES * d.getConnectors().size();
+		}
+	}
+	
+	// the Word objects of dict with the index and lower case tables built over them
+	private static long wordBytes(Dictionary dict) {
+		long size = (long) dict.getSpellings() * ENTRY_BYTES;
+		for (Word w : dict.getWords()) size += WORD_BYTES + w.getWord().length();
+		for (String key : dict.getFoldedKeys()) size += FOLDED_BYTES + key.length();
+		return size;
+	}
+	
+	// heap estimate of the words and rules of dictionaries sharing a RuleTable
+	static long estimate(Dictionary[] dicts) {
+		long size = 0;
+		IdentityHashMap<Rule, Boolean> seen = new IdentityHashMap<>();
+		for (Dictionary dict : dicts) {
+			size += wordBytes(dict);
+			for (Word w : dict.getWords()) {
+				Rule r = w.getRule();
+				if (r != null && seen.put(r, Boolean.TRUE) == null) {
+					size += RULE_BYTES;
+					for (String expression : r.getWords()) size += EXPRESSION_BYTES + expression.length();
+				}
+			}
+		}
+		return size;
+	}
+	
+	// Word objects, not counting words only in the word index or snapshot
+	public int getWords() {	return words;	}
+	
+	// distinct spellings in the word index or snapshot
+	public int getIndexedWords() {	return indexedWords;	}
+	
+	// entries of the word index or snapshot, one per spelling and rule it is listed with
+	public int getIndexedEntries() {	return indexedEntries;	}
+	
+	// distinct Rule objects the words and indexed entries refer to
+	public int getRules() {	return rules;	}
+	
+	// words per distinct rule, what interning saves over a rule per word
+	public double getSharing() {	return rules == 0? 0 : (double) ruleReferences / rules;	}
+	
+	public int getExpressions() {	return expressions;	}
+	
+	public int getCompiledRules() {	return compiledRules;	}
+	
+	public int getDisjuncts() {	return disjuncts;	}
+	
+	// distinct connectors, with direction, that the rule expressions mention
+	public int getConnectors() {	return connectors;	}
+	
+	// connectors packed so far by the shared ConnectorTable
+	public int getPackedConnectors() {	return packedConnectors;	}
+	
+	public long getRetainedBytes() {	return wordBytes + ruleBytes + disjunctBytes + indexBytes + connectorBytes;	}
+	
+	public Load getLoad() {	return load;	}
+	
+	@Override
+	public String toString() {
+		StringBuilder s = new StringBuilder();
+		s.append("Words: ").append(words).append(" (").append(mb(wordBytes)).append(")\n");
+		if (indexedWords > 0) {
+			s.append("Indexed words: ").append(indexedEntries).append(" in ").append(indexedWords).append(" spellings");
+			s.append(indexBytes > 0? " (" + mb(indexBytes) + ")" : " (off heap)").append('\n');
+		}
+		s.append("Rules: ").append(rules).append(", ").append(expressions).append(" expressions, ");
+		s.append(String.format("%.1f", getSharing())).append(" words per rule (").append(mb(ruleBytes)).append(")\n");
+		s.append("Disjuncts: ");
+		if (compiledRules == 0) s.append("not counted, no rule compiled yet\n");
+		else {
+			s.append(disjuncts).append(" in ").append(compiledRules).append(" of ").append(rules).append(" rules (");
+			s.append(mb(disjunctBytes)).append(")\n");
+		}
+		s.append("Connectors: ").append(connectors).append(" in expressions, ").append(packedConnectors);
+		s.append(" packed (").append(mb(connectorBytes)).append(")\n");
+		s.append("Retained (estimate): ").append(mb(getRetainedBytes())).append('\n');
+		return s.toString();
+	}
+	
+	static String mb(long bytes) {
+		return String.format("%.1f MB", bytes / (1024.0 * 1024.0));
+	}
+	
+	/*
+	 * What the Loader saw while building a dictionary: the words read from each source
+	 * file, in order of size, and the milliseconds spent in each phase.
+	 */
+	public static class Load {
+		private static final int MAX_SOURCES = 20;
+		private final LinkedHashMap<String, Long> phases = new LinkedHashMap<>();
+		private final LinkedHashMap<Path, Integer> sources = new LinkedHashMap<>();
+		private long last = System.nanoTime();
+		
+		// ends the current phase
+		synchronized void phase(String name) {
+			long now = System.nanoTime();
+			phases.merge(name, (now - last) / 1000000, Long::sum);
+			last = now;
+		}
+		
+		synchronized void source(Path file, int words) {
+			sources.merge(file, words, Integer::sum);
+		}
+		
+		public synchronized Map<String, Long> getPhases() {	return new LinkedHashMap<>(phases);	}
+		
+		public synchronized Map<Path, Integer> getSources() {	return new LinkedHashMap<>(sources);	}
+		
+		@Override
+		public synchronized String toString() {
+			StringBuilder s = new StringBuilder("Load phases:");
+			for (Map.Entry<String, Long> e : phases.entrySet()) {
+				if (s.charAt(s.length() - 1) != ':') s.append(',');
+				s.append(' ').append(e.getKey()).append(' ').append(e.getValue()).append(" ms");
+			}
+			s.append('\n');
+			if (sources.isEmpty()) return s.toString();
+			ArrayList<Map.Entry<Path, Integer>> list = new ArrayList<>(sources.entrySet());
+			list.sort((a, b) -> b.getValue() - a.getValue());
+			s.append("Words by source:\n");
+			for (int i = 0; i < Math.min(list.size(), MAX_SOURCES); i++) {
+				s.append("   ").append(list.get(i).getValue()).append(' ').append(list.get(i).getKey().getFileName()).append('\n');
+			}
+			if (list.size() > MAX_SOURCES) s.append("   and ").append(list.size() - MAX_SOURCES).append(" more\n");
+			return s.toString();
+		}
+	}
+}
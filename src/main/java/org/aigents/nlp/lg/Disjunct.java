@@ -29,6 +29,8 @@ import java.util.ArrayList;
 public class Disjunct {
 	private ArrayList<String> connectors;
 	private double cost;
+	private int[] codes, left, right;
+	private boolean wildcard;
 	
 	public Disjunct(ArrayList<String> connectors, double cost) {
 		this.connectors = connectors;
@@ -42,9 +44,49 @@ public class Disjunct {
 	
 	public void addConnector(String s) {
 		connectors.add(s);
+		codes = left = right = null;
 	}
 	
+	/*
+	 * Packs the connectors against the dictionary's connector table and splits them into
+	 * the left-pointing (-) and right-pointing (+) halves. A disjunct holding anything
+	 * other than plain connectors is left unpacked and isPacked() returns false.
+	 */
+	public void pack(ConnectorTable table) {
+		int[] all = new int[connectors.size()];
+		int numRight = 0;
+		boolean wild = false;
+		for (int i = 0; i < all.length; i++) {
+			String c = connectors.get(i);
+			all[i] = table.pack(c);
+			if (all[i] == ConnectorTable.NONE) return;
+			connectors.set(i, table.intern(c));
+			if (ConnectorTable.isRight(all[i])) numRight++;
+			if (c.indexOf('*') != -1) wild = true;
+		}
+		int[] l = new int[all.length - numRight], r = new int[numRight];
+		int li = 0, ri = 0;
+		for (int c : all) {
+			if (ConnectorTable.isRight(c)) r[ri++] = c;
+			else l[li++] = c;
+		}
+		codes = all;
+		left = l;
+		right = r;
+		wildcard = wild;
+	}
+	
+	public boolean isPacked() {	return codes != null;	}
+	
+	public boolean hasWildcard() {	return wildcard;	}
+	
 	public ArrayList<String> getConnectors() {	return connectors;	}
+	
+	public int[] getCodes() {	return codes;	}
+	
+	public int[] getLeft() {	return left;	}
+	
+	public int[] getRight() {	return right;	}
 		
 	public double getCost() {	return cost;	}
 	
@@ -52,4 +94,4 @@ public class Disjunct {
 	public String toString() {
 		return connectors.toString();
 	}
-}
+}
\ No newline at end of file
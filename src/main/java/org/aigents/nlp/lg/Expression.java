@@ -0,0 +1,197 @@
+/*
+ * MIT License
+ * 
+ * Copyright (c) 2020-Present by Vignav Ramesh and Anton Kolonin, Aigents®
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package main.java.org.aigents.nlp.lg;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Set;
+
+/*
+ * Compiles a link grammar expression into disjunctive normal form. Supports "&", "or",
+ * () grouping and the () null expression, {} optionals and [] costs (one unit per
+ * bracket level, or the number written after the ']' as in "[A+]0.2"). Disjuncts costing
+ * more than MAX_COST are dropped, as in LG parsing. The parser is tolerant of the leftovers
+ * of macro expansion: unbalanced brackets are closed at the end and stray tokens such as
+ * dialect names are ignored.
+ */
+public class Expression {
+	public static final double MAX_COST = 2.7;
+	
+	private final String s;
+	private int pos;
+	private String token;
+	
+	private Expression(String s) {
+		this.s = s;
+		next();
+	}
+	
+	public static ArrayList<Disjunct> toDisjuncts(String expression) {
+		Expression e = new Expression(expression);
+		ArrayList<Term> terms = e.or();
+		while (e.token != null) {
+			e.next();
+			terms.addAll(e.or());
+		}
+		// optionals expand to the same connector list more than once, e.g. "{Ds-} & [Wa-] &
+		// ({Mf+} or {NM+})" gives [Ds-, Wa-] twice; keep the first, at the lowest cost seen
+		ArrayList<Disjunct> disjuncts = new ArrayList<>(terms.size());
+		HashMap<List<String>, Integer> seen = new HashMap<>();
+		for (Term t : terms) {
+			ArrayList<String> connectors = new ArrayList<>(t.connectors.length);
+			for (String c : t.connectors) connectors.add(c);
+			Integer at = seen.putIfAbsent(connectors, disjuncts.size());
+			if (at == null) disjuncts.add(new Disjunct(connectors, t.cost));
+			else if (t.cost < disjuncts.get(at).getCost()) disjuncts.set(at, new Disjunct(connectors, t.cost));
+		}
+		return disjuncts;
+	}
+	
+	// adds the connectors an expression mentions to names, without compiling it
+	static void connectors(String expression, Set<String> names) {
+		Expression e = new Expression(expression);
+		for (; e.token != null; e.next()) {
+			char dir = e.token.charAt(e.token.length() - 1);
+			if (e.token.length() > 1 && (dir == '+' || dir == '-')) names.add(e.token);
+		}
+	}
+	
+	private ArrayList<Term> or() {
+		ArrayList<Term> terms = and();
+		while ("or".equals(token)) {
+			next();
+			terms.addAll(and());
+		}
+		return terms;
+	}
+	
+	private ArrayList<Term> and() {
+		ArrayList<Term> terms = unary();
+		while (token != null && !"or".equals(token) && !closing(token)) {
+			if ("&".equals(token)) next();
+			terms = product(terms, unary());
+		}
+		return terms;
+	}
+	
+	private ArrayList<Term> unary() {
+		ArrayList<Term> terms;
+		if (token == null || closing(token) || "or".equals(token) || "&".equals(token)) {
+			return empty();
+		}
+		String t = token;
+		next();
+		switch (t) {
+		case "(":
+			terms = ")".equals(token)? empty() : or();
+			close(")");
+			return terms;
+		case "[":
+			terms = "]".equals(token)? empty() : or();
+			close("]");
+			double cost = 1;
+			if (token != null && Macros.costLength(token, 0) == token.length()) {
+				cost = Double.parseDouble(token);
+				next();
+			}
+			ArrayList<Term> costed = new ArrayList<>(terms.size());
+			for (Term term : terms) {
+				if (term.cost + cost <= MAX_COST) costed.add(new Term(term.connectors, term.cost + cost));
+			}
+			return costed;
+		case "{":
+			terms = "}".equals(token)? new ArrayList<>() : or();
+			close("}");
+			terms.add(new Term(new String[0], 0));
+			return terms;
+		default:
+			char dir = t.charAt(t.length() - 1);
+			if (t.length() > 1 && (dir == '+' || dir == '-')) {
+				ArrayList<Term> single = new ArrayList<>(1);
+				single.add(new Term(new String[] {t}, 0));
+				return single;
+			}
+			return empty();
+		}
+	}
+	
+	private static ArrayList<Term> product(ArrayList<Term> left, ArrayList<Term> right) {
+		ArrayList<Term> terms = new ArrayList<>(left.size() * right.size());
+		for (Term l : left) {
+			for (Term r : right) {
+				double cost = l.cost + r.cost;
+				if (cost > MAX_COST) continue;
+				String[] c = new String[l.connectors.length + r.connectors.length];
+				System.arraycopy(l.connectors, 0, c, 0, l.connectors.length);
+				System.arraycopy(r.connectors, 0, c, l.connectors.length, r.connectors.length);
+				terms.add(new Term(c, cost));
+			}
+		}
+		return terms;
+	}
+	
+	private static ArrayList<Term> empty() {
+		ArrayList<Term> terms = new ArrayList<>(1);
+		terms.add(new Term(new String[0], 0));
+		return terms;
+	}
+	
+	private static boolean closing(String t) {
+		return t.equals(")") || t.equals("]") || t.equals("}");
+	}
+	
+	private void close(String closer) {
+		if (closer.equals(token)) next();
+	}
+	
+	private void next() {
+		int n = s.length();
+		while (pos < n && Character.isWhitespace(s.charAt(pos))) pos++;
+		if (pos == n) {
+			token = null;
+			return;
+		}
+		char c = s.charAt(pos);
+		if ("()[]{}&".indexOf(c) != -1) {
+			token = String.valueOf(c);
+			pos++;
+			return;
+		}
+		int start = pos;
+		while (pos < n && !Character.isWhitespace(s.charAt(pos)) && "()[]{}&".indexOf(s.charAt(pos)) == -1) pos++;
+		token = s.substring(start, pos);
+	}
+	
+	private static class Term {
+		private final String[] connectors;
+		private final double cost;
+		
+		private Term(String[] connectors, double cost) {
+			this.connectors = connectors;
+			this.cost = cost;
+		}
+	}
+}
@@ -0,0 +1,142 @@
+/*
+ * MIT License
+ * 
+ * Copyright (c) 2020-Present by Vignav Ramesh and Anton Kolonin, Aigents®
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package main.java.org.aigents.nlp.lg;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/*
+ * Aho-Corasick automaton over the multi-word entries of a dictionary, such as "each_other"
+ * or "as_well_as". Tokens are numbered and each idiom is a key of a CharTrie with one
+ * char per token, so a token stream is matched against all the idioms in a single pass.
+ */
+public class Idioms {
+	private final HashMap<String, Character> ids = new HashMap<>();
+	private final CharTrie trie = new CharTrie();
+	private final ArrayList<Integer> lengths = new ArrayList<>();
+	private final int[] fail, output;
+	
+	public Idioms(Iterable<String> words) {
+		for (String word : words) {
+			String[] parts = word.toLowerCase().split("_");
+			if (parts.length < 2 || ids.size() + parts.length >= Character.MAX_VALUE) continue;
+			char[] key = new char[parts.length];
+			for (int i = 0; i < parts.length; i++) {
+				Character id = ids.get(parts[i]);
+				if (id == null) {
+					id = (char) (ids.size() + 1);
+					ids.put(parts[i], id);
+				}
+				key[i] = id;
+			}
+			trie.add(new String(key), false, lengths.size());
+			lengths.add(parts.length);
+		}
+		fail = new int[trie.nodes()];
+		output = new int[trie.nodes()];
+		link();
+	}
+	
+	/*
+	 * Failure links in breadth-first order: the longest proper suffix of a node's path that
+	 * is also a path of the trie, and the nearest node on that chain ending an idiom.
+	 */
+	private void link() {
+		int[] queue = new int[fail.length];
+		int head = 0, tail = 0;
+		output[0] = -1;
+		for (int c = trie.firstChild(0); c >= 0; c = trie.sibling(c)) {
+			output[c] = -1;
+			queue[tail++] = c;
+		}
+		while (head < tail) {
+			int node = queue[head++];
+			for (int c = trie.firstChild(node); c >= 0; c = trie.sibling(c)) {
+				int f = goTo(fail[node], trie.label(c));
+				fail[c] = f;
+				output[c] = trie.first(f) >= 0? f : output[f];
+				queue[tail++] = c;
+			}
+		}
+	}
+	
+	private int goTo(int node, char label) {
+		while (true) {
+			int child = trie.child(node, label);
+			if (child >= 0) return child;
+			if (node == 0) return 0;
+			node = fail[node];
+		}
+	}
+	
+	public int size() {	return lengths.size();	}
+	
+	/*
+	 * Length of the longest idiom starting at every token, or 0. Idioms are matched
+	 * regardless of case.
+	 */
+	public int[] match(List<String> tokens) {
+		int[] longest = new int[tokens.size()];
+		int node = 0;
+		for (int i = 0; i < tokens.size(); i++) {
+			Character id = ids.get(tokens.get(i).toLowerCase());
+			if (id == null) {
+				node = 0;
+				continue;
+			}
+			node = goTo(node, id);
+			for (int n = trie.first(node) >= 0? node : output[node]; n > 0; n = output[n]) {
+				for (int e = trie.first(n); e >= 0; e = trie.next(e)) {
+					int length = lengths.get(trie.value(e));
+					if (length > longest[i - length + 1]) longest[i - length + 1] = length;
+				}
+			}
+		}
+		return longest;
+	}
+	
+	/*
+	 * Tokens with the idioms joined into single units by '_', taking the longest idiom
+	 * at each position from left to right; the tokens themselves if there is none.
+	 */
+	public List<String> collapse(List<String> tokens) {
+		int[] longest = match(tokens);
+		ArrayList<String> units = null;
+		for (int i = 0; i < tokens.size(); ) {
+			int length = Math.max(longest[i], 1);
+			if (length > 1 && units == null) units = new ArrayList<>(tokens.subList(0, i));
+			if (units != null) units.add(String.join("_", tokens.subList(i, i + length)));
+			i += length;
+		}
+		return units == null? tokens : units;
+	}
+	
+	public String[] collapse(String[] tokens) {
+		List<String> units = collapse(Arrays.asList(tokens));
+		return units.size() == tokens.length? tokens : units.toArray(new String[0]);
+	}
+}
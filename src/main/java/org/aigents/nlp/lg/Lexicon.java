@@ -0,0 +1,90 @@
+/*
+ * MIT License
+ * 
+ * Copyright (c) 2020-Present by Vignav Ramesh and Anton Kolonin, Aigents®
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package main.java.org.aigents.nlp.lg;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+
+/*
+ * Immutable word frequency table backed by an open-addressing hash table of keys and
+ * primitive counts. Tables are loaded once per file and shared process-wide; lookups do
+ * not allocate and are safe from any thread.
+ */
+public class Lexicon {
+	private static final HashMap<Path, Lexicon> loaded = new HashMap<>();
+	
+	private final String[] keys;
+	private final long[] counts;
+	private final int mask;
+	private final int size;
+	
+	private Lexicon(List<String> lines) {
+		int capacity = Integer.highestOneBit(Math.max(2, lines.size()) * 2 - 1) << 1;
+		keys = new String[capacity];
+		counts = new long[capacity];
+		mask = capacity - 1;
+		int n = 0;
+		for (String line : lines) {
+			String[] parts = line.split("\\s+");
+			int slot = slot(parts[0]);
+			if (keys[slot] == null) {
+				keys[slot] = parts[0];
+				n++;
+			}
+			counts[slot] = Long.parseLong(parts[1]);
+		}
+		size = n;
+	}
+	
+	public static synchronized Lexicon load(Path p) throws IOException {
+		Path key = p.toAbsolutePath().normalize();
+		Lexicon lexicon = loaded.get(key);
+		if (lexicon == null) {
+			lexicon = new Lexicon(Files.readAllLines(key));
+			loaded.put(key, lexicon);
+		}
+		return lexicon;
+	}
+	
+	// returns 0 for words not in the table
+	public long get(String word) {
+		int slot = slot(word);
+		return keys[slot] == null? 0 : counts[slot];
+	}
+	
+	public boolean contains(String word) {	return keys[slot(word)] != null;	}
+	
+	public int size() {	return size;	}
+	
+	private int slot(String word) {
+		int h = word.hashCode() * 0x9E3779B9;
+		int i = (h ^ (h >>> 16)) & mask;
+		while (keys[i] != null && !keys[i].equals(word)) i = (i + 1) & mask;
+		return i;
+	}
+}
@@ -0,0 +1,201 @@
+/*
+ * MIT License
+ * 
+ * Copyright (c) 2020-Present by Vignav Ramesh and Anton Kolonin, Aigents®
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package main.java.org.aigents.nlp.lg;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * Cost estimate of a word order from the disjunct costs of its words. Every word takes one
+ * disjunct, the cheapest within the ceiling that links to each neighbour it can link to at
+ * all: a neighbour none of its disjuncts links to is left out, and if no disjunct links to
+ * both, the left one is kept. The estimate of an order is the sum over its words. It is a
+ * heuristic, not the cost of a parse, as LG words need not link to their neighbours and a
+ * neighbour is not held to one disjunct for both of its links; with costs of 0 and up it
+ * only grows as words are added on the right, so it can bound an order while it is built.
+ * The disjuncts of every rule by cost and the links of every pair of rules are memoized.
+ */
+public class LinkCosts {
+	private final ConnectorTable table;
+	private final ConnectorMatcher matcher;
+	private final double ceiling;
+	private final ConcurrentHashMap<Rule, Costs> costs = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<Rule, ConcurrentHashMap<Rule, BitSet>> lefts = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<Rule, ConcurrentHashMap<Rule, BitSet>> rights = new ConcurrentHashMap<>();
+	
+	public LinkCosts(ConnectorTable table, double ceiling) {
+		this.table = table;
+		this.matcher = table.getMatcher();
+		this.ceiling = ceiling;
+	}
+	
+	public ConnectorTable getConnectorTable() {	return table;	}
+	
+	public double getCeiling() {	return ceiling;	}
+	
+	/*
+	 * Cost of the disjunct a word with the given rules takes between its neighbours, null
+	 * or empty at the ends; 0 for a word without packed disjuncts, as nothing is known of
+	 * it, and POSITIVE_INFINITY if all of them cost more than the ceiling.
+	 */
+	public double cost(List<Rule> word, List<Rule> left, List<Rule> right) {
+		double min = Double.POSITIVE_INFINITY;
+		boolean known = false;
+		for (Rule rule : word) {
+			Costs c = costs(rule);
+			if (!c.packed) continue;
+			known = true;
+			int i = first(links(rule, c, left, false), links(rule, c, right, true), c.costs.length);
+			if (i >= 0) min = Math.min(min, c.costs[i]);
+		}
+		return known? min : 0;
+	}
+	
+	// whether a disjunct of rule within the ceiling has the connector, @ aside
+	public boolean allows(Rule rule, int code) {
+		Costs c = costs(rule);
+		int[] codes = ConnectorTable.isRight(code)? c.rightCodes : c.leftCodes;
+		return Arrays.binarySearch(codes, code & ~ConnectorTable.MULTI) >= 0;
+	}
+	
+	// cheapest disjunct linking on both sides, else on the left one
+	private static int first(BitSet left, BitSet right, int size) {
+		if (left == null && right == null) return size > 0? 0 : -1;
+		if (left == null) return right.nextSetBit(0);
+		if (right == null) return left.nextSetBit(0);
+		for (int i = left.nextSetBit(0); i >= 0; i = left.nextSetBit(i + 1)) {
+			if (right.get(i)) return i;
+		}
+		return left.nextSetBit(0);
+	}
+	
+	// disjuncts of rule linking to a neighbour with one of the rules, null if there are none
+	private BitSet links(Rule rule, Costs c, List<Rule> neighbours, boolean right) {
+		if (neighbours == null) return null;
+		BitSet union = null;
+		boolean shared = false;
+		for (Rule neighbour : neighbours) {
+			BitSet b = (right? rights : lefts).computeIfAbsent(rule, k -> new ConcurrentHashMap<>())
+					.computeIfAbsent(neighbour, k -> links(c, costs(neighbour), right));
+			if (b.isEmpty()) continue;
+			if (union == null) {
+				union = b;
+				shared = true;
+			} else {
+				if (shared) union = (BitSet) union.clone();
+				shared = false;
+				union.or(b);
+			}
+		}
+		return union;
+	}
+	
+	private BitSet links(Costs c, Costs neighbour, boolean right) {
+		int[] codes = right? c.rightCodes : c.leftCodes, others = right? neighbour.leftCodes : neighbour.rightCodes;
+		int[] linking = new int[codes.length];
+		int n = 0;
+		for (int code : codes) {
+			for (int other : others) {
+				if (matcher.matches(code, other)) {
+					linking[n++] = code;
+					break;
+				}
+			}
+		}
+		int[][] connectors = right? c.rights : c.lefts;
+		BitSet b = new BitSet(connectors.length);
+		if (n == 0) return b;
+		linking = Arrays.copyOf(linking, n);
+		for (int i = 0; i < connectors.length; i++) {
+			for (int code : connectors[i]) {
+				if (Arrays.binarySearch(linking, code & ~ConnectorTable.MULTI) >= 0) {
+					b.set(i);
+					break;
+				}
+			}
+		}
+		return b;
+	}
+	
+	private Costs costs(Rule rule) {
+		Costs c = costs.get(rule);
+		if (c == null) {
+			rule.setConnectorTable(table);
+			c = new Costs(rule.getDisjuncts(), ceiling);
+			costs.put(rule, c);
+		}
+		return c;
+	}
+	
+	// packed disjuncts within the ceiling by cost, and the sets of their connectors
+	private static class Costs {
+		private final boolean packed;
+		private final double[] costs;
+		private final int[][] lefts, rights;
+		private final int[] leftCodes, rightCodes;
+		
+		private Costs(List<Disjunct> disjuncts, double ceiling) {
+			ArrayList<Disjunct> within = new ArrayList<>();
+			boolean any = false;
+			for (Disjunct d : disjuncts) {
+				if (!d.isPacked()) continue;
+				any = true;
+				if (d.getCost() <= ceiling) within.add(d);
+			}
+			packed = any;
+			within.sort(Comparator.comparingDouble(Disjunct::getCost));
+			costs = new double[within.size()];
+			lefts = new int[within.size()][];
+			rights = new int[within.size()][];
+			for (int i = 0; i < costs.length; i++) {
+				costs[i] = within.get(i).getCost();
+				lefts[i] = within.get(i).getLeft();
+				rights[i] = within.get(i).getRight();
+			}
+			leftCodes = codes(lefts);
+			rightCodes = codes(rights);
+		}
+		
+		private static int[] codes(int[][] connectors) {
+			int n = 0;
+			for (int[] c : connectors) n += c.length;
+			int[] codes = new int[n];
+			n = 0;
+			for (int[] c : connectors) {
+				for (int code : c) codes[n++] = code & ~ConnectorTable.MULTI;
+			}
+			Arrays.sort(codes);
+			int size = 0;
+			for (int i = 0; i < n; i++) {
+				if (size == 0 || codes[size - 1] != codes[i]) codes[size++] = codes[i];
+			}
+			return Arrays.copyOf(codes, size);
+		}
+	}
+}
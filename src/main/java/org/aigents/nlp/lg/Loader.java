@@ -26,19 +26,27 @@ package main.java.org.aigents.nlp.lg;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RecursiveAction;
 
 public class Loader {
 	public static void main(String[] args) throws IOException {
-		if (args.length >= 2) {
+		if (args.length >= 2 && args[0].equals("--stats")) {
+			List<String> options = Arrays.asList(args).subList(2, args.length);
+			stats(args[1], options.contains("--lazy"), options.contains("--disjuncts"));
+		} else if (args.length >= 2) {
 			if (args[0].contains("/4.0.dict")) {
-				Dictionary[] dicts = buildLGDict(args[0]);
+				Dictionary[] dicts = buildLGDict(args[0], true);
 				Dictionary dict = dicts[0];
 				Dictionary hyphenated = dicts[1];
 				if (args[1].contains("_")) {
@@ -54,7 +62,6 @@ public class Loader {
 	}
 	
 	public static HashMap<String, Integer> getContextLexicon(String fname) throws IOException {
-		HashMap<String, Integer> map = new HashMap<>();
 		Path p;
 		if (System.getProperty("user.dir").endsWith("src")) {
 			p = Paths.get(Paths.get("test/resources/contexts/" + fname).toAbsolutePath().toString());
@@ -63,24 +70,30 @@ public class Loader {
 		}
 		File f = p.toFile();
 		if (!f.exists()) return null;
+		return ContextCorpus.open(p).getLexicon();
+	}
+	
+	public static HashMap<String, Integer> getCorpusLexicon(String args) throws IOException {
+		HashMap<String, Integer> map = new HashMap<>();
+		File f = corpusLexiconPath(args).toFile();
+		if (!f.exists()) return null;
 		List<String> list = Files.readAllLines(f.toPath());
 		Iterator<String> it = list.iterator();
 		while (it.hasNext()) {
 			String[] parts = it.next().split("\\s+");
-			for (String part : parts) {
-				part = part.toLowerCase();
-				if (part.length() == 0) continue;
-				part = part.replace("\"", "");
-				if (part.endsWith(".") || part.endsWith(",") || part.endsWith(";")) part = part.substring(0, part.length() - 1);
-				if (map.containsKey(part)) map.put(part, map.get(part) + 1);
-				else map.put(part, 1);
-			}
+			map.put(parts[0], Integer.parseInt(parts[1]));
 		}
 		return map;
 	}
 	
-	public static HashMap<String, Integer> getCorpusLexicon(String args) throws IOException {
-		HashMap<String, Integer> map = new HashMap<>();
+	// same table as getCorpusLexicon, read once per process and shared
+	public static Lexicon getCorpusFrequencies(String args) throws IOException {
+		Path p = corpusLexiconPath(args);
+		if (!p.toFile().exists()) return null;
+		return Lexicon.load(p);
+	}
+	
+	private static Path corpusLexiconPath(String args) {
 		Path p;
 		if (args.contains("/4.0.dict")) {
 			if (System.getProperty("user.dir").endsWith("src")) {
@@ -95,93 +108,186 @@ public class Loader {
 				p = Paths.get(Paths.get("src/test/resources/lexicon_english.txt").toAbsolutePath().toString());
 			}
 		}
-		File f = p.toFile();
-		if (!f.exists()) return null;
-		List<String> list = Files.readAllLines(f.toPath());
-		Iterator<String> it = list.iterator();
-		while (it.hasNext()) {
-			String[] parts = it.next().split("\\s+");
-			map.put(parts[0], Integer.parseInt(parts[1]));
+		return p;
+	}
+	
+	// sizes of the dictionaries for path, with the heap taken as measured around loading
+	private static void stats(String path, boolean lazy, boolean compile) throws IOException {
+		Runtime runtime = Runtime.getRuntime();
+		System.gc();
+		long before = runtime.totalMemory() - runtime.freeMemory();
+		Dictionary[] dicts = path.contains("/4.0.dict")? buildLGDict(path, lazy) : new Dictionary[] {grammarBuildLinks(path, false)};
+		if (dicts == null || dicts[0] == null) {
+			System.out.println("Dictionary " + path + " not found.");
+			return;
 		}
-		return map;
+		System.gc();
+		long after = runtime.totalMemory() - runtime.freeMemory();
+		for (int i = 0; i < dicts.length; i++) {
+			System.out.println(i == 0? "Dictionary:" : "Hyphenated:");
+			System.out.print(dicts[i].getStats(compile));
+		}
+		System.out.println("Measured heap: " + DictionaryStats.mb(after - before));
+		if (dicts[0].getLoad() != null) System.out.print(dicts[0].getLoad());
 	}
 	
 	private static void find(Dictionary dict, String word) {
-		for (Word w : dict.getWords()) {
-			if (w.getWord().equals(word)) {
-				System.out.print(w.getWord() + ": ");
-				Rule rule = w.getRule();
-				assert rule != null && rule.getWords().size() > 0: " No valid rules";
-				System.out.println(rule);
-				ArrayList<Disjunct> disjuncts = rule.getDisjuncts();
-				assert disjuncts != null && disjuncts.size() > 0 : "No valid disjunct";
-				System.out.print("Disjuncts: ");
-				for (int i = 0; i < disjuncts.size() - 1; i++) {
-					System.out.print(disjuncts.get(i) + "; ");
-				}
-				System.out.println(disjuncts.get(disjuncts.size() - 1));
+		for (Word w : dict.getEntries(word)) {
+			System.out.print(w.getWord() + ": ");
+			Rule rule = w.getRule();
+			assert rule != null && rule.getWords().size() > 0: " No valid rules";
+			System.out.println(rule);
+			ArrayList<Disjunct> disjuncts = rule.getDisjuncts();
+			assert disjuncts != null && disjuncts.size() > 0 : "No valid disjunct";
+			System.out.print("Disjuncts: ");
+			for (int i = 0; i < disjuncts.size() - 1; i++) {
+				System.out.print(disjuncts.get(i) + "; ");
 			}
+			System.out.println(disjuncts.get(disjuncts.size() - 1));
 		}
 	}
 	
 	public static Dictionary[] buildLGDict(String path) throws IOException {
-		Path p;
-		if (System.getProperty("user.dir").endsWith("src")) {
-			p = Paths.get(Paths.get("../data/" + path).toAbsolutePath().toString());
-		} else {
-			p = Paths.get(Paths.get("data/" + path).toAbsolutePath().toString());
-		}
+		return buildLGDict(path, false);
+	}
+	
+	/*
+	 * With lazy set, Word and Rule objects are built on first lookup and kept in a bounded
+	 * cache (see Dictionary.setWordIndex): from the memory-mapped snapshot when it is up
+	 * to date, which keeps the word tables off the heap, and otherwise from an index of the
+	 * words/ files and word lists built while parsing them.
+	 */
+	public static Dictionary[] buildLGDict(String path, boolean lazy) throws IOException {
+		return buildLGDict(path, lazy, new ConnectorTable());
+	}
+	
+	// connectors may be shared with dictionaries loaded earlier, see DictionaryRegistry
+	public static Dictionary[] buildLGDict(String path, boolean lazy, ConnectorTable connectors) throws IOException {
+		return buildLGDict(path, lazy, false, connectors);
+	}
+	
+	/*
+	 * Dictionaries for path served from the memory-mapped snapshot, as DictionaryRegistry
+	 * holds them: if the snapshot is missing or out of date, the dictionary is parsed and
+	 * the snapshot written on the calling thread and then opened, so the parsed words are
+	 * garbage as soon as this returns. They are only returned if the snapshot cannot be
+	 * written. Either way the disjuncts are compiled on the heap as words are used.
+	 */
+	public static Dictionary[] mapLGDict(String path, ConnectorTable connectors) throws IOException {
+		return buildLGDict(path, true, true, connectors);
+	}
+	
+	private static Dictionary[] buildLGDict(String path, boolean lazy, boolean map, ConnectorTable connectors) throws IOException {
+		Path p = dictPath(path);
 		File f = p.toFile();
 		if (!f.exists()) return null;
-		List<String> list = Files.readAllLines(f.toPath());
-		Iterator<String> it = list.iterator();
-		while (it.hasNext()) {
-			String str = it.next();
+		DictionaryStats.Load load = new DictionaryStats.Load();
+		Path snapshot = Snapshot.pathFor(p);
+		Dictionary[] dicts = lazy? Snapshot.open(snapshot, connectors) : Snapshot.read(snapshot, connectors);
+		load.phase("snapshot");
+		if (dicts != null) {
+			for (Map.Entry<Path, Integer> e : Snapshot.sourceWords(snapshot).entrySet()) load.source(e.getKey(), e.getValue());
+		} else {
+			List<String> list = readLines(p, false);
+			String[] lines = list.toArray(new String[list.size()]);
+			List<Path> sources = new ArrayList<>();
+			sources.add(p);
+			load.phase("read");
+			dicts = makeLGDict(lines, sources, lazy && !map, connectors, load);
+			if (dicts != null && map) dicts = map(snapshot, dicts, sources, connectors, load);
+			else if (dicts != null && !lazy) Snapshot.writeLater(snapshot, dicts, sources, load.getSources());
+		}
+		if (dicts != null) {
+			List<Path> includes = includes(p);
+			if (!includes.isEmpty()) {
+				dicts[0].setMorphology(new Morphology(p, dicts[0].getRuleTable()));
+				load.phase("morphology");
+			}
+			Path regex = p.resolveSibling("4.0.regex");
+			if (regex.toFile().exists()) {
+				dicts[0].setRegexClasses(new RegexClasses(regex, p, dicts[0].getRuleTable()));
+				load.phase("regex");
+			}
+			for (Dictionary d : dicts) d.setLoad(load);
+		}
+		return dicts;
+	}
+	
+	private static Dictionary[] map(Path snapshot, Dictionary[] dicts, List<Path> sources, ConnectorTable connectors, DictionaryStats.Load load) {
+		try {
+			Snapshot.write(snapshot, dicts, sources, load.getSources());
+			Dictionary[] mapped = Snapshot.open(snapshot, connectors);
+			load.phase("snapshot");
+			if (mapped != null) return mapped;
+		} catch (IOException e) {
+			System.err.println("Could not write dictionary snapshot " + snapshot + ": " + e.getMessage());
+		}
+		return dicts;
+	}
+	
+	// lines of a dictionary file without comments and header entries, #include lines are kept if asked for
+	static List<String> readLines(Path p, boolean includes) throws IOException {
+		List<String> list = new ArrayList<>();
+		for (String str : Files.readAllLines(p)) {
 			if ((str.contains("%") && !str.contains("\"%\"")) || str.contains("<dictionary-version-number>") 
-					|| str.contains("<dictionary-locale>") || str.contains("#include")) {
-				it.remove();
+					|| str.contains("<dictionary-locale>") || (!includes && str.contains("#include"))) {
+				continue;
 			}
+			list.add(str.trim());
 		}
-		String[] lines = new String[list.size()];
-		for (int i = 0; i < list.size(); i++) {
-			lines[i] = list.get(i).trim();
+		return list;
+	}
+	
+	// files named by the #include lines of a dictionary, e.g. the morphology files of data/ru
+	static List<Path> includes(Path p) throws IOException {
+		List<Path> includes = new ArrayList<>();
+		for (String str : readLines(p, true)) {
+			Path include = include(str);
+			if (include != null) includes.add(include);
 		}
-		return makeLGDict(lines);
+		return includes;
+	}
+	
+	static Path include(String line) {
+		if (!line.startsWith("#include")) return null;
+		int start = line.indexOf('"'), end = line.lastIndexOf('"');
+		if (start < 0 || end <= start) return null;
+		String name = line.substring(start + 1, end);
+		return dictPath(name.startsWith("/")? name.substring(1) : name);
 	}
 	
-	private static Dictionary[] makeLGDict(String[] lines) throws IOException {
-		HashMap<String, String> macros = new HashMap<>();
-		Dictionary dict = new Dictionary();
-		Dictionary hyphenated = new Dictionary();
+	static Path dictPath(String path) {
+		if (System.getProperty("user.dir").endsWith("src")) {
+			return Paths.get(Paths.get("../data/" + path).toAbsolutePath().toString());
+		} else {
+			return Paths.get(Paths.get("data/" + path).toAbsolutePath().toString());
+		}
+	}
+	
+	/*
+	 * Macros are resolved in order on the calling thread; the words/ files and word lists
+	 * that use them are then read and expanded in parallel in the common fork-join pool.
+	 * Their rules are interned in order, so rule ids do not depend on scheduling, and the
+	 * words are indexed in parallel again, each entry into dictionaries (or word indexes)
+	 * of its own, which are merged in their original order at the end.
+	 */
+	private static Dictionary[] makeLGDict(String[] lines, List<Path> sources, boolean lazy, ConnectorTable connectors, DictionaryStats.Load load) throws IOException {
+		Macros macros = new Macros();
+		RuleTable ruleTable = new RuleTable();
+		ArrayList<String> rules = lazy? new ArrayList<>() : null;
+		ArrayList<EntryTask> tasks = new ArrayList<>();
 		for (int i = 0; i < lines.length; i++) {
 			String line = lines[i];
 			if (line.length() == 0) continue;
+			int end = entryEnd(lines, i);
+			String str = entry(lines, i, end);
+			i = end;
 			if (line.charAt(0) == '<') { // process macros
-				String str = "";
-				while (!lines[i].contains(";")) {
-					str += lines[i] + " ";
-					i++;
-				}
-				str += " " + lines[i].substring(0, lines[i].length()-1);
 				if (str.trim().length() == 0) continue;
 				str = processString(str);
 				String[] parts = getParts(str);
-				String rule = parts[1];
-				while (rule.contains("<")) {
-					String macro = rule.substring(rule.indexOf("<"), rule.indexOf(">")+1);
-					rule = rule.replace(macro, macros.get(macro));
-				}
-				rule = rule.replaceAll("\\d", "");
-				for (String m : parts[0].split(" ")) {
-					macros.put(m, rule);
-				}
+				macros.define(parts[0], parts[1]);
 			} else if (line.contains("/words/")) { // process files
-				String str = "";
-				while (!lines[i].contains(";")) {
-					str += lines[i] + " ";
-					i++;
-				}
-				str += " " + lines[i].substring(0, lines[i].length()-1);
 				String[] parts = getParts(str);
 				for (String path : parts[0].split(" ")) {
 					Path p;
@@ -192,34 +298,159 @@ public class Loader {
 					}
 					File f = p.toFile();
 					if (!f.exists()) return null;
-					List<String> list = Files.readAllLines(f.toPath());
-					for (String l : list) {
-						for (String word : l.split(" ")) {
-							addRule(dict, hyphenated, macros, word, parts[1]);
-						}
-					}
+					sources.add(p);
+					tasks.add(new EntryTask(macros, p, null, parts[1], tasks.size(), rules));
 				}
 			} else { // process words or lists of words
-				String str = "";
-				while (!lines[i].contains(";")) {
-					str += lines[i] + " ";
-					i++;
-				}
-				str += " " + lines[i].substring(0, lines[i].length()-1);
 				if (str.contains("\"%\"")) str = str.replace("\"%\"", "%");
 				String[] parts = getParts(str);
 				parts[1] = processString(parts[1]);
 				parts[0] = parts[0].replace("\"", "");
 				for (int k = 0; k < parts.length; k++) parts[k] = parts[k].trim();
-				for (String word : parts[0].split(" ")) {
-					addRule(dict, hyphenated, macros, word, parts[1]);
-				}
+				tasks.add(new EntryTask(macros, null, parts[0], parts[1], tasks.size(), rules));
+			}
+		}
+		if (lazy) {
+			for (EntryTask task : tasks) rules.add(task.rule);
+		}
+		load.phase("macros");
+		for (EntryTask task : tasks) task.fork();
+		WordIndex index = lazy? new WordIndex(macros, rules, ruleTable) : null;
+		WordIndex hyphenatedIndex = lazy? new WordIndex(macros, rules, ruleTable) : null;
+		ArrayList<PartTask> parts = new ArrayList<>(lazy? 0 : tasks.size());
+		int numWords = 0;
+		for (EntryTask task : tasks) {
+			try {
+				task.join();
+			} catch (UncheckedIOException e) {
+				throw e.getCause();
 			}
+			load.source(task.file == null? sources.get(0) : task.file, task.tokens.size());
+			numWords += task.tokens.size();
+			if (lazy) {
+				if (task.index != null) index.addAll(task.index);
+				if (task.hyphenatedIndex != null) hyphenatedIndex.addAll(task.hyphenatedIndex);
+			} else {
+				PartTask part = new PartTask(task.tokens, ruleTable.intern(task.expressions), connectors, ruleTable);
+				part.fork();
+				parts.add(part);
+			}
+		}
+		Dictionary dict = new Dictionary(connectors, ruleTable, lazy? 0 : numWords);
+		Dictionary hyphenated = new Dictionary(connectors, ruleTable);
+		for (PartTask part : parts) {
+			part.join();
+			if (part.dict != null) dict.addAll(part.dict);
+			if (part.hyphenated != null) hyphenated.addAll(part.hyphenated);
+		}
+		if (lazy) {
+			dict.setWordIndex(index);
+			hyphenated.setWordIndex(hyphenatedIndex);
 		}
+		load.phase("entries");
 		return new Dictionary[] {dict, hyphenated};
 	}
 	
-	private static String[] getParts(String str) {
+	/*
+	 * Reads one words/ file or word list and expands its rule or, with rules set (lazy
+	 * loading), indexes its words into word indexes of its own that refer to the rule by
+	 * the position of the task. Words joined by '_' go to the hyphenated index.
+	 */
+	private static class EntryTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final Macros macros;
+		private final Path file;
+		private final String words, rule;
+		private final int id;
+		private final ArrayList<String> rules;
+		private final ArrayList<String> tokens = new ArrayList<>();
+		private List<String> expressions;
+		private WordIndex index, hyphenatedIndex;
+		
+		private EntryTask(Macros macros, Path file, String words, String rule, int id, ArrayList<String> rules) {
+			this.macros = macros;
+			this.file = file;
+			this.words = words;
+			this.rule = rule;
+			this.id = id;
+			this.rules = rules;
+		}
+		
+		@Override
+		protected void compute() {
+			if (file != null) {
+				List<String> list;
+				try {
+					list = Files.readAllLines(file);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+				for (String l : list) {
+					for (String word : l.split(" ")) tokens.add(word);
+				}
+			} else {
+				for (String word : words.split(" ")) tokens.add(word);
+			}
+			if (rules == null) {
+				expressions = macros.expressions(rule);
+				return;
+			}
+			for (String word : tokens) {
+				if (word.contains("_")) {
+					if (hyphenatedIndex == null) hyphenatedIndex = new WordIndex();
+					hyphenatedIndex.add(word, id);
+				} else {
+					if (index == null) index = new WordIndex();
+					index.add(word, id);
+				}
+			}
+		}
+	}
+	
+	// words of one entry with their interned rule, indexed into dictionaries of their own
+	private static class PartTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final ArrayList<String> tokens;
+		private final Rule rule;
+		private final ConnectorTable connectors;
+		private final RuleTable ruleTable;
+		private Dictionary dict, hyphenated;
+		
+		private PartTask(ArrayList<String> tokens, Rule rule, ConnectorTable connectors, RuleTable ruleTable) {
+			this.tokens = tokens;
+			this.rule = rule;
+			this.connectors = connectors;
+			this.ruleTable = ruleTable;
+		}
+		
+		@Override
+		protected void compute() {
+			for (String word : tokens) {
+				if (word.contains("_")) {
+					if (hyphenated == null) hyphenated = new Dictionary(connectors, ruleTable);
+					hyphenated.addWord(makeWord(word, rule));
+				} else {
+					if (dict == null) dict = new Dictionary(connectors, ruleTable);
+					dict.addWord(makeWord(word, rule));
+				}
+			}
+		}
+	}
+	
+	// an entry runs up to the first line containing ';', which is dropped with its last character
+	static int entryEnd(String[] lines, int start) {
+		int end = start;
+		while (lines[end].indexOf(';') < 0) end++;
+		return end;
+	}
+	
+	static String entry(String[] lines, int start, int end) {
+		StringBuilder str = new StringBuilder();
+		for (int i = start; i < end; i++) str.append(lines[i]).append(' ');
+		return str.append(' ').append(lines[end], 0, lines[end].length() - 1).toString();
+	}
+	
+	static String[] getParts(String str) {
 		String[] parts;
 		if (str.split(":").length > 2) {
 			int idx = str.lastIndexOf(":");
@@ -233,108 +464,75 @@ public class Loader {
 		return parts;
 	}
 	
-	private static String processString(String str) {
-		while (str.contains(".")) {
-			int id = str.indexOf(".");
-			int u = id+1;
-			for (u=id+1; u < str.length(); u++) {
-				boolean numeric = true;
-		        try {
-		            Double.parseDouble(str.substring(u, u+1));
-		        } catch (NumberFormatException e) {
-		            numeric = false;
-		        }
-				if (!numeric) break;
+	// drops every '.' together with the digits that follow it, except in the costs after a ']'
+	static String processString(String str) {
+		int id = str.indexOf('.');
+		if (id < 0) return str;
+		StringBuilder s = new StringBuilder(str.length());
+		for (int i = 0; i < str.length(); i++) {
+			char c = str.charAt(i);
+			if (c == ']') {
+				int n = Macros.costLength(str, i + 1);
+				s.append(str, i, i + 1 + n);
+				i += n;
+			} else if (c == '.') {
+				while (i + 1 < str.length() && str.charAt(i + 1) >= '0' && str.charAt(i + 1) <= '9') i++;
+			} else {
+				s.append(c);
 			}
-			str = str.substring(0,id) + str.substring(u);
 		}
-		return str;
+		return s.toString();
+	}
+	
+	static String wordName(String word) {
+		if (word.contains(".") && word.length() > 1) return word.split("\\.")[0];
+		return word;
 	}
 	
-	private static void addRule(Dictionary dict, Dictionary hyphenated, HashMap<String, String> macros, String word, String rule) {
-		Word w;
+	static Word makeWord(String word, Rule rule) {
 		if (word.contains(".") && word.length() > 1) {
 			String[] split = word.split("\\.");
-			if (split.length == 1) w = new Word(split[0]);
-			else w = new Word(split[0], split[1]);
-		} else w = new Word(word);
-		while (rule.length() > 0) {
-			if (rule.charAt(0) == '<') {
-				String macro = rule.substring(0, rule.indexOf(">") + 1);
-				rule = (rule.indexOf(" or") == -1)? "" : rule.substring(rule.indexOf(" or") + 4);
-				w.addRule(macros.get(macro));
-			} else if (rule.charAt(0) == '(') {
-				int numC = 1;
-				int num = 0;
-				int idx = 0;
-				for (int i = 1; i < rule.length(); i++) {
-					if (rule.charAt(i) == '(') numC++;
-					else if (rule.charAt(i) == ')') num++;
-					if (numC == num) {
-						idx = i; break;
-					}
-				}
-				String r = rule.substring(0, idx+1);
-				while (r.contains("<")) {
-					String macro = r.substring(r.indexOf("<"), r.indexOf(">")+1);
-					r = r.replace(macro, macros.get(macro));
-				}
-				r = r.replaceAll("\\d", "");
-				w.addRule(r);
-				rule = idx + 5 >= rule.length()? "" : rule.substring(idx + 5);
-			} else if (rule.charAt(0) == '{') {
-				int numC = 1;
-				int num = 0;
-				int idx = 0;
-				for (int i = 1; i < rule.length(); i++) {
-					if (rule.charAt(i) == '{') numC++;
-					else if (rule.charAt(i) == '}') num++;
-					if (numC == num) {
-						idx = i; break;
-					}
-				}
-				String r = rule.substring(0, idx+1);
-				while (r.contains("<")) {
-					String macro = r.substring(r.indexOf("<"), r.indexOf(">")+1);
-					r = r.replace(macro, macros.get(macro));
-				}
-				r = r.replaceAll("\\d", "");
-				w.addRule(r);
-				rule = idx + 5 >= rule.length()? "" : rule.substring(idx + 5);
-			} else {
-				String toAdd = rule.substring(0, (rule.indexOf(" or") == -1)? rule.length() : rule.indexOf(" or"));
-				while (toAdd.contains("<")) {
-					String macro = toAdd.substring(toAdd.indexOf("<"), toAdd.indexOf(">")+1);
-					toAdd = toAdd.replace(macro, macros.get(macro));
-				}
-				toAdd = toAdd.replaceAll("\\d", "");
-				w.addRule(toAdd);
-				rule = (rule.indexOf(" or") == -1)? "" : rule.substring(rule.indexOf(" or") + 4);
-			}		
+			if (split.length == 1) return new Word(split[0], rule);
+			else return new Word(split[0], rule, split[1]);
 		}
-		if (word.contains("_")) hyphenated.addWord(w);
-		else dict.addWord(w);
+		return new Word(word, rule);
 	}
 	
 	public static Dictionary grammarBuildLinks(String path, boolean isGenerator) throws IOException {
-		Path p;
-		if (System.getProperty("user.dir").endsWith("src")) {
-			p = Paths.get(Paths.get("test/resources/" + path).toAbsolutePath().toString());
-		} else {
-			p = Paths.get(Paths.get("src/test/resources/" + path).toAbsolutePath().toString());
-		}
+		return grammarBuildLinks(path, isGenerator, new ConnectorTable());
+	}
+	
+	public static Dictionary grammarBuildLinks(String path, boolean isGenerator, ConnectorTable connectors) throws IOException {
+		Path p = grammarPath(path);
 		File f = p.toFile();
 		if (!f.exists()) return null;
+		DictionaryStats.Load load = new DictionaryStats.Load();
 		List<String> list = Files.readAllLines(f.toPath());
 		String[] lines = new String[list.size()];
 		for (int i = 0; i < list.size(); i++) {
 			lines[i] = list.get(i);
 		}
-		return makeDict(lines);
+		load.phase("read");
+		Dictionary dict = makeDict(lines, connectors);
+		if (dict != null) {
+			load.phase("entries");
+			load.source(p, dict.getWords().size());
+			dict.setLoad(load);
+		}
+		return dict;
 	}
 	
-	private static Dictionary makeDict(String[] lines) {
-		ArrayList<String[]> links = new ArrayList<>();
+	static Path grammarPath(String path) {
+		if (System.getProperty("user.dir").endsWith("src")) {
+			return Paths.get(Paths.get("test/resources/" + path).toAbsolutePath().toString());
+		} else {
+			return Paths.get(Paths.get("src/test/resources/" + path).toAbsolutePath().toString());
+		}
+	}
+	
+	private static Dictionary makeDict(String[] lines, ConnectorTable connectors) {
+		HashMap<String, LinkedHashSet<String>> codeRules = new HashMap<>();
+		ArrayList<String[]> wordCodes = new ArrayList<>();
 		if (lines == null || lines.length == 0) return null;
 		for (int l = 0; l < lines.length; l++){
 			String line = lines[l];
@@ -356,26 +554,22 @@ public class Loader {
 				if (semicolon == -1) break;
 				line = line.substring(0, semicolon);
 				String[] rules = line.split(" or ");
+				LinkedHashSet<String> set = codeRules.get(code);
+				if (set == null) {
+					set = new LinkedHashSet<>();
+					codeRules.put(code, set);
+				}
 				for (int i = 0; i < rules.length; i++){
-					rules[i] = rules[i].substring(1, rules[i].length() - 1);
-					links.add(new String[] {code, rules[i], "cd"});
+					set.add(rules[i].substring(1, rules[i].length() - 1));
 				}
 				for (int i = 0; i < words.length; i++) {
-					links.add(new String[] {words[i], code, "wc"});
+					wordCodes.add(new String[] {words[i], code});
 				}
 			}
 		}
-		Dictionary dict = new Dictionary();
-		for (String[] arr : links) {
-			if (arr[2].equals("wc")) {
-				Word w = new Word(arr[0]);
-				for (String[] a : links) {
-					if (a[0].equals(arr[1]) && !w.containsRule(a[1])) {
-						w.addRule(a[1]);
-					}
-				}
-				dict.addWord(w);
-			}
+		Dictionary dict = new Dictionary(connectors, new RuleTable());
+		for (String[] arr : wordCodes) {
+			dict.addWord(new Word(arr[0], dict.getRuleTable().intern(new ArrayList<>(codeRules.get(arr[1])))));
 		}
 		System.out.println("Dictionary built successfully.");
 		return dict;
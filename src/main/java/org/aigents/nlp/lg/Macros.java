@@ -0,0 +1,161 @@
+/*
+ * MIT License
+ * 
+ * Copyright (c) 2020-Present by Vignav Ramesh and Anton Kolonin, Aigents®
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package main.java.org.aigents.nlp.lg;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * Macro table of an LG dictionary. Macro bodies are stored fully expanded, so expanding
+ * a rule is a single left-to-right pass, and the expressions a rule string splits into
+ * are memoized: all the words of a words/ file share one rule string.
+ */
+class Macros {
+	private final HashMap<String, String> macros = new HashMap<>();
+	private final ConcurrentHashMap<String, List<String>> expressions = new ConcurrentHashMap<>();
+	
+	void define(String names, String rule) {
+		rule = stripDigits(expand(rule));
+		for (String m : names.split(" ")) {
+			macros.put(m, rule);
+		}
+	}
+	
+	String get(String macro) {	return macros.get(macro);	}
+	
+	String expand(String rule) {
+		int start = rule.indexOf('<');
+		if (start < 0) return rule;
+		StringBuilder s = new StringBuilder(rule.length() * 4);
+		int from = 0;
+		while (start >= 0) {
+			int end = rule.indexOf('>', start);
+			if (end < 0) break;
+			String body = macros.get(rule.substring(start, end + 1));
+			if (body == null) {
+				s.append(rule, from, end + 1);
+			} else {
+				s.append(rule, from, start);
+				s.append(body);
+			}
+			from = end + 1;
+			start = rule.indexOf('<', from);
+		}
+		s.append(rule, from, rule.length());
+		return s.toString();
+	}
+	
+	/*
+	 * Splits the rule of a dictionary entry into its top-level alternatives (a macro, a
+	 * bracketed group or a plain conjunction), each with macros expanded and digits removed.
+	 */
+	List<String> expressions(String rule) {
+		List<String> list = expressions.get(rule);
+		if (list != null) return list;
+		ArrayList<String> split = new ArrayList<>();
+		int pos = 0, length = rule.length();
+		while (pos < length) {
+			char c = rule.charAt(pos);
+			int or = rule.indexOf(" or", pos);
+			if (c == '<') {
+				int end = rule.indexOf('>', pos);
+				split.add(macros.get(end < 0? "" : rule.substring(pos, end + 1)));
+				pos = or == -1? length : or + 4;
+			} else if (c == '(' || c == '{') {
+				char close = c == '('? ')' : '}';
+				int depth = 1, idx = pos;
+				for (int i = pos + 1; i < length; i++) {
+					char d = rule.charAt(i);
+					if (d == c) depth++;
+					else if (d == close) depth--;
+					if (depth == 0) {
+						idx = i;
+						break;
+					}
+				}
+				split.add(stripDigits(expand(rule.substring(pos, idx + 1))));
+				pos = idx + 5 >= length? length : idx + 5;
+			} else {
+				split.add(stripDigits(expand(rule.substring(pos, or == -1? length : or))));
+				pos = or == -1? length : or + 4;
+			}
+		}
+		list = Collections.unmodifiableList(split);
+		List<String> previous = expressions.putIfAbsent(rule, list);
+		return previous == null? list : previous;
+	}
+	
+	// removes the digits of connector names, keeping the costs that follow a ']'
+	static String stripDigits(String s) {
+		StringBuilder b = null;
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c == ']') {
+				int n = costLength(s, i + 1);
+				if (b != null) b.append(s, i, i + 1 + n);
+				i += n;
+			} else if (c >= '0' && c <= '9') {
+				if (b == null) b = new StringBuilder(s.length()).append(s, 0, i);
+			} else if (b != null) {
+				b.append(c);
+			}
+		}
+		return b == null? s : b.toString();
+	}
+	
+	// the rule text without the numbers of its costs, as the string based heuristics expect it
+	static String stripCosts(String s) {
+		StringBuilder b = null;
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			int n = c == ']'? costLength(s, i + 1) : 0;
+			if (n > 0 && b == null) b = new StringBuilder(s.length()).append(s, 0, i);
+			if (b != null) b.append(c);
+			if (n > 0 && s.charAt(i + 1) == '-') b.append('-');
+			i += n;
+		}
+		return b == null? s : b.toString();
+	}
+	
+	/*
+	 * Length of the number at from, such as "0.2", ".1" or "-0.5", or 0 if there is none.
+	 * Numbers written right after a ']' are the costs of the bracketed expression.
+	 */
+	static int costLength(String s, int from) {
+		int i = from, n = s.length();
+		if (i < n && s.charAt(i) == '-') i++;
+		boolean digits = false, point = false;
+		for (; i < n; i++) {
+			char c = s.charAt(i);
+			if (c >= '0' && c <= '9') digits = true;
+			else if (c == '.' && !point) point = true;
+			else break;
+		}
+		return digits? i - from : 0;
+	}
+}
@@ -0,0 +1,359 @@
+/*
+ * MIT License
+ * 
+ * Copyright (c) 2020-Present by Vignav Ramesh and Anton Kolonin, Aigents®
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package main.java.org.aigents.nlp.lg;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+/*
+ * Stem and suffix tables of a dictionary split into morphemes, like data/ru, where a word
+ * is a stem ("голос.=", stem.dict) linked to a suffix ("=ами.ndmpt", suffix.dict) by an
+ * LL connector. The stems are kept in a character trie and the suffixes in a trie of
+ * their reversed spellings, so a token is split in one pass over each and no word form
+ * is ever expanded. A stem and a suffix make a word when an LL+ connector of the stem
+ * meets an LL- connector of the suffix; the word then has the rule of the suffix without
+ * its LL conjunct and the subscript of the suffix. Entries of the included files that
+ * are whole words are kept in the stem trie, and the unknown-word endings of
+ * morph-ends.dict ("MORPH-END-ами.ndmpt") in a trie of their own, used only by guess().
+ * The stem and infix marks are those of the 4.0.affix file (STEMSUBSCR, INFIXMARK).
+ * The tables are read from the dictionary and its #include files on first lookup.
+ */
+public class Morphology {
+	static final String STEM_MARK = ".=", INFIX_MARK = "=", END_MARK = "MORPH-END-";
+	private final Path dict;
+	private final RuleTable ruleTable;
+	private volatile Tables tables;
+	
+	Morphology(Path dict, RuleTable ruleTable) {
+		this.dict = dict;
+		this.ruleTable = ruleTable;
+	}
+	
+	/*
+	 * Words of token made of a whole-word entry or of a stem and a suffix, or null if
+	 * there are none.
+	 */
+	public List<Word> resolve(String token) {
+		Tables t = tables();
+		List<Word> words = new ArrayList<>(1);
+		for (int form : t.match(token, false)) words.add(t.word(token, form));
+		return words.isEmpty()? null : words;
+	}
+	
+	public boolean contains(String token) {
+		return tables().match(token, true).length > 0;
+	}
+	
+	/*
+	 * Words for an unknown token from the longest unknown-word ending it has, or null if
+	 * it has none.
+	 */
+	public List<Word> guess(String token) {
+		Tables t = tables();
+		int node = 0, found = -1;
+		for (int i = token.length() - 1; i >= 0 && node >= 0; i--) {
+			node = t.endings.child(node, token.charAt(i));
+			if (node >= 0 && t.endings.first(node) >= 0) found = node;
+		}
+		if (found < 0) return null;
+		List<Word> words = new ArrayList<>(1);
+		for (int e = t.endings.first(found); e >= 0; e = t.endings.next(e)) {
+			words.add(t.word(token, ~t.endings.value(e)));
+		}
+		return words;
+	}
+	
+	public int getStemCount() {	return tables().stems.size();	}
+	
+	public int getSuffixCount() {	return tables().suffixes.size();	}
+	
+	private Tables tables() {
+		Tables t = tables;
+		if (t == null) {
+			synchronized (this) {
+				t = tables;
+				if (t == null) {
+					try {
+						t = new Tables(dict, ruleTable);
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+					tables = t;
+				}
+			}
+		}
+		return t;
+	}
+	
+	/*
+	 * Stem trie values are stem classes, or ~form for whole words; suffix trie values are
+	 * forms and ending trie values ~form. A form is a subscript and a rule, which for a
+	 * suffix is its rule without the LL conjunct, and a suffix also has the LL heads it
+	 * takes. A stem class is the sorted LL heads of the stems sharing a rule.
+	 */
+	private static class Tables {
+		private final CharTrie stems = new CharTrie(), suffixes = new CharTrie(), endings = new CharTrie();
+		private final ArrayList<int[]> classes = new ArrayList<>(), heads = new ArrayList<>();
+		private final ArrayList<String> subscripts = new ArrayList<>();
+		private final ArrayList<Integer> formRules = new ArrayList<>();
+		private final ArrayList<String> rules = new ArrayList<>();
+		private final HashMap<String, Integer> classIds = new HashMap<>(), headIds = new HashMap<>(), ruleIds = new HashMap<>();
+		private final Macros macros = new Macros();
+		private final RuleTable ruleTable;
+		private final Rule[] interned;
+		private final String stemMark, infixMark;
+		
+		private Tables(Path dict, RuleTable ruleTable) throws IOException {
+			this.ruleTable = ruleTable;
+			Tokenizer affixes = Tokenizer.forDictionary(dict);
+			stemMark = affixes.getStemSubscript() == null? STEM_MARK : affixes.getStemSubscript();
+			infixMark = affixes.getInfixMark() == null? INFIX_MARK : affixes.getInfixMark();
+			read(dict, false);
+			interned = new Rule[rules.size()];
+		}
+		
+		/*
+		 * Macros are defined in order, so the morph.dict macros can use those of the
+		 * dictionary; included files are read where they are included, and only their
+		 * words are added.
+		 */
+		private void read(Path file, boolean included) throws IOException {
+			List<String> list = Loader.readLines(file, true);
+			String[] lines = list.toArray(new String[list.size()]);
+			for (int i = 0; i < lines.length; i++) {
+				String line = lines[i];
+				if (line.length() == 0) continue;
+				Path include = Loader.include(line);
+				if (include != null) {
+					if (include.toFile().exists()) read(include, true);
+					continue;
+				}
+				int end = Loader.entryEnd(lines, i);
+				String str = Loader.entry(lines, i, end);
+				i = end;
+				if (line.charAt(0) == '<') {
+					String[] parts = Loader.getParts(Loader.processString(str));
+					if (parts[1].length() > 0) macros.define(parts[0], parts[1]);
+				} else if (included) {
+					String[] parts = Loader.getParts(str);
+					String rule = Loader.processString(parts[1]);
+					for (String token : parts[0].replace("\"", "").split("\\s+")) {
+						if (token.length() > 0) add(token, rule);
+					}
+				}
+			}
+		}
+		
+		private void add(String token, String rule) {
+			if (token.endsWith(stemMark)) {
+				String stem = token.substring(0, token.length() - stemMark.length());
+				int[] ll = heads(rule, '+');
+				String key = Arrays.toString(ll);
+				Integer id = classIds.get(key);
+				if (id == null) {
+					id = classes.size();
+					classes.add(ll);
+					classIds.put(key, id);
+				}
+				stems.add(stem, false, id);
+			} else if (token.startsWith(infixMark)) {
+				String[] split = split(token.substring(infixMark.length()));
+				String rest = rest(rule);
+				if (rest.isEmpty()) return;
+				suffixes.add(split[0], true, form(split[1], rest, heads(rule, '-')));
+			} else if (token.startsWith(END_MARK)) {
+				String[] split = split(token.substring(END_MARK.length()));
+				endings.add(split[0], true, ~form(split[1], rule, null));
+			} else {
+				String[] split = split(token);
+				stems.add(split[0], false, ~form(split[1], rule, null));
+			}
+		}
+		
+		private int form(String subscript, String rule, int[] ll) {
+			Integer id = ruleIds.get(rule);
+			if (id == null) {
+				id = rules.size();
+				rules.add(rule);
+				ruleIds.put(rule, id);
+			}
+			subscripts.add(subscript);
+			formRules.add(id);
+			heads.add(ll);
+			return subscripts.size() - 1;
+		}
+		
+		// word and subscript of a token, "=ами.ndmpt" giving "ами" and "ndmpt"
+		private static String[] split(String token) {
+			int dot = token.lastIndexOf('.');
+			if (dot < 0 || token.length() == 1) return new String[] {token, ""};
+			return new String[] {token.substring(0, dot), token.substring(dot + 1)};
+		}
+		
+		// top-level conjuncts of a rule
+		private static List<String> conjuncts(String rule) {
+			List<String> list = new ArrayList<>();
+			int depth = 0, from = 0;
+			for (int i = 0; i < rule.length(); i++) {
+				char c = rule.charAt(i);
+				if (c == '(' || c == '[' || c == '{') depth++;
+				else if (c == ')' || c == ']' || c == '}') depth--;
+				else if (c == '&' && depth == 0) {
+					list.add(rule.substring(from, i).trim());
+					from = i + 1;
+				}
+			}
+			list.add(rule.substring(from).trim());
+			return list;
+		}
+		
+		// connectors of a conjunct if all of them are LL connectors, otherwise null
+		private static List<String> links(String conjunct) {
+			List<String> list = new ArrayList<>();
+			for (String s : conjunct.split("[\\s()\\[\\]{}]+")) {
+				if (s.isEmpty() || s.equals("or")) continue;
+				if (!s.startsWith("LL")) return null;
+				list.add(s);
+			}
+			return list.isEmpty()? null : list;
+		}
+		
+		// rule without its LL conjuncts
+		private static String rest(String rule) {
+			StringBuilder s = new StringBuilder();
+			for (String conjunct : conjuncts(rule)) {
+				if (links(conjunct) != null) continue;
+				if (s.length() > 0) s.append(" & ");
+				s.append(conjunct);
+			}
+			return s.toString();
+		}
+		
+		// sorted ids of the heads of the LL connectors of a rule going in direction dir
+		private int[] heads(String rule, char dir) {
+			ArrayList<Integer> ids = new ArrayList<>();
+			for (String conjunct : conjuncts(rule)) {
+				List<String> links = links(conjunct);
+				if (links == null) continue;
+				for (String c : links) {
+					if (c.charAt(c.length() - 1) != dir) continue;
+					String head = c.substring(0, c.length() - 1);
+					Integer id = headIds.get(head);
+					if (id == null) {
+						id = headIds.size();
+						headIds.put(head, id);
+					}
+					if (!ids.contains(id)) ids.add(id);
+				}
+			}
+			int[] array = new int[ids.size()];
+			for (int i = 0; i < array.length; i++) array[i] = ids.get(i);
+			Arrays.sort(array);
+			return array;
+		}
+		
+		private static boolean meet(int[] a, int[] b) {
+			int i = 0, j = 0;
+			while (i < a.length && j < b.length) {
+				if (a[i] == b[j]) return true;
+				if (a[i] < b[j]) i++;
+				else j++;
+			}
+			return false;
+		}
+		
+		/*
+		 * Forms of token: its whole-word entries, then the suffixes that make a word with
+		 * a stem it starts with, longest stem first. With any set, stops at the first one.
+		 */
+		private int[] match(String token, boolean any) {
+			int length = token.length();
+			// stem classes by length of the stem
+			int[] stemNodes = new int[length + 1];
+			Arrays.fill(stemNodes, -1);
+			ArrayList<Integer> forms = new ArrayList<>(1);
+			int node = 0;
+			for (int i = 0; i < length && node >= 0; i++) {
+				node = stems.child(node, token.charAt(i));
+				if (node >= 0 && stems.first(node) >= 0) stemNodes[i + 1] = node;
+			}
+			if (node >= 0 && stems.first(node) >= 0) {
+				for (int e = stems.first(node); e >= 0; e = stems.next(e)) {
+					int v = stems.value(e);
+					if (v < 0 && !forms.contains(v)) {
+						forms.add(v);
+						if (any) return new int[] {~v};
+					}
+				}
+			}
+			// suffix nodes by the length of the stem they leave, the empty suffix being at the root
+			int[] suffixNodes = new int[length + 1];
+			Arrays.fill(suffixNodes, -1);
+			node = 0;
+			if (suffixes.first(0) >= 0) suffixNodes[length] = 0;
+			for (int i = length - 1; i >= 0 && node >= 0; i--) {
+				node = suffixes.child(node, token.charAt(i));
+				if (node >= 0 && suffixes.first(node) >= 0) suffixNodes[i] = node;
+			}
+			for (int split = length; split > 0; split--) {
+				if (stemNodes[split] < 0 || suffixNodes[split] < 0) continue;
+				for (int s = suffixes.first(suffixNodes[split]); s >= 0; s = suffixes.next(s)) {
+					int suffix = suffixes.value(s);
+					if (forms.contains(~suffix)) continue;
+					for (int e = stems.first(stemNodes[split]); e >= 0; e = stems.next(e)) {
+						int c = stems.value(e);
+						if (c >= 0 && meet(classes.get(c), heads.get(suffix))) {
+							forms.add(~suffix);
+							if (any) return new int[] {suffix};
+							break;
+						}
+					}
+				}
+			}
+			int[] array = new int[forms.size()];
+			for (int i = 0; i < array.length; i++) array[i] = ~forms.get(i);
+			return array;
+		}
+		
+		private Word word(String token, int form) {
+			return new Word(token, rule(formRules.get(form)), subscripts.get(form));
+		}
+		
+		private synchronized Rule rule(int id) {
+			Rule rule = interned[id];
+			if (rule == null) {
+				rule = ruleTable.intern(macros.expressions(rules.get(id)));
+				interned[id] = rule;
+			}
+			return rule;
+		}
+	}
+}
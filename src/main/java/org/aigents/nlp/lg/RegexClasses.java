@@ -0,0 +1,268 @@
+/*
+ * MIT License
+ * 
+ * Copyright (c) 2020-Present by Vignav Ramesh and Anton Kolonin, Aigents®
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package main.java.org.aigents.nlp.lg;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/*
+ * Classes of unknown tokens given by the 4.0.regex file of a dictionary: numbers,
+ * capitalized words, hyphenated words and so on. The first regex in the file that
+ * matches a token gives its class, whose words are the <CLASS> entries of the
+ * dictionary, e.g. <ING-WORDS>.g. A regex preceded by ! stops the later regexes of its
+ * class from matching. All regexes are compiled into one alternation, each in a group
+ * of its own and led by the negative lookaheads of its class, so classifying a token is
+ * a single match. The tables are read on first use.
+ */
+public class RegexClasses {
+	public static final String UNKNOWN_WORD = "UNKNOWN-WORD";
+	private final Path regex, dict;
+	private final RuleTable ruleTable;
+	private volatile Tables tables;
+	
+	RegexClasses(Path regex, Path dict, RuleTable ruleTable) {
+		this.regex = regex;
+		this.dict = dict;
+		this.ruleTable = ruleTable;
+	}
+	
+	// class of token, or null if no regex of a class with dictionary entries matches it
+	public String classify(String token) {
+		Tables t = tables();
+		Matcher m = t.pattern.matcher(token);
+		if (!m.lookingAt()) return null;
+		for (int i = 0; i < t.groups.length; i++) {
+			if (m.start(t.groups[i]) >= 0) return t.names[i];
+		}
+		return null;
+	}
+	
+	// words of token for its class, or null if it has none
+	public List<Word> resolve(String token) {
+		String name = classify(token);
+		return name == null? null : words(token, name);
+	}
+	
+	// words of token for the UNKNOWN-WORD entries, or null if the dictionary has none
+	public List<Word> unknown(String token) {
+		return words(token, UNKNOWN_WORD);
+	}
+	
+	public List<String> getClasses() {
+		return Collections.unmodifiableList(new ArrayList<>(tables().entries.keySet()));
+	}
+	
+	private List<Word> words(String token, String name) {
+		List<Word> entries = tables().entries.get(name);
+		if (entries == null) return null;
+		List<Word> words = new ArrayList<>(entries.size());
+		for (Word w : entries) words.add(new Word(token, w.getRule(), w.getSubscript()));
+		return words;
+	}
+	
+	private Tables tables() {
+		Tables t = tables;
+		if (t == null) {
+			synchronized (this) {
+				t = tables;
+				if (t == null) {
+					try {
+						t = new Tables(regex, dict, ruleTable);
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+					tables = t;
+				}
+			}
+		}
+		return t;
+	}
+	
+	/*
+	 * Translates a POSIX extended regex to a Java one: bracket expressions may start
+	 * with ']', have no escapes and hold [:class:] names.
+	 */
+	static String translate(String posix) {
+		StringBuilder s = new StringBuilder(posix.length() + 16);
+		int i = 0, length = posix.length();
+		while (i < length) {
+			char c = posix.charAt(i);
+			if (c == '\\' && i + 1 < length) {
+				s.append(c).append(posix.charAt(i + 1));
+				i += 2;
+			} else if (c == '[') {
+				s.append('[');
+				i++;
+				if (i < length && posix.charAt(i) == '^') {
+					s.append('^');
+					i++;
+				}
+				boolean first = true;
+				while (i < length && (first || posix.charAt(i) != ']')) {
+					first = false;
+					if (posix.startsWith("[:", i)) {
+						int end = posix.indexOf(":]", i + 2);
+						s.append(posixClass(posix.substring(i + 2, end)));
+						i = end + 2;
+						continue;
+					}
+					char d = posix.charAt(i++);
+					if (d == '[' || d == ']' || d == '\\' || d == '&' || d == '^') s.append('\\');
+					s.append(d);
+				}
+				s.append(']');
+				i++;
+			} else {
+				s.append(c);
+				i++;
+			}
+		}
+		return s.toString();
+	}
+	
+	private static String posixClass(String name) {
+		switch (name) {
+		case "alpha": return "\\p{L}";
+		case "alnum": return "\\p{L}\\p{N}";
+		case "digit": return "\\p{Nd}";
+		case "upper": return "\\p{Lu}";
+		case "lower": return "\\p{Ll}";
+		case "punct": return "\\p{P}\\p{S}";
+		case "space": return "\\s";
+		default: throw new IllegalArgumentException("Unknown character class [:" + name + ":]");
+		}
+	}
+	
+	private static class Tables {
+		private final Map<String, List<Word>> entries = new LinkedHashMap<>();
+		private final Pattern pattern;
+		private final int[] groups;
+		private final String[] names;
+		
+		private Tables(Path regex, Path dict, RuleTable ruleTable) throws IOException {
+			List<String[]> regexes = read(regex);
+			readEntries(dict, regexes, ruleTable);
+			StringBuilder combined = new StringBuilder();
+			ArrayList<Integer> groupList = new ArrayList<>();
+			ArrayList<String> nameList = new ArrayList<>();
+			Map<String, StringBuilder> negatives = new LinkedHashMap<>();
+			int group = 1;
+			for (String[] r : regexes) {
+				if (!entries.containsKey(r[0])) continue;
+				String body = translate(r[2]);
+				if (r[1] != null) {
+					negatives.computeIfAbsent(r[0], k -> new StringBuilder())
+						.append("(?![\\s\\S]*?(?:").append(body).append("))");
+					continue;
+				}
+				if (combined.length() > 0) combined.append('|');
+				combined.append('(');
+				StringBuilder lookaheads = negatives.get(r[0]);
+				if (lookaheads != null) combined.append(lookaheads);
+				if (!body.startsWith("^")) combined.append("[\\s\\S]*?");
+				combined.append("(?:").append(body).append("))");
+				groupList.add(group);
+				nameList.add(r[0]);
+				group += 1 + Pattern.compile(body).matcher("").groupCount();
+			}
+			pattern = Pattern.compile(combined.toString(), Pattern.UNICODE_CHARACTER_CLASS);
+			groups = new int[groupList.size()];
+			for (int i = 0; i < groups.length; i++) groups[i] = groupList.get(i);
+			names = nameList.toArray(new String[nameList.size()]);
+		}
+		
+		// class name, "!" or null, and body of every regex in file order
+		private static List<String[]> read(Path regex) throws IOException {
+			List<String[]> list = new ArrayList<>();
+			String name = null;
+			for (String line : Files.readAllLines(regex)) {
+				line = line.trim();
+				if (line.isEmpty() || line.charAt(0) == '%') continue;
+				if (line.charAt(0) == '<') {
+					int end = line.indexOf('>');
+					if (end < 0) continue;
+					name = line.substring(1, end);
+					line = line.substring(line.indexOf(':', end) + 1).trim();
+					if (line.isEmpty()) continue;
+				}
+				int start = line.indexOf('/'), end = line.lastIndexOf('/');
+				if (name == null || start < 0 || end <= start) continue;
+				list.add(new String[] {name, line.substring(0, start).trim().equals("!")? "!" : null, line.substring(start + 1, end)});
+				name = null;
+			}
+			return list;
+		}
+		
+		/*
+		 * Defines the macros of the dictionary in order, as Loader does, and keeps the
+		 * words named <CLASS> or <CLASS>.subscript in any entry for the regex classes.
+		 */
+		private void readEntries(Path dict, List<String[]> regexes, RuleTable ruleTable) throws IOException {
+			for (String[] r : regexes) entries.put(r[0], null);
+			entries.put(UNKNOWN_WORD, null);
+			Macros macros = new Macros();
+			Map<String, List<String[]>> rules = new LinkedHashMap<>();
+			List<String> list = Loader.readLines(dict, false);
+			String[] lines = list.toArray(new String[list.size()]);
+			for (int i = 0; i < lines.length; i++) {
+				String line = lines[i];
+				if (line.length() == 0) continue;
+				int end = Loader.entryEnd(lines, i);
+				String str = Loader.entry(lines, i, end);
+				i = end;
+				String[] parts = Loader.getParts(str);
+				String rule = Loader.processString(parts[1]);
+				for (String token : parts[0].split("\\s+")) {
+					int close = token.indexOf('>');
+					if (!token.startsWith("<") || close < 0) continue;
+					String name = token.substring(1, close);
+					if (!entries.containsKey(name)) continue;
+					String subscript = close + 1 < token.length() && token.charAt(close + 1) == '.'? token.substring(close + 2) : "";
+					rules.computeIfAbsent(name, k -> new ArrayList<>()).add(new String[] {subscript, rule});
+				}
+				if (line.charAt(0) != '<') continue;
+				parts = Loader.getParts(Loader.processString(str));
+				macros.define(parts[0], parts[1]);
+			}
+			entries.clear();
+			for (Map.Entry<String, List<String[]>> e : rules.entrySet()) {
+				List<Word> words = new ArrayList<>();
+				for (String[] r : e.getValue()) {
+					words.add(new Word(e.getKey(), ruleTable.intern(macros.expressions(r[1])), r[0]));
+				}
+				entries.put(e.getKey(), words);
+			}
+		}
+	}
+}
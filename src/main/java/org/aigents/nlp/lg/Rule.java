@@ -28,11 +28,13 @@ import java.util.ArrayList;
 
 public class Rule {
 	private ArrayList<String> words;
-	private ArrayList<Disjunct> disjuncts;
+	private volatile ArrayList<Disjunct> disjuncts;
+	private ConnectorTable connectors;
+	private String expression;
+	private int id = -1;
 	
 	public Rule() {
 		words = new ArrayList<>();
-		disjuncts = new ArrayList<>();
 	}
 	
 	public Rule(ArrayList<String> words, ArrayList<Disjunct> disjuncts) {
@@ -40,38 +42,87 @@ public class Rule {
 		this.disjuncts = disjuncts;
 	}
 	
-	public void addWord(String word) {
+	public synchronized void addWord(String word) {
 		words.add(word);
-		Disjunct d = new Disjunct();
-		for (String connector : word.split(" & ")) {
-			d.addConnector(connector);
-		}
-		addDisjunct(d);
+		if (disjuncts != null) disjuncts.addAll(compile(word));
+		expression = null;
 	}
 	
-	public void addDisjunct(Disjunct disjunct) {
-		disjuncts.add(disjunct);
+	public synchronized void addDisjunct(Disjunct disjunct) {
+		getDisjuncts().add(disjunct);
+		if (connectors != null) disjunct.pack(connectors);
 	}
 	
 	public void updateWords(ArrayList<String> words) {
 		this.words = words;
+		expression = null;
 	}
 	
-	public void updateDisjuncts(ArrayList<Disjunct> disjuncts) {
+	public synchronized void updateDisjuncts(ArrayList<Disjunct> disjuncts) {
 		this.disjuncts = disjuncts;
+		pack();
+	}
+	
+	synchronized void setConnectorTable(ConnectorTable connectors) {
+		if (this.connectors == connectors) return;
+		this.connectors = connectors;
+		pack();
 	}
 	
 	public ArrayList<String> getWords() {	return words;	}
 	
-	public ArrayList<Disjunct> getDisjuncts() {	return disjuncts;	}
+	/*
+	 * Disjuncts are compiled from the expressions on first use rather than when the
+	 * dictionary is loaded: the full English dictionary expands to millions of disjuncts,
+	 * while a query only ever needs those of a few dozen words. Rules are interned and
+	 * shared between threads, so the list is built under the rule's lock and published
+	 * through the volatile field only once it is complete and packed.
+	 */
+	public ArrayList<Disjunct> getDisjuncts() {
+		ArrayList<Disjunct> compiled = disjuncts;
+		if (compiled != null) return compiled;
+		synchronized (this) {
+			if (disjuncts == null) {
+				compiled = new ArrayList<>();
+				for (String word : words) compiled.addAll(compile(word));
+				disjuncts = compiled;
+			}
+			return disjuncts;
+		}
+	}
+	
+	// id of the rule class in its RuleTable, or -1 if the rule was not interned
+	public int getId() {	return id;	}
+	
+	void setId(int id) {	this.id = id;	}
+	
+	public boolean isCompiled() {	return disjuncts != null;	}
+	
+	private ArrayList<Disjunct> compile(String word) {
+		ArrayList<Disjunct> compiled = Expression.toDisjuncts(word);
+		if (connectors != null) {
+			for (Disjunct d : compiled) d.pack(connectors);
+		}
+		return compiled;
+	}
+	
+	private void pack() {
+		if (connectors == null || disjuncts == null) return;
+		for (Disjunct d : disjuncts) {
+			if (!d.isPacked()) d.pack(connectors);
+		}
+	}
 	
 	@Override
 	public String toString() {
-		StringBuilder s = new StringBuilder();
-		for (int i = 0; i < words.size() - 1; i++) {
-			s.append("(" + words.get(i) + ") or ");
+		if (expression == null) {
+			StringBuilder s = new StringBuilder();
+			for (int i = 0; i < words.size() - 1; i++) {
+				s.append("(" + Macros.stripCosts(words.get(i)) + ") or ");
+			}
+			s.append("(" + Macros.stripCosts(words.get(words.size() - 1)) + ")");
+			expression = s.toString();
 		}
-		s.append("(" + words.get(words.size() - 1) + ")");
-		return s.toString();
+		return expression;
 	}
-}
+}
\ No newline at end of file
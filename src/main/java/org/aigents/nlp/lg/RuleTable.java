@@ -0,0 +1,55 @@
+/*
+ * MIT License
+ * 
+ * Copyright (c) 2020-Present by Vignav Ramesh and Anton Kolonin, Aigents®
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package main.java.org.aigents.nlp.lg;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/*
+ * Interned rules: every distinct list of expressions is held by a single Rule, numbered
+ * in order of first use. Words whose entries expand to the same expressions share that
+ * Rule, so interned rules must not be modified.
+ */
+public class RuleTable {
+	private final HashMap<List<String>, Rule> rules = new HashMap<>();
+	private final ArrayList<Rule> byId = new ArrayList<>();
+	
+	public synchronized Rule intern(List<String> expressions) {
+		Rule rule = rules.get(expressions);
+		if (rule == null) {
+			ArrayList<String> words = new ArrayList<>(expressions);
+			rule = new Rule(words, null);
+			rule.setId(byId.size());
+			rules.put(new ArrayList<>(expressions), rule);
+			byId.add(rule);
+		}
+		return rule;
+	}
+	
+	public synchronized Rule get(int id) {	return byId.get(id);	}
+	
+	public synchronized int size() {	return byId.size();	}
+}
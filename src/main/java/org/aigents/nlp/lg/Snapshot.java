@@ -0,0 +1,425 @@
+/*
+ * MIT License
+ * 
+ * Copyright (c) 2020-Present by Vignav Ramesh and Anton Kolonin, Aigents®
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package main.java.org.aigents.nlp.lg;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/*
+ * Binary snapshot of the dictionaries built from an LG .dict file, so that later runs can
+ * skip parsing the dictionary and its words/ files. The snapshot starts with the path,
+ * length, modification time and CRC32 of every source file it was built from and is
+ * ignored as soon as any of them changes; the CRC is only computed for a source whose
+ * length matches but whose modification time does not, so a warm load reads no sources. All strings (words, subscripts, expressions) are stored once in a
+ * string table and referenced by index, and each interned rule is stored once. Offset
+ * tables for strings and rules and per-dictionary hash tables of the words and of their
+ * lower case forms let open() serve lookups straight from the mapped file, and read()
+ * builds the dictionary indexes from those tables instead of hashing every word again.
+ */
+public class Snapshot {
+	private static final int MAGIC = 0x4C47534E;
+	private static final int VERSION = 6;
+	private static final long WRITE_TIMEOUT = 30000;
+	
+	public static Path pathFor(Path dict) {
+		return dict.resolveSibling(dict.getFileName() + ".snapshot");
+	}
+	
+	public static Dictionary[] read(Path snapshot) {
+		return read(snapshot, new ConnectorTable());
+	}
+	
+	public static Dictionary[] read(Path snapshot, ConnectorTable connectors) {
+		if (!Files.isRegularFile(snapshot)) return null;
+		try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+			MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (!valid(buf)) return null;
+			String[] strings = new String[buf.getInt()];
+			for (int i = 0; i < strings.length; i++) strings[i] = string(buf);
+			skip(buf, 4L * strings.length);
+			RuleTable ruleTable = new RuleTable();
+			Rule[] rules = new Rule[buf.getInt()];
+			for (int i = 0; i < rules.length; i++) {
+				int numExpressions = buf.getInt();
+				ArrayList<String> expressions = new ArrayList<>(numExpressions);
+				for (int k = 0; k < numExpressions; k++) expressions.add(strings[buf.getInt()]);
+				rules[i] = ruleTable.intern(expressions);
+			}
+			skip(buf, 4L * rules.length);
+			Dictionary[] dicts = new Dictionary[buf.getInt()];
+			for (int d = 0; d < dicts.length; d++) {
+				Word[] records = new Word[buf.getInt()];
+				for (int i = 0; i < records.length; i++) {
+					String word = strings[buf.getInt()];
+					String subscript = strings[buf.getInt()];
+					records[i] = new Word(word, rules[buf.getInt()], subscript);
+				}
+				int[] slots = ints(buf, buf.getInt());
+				ArrayList<List<Word>> entries = new ArrayList<>(buf.getInt());
+				int[] next = ints(buf, records.length);
+				for (int slot : slots) {
+					if (slot == 0) continue;
+					ArrayList<Word> entry = new ArrayList<>(1);
+					for (int r = slot; r != 0; r = next[r - 1]) entry.add(records[r - 1]);
+					entries.add(entry);
+				}
+				int foldCount = buf.getInt();
+				skip(buf, 4L * buf.getInt());
+				int[] fold = ints(buf, 3 * foldCount);
+				int[] variants = ints(buf, buf.getInt());
+				HashMap<String, ArrayList<String>> folded = new HashMap<>(SnapshotStore.capacity(foldCount));
+				for (int k = 0; k < foldCount; k++) {
+					ArrayList<String> spellings = new ArrayList<>(fold[3 * k + 2]);
+					for (int v = fold[3 * k + 1]; v < fold[3 * k + 1] + fold[3 * k + 2]; v++) spellings.add(strings[variants[v]]);
+					folded.put(strings[fold[3 * k]], spellings);
+				}
+				dicts[d] = new Dictionary(connectors, ruleTable);
+				dicts[d].load(records, entries, folded);
+			}
+			return dicts;
+		} catch (IOException | BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+			return null;
+		}
+	}
+	
+	/*
+	 * Opens the snapshot without reading it into the heap: the dictionaries returned look
+	 * words up in the hash tables of the mapped file and only build the Word and Rule
+	 * objects of the words asked for (see SnapshotStore), so getWords() starts out empty.
+	 */
+	public static Dictionary[] open(Path snapshot, ConnectorTable connectors) {
+		if (!Files.isRegularFile(snapshot)) return null;
+		try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+			MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (!valid(buf)) return null;
+			int numStrings = buf.getInt();
+			for (int i = 0; i < numStrings; i++) {
+				int length = buf.getInt();
+				if (length > 0) skip(buf, length);
+			}
+			int stringOffsets = buf.position();
+			skip(buf, 4L * numStrings);
+			int numRules = buf.getInt();
+			for (int i = 0; i < numRules; i++) skip(buf, 4L * buf.getInt());
+			int ruleOffsets = buf.position();
+			skip(buf, 4L * numRules);
+			SnapshotStore.Tables tables = new SnapshotStore.Tables(buf, stringOffsets, ruleOffsets, numRules);
+			RuleTable ruleTable = new RuleTable();
+			Dictionary[] dicts = new Dictionary[buf.getInt()];
+			for (int d = 0; d < dicts.length; d++) {
+				int numWords = buf.getInt();
+				int records = buf.position();
+				skip(buf, 12L * numWords);
+				SnapshotStore store = new SnapshotStore(tables, ruleTable, numWords, records, buf.position());
+				skipIndexes(buf, numWords);
+				dicts[d] = new Dictionary(connectors, ruleTable);
+				dicts[d].setWordIndex(store);
+			}
+			return dicts;
+		} catch (IOException | BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+			return null;
+		}
+	}
+	
+	private static boolean valid(MappedByteBuffer buf) throws IOException {
+		if (buf.getInt() != MAGIC || buf.getInt() != VERSION) return false;
+		int numSources = buf.getInt();
+		for (int i = 0; i < numSources; i++) {
+			Path source = Paths.get(string(buf));
+			long length = buf.getLong();
+			long modified = buf.getLong();
+			long crc = buf.getLong();
+			buf.getInt();
+			if (!Files.isRegularFile(source) || Files.size(source) != length) return false;
+			if (Files.getLastModifiedTime(source).toMillis() != modified && checksum(source) != crc) return false;
+		}
+		return true;
+	}
+	
+	// word hash table and chains, then the lower case table, after the records of a dictionary
+	private static void skipIndexes(MappedByteBuffer buf, int numWords) {
+		int wordCap = buf.getInt();
+		buf.getInt();
+		skip(buf, 4L * wordCap + 4L * numWords);
+		int foldCount = buf.getInt();
+		int foldCap = buf.getInt();
+		skip(buf, 4L * foldCap + 12L * foldCount);
+		skip(buf, 4L * buf.getInt());
+	}
+	
+	private static int[] ints(MappedByteBuffer buf, int count) {
+		int[] ints = new int[count];
+		buf.asIntBuffer().get(ints);
+		skip(buf, 4L * count);
+		return ints;
+	}
+	
+	private static void skip(MappedByteBuffer buf, long bytes) {
+		buf.position(Math.toIntExact(buf.position() + bytes));
+	}
+	
+	/* source files recorded in the snapshot header, whether or not they still match */
+	public static List<Path> sources(Path snapshot) {
+		return new ArrayList<>(sourceWords(snapshot).keySet());
+	}
+	
+	// words read from each source file when the snapshot was written
+	public static Map<Path, Integer> sourceWords(Path snapshot) {
+		LinkedHashMap<Path, Integer> sources = new LinkedHashMap<>();
+		if (!Files.isRegularFile(snapshot)) return sources;
+		try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+			MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (buf.getInt() != MAGIC || buf.getInt() != VERSION) return sources;
+			int numSources = buf.getInt();
+			for (int i = 0; i < numSources; i++) {
+				Path source = Paths.get(string(buf));
+				buf.getLong();
+				buf.getLong();
+				buf.getLong();
+				sources.put(source, buf.getInt());
+			}
+		} catch (IOException | BufferUnderflowException e) {
+			sources.clear();
+		}
+		return sources;
+	}
+	
+	public static void write(Path snapshot, Dictionary[] dicts, List<Path> sources) throws IOException {
+		write(snapshot, dicts, sources, new HashMap<>());
+	}
+	
+	public static void write(Path snapshot, Dictionary[] dicts, List<Path> sources, Map<Path, Integer> words) throws IOException {
+		write(snapshot, words(dicts), sources, words);
+	}
+	
+	/*
+	 * Writes the snapshot on a thread of its own so that loading does not wait for it: the
+	 * words of the dictionaries are copied on the calling thread and everything else is
+	 * derived from the copies. The thread is a daemon and a shutdown hook waits at most
+	 * WRITE_TIMEOUT ms for it, so a short run still leaves a complete snapshot behind but a
+	 * slow write cannot hold the JVM up for long; until it is in place, loads parse the
+	 * dictionary as before.
+	 */
+	public static Thread writeLater(Path snapshot, Dictionary[] dicts, List<Path> sources, Map<Path, Integer> words) {
+		List<List<Word>> copies = words(dicts);
+		List<Path> sourceCopy = new ArrayList<>(sources);
+		Map<Path, Integer> wordCopy = new HashMap<>(words);
+		Thread t = new Thread(() -> {
+			try {
+				write(snapshot, copies, sourceCopy, wordCopy);
+			} catch (IOException e) {
+				System.err.println("Could not write dictionary snapshot " + snapshot + ": " + e.getMessage());
+			}
+		}, "snapshot-writer");
+		t.setDaemon(true);
+		t.setPriority(Thread.MIN_PRIORITY);
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+			try {
+				t.join(WRITE_TIMEOUT);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}, "snapshot-writer-join"));
+		t.start();
+		return t;
+	}
+	
+	private static List<List<Word>> words(Dictionary[] dicts) {
+		List<List<Word>> words = new ArrayList<>(dicts.length);
+		for (Dictionary dict : dicts) words.add(new ArrayList<>(dict.getWords()));
+		return words;
+	}
+	
+	// the lower case variants are rebuilt from the words as Dictionary.index orders them
+	private static void write(Path snapshot, List<List<Word>> dicts, List<Path> sources, Map<Path, Integer> words) throws IOException {
+		HashMap<String, Integer> ids = new HashMap<>();
+		ArrayList<String> strings = new ArrayList<>();
+		IdentityHashMap<Rule, Integer> ruleIds = new IdentityHashMap<>();
+		ArrayList<Rule> rules = new ArrayList<>();
+		ArrayList<LinkedHashMap<String, ArrayList<String>>> folds = new ArrayList<>();
+		for (List<Word> dict : dicts) {
+			LinkedHashMap<String, ArrayList<String>> fold = new LinkedHashMap<>();
+			for (Word w : dict) {
+				id(w.getWord(), ids, strings);
+				id(w.getSubscript(), ids, strings);
+				if (!ruleIds.containsKey(w.getRule())) {
+					ruleIds.put(w.getRule(), rules.size());
+					rules.add(w.getRule());
+					for (String expression : w.getRule().getWords()) id(expression, ids, strings);
+				}
+				String key = w.getWord().toLowerCase();
+				ArrayList<String> variants = fold.get(key);
+				if (variants == null) {
+					id(key, ids, strings);
+					variants = new ArrayList<>(1);
+					fold.put(key, variants);
+				}
+				WordStore.insert(variants, key, w.getWord());
+			}
+			folds.add(fold);
+		}
+		// a plain sibling, created with the default permissions as the snapshot should be
+		Path tmp = snapshot.resolveSibling(snapshot.getFileName() + ".tmp");
+		try {
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeInt(sources.size());
+				for (Path source : sources) {
+					string(out, source.toAbsolutePath().toString());
+					out.writeLong(Files.size(source));
+					out.writeLong(Files.getLastModifiedTime(source).toMillis());
+					out.writeLong(checksum(source));
+					out.writeInt(words.getOrDefault(source, 0));
+				}
+				out.writeInt(strings.size());
+				int[] offsets = new int[strings.size()];
+				for (int i = 0; i < offsets.length; i++) {
+					offsets[i] = out.size();
+					string(out, strings.get(i));
+				}
+				for (int offset : offsets) out.writeInt(offset);
+				out.writeInt(rules.size());
+				offsets = new int[rules.size()];
+				for (int i = 0; i < offsets.length; i++) {
+					offsets[i] = out.size();
+					Rule rule = rules.get(i);
+					out.writeInt(rule.getWords().size());
+					for (String expression : rule.getWords()) out.writeInt(ids.get(expression));
+				}
+				for (int offset : offsets) out.writeInt(offset);
+				out.writeInt(dicts.size());
+				for (int d = 0; d < dicts.size(); d++) {
+					List<Word> dict = dicts.get(d);
+					int numWords = dict.size();
+					out.writeInt(numWords);
+					LinkedHashMap<String, Integer> first = new LinkedHashMap<>();
+					int[] next = new int[numWords], last = new int[numWords];
+					int r = 0;
+					for (Word w : dict) {
+						out.writeInt(ids.get(w.getWord()));
+						out.writeInt(ids.get(w.getSubscript()));
+						out.writeInt(ruleIds.get(w.getRule()));
+						Integer f = first.get(w.getWord());
+						if (f == null) {
+							first.put(w.getWord(), r);
+							last[r] = r;
+						} else {
+							next[last[f]] = r + 1;
+							last[f] = r;
+						}
+						r++;
+					}
+					int[] slots = new int[SnapshotStore.capacity(first.size())];
+					for (Map.Entry<String, Integer> e : first.entrySet()) {
+						slots[SnapshotStore.free(slots, e.getKey().hashCode())] = e.getValue() + 1;
+					}
+					out.writeInt(slots.length);
+					out.writeInt(first.size());
+					for (int slot : slots) out.writeInt(slot);
+					for (int n : next) out.writeInt(n);
+					LinkedHashMap<String, ArrayList<String>> fold = folds.get(d);
+					slots = new int[SnapshotStore.capacity(fold.size())];
+					int e = 0;
+					for (String key : fold.keySet()) slots[SnapshotStore.free(slots, key.hashCode())] = ++e;
+					out.writeInt(fold.size());
+					out.writeInt(slots.length);
+					for (int slot : slots) out.writeInt(slot);
+					int start = 0;
+					for (Map.Entry<String, ArrayList<String>> entry : fold.entrySet()) {
+						out.writeInt(ids.get(entry.getKey()));
+						out.writeInt(start);
+						out.writeInt(entry.getValue().size());
+						start += entry.getValue().size();
+					}
+					out.writeInt(start);
+					for (ArrayList<String> variants : fold.values()) {
+						for (String variant : variants) out.writeInt(ids.get(variant));
+					}
+				}
+			}
+			Files.move(tmp, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			Files.deleteIfExists(tmp);
+			throw e;
+		}
+	}
+	
+	private static int id(String s, HashMap<String, Integer> ids, ArrayList<String> strings) {
+		Integer id = ids.get(s);
+		if (id == null) {
+			id = strings.size();
+			ids.put(s, id);
+			strings.add(s);
+		}
+		return id;
+	}
+	
+	private static String string(MappedByteBuffer buf) {
+		int length = buf.getInt();
+		if (length < 0) return null;
+		byte[] bytes = new byte[length];
+		buf.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+	
+	private static void string(DataOutputStream out, String s) throws IOException {
+		if (s == null) {
+			out.writeInt(-1);
+			return;
+		}
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+	
+	private static long checksum(Path source) throws IOException {
+		CRC32 crc = new CRC32();
+		byte[] buf = new byte[1 << 16];
+		try (InputStream in = Files.newInputStream(source)) {
+			int n;
+			while ((n = in.read(buf)) > 0) crc.update(buf, 0, n);
+		}
+		return crc.getValue();
+	}
+}
@@ -0,0 +1,246 @@
+/*
+ * MIT License
+ * 
+ * Copyright (c) 2020-Present by Vignav Ramesh and Anton Kolonin, Aigents®
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package main.java.org.aigents.nlp.lg;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+/*
+ * Words of one dictionary in a memory-mapped snapshot (see Snapshot.open). Strings, rules
+ * and the hash tables stay in the mapped file, outside the Java heap; a lookup hashes the
+ * word, compares it against the UTF-8 bytes in the file and builds only the Words of the
+ * entries found. Rules are interned into the heap the first time a word using them is
+ * looked up. All reads use absolute positions, so lookups are safe from any thread.
+ *
+ * Only the word tables are off the heap. The disjuncts compiled from a rule, their packed
+ * connector arrays and the connector table are ordinary heap objects, as in an eagerly
+ * loaded dictionary, and they are by far the larger part: opening the English snapshot
+ * adds less than 1 MB to the heap (43 MB for an eager load), while compiling the rules of
+ * the 85 distinct words of the first paragraph of gutenberg544.txt adds another 39 MB.
+ */
+class SnapshotStore extends WordStore {
+	private final Tables tables;
+	private final RuleTable ruleTable;
+	private final int numWords, records, wordCap, distinct, wordSlots, next;
+	private final int foldCount, foldCap, foldSlots, foldEntries, spellings;
+	
+	SnapshotStore(Tables tables, RuleTable ruleTable, int numWords, int records, int indexes) {
+		ByteBuffer buf = tables.buf;
+		this.tables = tables;
+		this.ruleTable = ruleTable;
+		this.numWords = numWords;
+		this.records = records;
+		wordCap = buf.getInt(indexes);
+		distinct = buf.getInt(indexes + 4);
+		wordSlots = indexes + 8;
+		next = wordSlots + 4 * wordCap;
+		int fold = next + 4 * numWords;
+		foldCount = buf.getInt(fold);
+		foldCap = buf.getInt(fold + 4);
+		foldSlots = fold + 8;
+		foldEntries = foldSlots + 4 * foldCap;
+		spellings = foldEntries + 12 * foldCount + 4;
+	}
+	
+	@Override
+	boolean contains(String word) {	return find(word) >= 0;	}
+	
+	@Override
+	List<Word> resolve(String word) {
+		int r = find(word);
+		if (r < 0) return null;
+		ArrayList<Word> words = new ArrayList<>(1);
+		for (; r >= 0; r = tables.buf.getInt(next + 4 * r) - 1) {
+			int record = records + 12 * r;
+			words.add(new Word(word, rule(tables.buf.getInt(record + 8)), tables.string(tables.buf.getInt(record + 4))));
+		}
+		return words;
+	}
+	
+	@Override
+	List<Rule> rules(String word) {
+		int r = find(word);
+		if (r < 0) return null;
+		ArrayList<Rule> rules = new ArrayList<>(1);
+		for (; r >= 0; r = tables.buf.getInt(next + 4 * r) - 1) rules.add(rule(tables.buf.getInt(records + 12 * r + 8)));
+		return rules;
+	}
+	
+	@Override
+	int[] ruleNumbers(String word) {
+		int r = find(word);
+		if (r < 0) return null;
+		int n = 0;
+		for (int k = r; k >= 0; k = tables.buf.getInt(next + 4 * k) - 1) n++;
+		int[] numbers = new int[n];
+		for (int i = 0; r >= 0; r = tables.buf.getInt(next + 4 * r) - 1) numbers[i++] = tables.buf.getInt(records + 12 * r + 8);
+		return numbers;
+	}
+	
+	@Override
+	int ruleCount() {	return tables.rules.length;	}
+	
+	// the expressions of a rule already interned, else decoded from the file
+	@Override
+	List<String> expressions(int rule) {
+		synchronized (tables.rules) {
+			if (tables.rules[rule] != null) return tables.rules[rule].getWords();
+		}
+		return tables.expressions(rule);
+	}
+	
+	// distinct words in dictionary order, decoded as the list is walked
+	@Override
+	List<String> words() {
+		int[] ids = new int[distinct];
+		BitSet seen = new BitSet();
+		int n = 0;
+		for (int r = 0; r < numWords; r++) {
+			int id = tables.buf.getInt(records + 12 * r);
+			if (!seen.get(id)) {
+				seen.set(id);
+				ids[n++] = id;
+			}
+		}
+		return strings(ids);
+	}
+	
+	@Override
+	List<String> variants(String key) {
+		byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+		for (int i = slot(key.hashCode(), foldCap); ; i = (i + 1) & (foldCap - 1)) {
+			int e = tables.buf.getInt(foldSlots + 4 * i) - 1;
+			if (e < 0) return Collections.emptyList();
+			int entry = foldEntries + 12 * e;
+			if (tables.equals(tables.buf.getInt(entry), bytes)) {
+				int start = tables.buf.getInt(entry + 4), count = tables.buf.getInt(entry + 8);
+				int[] ids = new int[count];
+				for (int k = 0; k < count; k++) ids[k] = tables.buf.getInt(spellings + 4 * (start + k));
+				return Collections.unmodifiableList(new ArrayList<>(strings(ids)));
+			}
+		}
+	}
+	
+	@Override
+	List<String> keys() {
+		int[] ids = new int[foldCount];
+		for (int e = 0; e < foldCount; e++) ids[e] = tables.buf.getInt(foldEntries + 12 * e);
+		return strings(ids);
+	}
+	
+	@Override
+	int size() {	return distinct;	}
+	
+	private int find(String word) {
+		byte[] bytes = word.getBytes(StandardCharsets.UTF_8);
+		for (int i = slot(word.hashCode(), wordCap); ; i = (i + 1) & (wordCap - 1)) {
+			int r = tables.buf.getInt(wordSlots + 4 * i) - 1;
+			if (r < 0) return -1;
+			if (tables.equals(tables.buf.getInt(records + 12 * r), bytes)) return r;
+		}
+	}
+	
+	private Rule rule(int id) {
+		synchronized (tables.rules) {
+			Rule rule = tables.rules[id];
+			if (rule == null) {
+				rule = ruleTable.intern(tables.expressions(id));
+				tables.rules[id] = rule;
+			}
+			return rule;
+		}
+	}
+	
+	private List<String> strings(int[] ids) {
+		return new AbstractList<String>() {
+			@Override
+			public String get(int i) {	return tables.string(ids[i]);	}
+			
+			@Override
+			public int size() {	return ids.length;	}
+		};
+	}
+	
+	// smallest power of two holding n keys at a load factor of at most one half
+	static int capacity(int n) {
+		return Math.max(2, Integer.highestOneBit(Math.max(1, n) * 2 - 1) << 1);
+	}
+	
+	static int slot(int hash, int capacity) {
+		return (hash ^ (hash >>> 16)) & (capacity - 1);
+	}
+	
+	// first empty slot on the probe sequence of hash, for building the tables
+	static int free(int[] slots, int hash) {
+		int i = slot(hash, slots.length);
+		while (slots[i] != 0) i = (i + 1) & (slots.length - 1);
+		return i;
+	}
+	
+	/* string and rule tables of a snapshot, shared by its dictionaries */
+	static class Tables {
+		private final ByteBuffer buf;
+		private final int stringOffsets, ruleOffsets;
+		private final Rule[] rules;
+		
+		Tables(ByteBuffer buf, int stringOffsets, int ruleOffsets, int numRules) {
+			this.buf = buf;
+			this.stringOffsets = stringOffsets;
+			this.ruleOffsets = ruleOffsets;
+			rules = new Rule[numRules];
+		}
+		
+		private ArrayList<String> expressions(int rule) {
+			int pos = buf.getInt(ruleOffsets + 4 * rule);
+			int n = buf.getInt(pos);
+			ArrayList<String> expressions = new ArrayList<>(n);
+			for (int k = 0; k < n; k++) expressions.add(string(buf.getInt(pos + 4 + 4 * k)));
+			return expressions;
+		}
+		
+		private String string(int id) {
+			int pos = buf.getInt(stringOffsets + 4 * id);
+			int length = buf.getInt(pos);
+			if (length < 0) return null;
+			byte[] bytes = new byte[length];
+			for (int i = 0; i < length; i++) bytes[i] = buf.get(pos + 4 + i);
+			return new String(bytes, StandardCharsets.UTF_8);
+		}
+		
+		private boolean equals(int id, byte[] bytes) {
+			int pos = buf.getInt(stringOffsets + 4 * id);
+			if (buf.getInt(pos) != bytes.length) return false;
+			for (int i = 0; i < bytes.length; i++) {
+				if (buf.get(pos + 4 + i) != bytes[i]) return false;
+			}
+			return true;
+		}
+	}
+}
@@ -0,0 +1,82 @@
+/*
+ * MIT License
+ * 
+ * Copyright (c) 2020-Present by Vignav Ramesh and Anton Kolonin, Aigents®
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package main.java.org.aigents.nlp.lg;
+
+import java.util.HashMap;
+
+/*
+ * Bits for the subscript classes of dictionary words (the "n-u" in "cake.n-u"), so that
+ * the set of classes of a word fits in one long. Subscripts without a bit of their own
+ * all map to OTHER.
+ */
+public final class Subscript {
+	private static final HashMap<String, Long> bits = new HashMap<>();
+	
+	public static final long N = bit("n");
+	public static final long N_U = bit("n-u");
+	public static final long N_F = bit("n-f");
+	public static final long N_M = bit("n-m");
+	public static final long V = bit("v");
+	public static final long V_D = bit("v-d");
+	public static final long A = bit("a");
+	public static final long A_S = bit("a-s");
+	public static final long A_C = bit("a-c");
+	public static final long G = bit("g");
+	public static final long F = bit("f");
+	public static final long S = bit("s");
+	public static final long M = bit("m");
+	public static final long L = bit("l");
+	public static final long C = bit("c");
+	public static final long Q = bit("q");
+	public static final long Q_D = bit("q-d");
+	public static final long E = bit("e");
+	public static final long U = bit("u");
+	public static final long B = bit("b");
+	public static final long T = bit("t");
+	public static final long P = bit("p");
+	public static final long I = bit("i");
+	public static final long R = bit("r");
+	public static final long W = bit("w");
+	public static final long Y = bit("y");
+	public static final long J = bit("j");
+	public static final long J_RU = bit("j-ru");
+	public static final long OTHER = 1L << 63;
+	
+	private Subscript() {
+	}
+	
+	private static long bit(String subscript) {
+		long bit = 1L << bits.size();
+		bits.put(subscript, bit);
+		return bit;
+	}
+	
+	// returns 0 for no subscript
+	public static long of(String subscript) {
+		if (subscript.isEmpty()) return 0;
+		Long bit = bits.get(subscript);
+		return bit == null? OTHER : bit;
+	}
+}
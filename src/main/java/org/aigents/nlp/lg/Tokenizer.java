@@ -0,0 +1,322 @@
+/*
+ * MIT License
+ * 
+ * Copyright (c) 2020-Present by Vignav Ramesh and Anton Kolonin, Aigents®
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package main.java.org.aigents.nlp.lg;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/*
+ * Splits text into tokens by the 4.0.affix file of a dictionary. Words are separated by
+ * whitespace; each word loses its leading (LPUNC) and trailing (RPUNC) punctuation, then
+ * a contraction suffix (SUF, "'s") or prefix (PRE, "y'"), and what is left is split at
+ * the middle punctuation (MPUNC, "--"). Each affix class is a trie and every match is the
+ * longest one, so a text is tokenized in a single pass. Tokens are reported to a Visitor
+ * as offsets into the text, so scanning allocates nothing per token. As in the LG
+ * parser, punctuation stays on a word that the dictionary next to the affix file knows
+ * as written, such as "Mr." or "e.g.", or that one of its 4.0.regex classes matches when
+ * the mark also occurs inside it, such as the initials "U.S."; other affixes are split off
+ * without a dictionary check, and UNITS are not split off.
+ */
+public class Tokenizer {
+	public static final int WORD = 0, LPUNC = 1, RPUNC = 2, MPUNC = 3, SUFFIX = 4, PREFIX = 5, QUOTE = 6;
+	private static final Pattern CLASS = Pattern.compile(":\\s*([A-Z]+)\\+;\\s*$");
+	private static final HashMap<Path, Tokenizer> loaded = new HashMap<>();
+	private final CharTrie lpunc = new CharTrie(), rpunc = new CharTrie(), mpunc = new CharTrie();
+	private final CharTrie suffixes = new CharTrie(), prefixes = new CharTrie();
+	private final CharTrie words = new CharTrie();
+	private final StringBuilder quotes = new StringBuilder();
+	private String infixMark, stemSubscript;
+	private RegexClasses regexes;
+	
+	public interface Visitor {
+		void token(CharSequence text, int start, int end, int type);
+		
+		// called after the last token of each line
+		default void lineEnd(CharSequence text, int offset) {}
+	}
+	
+	private Tokenizer() {}
+	
+	// tokenizer of the affix file at path, read once per process; whitespace only if there is none
+	public static Tokenizer load(Path path) {
+		Path key = path.toAbsolutePath().normalize();
+		synchronized (loaded) {
+			Tokenizer t = loaded.get(key);
+			if (t == null) {
+				t = new Tokenizer();
+				if (Files.isRegularFile(key)) {
+					try {
+						t.read(key);
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				}
+				loaded.put(key, t);
+			}
+			return t;
+		}
+	}
+	
+	// drops the tokenizer read from path, so the next load reads the file again
+	static void evict(Path path) {
+		synchronized (loaded) {
+			loaded.remove(path.toAbsolutePath().normalize());
+		}
+	}
+	
+	public static Tokenizer forDictionary(Path dict) {
+		return load(dict.resolveSibling("4.0.affix"));
+	}
+	
+	// tokenizer of the English dictionary, used for the English test corpora
+	public static Tokenizer getDefault() {
+		return load(Loader.dictPath("en/4.0.affix"));
+	}
+	
+	/*
+	 * Entries run up to a line ending in "CLASS+;", as items such as ";" may contain the
+	 * separator; quoted items lose their quotes and QUOTES and BULLETS list their items as
+	 * the characters of one string.
+	 */
+	private void read(Path path) throws IOException {
+		StringBuilder entry = new StringBuilder();
+		for (String line : Files.readAllLines(path)) {
+			String trimmed = line.trim();
+			if (trimmed.isEmpty() || trimmed.charAt(0) == '%') continue;
+			entry.append(trimmed).append(' ');
+			Matcher m = CLASS.matcher(trimmed);
+			if (!m.find()) continue;
+			String items = entry.substring(0, entry.lastIndexOf(":")).trim();
+			entry.setLength(0);
+			define(m.group(1), items);
+		}
+		Path dict = path.resolveSibling("4.0.dict"), regex = path.resolveSibling("4.0.regex");
+		if (!Files.isRegularFile(dict)) return;
+		readWords(dict);
+		if (Files.isRegularFile(regex)) regexes = new RegexClasses(regex, dict, new RuleTable());
+	}
+	
+	/*
+	 * Keeps the words of the dictionary entries that punctuation would be split off, as
+	 * written, i.e. without the subscript after their last inner '.' ("Mr..x" is "Mr.").
+	 */
+	private void readWords(Path dict) throws IOException {
+		List<String> list = Loader.readLines(dict, false);
+		String[] lines = list.toArray(new String[list.size()]);
+		for (int i = 0; i < lines.length; i++) {
+			if (lines[i].length() == 0) continue;
+			int end = Loader.entryEnd(lines, i);
+			String[] parts = Loader.getParts(Loader.entry(lines, i, end));
+			i = end;
+			for (String word : parts[0].split("\\s+")) {
+				if (word.isEmpty() || word.charAt(0) == '<' || word.charAt(0) == '/') continue;
+				word = unquote(word);
+				int dot = word.lastIndexOf('.');
+				if (dot > 0 && dot < word.length() - 1) word = word.substring(0, dot);
+				int length = word.length();
+				if (lpunc.longest(word, 0, length, false) == 0 && rpunc.longest(word, 0, length, true) == 0) continue;
+				if (alphanumeric(word, 0, length)) words.add(word, false, 0);
+			}
+		}
+	}
+	
+	private void define(String name, String items) {
+		if (name.equals("QUOTES") || name.equals("BULLETS")) {
+			String chars = unquote(items);
+			if (name.equals("QUOTES")) quotes.append(chars);
+			return;
+		}
+		for (String item : items.split("\\s+")) {
+			item = unquote(item);
+			if (item.isEmpty()) continue;
+			switch (name) {
+			case "LPUNC": lpunc.add(item, false, 0); break;
+			case "RPUNC": rpunc.add(item, true, 0); break;
+			case "MPUNC": mpunc.add(item, false, 0); break;
+			case "SUF": suffixes.add(item, true, 0); break;
+			case "PRE": prefixes.add(item, false, 0); break;
+			case "INFIXMARK": infixMark = item; break;
+			case "STEMSUBSCR": stemSubscript = item; break;
+			default: break;
+			}
+		}
+	}
+	
+	private static String unquote(String item) {
+		if (item.length() >= 2 && item.charAt(0) == '"' && item.charAt(item.length() - 1) == '"') {
+			return item.substring(1, item.length() - 1);
+		}
+		return item;
+	}
+	
+	// infix mark of the morphemes of a split dictionary ("=" for data/ru), or null
+	public String getInfixMark() {	return infixMark;	}
+	
+	// subscript of the stems of a split dictionary (".=" for data/ru), or null
+	public String getStemSubscript() {	return stemSubscript;	}
+	
+	public boolean isQuote(char c) {
+		return quotes.indexOf(String.valueOf(c)) >= 0;
+	}
+	
+	public void scan(CharSequence text, Visitor visitor) {
+		scan(text, 0, text.length(), visitor);
+	}
+	
+	public void scan(CharSequence text, int from, int to, Visitor visitor) {
+		int[] pending = new int[48];
+		int start = -1;
+		boolean line = false;
+		for (int i = from; i <= to; i++) {
+			char c = i < to? text.charAt(i) : '\n';
+			if (!Character.isWhitespace(c)) {
+				if (start < 0) start = i;
+				continue;
+			}
+			if (start >= 0) {
+				pending = word(text, start, i, visitor, pending);
+				start = -1;
+				line = true;
+			}
+			if (c == '\n' && line) {
+				visitor.lineEnd(text, i);
+				line = false;
+			}
+		}
+	}
+	
+	// trailing tokens are found last to first and kept in pending, which is returned grown if need be
+	private int[] word(CharSequence text, int s, int e, Visitor visitor, int[] pending) {
+		int n;
+		boolean whole = false;
+		while (s < e && (n = lpunc.longest(text, s, e, false)) > 0) {
+			if (whole = known(text, s, e)) break;
+			visitor.token(text, s, s + n, n == 1 && isQuote(text.charAt(s))? QUOTE : LPUNC);
+			s += n;
+		}
+		int top = 0;
+		while (!whole && s < e && (n = rpunc.longest(text, s, e, true)) > 0) {
+			if (whole = known(text, s, e)) break;
+			if (top + 3 > pending.length) pending = Arrays.copyOf(pending, pending.length * 2);
+			push(pending, top, e - n, e, n == 1 && isQuote(text.charAt(e - 1))? QUOTE : RPUNC);
+			top += 3;
+			e -= n;
+		}
+		if (whole) {
+			visitor.token(text, s, e, WORD);
+			return flush(text, visitor, pending, top);
+		}
+		if (s < e && (n = suffixes.longest(text, s, e, true)) > 0 && n < e - s) {
+			if (top + 3 > pending.length) pending = Arrays.copyOf(pending, pending.length * 2);
+			push(pending, top, e - n, e, SUFFIX);
+			top += 3;
+			e -= n;
+		}
+		if (s < e && (n = prefixes.longest(text, s, e, false)) > 0 && n < e - s) {
+			visitor.token(text, s, s + n, PREFIX);
+			s += n;
+		}
+		int from = s;
+		for (int i = s; i < e;) {
+			n = mpunc.longest(text, i, e, false);
+			if (n == 0) {
+				i++;
+				continue;
+			}
+			if (i > from) visitor.token(text, from, i, WORD);
+			visitor.token(text, i, i + n, MPUNC);
+			i += n;
+			from = i;
+		}
+		if (e > from) visitor.token(text, from, e, WORD);
+		return flush(text, visitor, pending, top);
+	}
+	
+	private static int[] flush(CharSequence text, Visitor visitor, int[] pending, int top) {
+		while (top > 0) {
+			top -= 3;
+			visitor.token(text, pending[top], pending[top + 1], pending[top + 2]);
+		}
+		return pending;
+	}
+	
+	/*
+	 * Whether text[s, e) keeps its punctuation: the dictionary has it as written, or it
+	 * has a regex class and its first or last mark occurs inside it too, so a plain
+	 * "word," at the end of a clause costs a trie walk and no regex match.
+	 */
+	private boolean known(CharSequence text, int s, int e) {
+		if (words.longest(text, s, e, false) == e - s) return true;
+		if (regexes == null || e - s < 3) return false;
+		char first = text.charAt(s), last = text.charAt(e - 1);
+		if (isQuote(first) || isQuote(last)) return false;
+		boolean inner = false;
+		for (int i = s + 1; i < e - 1 && !inner; i++) {
+			char c = text.charAt(i);
+			inner = (c == first && !Character.isLetterOrDigit(first)) || (c == last && !Character.isLetterOrDigit(last));
+		}
+		return inner && alphanumeric(text, s, e) && regexes.classify(text.subSequence(s, e).toString()) != null;
+	}
+	
+	private static boolean alphanumeric(CharSequence text, int from, int to) {
+		for (int i = from; i < to; i++) {
+			if (Character.isLetterOrDigit(text.charAt(i))) return true;
+		}
+		return false;
+	}
+	
+	private static void push(int[] pending, int top, int start, int end, int type) {
+		pending[top] = start;
+		pending[top + 1] = end;
+		pending[top + 2] = type;
+	}
+	
+	/*
+	 * Tokens of text as strings, for callers that keep them anyway; punctuation tokens are
+	 * kept unless words is set.
+	 */
+	public List<String> split(CharSequence text, boolean words) {
+		List<String> list = new ArrayList<>();
+		scan(text, (t, start, end, type) -> {
+			if (!words || type == WORD || type == SUFFIX || type == PREFIX) list.add(t.subSequence(start, end).toString());
+		});
+		return list;
+	}
+	
+	// number of tokens of text
+	public int count(CharSequence text) {
+		int[] count = new int[1];
+		scan(text, (t, start, end, type) -> count[0]++);
+		return count[0];
+	}
+}
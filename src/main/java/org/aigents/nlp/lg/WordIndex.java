@@ -0,0 +1,152 @@
+/*
+ * MIT License
+ * 
+ * Copyright (c) 2020-Present by Vignav Ramesh and Anton Kolonin, Aigents®
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package main.java.org.aigents.nlp.lg;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/*
+ * Word index used by lazily loaded dictionaries: for every word it only records which
+ * dictionary entries (as the raw token and the index of the rule string it was listed
+ * with) mention it, in dictionary order. Words and rules are built from these on lookup.
+ */
+public class WordIndex extends WordStore {
+	private final Macros macros;
+	private final ArrayList<String> rules;
+	private final RuleTable ruleTable;
+	private final HashMap<String, ArrayList<Listing>> entries = new HashMap<>();
+	private HashMap<String, ArrayList<String>> folded;
+	
+	WordIndex(Macros macros, ArrayList<String> rules, RuleTable ruleTable) {
+		this.macros = macros;
+		this.rules = rules;
+		this.ruleTable = ruleTable;
+	}
+	
+	// a part of an index, filled by one loader task and merged into the index with addAll
+	WordIndex() {
+		this(null, null, null);
+	}
+	
+	void add(String token, int rule) {
+		String word = Loader.wordName(token);
+		ArrayList<Listing> list = entries.get(word);
+		if (list == null) {
+			list = new ArrayList<>(1);
+			entries.put(word, list);
+		}
+		list.add(new Listing(token, rule));
+	}
+	
+	// appends the listings of part after those already indexed
+	void addAll(WordIndex part) {
+		for (Map.Entry<String, ArrayList<Listing>> e : part.entries.entrySet()) {
+			ArrayList<Listing> list = entries.putIfAbsent(e.getKey(), e.getValue());
+			if (list != null) list.addAll(e.getValue());
+		}
+		folded = null;
+	}
+	
+	@Override
+	public boolean contains(String word) {	return entries.containsKey(word);	}
+	
+	@Override
+	public int size() {	return entries.size();	}
+	
+	@Override
+	Set<String> words() {	return entries.keySet();	}
+	
+	@Override
+	List<String> variants(String key) {
+		ArrayList<String> variants = folded().get(key);
+		return variants == null? Collections.emptyList() : Collections.unmodifiableList(variants);
+	}
+	
+	@Override
+	Set<String> keys() {	return folded().keySet();	}
+	
+	private synchronized HashMap<String, ArrayList<String>> folded() {
+		if (folded == null) {
+			folded = new HashMap<>();
+			for (String word : entries.keySet()) {
+				String key = word.toLowerCase();
+				ArrayList<String> variants = folded.get(key);
+				if (variants == null) {
+					variants = new ArrayList<>(1);
+					folded.put(key, variants);
+				}
+				insert(variants, key, word);
+			}
+		}
+		return folded;
+	}
+	
+	@Override
+	List<Word> resolve(String word) {
+		ArrayList<Listing> list = entries.get(word);
+		if (list == null) return null;
+		ArrayList<Word> words = new ArrayList<>(list.size());
+		for (Listing l : list) words.add(Loader.makeWord(l.token, ruleTable.intern(macros.expressions(rules.get(l.rule)))));
+		return words;
+	}
+	
+	@Override
+	List<Rule> rules(String word) {
+		ArrayList<Listing> list = entries.get(word);
+		if (list == null) return null;
+		ArrayList<Rule> result = new ArrayList<>(list.size());
+		for (Listing l : list) result.add(ruleTable.intern(macros.expressions(rules.get(l.rule))));
+		return result;
+	}
+	
+	@Override
+	int[] ruleNumbers(String word) {
+		ArrayList<Listing> list = entries.get(word);
+		if (list == null) return null;
+		int[] result = new int[list.size()];
+		for (int i = 0; i < result.length; i++) result[i] = list.get(i).rule;
+		return result;
+	}
+	
+	@Override
+	int ruleCount() {	return rules.size();	}
+	
+	@Override
+	List<String> expressions(int rule) {	return macros.expressions(rules.get(rule));	}
+	
+	private static class Listing {
+		private final String token;
+		private final int rule;
+		
+		private Listing(String token, int rule) {
+			this.token = token;
+			this.rule = rule;
+		}
+	}
+}
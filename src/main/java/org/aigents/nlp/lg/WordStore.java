@@ -0,0 +1,80 @@
+/*
+ * MIT License
+ * 
+ * Copyright (c) 2020-Present by Vignav Ramesh and Anton Kolonin, Aigents®
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package main.java.org.aigents.nlp.lg;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * Words of a dictionary that are kept outside its Word objects and resolved on lookup,
+ * either from a word index built while parsing (WordIndex) or from a memory-mapped
+ * snapshot (SnapshotStore).
+ */
+abstract class WordStore {
+	abstract boolean contains(String word);
+	
+	// words of every entry of word in dictionary order, or null if there are none
+	abstract List<Word> resolve(String word);
+	
+	// interned rules of every entry of word, without building its Word objects
+	abstract List<Rule> rules(String word);
+	
+	// numbers of the rules of every entry of word, or null, without interning the rules
+	abstract int[] ruleNumbers(String word);
+	
+	// number of distinct rules, and the expressions of a rule by number, not interned
+	abstract int ruleCount();
+	
+	abstract List<String> expressions(int rule);
+	
+	// distinct words, each once
+	abstract Iterable<String> words();
+	
+	// spellings whose lower case form is key, ordered as insert() orders them
+	abstract List<String> variants(String key);
+	
+	// distinct lower case forms of the words
+	abstract Iterable<String> keys();
+	
+	abstract int size();
+	
+	/*
+	 * Adds word to the spellings of key: the lower case spelling goes first, then the
+	 * capitalized one, then any others in the order they were added.
+	 */
+	static void insert(ArrayList<String> variants, String key, String word) {
+		if (variants.contains(word)) return;
+		int rank = rank(key, word), i = variants.size();
+		while (i > 0 && rank(key, variants.get(i - 1)) > rank) i--;
+		variants.add(i, word);
+	}
+	
+	private static int rank(String key, String word) {
+		if (word.equals(key)) return 0;
+		if (word.length() > 0 && word.charAt(0) == Character.toUpperCase(key.charAt(0))
+				&& word.regionMatches(1, key, 1, key.length() - 1)) return 1;
+		return 2;
+	}
+}
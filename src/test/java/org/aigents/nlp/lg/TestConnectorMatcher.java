@@ -0,0 +1,30 @@
+package test.java.org.aigents.nlp.lg;
+
+import main.java.org.aigents.nlp.lg.ConnectorTable;
+
+public class TestConnectorMatcher {
+    public static void main(String[] args) {
+        System.out.println("Testing ConnectorMatcher.java on known connector pairs.");
+        ConnectorTable table = new ConnectorTable();
+        check(table, "Ss+", "Ss-", true, true);
+        check(table, "Ss+", "S-", true, true);
+        check(table, "Ss+", "Sp-", false, false);
+        check(table, "@MV+", "MVp-", true, true);
+        check(table, "Bp+", "B*d-", true, false);
+        check(table, "B*+", "B*-", true, true);
+        check(table, "IV+", "dIV-", true, true);
+        check(table, "dX+", "dX-", false, false);
+        check(table, "hWV+", "dWV-", true, true);
+        check(table, "hCO+", "CO-", true, true);
+        check(table, "hX+", "hX-", false, false);
+        check(table, "S+", "SI-", false, false);
+        check(table, "Ss+", "Ss+", false, false);
+    }
+
+    private static void check(ConnectorTable table, String a, String b, boolean wildcards, boolean literal) {
+        int x = table.pack(a), y = table.pack(b);
+        boolean w = table.getMatcher().matches(x, y), l = table.getMatcher(false).matches(y, x);
+        boolean ok = w == wildcards && l == literal;
+        System.out.println(a + " " + b + " -> " + w + ", " + l + (ok ? "" : " FAILED, expected " + wildcards + ", " + literal));
+    }
+}
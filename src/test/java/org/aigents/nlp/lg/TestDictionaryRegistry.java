@@ -0,0 +1,92 @@
+package test.java.org.aigents.nlp.lg;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+
+import main.java.org.aigents.nlp.lg.ConnectorTable;
+import main.java.org.aigents.nlp.lg.Dictionary;
+import main.java.org.aigents.nlp.lg.DictionaryRegistry;
+import main.java.org.aigents.nlp.lg.LinkCosts;
+import main.java.org.aigents.nlp.lg.Loader;
+import main.java.org.aigents.nlp.lg.Snapshot;
+
+public class TestDictionaryRegistry {
+    private static final String NAME = "registry-test/4.0.dict";
+    private static final String TEXT = "the a: D+;\ndog cat: D- & S+;\nran: S-;\n";
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Path dir = Paths.get((System.getProperty("user.dir").endsWith("src") ? "../data/" : "data/") + "registry-test")
+                .toAbsolutePath();
+        Path dict = dir.resolve("4.0.dict");
+        Files.createDirectories(dir);
+        try {
+            Files.write(dict, TEXT.getBytes());
+            testSnapshot(dict);
+            testRegistry(dict);
+        } finally {
+            for (File f : dir.toFile().listFiles()) f.delete();
+            dir.toFile().delete();
+        }
+    }
+
+    private static void testSnapshot(Path dict) throws IOException {
+        System.out.println("Testing Snapshot.java on changes to a source file.");
+        ConnectorTable connectors = new ConnectorTable();
+        Loader.mapLGDict(NAME, connectors);
+        Path snapshot = Snapshot.pathFor(dict);
+        check("written", Snapshot.open(snapshot, connectors) != null, true);
+
+        FileTime modified = Files.getLastModifiedTime(dict);
+        Files.setLastModifiedTime(dict, FileTime.fromMillis(modified.toMillis() + 20000));
+        check("touched, same content", Snapshot.open(snapshot, connectors) != null, true);
+
+        Files.write(dict, TEXT.replace("ran", "sat").getBytes());
+        Files.setLastModifiedTime(dict, FileTime.fromMillis(modified.toMillis() + 40000));
+        check("same length, new content", Snapshot.open(snapshot, connectors) != null, false);
+
+        Files.write(dict, TEXT.getBytes());
+    }
+
+    private static void testRegistry(Path dict) throws IOException, InterruptedException {
+        System.out.println("\nTesting DictionaryRegistry.java on a modified and an evicted dictionary.");
+        DictionaryRegistry registry = new DictionaryRegistry();
+        try {
+            Dictionary[] dicts = registry.get(NAME);
+            check("loaded without fox", dicts[0].getRule("fox").isEmpty(), true);
+
+            Files.write(dict, (TEXT + "fox: D- & S+;\n").getBytes());
+            for (int i = 0; i < 100 && registry.getVersion(NAME) == 0; i++) Thread.sleep(100);
+            check("version after change", registry.getVersion(NAME), 1);
+            Dictionary[] rebuilt = registry.get(NAME);
+            check("rebuilt with fox", rebuilt != dicts && !rebuilt[0].getRule("fox").isEmpty(), true);
+            check("old version unchanged", dicts[0].getRule("fox").isEmpty(), true);
+
+            dicts = rebuilt;
+            LinkCosts costs = dicts[0].getLinkCosts(3);
+            registry.evict(NAME);
+            check("evicted", registry.getNames().contains(NAME), false);
+            check("caches released", dicts[0].getLinkCosts(3) != costs, true);
+
+            WeakReference<Dictionary[]> evicted = new WeakReference<>(dicts);
+            dicts = rebuilt = null;
+            costs = null;
+            for (int i = 0; i < 10 && evicted.get() != null; i++) {
+                System.gc();
+                Thread.sleep(100);
+            }
+            check("rules collected", evicted.get() == null, true);
+        } finally {
+            registry.close();
+        }
+    }
+
+    private static void check(String what, Object actual, Object expected) {
+        boolean ok = expected.equals(actual);
+        System.out.println(what + " -> " + actual + (ok ? "" : " FAILED, expected " + expected));
+    }
+}
@@ -0,0 +1,47 @@
+package test.java.org.aigents.nlp.lg;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+
+import main.java.org.aigents.nlp.lg.Dictionary;
+import main.java.org.aigents.nlp.lg.Disjunct;
+import main.java.org.aigents.nlp.lg.Expression;
+import main.java.org.aigents.nlp.lg.Loader;
+import main.java.org.aigents.nlp.lg.Rule;
+
+public class TestExpression {
+    public static void main(String[] args) throws IOException {
+        System.out.println("Testing Expression.java on known rules.");
+        check("A+ & {B-}", "[A+, B-]:0.0 [A+]:0.0");
+        check("[A+] or B-", "[A+]:1.0 [B-]:0.0");
+        check("[[A+]] or [B-]0.2", "[A+]:2.0 [B-]:0.2");
+        check("[[[A+]]]", "");
+        check("{Ds-} & [Wa-] & ({Mf+} or {NM+})",
+                "[Ds-, Wa-, Mf+]:1.0 [Ds-, Wa-]:1.0 [Ds-, Wa-, NM+]:1.0 [Wa-, Mf+]:1.0 [Wa-]:1.0 [Wa-, NM+]:1.0");
+        check("(A+ & [B-]) or (A+ & B-)", "[A+, B-]:0.0");
+
+        System.out.println("\nTesting Expression.java on the word \"board\".");
+        Dictionary dict = Loader.buildLGDict("en/4.0.dict")[0];
+        List<Rule> rules = dict.getRule("board");
+        for (Rule rule : rules) {
+            HashSet<String> seen = new HashSet<>();
+            int duplicates = 0;
+            for (Disjunct d : rule.getDisjuncts()) {
+                if (!seen.add(d.toString())) duplicates++;
+            }
+            System.out.println(rule.getDisjuncts().size() + " disjuncts, " + duplicates + " duplicates"
+                    + (duplicates == 0 ? "" : " FAILED"));
+        }
+    }
+
+    private static void check(String expression, String expected) {
+        StringBuilder s = new StringBuilder();
+        for (Disjunct d : Expression.toDisjuncts(expression)) {
+            if (s.length() > 0) s.append(' ');
+            s.append(d).append(':').append(d.getCost());
+        }
+        boolean ok = s.toString().equals(expected);
+        System.out.println(expression + " -> " + s + (ok ? "" : " FAILED, expected " + expected));
+    }
+}
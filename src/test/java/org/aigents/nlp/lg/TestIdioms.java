@@ -0,0 +1,27 @@
+package test.java.org.aigents.nlp.lg;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import main.java.org.aigents.nlp.lg.Dictionary;
+import main.java.org.aigents.nlp.lg.Idioms;
+import main.java.org.aigents.nlp.lg.Loader;
+
+public class TestIdioms {
+    public static void main(String[] args) throws IOException {
+        System.out.println("Testing Idioms.java on the idioms of en/4.0.dict.");
+        Dictionary hyphenated = Loader.buildLGDict("en/4.0.dict")[1];
+        Idioms idioms = hyphenated.getIdioms();
+        check(idioms, "he sings as well as dances", "[he, sings, as_well_as, dances]");
+        check(idioms, "they love each other", "[they, love, each_other]");
+        check(idioms, "As well as each other", "[As_well_as, each_other]");
+        check(idioms, "the dog ran home", "[the, dog, ran, home]");
+    }
+
+    private static void check(Idioms idioms, String sentence, String expected) {
+        List<String> units = idioms.collapse(Arrays.asList(sentence.split(" ")));
+        boolean ok = units.toString().equals(expected);
+        System.out.println(sentence + " -> " + units + (ok ? "" : " FAILED, expected " + expected));
+    }
+}
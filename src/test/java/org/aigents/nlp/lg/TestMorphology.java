@@ -0,0 +1,37 @@
+package test.java.org.aigents.nlp.lg;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import main.java.org.aigents.nlp.lg.Dictionary;
+import main.java.org.aigents.nlp.lg.Loader;
+import main.java.org.aigents.nlp.lg.Morphology;
+import main.java.org.aigents.nlp.lg.Word;
+
+public class TestMorphology {
+    public static void main(String[] args) throws IOException {
+        Dictionary dict = Loader.buildLGDict("ru/4.0.dict")[0];
+        Morphology morphology = dict.getMorphology();
+
+        System.out.println("Testing Morphology.java on word forms of ru/4.0.dict.");
+        check("голосами", morphology.resolve("голосами"), "ndmpt");
+        check("мамой", morphology.resolve("мамой"), "nlfst");
+        check("и", morphology.resolve("и"), "p");
+        check("куздра", morphology.resolve("куздра"), null);
+
+        System.out.println("\nTesting Morphology.java on guesses for unknown words.");
+        check("блорфами", morphology.guess("блорфами"), "ndmpt");
+        check("куздра", morphology.guess("куздра"), "ndmsg");
+    }
+
+    private static void check(String token, List<Word> words, String expected) {
+        List<String> subscripts = new ArrayList<>();
+        if (words != null) {
+            for (Word w : words) subscripts.add(w.getSubscript());
+        }
+        boolean ok = expected == null ? words == null : subscripts.contains(expected);
+        System.out.println(token + " -> " + (words == null ? null : subscripts)
+                + (ok ? "" : " FAILED, expected " + expected));
+    }
+}
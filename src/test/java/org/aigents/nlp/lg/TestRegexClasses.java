@@ -0,0 +1,29 @@
+package test.java.org.aigents.nlp.lg;
+
+import java.io.IOException;
+import java.util.List;
+
+import main.java.org.aigents.nlp.lg.Dictionary;
+import main.java.org.aigents.nlp.lg.Loader;
+import main.java.org.aigents.nlp.lg.RegexClasses;
+import main.java.org.aigents.nlp.lg.Word;
+
+public class TestRegexClasses {
+    public static void main(String[] args) throws IOException {
+        System.out.println("Testing RegexClasses.java on en/4.0.dict.");
+        Dictionary dict = Loader.buildLGDict("en/4.0.dict")[0];
+        RegexClasses classes = dict.getRegexClasses();
+        check(classes, "123", "YEAR-DATE");
+        check(classes, "1990s", "DECADE-DATE");
+        check(classes, "well-known", "HYPHENATED-WORDS");
+        check(classes, ":-)", "EMOTICON");
+    }
+
+    private static void check(RegexClasses classes, String token, String expected) {
+        String name = classes.classify(token);
+        List<Word> words = classes.resolve(token);
+        boolean ok = expected.equals(name) && words != null && !words.isEmpty();
+        System.out.println(token + " -> " + name + " (" + (words == null ? 0 : words.size()) + " words)"
+                + (ok ? "" : " FAILED, expected " + expected));
+    }
+}
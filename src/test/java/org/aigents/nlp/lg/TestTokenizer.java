@@ -0,0 +1,26 @@
+package test.java.org.aigents.nlp.lg;
+
+import java.util.List;
+
+import main.java.org.aigents.nlp.lg.Tokenizer;
+
+public class TestTokenizer {
+    public static void main(String[] args) {
+        System.out.println("Testing Tokenizer.java on the English affix file.");
+        Tokenizer tokenizer = Tokenizer.getDefault();
+        check(tokenizer, "He moved to the U.S. in May.", "[He, moved, to, the, U.S., in, May, .]");
+        check(tokenizer, "Mr. Smith met Mrs. Smith.", "[Mr., Smith, met, Mrs., Smith, .]");
+        check(tokenizer, "(Mr.) and (U.S.),", "[(, Mr., ), and, (, U.S., ), ,]");
+        check(tokenizer, "Cats, dogs, etc.", "[Cats, ,, dogs, ,, etc.]");
+        check(tokenizer, "The dog barked.", "[The, dog, barked, .]");
+        check(tokenizer, "\"Stop,\" he said.", "[\", Stop, ,, \", he, said, .]");
+        check(tokenizer, "It cost 1,000.", "[It, cost, 1,000, .]");
+        check(tokenizer, "...", "[...]");
+    }
+
+    private static void check(Tokenizer tokenizer, String text, String expected) {
+        List<String> tokens = tokenizer.split(text, false);
+        boolean ok = tokens.toString().equals(expected);
+        System.out.println(text + " -> " + tokens + (ok ? "" : " FAILED, expected " + expected));
+    }
+}